@@ -121,4 +121,8 @@ public class ProvenanceEventRecordDTOHolder implements Serializable {
         return batchId;
     }
 
+    public void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+
 }
@@ -0,0 +1,880 @@
+package com.thinkbiganalytics.nifi.provenance.model.codec;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.nifi.provenance.KyloProcessorFlowType;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatistics;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolderV2;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolderV3;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsV2;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedProcessorStatistics;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedProcessorStatisticsV2;
+import com.thinkbiganalytics.nifi.provenance.model.stats.GroupedStats;
+import com.thinkbiganalytics.nifi.provenance.model.stats.GroupedStatsV2;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.joda.time.DateTime;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary encoding of the {@link ProvenanceEventRecordDTOHolder} and {@link AggregatedFeedProcessorStatisticsHolder} payloads sent from NiFi to Kylo Operations Manager.
+ *
+ * Every payload starts with a 4 byte header (magic, format version, payload type).
+ * Numbers are written as variable length integers, timestamps and event ids are written as the delta from the previous value in the payload,
+ * and each distinct string (feed, processor, flow file ids etc) is written once and then referenced by its index in the payload dictionary.
+ *
+ * Payloads that do not start with the header are treated as java serialized objects so receivers can accept either format.
+ */
+public class ProvenanceWireFormat {
+
+    /**
+     * The current version of the format.  Decoders reject payloads with a newer version
+     */
+    public static final byte VERSION = 1;
+
+    static final byte MAGIC_1 = 'K';
+    static final byte MAGIC_2 = 'P';
+
+    static final byte TYPE_EVENTS = 1;
+    static final byte TYPE_STATS = 2;
+
+    private static final int START_OF_JOB = 1;
+    private static final int FINAL_JOB_EVENT = 1 << 1;
+    private static final int FAILURE = 1 << 2;
+    private static final int STREAM = 1 << 3;
+    private static final int HAS_EVENT_ID = 1 << 4;
+    private static final int HAS_EVENT_TIME = 1 << 5;
+    private static final int HAS_START_TIME = 1 << 6;
+    private static final int HAS_DURATION = 1 << 7;
+    private static final int HAS_FILE_SIZE_BYTES = 1 << 8;
+    private static final int HAS_INPUT_CLAIM_BYTES = 1 << 9;
+    private static final int HAS_OUTPUT_CLAIM_BYTES = 1 << 10;
+    private static final int HAS_PARENTS = 1 << 11;
+    private static final int HAS_CHILDREN = 1 << 12;
+    private static final int HAS_UPDATED_ATTRIBUTES = 1 << 13;
+    private static final int HAS_PREVIOUS_ATTRIBUTES = 1 << 14;
+    private static final int HAS_ATTRIBUTES = 1 << 15;
+    private static final int HAS_ADDITIONAL_PROPERTIES = 1 << 16;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_LONG = 2;
+    private static final byte VALUE_INTEGER = 3;
+    private static final byte VALUE_BOOLEAN = 4;
+    private static final byte VALUE_DOUBLE = 5;
+    private static final byte VALUE_SERIALIZED = 6;
+
+    private ProvenanceWireFormat() {
+
+    }
+
+    /**
+     * @param payload the bytes received
+     * @return true if the bytes were written by this format, false otherwise
+     */
+    public static boolean isWireFormat(byte[] payload) {
+        return payload != null && payload.length >= 4 && payload[0] == MAGIC_1 && payload[1] == MAGIC_2;
+    }
+
+    /**
+     * Convert the bytes received from NiFi back to the object that was sent.
+     * Bytes written by this format are decoded, anything else is treated as a java serialized object
+     *
+     * @param payload the bytes received
+     * @return the decoded object
+     */
+    public static Object deserialize(byte[] payload) {
+        if (isWireFormat(payload)) {
+            return decode(payload);
+        }
+        return SerializationUtils.deserialize(payload);
+    }
+
+    /**
+     * Decode a payload written by this format
+     *
+     * @param payload the bytes to decode
+     * @return the {@link ProvenanceEventRecordDTOHolder} or {@link AggregatedFeedProcessorStatisticsHolder} that was encoded
+     */
+    public static Object decode(byte[] payload) {
+        if (!isWireFormat(payload)) {
+            throw new IllegalArgumentException("Payload is not in the Kylo provenance wire format");
+        }
+        if (payload[2] > VERSION) {
+            throw new IllegalArgumentException("Unsupported Kylo provenance wire format version " + payload[2] + ". Only versions up to " + VERSION + " are supported");
+        }
+        Input in = new Input(payload, 4);
+        try {
+            switch (payload[3]) {
+                case TYPE_EVENTS:
+                    return readEvents(in);
+                case TYPE_STATS:
+                    return readStats(in);
+                default:
+                    throw new IllegalArgumentException("Unknown Kylo provenance wire format payload type " + payload[3]);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated Kylo provenance wire format payload", e);
+        }
+    }
+
+    /**
+     * Encode the batch events
+     *
+     * @param holder the events to send
+     * @return the encoded bytes
+     */
+    public static byte[] encode(ProvenanceEventRecordDTOHolder holder) {
+        Output out = new Output(TYPE_EVENTS, holder.getEvents() != null ? holder.getEvents().size() * 96 : 64);
+        out.writeString(holder.getBatchId());
+        if (holder.getEvents() == null) {
+            out.writeVarLong(0);
+        } else {
+            out.writeVarLong(holder.getEvents().size() + 1);
+            for (ProvenanceEventRecordDTO event : holder.getEvents()) {
+                writeEvent(out, event);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encode the feed processor statistics
+     *
+     * @param holder the statistics to send
+     * @return the encoded bytes
+     */
+    public static byte[] encode(AggregatedFeedProcessorStatisticsHolder holder) {
+        Output out = new Output(TYPE_STATS, 1024);
+        int version = holder instanceof AggregatedFeedProcessorStatisticsHolderV3 ? 3 : holder instanceof AggregatedFeedProcessorStatisticsHolderV2 ? 2 : 1;
+        out.writeByte(version);
+        out.writeString(holder.getCollectionId());
+        if (version == 3) {
+            out.writeTime(((AggregatedFeedProcessorStatisticsHolderV3) holder).getTimestamp());
+        }
+        out.writeTime(holder.getMinTime() != null ? holder.getMinTime().getMillis() : null);
+        out.writeTime(holder.getMaxTime() != null ? holder.getMaxTime().getMillis() : null);
+        out.writeVarLong(holder.getEventCount() != null ? holder.getEventCount().get() : 0L);
+        out.writeEventId(holder.getMinEventId());
+        out.writeEventId(holder.getMaxEventId());
+
+        Map<String, AggregatedFeedProcessorStatistics> feedStatistics = holder.getFeedStatistics();
+        if (feedStatistics == null) {
+            out.writeVarLong(0);
+        } else {
+            out.writeVarLong(feedStatistics.size() + 1);
+            for (Map.Entry<String, AggregatedFeedProcessorStatistics> e : feedStatistics.entrySet()) {
+                out.writeString(e.getKey());
+                writeFeedProcessorStatistics(out, e.getValue());
+            }
+        }
+        if (version >= 2) {
+            Map<String, Long> runningFlows = ((AggregatedFeedProcessorStatisticsHolderV2) holder).getProcessorIdRunningFlows();
+            if (runningFlows == null) {
+                out.writeVarLong(0);
+            } else {
+                out.writeVarLong(runningFlows.size() + 1);
+                for (Map.Entry<String, Long> e : runningFlows.entrySet()) {
+                    out.writeString(e.getKey());
+                    out.writeNullableLong(e.getValue());
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeEvent(Output out, ProvenanceEventRecordDTO event) {
+        Long eventId = event.getEventId();
+        Long eventTime = event.getEventTime();
+        Long startTime = event.getStartTime();
+        Long duration = event.getEventDuration();
+        Long fileSizeBytes = event.getFileSizeBytes();
+        Long inputClaimBytes = event.getInputContentClaimFileSizeBytes();
+        Long outputClaimBytes = event.getOutputContentClaimFileSizeBytes();
+        Map<String, Object> additionalProperties = event.getAdditionalProperties();
+
+        int flags = 0;
+        flags |= event.isStartOfJob() ? START_OF_JOB : 0;
+        flags |= event.isFinalJobEvent() ? FINAL_JOB_EVENT : 0;
+        flags |= event.isFailure() ? FAILURE : 0;
+        flags |= event.isStream() ? STREAM : 0;
+        flags |= eventId != null ? HAS_EVENT_ID : 0;
+        flags |= eventTime != null ? HAS_EVENT_TIME : 0;
+        flags |= startTime != null ? HAS_START_TIME : 0;
+        flags |= duration != null ? HAS_DURATION : 0;
+        flags |= fileSizeBytes != null ? HAS_FILE_SIZE_BYTES : 0;
+        flags |= inputClaimBytes != null ? HAS_INPUT_CLAIM_BYTES : 0;
+        flags |= outputClaimBytes != null ? HAS_OUTPUT_CLAIM_BYTES : 0;
+        flags |= event.getParentUuids() != null ? HAS_PARENTS : 0;
+        flags |= event.getChildUuids() != null ? HAS_CHILDREN : 0;
+        flags |= event.getUpdatedAttributes() != null ? HAS_UPDATED_ATTRIBUTES : 0;
+        flags |= event.getPreviousAttributes() != null ? HAS_PREVIOUS_ATTRIBUTES : 0;
+        flags |= event.getAttributeMap() != null ? HAS_ATTRIBUTES : 0;
+        flags |= additionalProperties != null && !additionalProperties.isEmpty() ? HAS_ADDITIONAL_PROPERTIES : 0;
+        out.writeVarLong(flags);
+
+        if (eventId != null) {
+            out.writeSignedVarLong(eventId - out.lastEventId);
+            out.lastEventId = eventId;
+        }
+        if (eventTime != null) {
+            out.writeSignedVarLong(eventTime - out.lastTime);
+            out.lastTime = eventTime;
+        }
+        if (startTime != null) {
+            //start time is written relative to the event time
+            out.writeSignedVarLong(startTime - out.lastTime);
+        }
+        if (duration != null) {
+            out.writeSignedVarLong(duration);
+        }
+        if (fileSizeBytes != null) {
+            out.writeSignedVarLong(fileSizeBytes);
+        }
+        if (inputClaimBytes != null) {
+            out.writeSignedVarLong(inputClaimBytes);
+        }
+        if (outputClaimBytes != null) {
+            out.writeSignedVarLong(outputClaimBytes);
+        }
+
+        out.writeString(event.getJobFlowFileId());
+        out.writeString(event.getFlowFileUuid());
+        out.writeString(event.getEventType());
+        out.writeString(event.getComponentId());
+        out.writeString(event.getComponentName());
+        out.writeString(event.getComponentType());
+        out.writeString(event.getGroupId());
+        out.writeString(event.getFeedName());
+        out.writeString(event.getFeedProcessGroupId());
+        out.writeString(event.getFirstEventProcessorId());
+        out.writeString(event.getSourceConnectionIdentifier());
+        out.writeString(event.getRelationship());
+        out.writeString(event.getDetails());
+        out.writeString(event.getClusterNodeId());
+        out.writeString(event.getClusterNodeAddress());
+        out.writeString(event.getFileSize());
+        out.writeString(event.getInputContentClaimFileSize());
+        out.writeString(event.getOutputContentClaimFileSize());
+        out.writeString(event.getProcessorType() != null ? event.getProcessorType().name() : null);
+
+        if (event.getParentUuids() != null) {
+            out.writeStrings(event.getParentUuids());
+        }
+        if (event.getChildUuids() != null) {
+            out.writeStrings(event.getChildUuids());
+        }
+        if (event.getUpdatedAttributes() != null) {
+            out.writeStringMap(event.getUpdatedAttributes());
+        }
+        if (event.getPreviousAttributes() != null) {
+            out.writeStringMap(event.getPreviousAttributes());
+        }
+        if (event.getAttributeMap() != null) {
+            out.writeStringMap(event.getAttributeMap());
+        }
+        if ((flags & HAS_ADDITIONAL_PROPERTIES) != 0) {
+            out.writeObjectMap(additionalProperties);
+        }
+    }
+
+    private static ProvenanceEventRecordDTOHolder readEvents(Input in) {
+        ProvenanceEventRecordDTOHolder holder = new ProvenanceEventRecordDTOHolder();
+        holder.setBatchId(in.readString());
+        int size = (int) in.readVarLong() - 1;
+        if (size >= 0) {
+            List<ProvenanceEventRecordDTO> events = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                events.add(readEvent(in));
+            }
+            holder.setEvents(events);
+        }
+        return holder;
+    }
+
+    private static ProvenanceEventRecordDTO readEvent(Input in) {
+        ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+        int flags = (int) in.readVarLong();
+        event.setIsStartOfJob((flags & START_OF_JOB) != 0);
+        event.setIsFinalJobEvent((flags & FINAL_JOB_EVENT) != 0);
+        event.setIsFailure((flags & FAILURE) != 0);
+        event.setStream((flags & STREAM) != 0);
+
+        if ((flags & HAS_EVENT_ID) != 0) {
+            in.lastEventId += in.readSignedVarLong();
+            event.setEventId(in.lastEventId);
+        }
+        if ((flags & HAS_EVENT_TIME) != 0) {
+            in.lastTime += in.readSignedVarLong();
+            event.setEventTime(in.lastTime);
+        }
+        if ((flags & HAS_START_TIME) != 0) {
+            event.setStartTime(in.lastTime + in.readSignedVarLong());
+        }
+        if ((flags & HAS_DURATION) != 0) {
+            event.setEventDuration(in.readSignedVarLong());
+        }
+        if ((flags & HAS_FILE_SIZE_BYTES) != 0) {
+            event.setFileSizeBytes(in.readSignedVarLong());
+        }
+        if ((flags & HAS_INPUT_CLAIM_BYTES) != 0) {
+            event.setInputContentClaimFileSizeBytes(in.readSignedVarLong());
+        }
+        if ((flags & HAS_OUTPUT_CLAIM_BYTES) != 0) {
+            event.setOutputContentClaimFileSizeBytes(in.readSignedVarLong());
+        }
+
+        event.setJobFlowFileId(in.readString());
+        event.setFlowFileUuid(in.readString());
+        event.setEventType(in.readString());
+        event.setComponentId(in.readString());
+        event.setComponentName(in.readString());
+        event.setComponentType(in.readString());
+        event.setGroupId(in.readString());
+        event.setFeedName(in.readString());
+        event.setFeedProcessGroupId(in.readString());
+        event.setFirstEventProcessorId(in.readString());
+        event.setSourceConnectionIdentifier(in.readString());
+        event.setRelationship(in.readString());
+        event.setDetails(in.readString());
+        event.setClusterNodeId(in.readString());
+        event.setClusterNodeAddress(in.readString());
+        event.setFileSize(in.readString());
+        event.setInputContentClaimFileSize(in.readString());
+        event.setOutputContentClaimFileSize(in.readString());
+        String processorType = in.readString();
+        if (processorType != null) {
+            event.setProcessorType(KyloProcessorFlowType.valueOf(processorType));
+        }
+
+        if ((flags & HAS_PARENTS) != 0) {
+            event.setParentUuids(in.readStrings(new ArrayList<String>()));
+        }
+        if ((flags & HAS_CHILDREN) != 0) {
+            event.setChildUuids(in.readStrings(new ArrayList<String>()));
+        }
+        if ((flags & HAS_UPDATED_ATTRIBUTES) != 0) {
+            event.setUpdatedAttributes(in.readStringMap());
+        }
+        if ((flags & HAS_PREVIOUS_ATTRIBUTES) != 0) {
+            event.setPreviousAttributes(in.readStringMap());
+        }
+        if ((flags & HAS_ATTRIBUTES) != 0) {
+            event.setAttributeMap(in.readStringMap());
+        }
+        if ((flags & HAS_ADDITIONAL_PROPERTIES) != 0) {
+            event.setAdditionalProperties(in.readObjectMap());
+        }
+        return event;
+    }
+
+    private static void writeFeedProcessorStatistics(Output out, AggregatedFeedProcessorStatistics stats) {
+        boolean v2 = stats instanceof AggregatedFeedProcessorStatisticsV2;
+        out.writeByte(v2 ? 2 : 1);
+        out.writeString(stats.getStartingProcessorId());
+        out.writeString(stats.getProcessGroup());
+        out.writeString(stats.getCollectionId());
+        out.writeNullableLong(stats.getCollectionIntervalMillis());
+        out.writeNullableLong(stats.getTotalEvents());
+        out.writeEventId(stats.getMinEventId());
+        out.writeEventId(stats.getMaxEventId());
+        if (v2) {
+            out.writeString(((AggregatedFeedProcessorStatisticsV2) stats).getFeedName());
+        }
+        Map<String, AggregatedProcessorStatistics> processorStats = stats.getProcessorStats();
+        out.writeVarLong(processorStats.size());
+        for (Map.Entry<String, AggregatedProcessorStatistics> e : processorStats.entrySet()) {
+            out.writeString(e.getKey());
+            writeProcessorStatistics(out, e.getValue());
+        }
+    }
+
+    private static AggregatedFeedProcessorStatistics readFeedProcessorStatistics(Input in) {
+        boolean v2 = in.readByte() == 2;
+        String startingProcessorId = in.readString();
+        String processGroup = in.readString();
+        String collectionId = in.readString();
+        Long collectionIntervalMillis = in.readNullableLong();
+        AggregatedFeedProcessorStatistics stats = v2 ? new AggregatedFeedProcessorStatisticsV2(startingProcessorId, collectionId, collectionIntervalMillis)
+                                                     : new AggregatedFeedProcessorStatistics(startingProcessorId, collectionId, collectionIntervalMillis);
+        stats.setProcessGroup(processGroup);
+        stats.setTotalEvents(in.readNullableLong());
+        stats.setMinEventId(in.readEventId());
+        stats.setMaxEventId(in.readEventId());
+        if (v2) {
+            ((AggregatedFeedProcessorStatisticsV2) stats).setFeedName(in.readString());
+        }
+        int size = (int) in.readVarLong();
+        for (int i = 0; i < size; i++) {
+            String key = in.readString();
+            stats.getProcessorStats().put(key, readProcessorStatistics(in));
+        }
+        return stats;
+    }
+
+    private static void writeProcessorStatistics(Output out, AggregatedProcessorStatistics stats) {
+        out.writeByte(stats instanceof AggregatedProcessorStatisticsV2 ? 2 : 1);
+        out.writeString(stats.getProcessorId());
+        out.writeString(stats.getProcessorName());
+        out.writeString(stats.getCollectionId());
+        Map<String, GroupedStats> groupedStats = stats.getStats();
+        out.writeVarLong(groupedStats.size());
+        for (Map.Entry<String, GroupedStats> e : groupedStats.entrySet()) {
+            out.writeString(e.getKey());
+            writeGroupedStats(out, e.getValue());
+        }
+    }
+
+    private static AggregatedProcessorStatistics readProcessorStatistics(Input in) {
+        boolean v2 = in.readByte() == 2;
+        String processorId = in.readString();
+        String processorName = in.readString();
+        String collectionId = in.readString();
+        AggregatedProcessorStatistics stats = v2 ? new AggregatedProcessorStatisticsV2(processorId, processorName, collectionId)
+                                                 : new AggregatedProcessorStatistics(processorId, processorName, collectionId);
+        int size = (int) in.readVarLong();
+        for (int i = 0; i < size; i++) {
+            String key = in.readString();
+            stats.getStats().put(key, readGroupedStats(in));
+        }
+        return stats;
+    }
+
+    private static void writeGroupedStats(Output out, GroupedStats stats) {
+        boolean v2 = stats instanceof GroupedStatsV2;
+        out.writeByte(v2 ? 2 : 1);
+        out.writeString(stats.getSourceConnectionIdentifier());
+        out.writeString(stats.getGroupKey());
+        out.writeString(stats.getClusterNodeId());
+        out.writeString(stats.getClusterNodeAddress());
+        out.writeTime(stats.getTime());
+        out.writeTime(stats.getMinTime());
+        out.writeTime(stats.getMaxTime());
+        out.writeEventId(stats.getMaxEventId());
+        out.writeSignedVarLong(stats.getBytesIn());
+        out.writeSignedVarLong(stats.getBytesOut());
+        out.writeSignedVarLong(stats.getDuration());
+        out.writeSignedVarLong(stats.getTotalCount());
+        out.writeSignedVarLong(stats.getJobsStarted());
+        out.writeSignedVarLong(stats.getJobsFinished());
+        out.writeSignedVarLong(stats.getProcessorsFailed());
+        out.writeSignedVarLong(stats.getFlowFilesStarted());
+        out.writeSignedVarLong(stats.getFlowFilesFinished());
+        out.writeSignedVarLong(stats.getJobsFailed());
+        out.writeSignedVarLong(stats.getSuccessfulJobDuration());
+        out.writeSignedVarLong(stats.getJobDuration());
+        if (v2) {
+            GroupedStatsV2 statsV2 = (GroupedStatsV2) stats;
+            out.writeString(statsV2.getLatestFlowFileId());
+            Map<String, Object> additionalProperties = statsV2.getAdditionalProperties();
+            if (additionalProperties == null) {
+                out.writeVarLong(0);
+            } else {
+                out.writeVarLong(1);
+                out.writeObjectMap(additionalProperties);
+            }
+        }
+    }
+
+    private static GroupedStats readGroupedStats(Input in) {
+        boolean v2 = in.readByte() == 2;
+        String sourceConnectionIdentifier = in.readString();
+        GroupedStats stats = v2 ? new GroupedStatsV2(sourceConnectionIdentifier) : new GroupedStats(sourceConnectionIdentifier);
+        stats.setGroupKey(in.readString());
+        stats.setClusterNodeId(in.readString());
+        stats.setClusterNodeAddress(in.readString());
+        stats.setTime(in.readTime());
+        stats.setMinTime(in.readTime());
+        stats.setMaxTime(in.readTime());
+        Long maxEventId = in.readEventId();
+        stats.setMaxEventId(maxEventId != null ? maxEventId : 0L);
+        stats.setBytesIn(in.readSignedVarLong());
+        stats.setBytesOut(in.readSignedVarLong());
+        stats.setDuration(in.readSignedVarLong());
+        stats.setTotalCount(in.readSignedVarLong());
+        stats.setJobsStarted(in.readSignedVarLong());
+        stats.setJobsFinished(in.readSignedVarLong());
+        stats.setProcessorsFailed(in.readSignedVarLong());
+        stats.setFlowFilesStarted(in.readSignedVarLong());
+        stats.setFlowFilesFinished(in.readSignedVarLong());
+        stats.setJobsFailed(in.readSignedVarLong());
+        stats.setSuccessfulJobDuration(in.readSignedVarLong());
+        stats.setJobDuration(in.readSignedVarLong());
+        if (v2) {
+            GroupedStatsV2 statsV2 = (GroupedStatsV2) stats;
+            statsV2.setLatestFlowFileId(in.readString());
+            if (in.readVarLong() == 1) {
+                statsV2.setAdditionalProperties(in.readObjectMap());
+            } else {
+                statsV2.setAdditionalProperties(null);
+            }
+        }
+        return stats;
+    }
+
+    private static AggregatedFeedProcessorStatisticsHolder readStats(Input in) {
+        int version = in.readByte();
+        AggregatedFeedProcessorStatisticsHolder holder;
+        if (version == 3) {
+            holder = new AggregatedFeedProcessorStatisticsHolderV3();
+        } else if (version == 2) {
+            holder = new AggregatedFeedProcessorStatisticsHolderV2();
+        } else {
+            holder = new AggregatedFeedProcessorStatisticsHolder();
+        }
+        String collectionId = in.readString();
+        if (collectionId != null) {
+            holder.setCollectionId(collectionId);
+        }
+        if (version == 3) {
+            ((AggregatedFeedProcessorStatisticsHolderV3) holder).setTimestamp(in.readTime());
+        }
+        Long minTime = in.readTime();
+        Long maxTime = in.readTime();
+        holder.setMinTime(minTime != null ? new DateTime(minTime) : null);
+        holder.setMaxTime(maxTime != null ? new DateTime(maxTime) : null);
+        holder.getEventCount().set(in.readVarLong());
+        holder.setMinEventId(in.readEventId());
+        holder.setMaxEventId(in.readEventId());
+
+        int size = (int) in.readVarLong() - 1;
+        if (size < 0) {
+            holder.setFeedStatistics((Map<String, AggregatedFeedProcessorStatistics>) null);
+        } else {
+            Map<String, AggregatedFeedProcessorStatistics> feedStatistics = new ConcurrentHashMap<>(Math.max(16, size * 2));
+            for (int i = 0; i < size; i++) {
+                String key = in.readString();
+                feedStatistics.put(key, readFeedProcessorStatistics(in));
+            }
+            holder.setFeedStatistics(feedStatistics);
+        }
+        if (version >= 2) {
+            int runningFlows = (int) in.readVarLong() - 1;
+            Map<String, Long> processorIdRunningFlows = null;
+            if (runningFlows >= 0) {
+                processorIdRunningFlows = new HashMap<>(Math.max(16, runningFlows * 2));
+                for (int i = 0; i < runningFlows; i++) {
+                    String key = in.readString();
+                    processorIdRunningFlows.put(key, in.readNullableLong());
+                }
+            }
+            ((AggregatedFeedProcessorStatisticsHolderV2) holder).setProcessorIdRunningFlows(processorIdRunningFlows);
+        }
+        return holder;
+    }
+
+    /**
+     * Growable buffer that writes the payload and keeps track of the string dictionary and the previous time and event id
+     */
+    private static final class Output {
+
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private byte[] buffer;
+        private int position;
+        private long lastEventId;
+        private long lastTime;
+
+        Output(byte type, int initialSize) {
+            buffer = new byte[Math.max(64, initialSize)];
+            writeByte(MAGIC_1);
+            writeByte(MAGIC_2);
+            writeByte(VERSION);
+            writeByte(type);
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeNullableLong(Long value) {
+            if (value == null) {
+                writeByte(0);
+            } else {
+                writeByte(1);
+                writeSignedVarLong(value);
+            }
+        }
+
+        void writeTime(Long time) {
+            if (time == null) {
+                writeByte(0);
+            } else {
+                writeByte(1);
+                writeSignedVarLong(time - lastTime);
+                lastTime = time;
+            }
+        }
+
+        void writeEventId(Long eventId) {
+            if (eventId == null) {
+                writeByte(0);
+            } else {
+                writeByte(1);
+                writeSignedVarLong(eventId - lastEventId);
+                lastEventId = eventId;
+            }
+        }
+
+        /**
+         * Strings are written as a tag.  0 is null, an odd tag is a reference to a string already written and an even tag is a new string followed by its UTF-8 bytes
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                writeVarLong(((long) index << 1) | 1);
+            } else {
+                dictionary.put(value, dictionary.size());
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarLong((bytes.length + 1L) << 1);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, buffer, position, bytes.length);
+                position += bytes.length;
+            }
+        }
+
+        void writeStrings(Collection<String> values) {
+            writeVarLong(values.size());
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        void writeStringMap(Map<String, String> values) {
+            writeVarLong(values.size());
+            for (Map.Entry<String, String> e : values.entrySet()) {
+                writeString(e.getKey());
+                writeString(e.getValue());
+            }
+        }
+
+        void writeObjectMap(Map<String, Object> values) {
+            writeVarLong(values.size());
+            for (Map.Entry<String, Object> e : values.entrySet()) {
+                writeString(e.getKey());
+                Object value = e.getValue();
+                if (value == null) {
+                    writeByte(VALUE_NULL);
+                } else if (value instanceof String) {
+                    writeByte(VALUE_STRING);
+                    writeString((String) value);
+                } else if (value instanceof Long) {
+                    writeByte(VALUE_LONG);
+                    writeSignedVarLong((Long) value);
+                } else if (value instanceof Integer) {
+                    writeByte(VALUE_INTEGER);
+                    writeSignedVarLong((Integer) value);
+                } else if (value instanceof Boolean) {
+                    writeByte(VALUE_BOOLEAN);
+                    writeByte((Boolean) value ? 1 : 0);
+                } else if (value instanceof Double) {
+                    writeByte(VALUE_DOUBLE);
+                    writeVarLong(Double.doubleToRawLongBits((Double) value));
+                } else if (value instanceof Serializable) {
+                    writeByte(VALUE_SERIALIZED);
+                    byte[] bytes = SerializationUtils.serialize((Serializable) value);
+                    writeVarLong(bytes.length);
+                    ensureCapacity(bytes.length);
+                    System.arraycopy(bytes, 0, buffer, position, bytes.length);
+                    position += bytes.length;
+                } else {
+                    writeByte(VALUE_STRING);
+                    writeString(value.toString());
+                }
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    /**
+     * Reads a payload written by {@link Output}
+     */
+    private static final class Input {
+
+        private final List<String> dictionary = new ArrayList<>();
+        private final byte[] buffer;
+        private int position;
+        private long lastEventId;
+        private long lastTime;
+
+        Input(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift > 63) {
+                    throw new IllegalArgumentException("Malformed variable length number in Kylo provenance wire format payload");
+                }
+                b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        long readSignedVarLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        Long readNullableLong() {
+            return readByte() == 0 ? null : readSignedVarLong();
+        }
+
+        Long readTime() {
+            if (readByte() == 0) {
+                return null;
+            }
+            lastTime += readSignedVarLong();
+            return lastTime;
+        }
+
+        Long readEventId() {
+            if (readByte() == 0) {
+                return null;
+            }
+            lastEventId += readSignedVarLong();
+            return lastEventId;
+        }
+
+        String readString() {
+            long tag = readVarLong();
+            if (tag == 0) {
+                return null;
+            }
+            if ((tag & 1) == 1) {
+                return dictionary.get((int) (tag >>> 1));
+            }
+            int length = (int) (tag >>> 1) - 1;
+            if (length < 0 || position + length > buffer.length) {
+                throw new IllegalArgumentException("Malformed string in Kylo provenance wire format payload");
+            }
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            dictionary.add(value);
+            return value;
+        }
+
+        <C extends Collection<String>> C readStrings(C values) {
+            int size = (int) readVarLong();
+            for (int i = 0; i < size; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        Map<String, String> readStringMap() {
+            int size = (int) readVarLong();
+            Map<String, String> values = new HashMap<>(Math.max(16, size * 2));
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                values.put(key, readString());
+            }
+            return values;
+        }
+
+        Map<String, Object> readObjectMap() {
+            int size = (int) readVarLong();
+            Map<String, Object> values = new HashMap<>(Math.max(16, size * 2));
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                byte type = readByte();
+                Object value;
+                switch (type) {
+                    case VALUE_NULL:
+                        value = null;
+                        break;
+                    case VALUE_STRING:
+                        value = readString();
+                        break;
+                    case VALUE_LONG:
+                        value = readSignedVarLong();
+                        break;
+                    case VALUE_INTEGER:
+                        value = (int) readSignedVarLong();
+                        break;
+                    case VALUE_BOOLEAN:
+                        value = readByte() == 1;
+                        break;
+                    case VALUE_DOUBLE:
+                        value = Double.longBitsToDouble(readVarLong());
+                        break;
+                    case VALUE_SERIALIZED:
+                        int length = (int) readVarLong();
+                        value = SerializationUtils.deserialize(Arrays.copyOfRange(buffer, position, position + length));
+                        position += length;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown value type " + type + " in Kylo provenance wire format payload");
+                }
+                values.put(key, value);
+            }
+            return values;
+        }
+    }
+}
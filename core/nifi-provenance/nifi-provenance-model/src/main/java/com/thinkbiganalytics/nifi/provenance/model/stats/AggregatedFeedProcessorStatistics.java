@@ -82,10 +82,34 @@ public class AggregatedFeedProcessorStatistics implements Serializable {
         return processGroup;
     }
 
+    public void setProcessGroup(String processGroup) {
+        this.processGroup = processGroup;
+    }
+
+    public Long getTotalEvents() {
+        return totalEvents;
+    }
+
+    public void setTotalEvents(Long totalEvents) {
+        this.totalEvents = totalEvents;
+    }
+
+    public Long getMinEventId() {
+        return minEventId;
+    }
+
+    public void setMinEventId(Long minEventId) {
+        this.minEventId = minEventId;
+    }
+
     public Long getMaxEventId() {
         return maxEventId;
     }
 
+    public void setMaxEventId(Long maxEventId) {
+        this.maxEventId = maxEventId;
+    }
+
     public Map<String, AggregatedProcessorStatistics> getProcessorStats() {
         return processorStats;
     }
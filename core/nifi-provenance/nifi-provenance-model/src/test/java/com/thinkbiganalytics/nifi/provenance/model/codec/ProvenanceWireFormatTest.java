@@ -0,0 +1,195 @@
+package com.thinkbiganalytics.nifi.provenance.model.codec;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.nifi.provenance.KyloProcessorFlowType;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatistics;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolderV3;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsV2;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedProcessorStatistics;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedProcessorStatisticsV2;
+import com.thinkbiganalytics.nifi.provenance.model.stats.GroupedStats;
+import com.thinkbiganalytics.nifi.provenance.model.stats.GroupedStatsV2;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.joda.time.DateTime;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class ProvenanceWireFormatTest {
+
+    private ProvenanceEventRecordDTO newEvent(long eventId, long eventTime, String jobFlowFileId) {
+        ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+        event.setEventId(eventId);
+        event.setEventTime(eventTime);
+        event.setStartTime(eventTime - 25);
+        event.setEventType("CREATE");
+        event.setFlowFileUuid(UUID.randomUUID().toString());
+        event.setJobFlowFileId(jobFlowFileId);
+        event.setComponentId("processor-1");
+        event.setComponentName("GetFile");
+        event.setFeedName("category.feed");
+        event.setFeedProcessGroupId("process-group-1");
+        event.setFileSizeBytes(1024L);
+        event.setFileSize("1 KB");
+        event.setIsStartOfJob(true);
+        event.setProcessorType(KyloProcessorFlowType.NORMAL_FLOW);
+        event.setParentUuids(Arrays.asList(jobFlowFileId));
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "file-" + eventId);
+        event.setUpdatedAttributes(attributes);
+        event.setAdditionalProperty("retries", 2);
+        return event;
+    }
+
+    @Test
+    public void testEventsRoundTrip() {
+        String jobFlowFileId = UUID.randomUUID().toString();
+        List<ProvenanceEventRecordDTO> events = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            events.add(newEvent(1000L + i, 1500000000000L + (i * 7), jobFlowFileId));
+        }
+        ProvenanceEventRecordDTO last = events.get(events.size() - 1);
+        last.setIsFinalJobEvent(true);
+        last.setStream(true);
+        last.setEventTime(null);
+        ProvenanceEventRecordDTOHolder holder = new ProvenanceEventRecordDTOHolder();
+        holder.setEvents(events);
+
+        byte[] bytes = ProvenanceWireFormat.encode(holder);
+        Assert.assertTrue(ProvenanceWireFormat.isWireFormat(bytes));
+        Assert.assertTrue(bytes.length < SerializationUtils.serialize(holder).length);
+
+        ProvenanceEventRecordDTOHolder decoded = (ProvenanceEventRecordDTOHolder) ProvenanceWireFormat.deserialize(bytes);
+        Assert.assertEquals(holder.getBatchId(), decoded.getBatchId());
+        Assert.assertEquals(events.size(), decoded.getEvents().size());
+        for (int i = 0; i < events.size(); i++) {
+            ProvenanceEventRecordDTO expected = events.get(i);
+            ProvenanceEventRecordDTO actual = decoded.getEvents().get(i);
+            Assert.assertEquals(expected, actual);
+            Assert.assertEquals(expected.getEventTime(), actual.getEventTime());
+            Assert.assertEquals(expected.getStartTime(), actual.getStartTime());
+            Assert.assertEquals(expected.getEventDuration(), actual.getEventDuration());
+            Assert.assertEquals(expected.getJobFlowFileId(), actual.getJobFlowFileId());
+            Assert.assertEquals(expected.getComponentName(), actual.getComponentName());
+            Assert.assertEquals(expected.getFileSizeBytes(), actual.getFileSizeBytes());
+            Assert.assertEquals(expected.getProcessorType(), actual.getProcessorType());
+            Assert.assertEquals(expected.getParentUuids(), actual.getParentUuids());
+            Assert.assertEquals(expected.getUpdatedAttributes(), actual.getUpdatedAttributes());
+            Assert.assertEquals(expected.getAdditionalProperties(), actual.getAdditionalProperties());
+            Assert.assertNull(actual.getChildUuids());
+            Assert.assertEquals(expected.isStartOfJob(), actual.isStartOfJob());
+            Assert.assertEquals(expected.isFinalJobEvent(), actual.isFinalJobEvent());
+            Assert.assertEquals(expected.isStream(), actual.isStream());
+        }
+    }
+
+    @Test
+    public void testStatsRoundTrip() {
+        AggregatedFeedProcessorStatisticsHolderV3 holder = new AggregatedFeedProcessorStatisticsHolderV3();
+        holder.setMinTime(new DateTime(1500000000000L));
+        holder.setMaxTime(new DateTime(1500000003000L));
+        holder.setMinEventId(10L);
+        holder.setMaxEventId(20L);
+        holder.getEventCount().set(11);
+
+        AggregatedFeedProcessorStatisticsV2 feedStats = new AggregatedFeedProcessorStatisticsV2("processor-1", holder.getCollectionId(), 3000L, "category.feed");
+        feedStats.setProcessGroup("process-group-1");
+        AggregatedProcessorStatistics processorStats = new AggregatedProcessorStatisticsV2("processor-2", "UpdateAttribute", holder.getCollectionId());
+        GroupedStatsV2 groupedStats = (GroupedStatsV2) processorStats.getStats("connection-1");
+        groupedStats.setTime(1500000001000L);
+        groupedStats.setMinTime(1500000000000L);
+        groupedStats.setMaxTime(1500000003000L);
+        groupedStats.setMaxEventId(20L);
+        groupedStats.setTotalCount(11);
+        groupedStats.setJobsFinished(2);
+        groupedStats.setBytesIn(4096);
+        groupedStats.setLatestFlowFileId("flow-file-1");
+        feedStats.getProcessorStats().put(processorStats.getProcessorId(), processorStats);
+        Map<String, AggregatedFeedProcessorStatistics> feedStatistics = new HashMap<>();
+        feedStatistics.put(feedStats.getStartingProcessorId(), feedStats);
+        holder.setFeedStatistics(feedStatistics);
+        Map<String, Long> runningFlows = new HashMap<>();
+        runningFlows.put("processor-1", 3L);
+        holder.setProcessorIdRunningFlows(runningFlows);
+
+        AggregatedFeedProcessorStatisticsHolder decoded = (AggregatedFeedProcessorStatisticsHolder) ProvenanceWireFormat.deserialize(ProvenanceWireFormat.encode(holder));
+        Assert.assertTrue(decoded instanceof AggregatedFeedProcessorStatisticsHolderV3);
+        AggregatedFeedProcessorStatisticsHolderV3 decodedV3 = (AggregatedFeedProcessorStatisticsHolderV3) decoded;
+        Assert.assertEquals(holder.getCollectionId(), decodedV3.getCollectionId());
+        Assert.assertEquals(holder.getTimestamp(), decodedV3.getTimestamp());
+        Assert.assertEquals(holder.getMinTime(), decodedV3.getMinTime());
+        Assert.assertEquals(holder.getMaxTime(), decodedV3.getMaxTime());
+        Assert.assertEquals(holder.getMinEventId(), decodedV3.getMinEventId());
+        Assert.assertEquals(holder.getMaxEventId(), decodedV3.getMaxEventId());
+        Assert.assertEquals(11L, decodedV3.getEventCount().get());
+        Assert.assertEquals(runningFlows, decodedV3.getProcessorIdRunningFlows());
+
+        AggregatedFeedProcessorStatistics decodedFeedStats = decodedV3.getFeedStatistics().get("processor-1");
+        Assert.assertTrue(decodedFeedStats instanceof AggregatedFeedProcessorStatisticsV2);
+        Assert.assertEquals("category.feed", ((AggregatedFeedProcessorStatisticsV2) decodedFeedStats).getFeedName());
+        Assert.assertEquals("process-group-1", decodedFeedStats.getProcessGroup());
+        Assert.assertEquals(Long.valueOf(3000L), decodedFeedStats.getCollectionIntervalMillis());
+
+        AggregatedProcessorStatistics decodedProcessorStats = decodedFeedStats.getProcessorStats().get("processor-2");
+        Assert.assertTrue(decodedProcessorStats instanceof AggregatedProcessorStatisticsV2);
+        Assert.assertEquals("UpdateAttribute", decodedProcessorStats.getProcessorName());
+        GroupedStats decodedGroupedStats = decodedProcessorStats.getStats().get("connection-1");
+        Assert.assertTrue(decodedGroupedStats instanceof GroupedStatsV2);
+        Assert.assertEquals("connection-1", decodedGroupedStats.getSourceConnectionIdentifier());
+        Assert.assertEquals(groupedStats.getTime(), decodedGroupedStats.getTime());
+        Assert.assertEquals(groupedStats.getMinTime(), decodedGroupedStats.getMinTime());
+        Assert.assertEquals(groupedStats.getMaxTime(), decodedGroupedStats.getMaxTime());
+        Assert.assertEquals(20L, decodedGroupedStats.getMaxEventId());
+        Assert.assertEquals(11L, decodedGroupedStats.getTotalCount());
+        Assert.assertEquals(2L, decodedGroupedStats.getJobsFinished());
+        Assert.assertEquals(4096L, decodedGroupedStats.getBytesIn());
+        Assert.assertEquals("flow-file-1", ((GroupedStatsV2) decodedGroupedStats).getLatestFlowFileId());
+    }
+
+    @Test
+    public void testJavaSerializedFallback() {
+        ProvenanceEventRecordDTOHolder holder = new ProvenanceEventRecordDTOHolder();
+        holder.setEvents(Arrays.asList(newEvent(1L, 1500000000000L, "job-1")));
+        byte[] bytes = SerializationUtils.serialize(holder);
+        Assert.assertFalse(ProvenanceWireFormat.isWireFormat(bytes));
+        ProvenanceEventRecordDTOHolder decoded = (ProvenanceEventRecordDTOHolder) ProvenanceWireFormat.deserialize(bytes);
+        Assert.assertEquals(holder.getBatchId(), decoded.getBatchId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedPayload() {
+        ProvenanceEventRecordDTOHolder holder = new ProvenanceEventRecordDTOHolder();
+        holder.setEvents(Arrays.asList(newEvent(1L, 1500000000000L, "job-1")));
+        byte[] bytes = ProvenanceWireFormat.encode(holder);
+        ProvenanceWireFormat.decode(Arrays.copyOf(bytes, bytes.length / 2));
+    }
+}
@@ -28,6 +28,7 @@ import org.joda.time.DateTime;
 import org.joda.time.ReadablePeriod;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -180,6 +181,14 @@ public interface OpsManagerFeedProvider {
 
     List<? extends FeedSummary> findFeedSummary();
 
+    /**
+     * Find the summary rows for the given feeds
+     *
+     * @param feedNames the feed names
+     * @return the summary rows for the feeds, a feed may have more than one row
+     */
+    List<? extends FeedSummary> findFeedSummary(Collection<String> feedNames);
+
     DateTime getLastActiveTimeStamp(String feedName);
 
     /**
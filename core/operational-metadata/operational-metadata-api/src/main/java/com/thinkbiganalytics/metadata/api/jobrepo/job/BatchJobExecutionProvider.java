@@ -89,6 +89,13 @@ public interface BatchJobExecutionProvider extends BatchJobExecutionFilters {
      */
     BatchJobExecution save(BatchJobExecution jobExecution, ProvenanceEventRecordDTO event);
 
+    /**
+     * save a group of Provenance events belonging to the same job execution, in the order given
+     *
+     * @return the job execution
+     */
+    BatchJobExecution save(BatchJobExecution jobExecution, List<ProvenanceEventRecordDTO> events);
+
     /**
      * find a job exeuction by its unique key
      *@param fetchSteps true to fetch any step excecutions with job.  false to just get the job
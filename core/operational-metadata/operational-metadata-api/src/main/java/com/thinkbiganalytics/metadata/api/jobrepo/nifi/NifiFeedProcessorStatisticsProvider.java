@@ -38,6 +38,30 @@ public interface NifiFeedProcessorStatisticsProvider {
      */
     NifiFeedProcessorStats create(NifiFeedProcessorStats t);
 
+    /**
+     * Add the stats to the 1 minute, 1 hour and 1 day rollups used when finding the stats grouped by time
+     *
+     * @param stats the stats that were saved
+     */
+    void rollup(List<? extends NifiFeedProcessorStats> stats);
+
+    /**
+     * Rebuild the rollups of a feed for the minutes between the two times from the saved stats.
+     * This reconciles the rollups when adding the stats to them failed, and can backfill the rollups of stats saved before they were maintained
+     *
+     * @param feedName the feed name
+     * @param start    the start of the first minute to rebuild
+     * @param end      the end of the last minute to rebuild
+     */
+    void rebuildRollups(String feedName, DateTime start, DateTime end);
+
+    /**
+     * Delete the 1 minute and 1 hour rollups that are older than their retention period.  The 1 day rollups are kept
+     *
+     * @return the number of rollups deleted
+     */
+    int deleteExpiredRollups();
+
     /**
      * find statistics within a given start and end time
      *
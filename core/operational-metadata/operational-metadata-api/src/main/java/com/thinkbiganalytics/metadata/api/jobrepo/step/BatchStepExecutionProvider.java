@@ -23,6 +23,8 @@ package com.thinkbiganalytics.metadata.api.jobrepo.step;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
 
+import java.util.List;
+
 /**
  * Provider for accessing {@link BatchStepExecution} data
  */
@@ -43,6 +45,11 @@ public interface BatchStepExecutionProvider {
      */
     BatchStepExecution createStepExecution(BatchJobExecution jobExecution, ProvenanceEventRecordDTO event);
 
+    /**
+     * Create or update the StepExecution records for a group of Provenance Event Records belonging to the same job, in the order given
+     */
+    List<BatchStepExecution> createStepExecutions(BatchJobExecution jobExecution, List<ProvenanceEventRecordDTO> events);
+
     /**
      * When a step fails, get notified of the failure
      */
@@ -33,6 +33,7 @@ import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAssessor;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
@@ -45,6 +46,9 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.transaction.support.AbstractPlatformTransactionManager;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
@@ -62,6 +66,12 @@ import javax.sql.DataSource;
     repositoryFactoryBeanClass = AugmentableQueryRepositoryFactoryBean.class)
 public class OperationalMetadataConfig {
 
+    /**
+     * The number of statements Hibernate groups into a single JDBC batch.  Step executions for a batch of provenance events are written using these batches
+     */
+    @Value("${kylo.ops.mgr.jdbc.batch-size:50}")
+    private int jdbcBatchSize = 50;
+
     @Bean(name = "operationalMetadataDateTimeFormatter")
     public DateTimeFormatter dateTimeFormatter() {
         return DateTimeFormat.forPattern("YYYY-MM-dd HH:mm:ss");
@@ -116,6 +126,15 @@ public class OperationalMetadataConfig {
         emfBean.setDataSource(dataSource);
         emfBean.setPackagesToScan("com.thinkbiganalytics.jobrepo.jpa", "com.thinkbiganalytics.metadata.jpa");
         emfBean.setJpaVendorAdapter(jpaVendorAdapter());
+        Map<String, Object> jpaProperties = new HashMap<>();
+        if (jdbcBatchSize > 1) {
+            jpaProperties.put("hibernate.jdbc.batch_size", jdbcBatchSize);
+            //group the inserts/updates by entity so they can be batched
+            jpaProperties.put("hibernate.order_inserts", true);
+            jpaProperties.put("hibernate.order_updates", true);
+            jpaProperties.put("hibernate.jdbc.batch_versioned_data", true);
+        }
+        emfBean.setJpaPropertyMap(jpaProperties);
         emfBean.afterPropertiesSet();
         return emfBean.getObject();
     }
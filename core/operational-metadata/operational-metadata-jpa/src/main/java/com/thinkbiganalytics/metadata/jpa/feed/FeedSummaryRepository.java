@@ -24,11 +24,16 @@ import com.thinkbiganalytics.metadata.api.feed.FeedSummary;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface FeedSummaryRepository extends JpaRepository<JpaFeedSummary, FeedSummary.ID> {
 
     @Query("select summary from JpaFeedSummary as summary ")
     public List<? extends FeedSummary> findAllWithoutAcl();
+
+    @Query("select summary from JpaFeedSummary as summary where summary.feedName in (:feedNames)")
+    public List<? extends FeedSummary> findByFeedNamesWithoutAcl(@Param("feedNames") Collection<String> feedNames);
 }
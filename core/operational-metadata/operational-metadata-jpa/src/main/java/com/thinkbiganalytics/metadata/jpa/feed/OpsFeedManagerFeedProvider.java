@@ -509,6 +509,14 @@ public class OpsFeedManagerFeedProvider extends AbstractCacheBackedProvider<OpsM
         return feedSummaryRepository.findAllWithoutAcl();
     }
 
+    @Override
+    public List<? extends FeedSummary> findFeedSummary(Collection<String> feedNames) {
+        if (feedNames == null || feedNames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return feedSummaryRepository.findByFeedNamesWithoutAcl(feedNames);
+    }
+
     @Override
     public DateTime getLastActiveTimeStamp(String feedName) {
         DateTime lastFeedTime = null;
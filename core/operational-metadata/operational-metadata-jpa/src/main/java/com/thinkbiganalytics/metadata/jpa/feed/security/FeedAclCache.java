@@ -19,6 +19,8 @@ package com.thinkbiganalytics.metadata.jpa.feed.security;
  * #L%
  */
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.thinkbiganalytics.metadata.api.feed.security.FeedOpsAclEntry;
 import com.thinkbiganalytics.metadata.config.RoleSetExposingSecurityExpressionRoot;
 import com.thinkbiganalytics.metadata.api.cache.CacheBackedProviderListener;
@@ -31,6 +33,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
 import javax.inject.Inject;
 
 /**
@@ -42,20 +53,89 @@ public class FeedAclCache extends CacheListBean<String, FeedOpsAclEntry> impleme
     @Inject
     AccessController accessController;
 
+    /**
+     * Incremented on every change to the acl entries so views derived from them know when they are stale
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Ordinal of each feed id in the access bitmaps
+     */
+    private final Map<String, Integer> feedOrdinals = new ConcurrentHashMap<>();
+
+    /**
+     * The feeds each user or group is granted, as a bitmap of feed ordinals.
+     * Bitmaps are replaced rather than modified so they can be read without locking.
+     */
+    private final Map<PrincipalKey, BitSet> principalFeeds = new ConcurrentHashMap<>();
+
+    /**
+     * The feeds each user can access, combined from the user and group bitmaps at a given version
+     */
+    private final Cache<String, UserFeedAccess> userFeedAccess = CacheBuilder.newBuilder().maximumSize(1000).expireAfterAccess(1, TimeUnit.HOURS).build();
+
+    /**
+     * Guards updates to the ordinals and bitmaps
+     */
+    private final Object indexLock = new Object();
+
 
     public boolean isAvailable() {
         return isPopulated();
     }
 
+    /**
+     * @return a number that changes whenever the acl entries change
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
     public boolean hasAccess(RoleSetExposingSecurityExpressionRoot userContext, String feedId) {
         if (StringUtils.isBlank(feedId) || !accessController.isEntityAccessControlled()) {
             return true;
         }
-        return get(feedId).stream()
-            .anyMatch(acl -> ((acl.getPrincipalType() == FeedOpsAclEntry.PrincipalType.GROUP && userContext.getGroups().contains(acl.getPrincipalName()))
-                              || (acl.getPrincipalType() == FeedOpsAclEntry.PrincipalType.USER && userContext.getName().equals(acl.getPrincipalName()))));
+        Integer ordinal = feedOrdinals.get(feedId);
+        if (ordinal == null) {
+            return false;
+        }
+        if (isGranted(new PrincipalKey(FeedOpsAclEntry.PrincipalType.USER, userContext.getName()), ordinal)) {
+            return true;
+        }
+        return userContext.getGroups().stream().anyMatch(group -> isGranted(new PrincipalKey(FeedOpsAclEntry.PrincipalType.GROUP, group), ordinal));
     }
 
+    /**
+     * Gets a test for the feeds the user can access.
+     * This should be used in place of {@link #hasAccess(RoleSetExposingSecurityExpressionRoot, String)} when checking many feeds for the same user,
+     * as the user and group grants are combined once for each version of the acl entries.
+     *
+     * @param userContext the user
+     * @return a predicate that accepts the ids of the feeds the user can access
+     */
+    public Predicate<String> accessibleFeeds(RoleSetExposingSecurityExpressionRoot userContext) {
+        if (!accessController.isEntityAccessControlled()) {
+            return feedId -> true;
+        }
+        String userKey = userContext.getName() + "|" + userContext.getGroups().stream().sorted().collect(Collectors.joining(","));
+        long currentVersion = version.get();
+        UserFeedAccess access = userFeedAccess.getIfPresent(userKey);
+        if (access == null || access.version != currentVersion) {
+            BitSet feeds = new BitSet();
+            orGranted(feeds, new PrincipalKey(FeedOpsAclEntry.PrincipalType.USER, userContext.getName()));
+            userContext.getGroups().forEach(group -> orGranted(feeds, new PrincipalKey(FeedOpsAclEntry.PrincipalType.GROUP, group)));
+            access = new UserFeedAccess(currentVersion, feeds);
+            userFeedAccess.put(userKey, access);
+        }
+        BitSet feeds = access.feeds;
+        return feedId -> {
+            if (StringUtils.isBlank(feedId)) {
+                return true;
+            }
+            Integer ordinal = feedOrdinals.get(feedId);
+            return ordinal != null && feeds.get(ordinal);
+        };
+    }
 
     public boolean hasAccess(String feedId) {
         return hasAccess(userContext(), feedId);
@@ -77,29 +157,118 @@ public class FeedAclCache extends CacheListBean<String, FeedOpsAclEntry> impleme
         return entry.getFeedId().toString();
     }
 
+    private boolean isGranted(PrincipalKey principal, int ordinal) {
+        BitSet feeds = principalFeeds.get(principal);
+        return feeds != null && feeds.get(ordinal);
+    }
+
+    private void orGranted(BitSet feeds, PrincipalKey principal) {
+        BitSet granted = principalFeeds.get(principal);
+        if (granted != null) {
+            feeds.or(granted);
+        }
+    }
+
+    /**
+     * Grants or revokes access to a feed in the principal's bitmap
+     */
+    private void updateIndex(String feedId, FeedOpsAclEntry entry, boolean granted) {
+        PrincipalKey principal = new PrincipalKey(entry.getPrincipalType(), entry.getPrincipalName());
+        synchronized (indexLock) {
+            Integer ordinal = feedOrdinals.get(feedId);
+            if (ordinal == null) {
+                if (!granted) {
+                    return;
+                }
+                ordinal = feedOrdinals.size();
+                feedOrdinals.put(feedId, ordinal);
+            }
+            BitSet current = principalFeeds.get(principal);
+            BitSet feeds = current != null ? (BitSet) current.clone() : new BitSet();
+            feeds.set(ordinal, granted);
+            principalFeeds.put(principal, feeds);
+        }
+    }
+
     @Override
     public void onAddedItem(JpaFeedOpsAclEntry.EntryId key, JpaFeedOpsAclEntry value) {
         add(key.getUuid().toString(), value);
+        updateIndex(key.getUuid().toString(), value, true);
+        version.incrementAndGet();
     }
 
     @Override
     public void onRemovedItem(JpaFeedOpsAclEntry value) {
         remove(getKey(value), value);
+        updateIndex(getKey(value), value, false);
+        version.incrementAndGet();
     }
 
     @Override
     public void onRemoveAll() {
         invalidateAll();
+        synchronized (indexLock) {
+            principalFeeds.clear();
+            feedOrdinals.clear();
+        }
+        userFeedAccess.invalidateAll();
+        version.incrementAndGet();
     }
 
     @Override
     public void onPopulated() {
         log.info("FeedAclCache populated.");
         setPopulated(true);
+        version.incrementAndGet();
     }
 
     @Override
     public boolean isEqual(FeedOpsAclEntry value1, FeedOpsAclEntry value2) {
         return value1.getId().equals(value2.getId());
     }
+
+    /**
+     * A user or group name
+     */
+    private static class PrincipalKey {
+
+        private final FeedOpsAclEntry.PrincipalType type;
+        private final String name;
+
+        PrincipalKey(FeedOpsAclEntry.PrincipalType type, String name) {
+            this.type = type;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            PrincipalKey that = (PrincipalKey) o;
+            return type == that.type && Objects.equals(name, that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, name);
+        }
+    }
+
+    /**
+     * The feeds a user can access at a given version of the acl entries
+     */
+    private static class UserFeedAccess {
+
+        private final long version;
+        private final BitSet feeds;
+
+        UserFeedAccess(long version, BitSet feeds) {
+            this.version = version;
+            this.feeds = feeds;
+        }
+    }
 }
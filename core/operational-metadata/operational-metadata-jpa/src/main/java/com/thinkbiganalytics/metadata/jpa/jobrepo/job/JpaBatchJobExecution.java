@@ -35,6 +35,7 @@ import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.JpaNifiEventJobExecution;
 import com.thinkbiganalytics.metadata.jpa.jobrepo.step.JpaBatchStepExecution;
 
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.Type;
 import org.joda.time.DateTime;
@@ -53,7 +54,6 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
@@ -61,7 +61,6 @@ import javax.persistence.NamedNativeQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
-import javax.persistence.TableGenerator;
 import javax.persistence.Version;
 
 /**
@@ -83,16 +82,23 @@ import javax.persistence.Version;
 public class JpaBatchJobExecution implements BatchJobExecution {
 
 
-    @TableGenerator(
+    /**
+     * Ids are reserved from GENERATED_KEYS 50 at a time.  See {@link com.thinkbiganalytics.metadata.jpa.jobrepo.step.JpaBatchStepExecution}
+     */
+    @GenericGenerator(
         name = "JOB_EXECUTION_KEY_GENERATOR",
-        table = "GENERATED_KEYS",
-        pkColumnName = "PK_COLUMN",
-        valueColumnName = "VALUE_COLUMN",
-        pkColumnValue = "JOB_EXECUTION_ID",
-        allocationSize = 1)
+        strategy = "org.hibernate.id.enhanced.TableGenerator",
+        parameters = {
+            @Parameter(name = "table_name", value = "GENERATED_KEYS"),
+            @Parameter(name = "segment_column_name", value = "PK_COLUMN"),
+            @Parameter(name = "value_column_name", value = "VALUE_COLUMN"),
+            @Parameter(name = "segment_value", value = "JOB_EXECUTION_ID"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")
+        })
     @Id
     @Column(name = "JOB_EXECUTION_ID")
-    @GeneratedValue(generator = "JOB_EXECUTION_KEY_GENERATOR", strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = "JOB_EXECUTION_KEY_GENERATOR")
     private Long jobExecutionId;
 
     @Version
@@ -697,6 +697,17 @@ public class JpaBatchJobExecutionProvider extends QueryDslPagingSupport<JpaBatch
         return jobExecution;
     }
 
+    @Override
+    public BatchJobExecution save(BatchJobExecution jobExecution, List<ProvenanceEventRecordDTO> events) {
+        if (jobExecution == null) {
+            return null;
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        batchStepExecutionProvider.createStepExecutions(jobExecution, events);
+        log.debug("Time to create {} steps {} ms ", events.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        return jobExecution;
+    }
+
     /**
      * Save the job execution in the database
      *
@@ -25,6 +25,7 @@ import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobInstance;
 import com.thinkbiganalytics.metadata.jpa.feed.JpaOpsManagerFeed;
 
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.Type;
 
@@ -36,13 +37,11 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
-import javax.persistence.TableGenerator;
 import javax.persistence.Version;
 
 /**
@@ -53,16 +52,23 @@ import javax.persistence.Version;
 public class JpaBatchJobInstance implements BatchJobInstance {
 
 
-    @TableGenerator(
+    /**
+     * Ids are reserved from GENERATED_KEYS 50 at a time.  See {@link com.thinkbiganalytics.metadata.jpa.jobrepo.step.JpaBatchStepExecution}
+     */
+    @GenericGenerator(
         name = "JOB_INSTANCE_KEY_GENERATOR",
-        table = "GENERATED_KEYS",
-        pkColumnName = "PK_COLUMN",
-        valueColumnName = "VALUE_COLUMN",
-        pkColumnValue = "JOB_INSTANCE_ID",
-        allocationSize = 1)
+        strategy = "org.hibernate.id.enhanced.TableGenerator",
+        parameters = {
+            @Parameter(name = "table_name", value = "GENERATED_KEYS"),
+            @Parameter(name = "segment_column_name", value = "PK_COLUMN"),
+            @Parameter(name = "value_column_name", value = "VALUE_COLUMN"),
+            @Parameter(name = "segment_value", value = "JOB_INSTANCE_ID"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")
+        })
     @Id
     @Column(name = "JOB_INSTANCE_ID")
-    @GeneratedValue(generator = "JOB_INSTANCE_KEY_GENERATOR", strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = "JOB_INSTANCE_KEY_GENERATOR")
     private Long jobInstanceId;
     @Version
     @Column(name = "VERSION")
@@ -0,0 +1,306 @@
+package com.thinkbiganalytics.metadata.jpa.jobrepo.nifi;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiFeedProcessorStats;
+
+import org.hibernate.annotations.Type;
+import org.joda.time.DateTime;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+/**
+ * The {@link JpaNifiFeedProcessorStats} for a feed summed into a fixed size time bucket.
+ * The rollups are maintained as the stats are received from NiFi so charting a large time window reads one row per bucket rather than every stats row.
+ */
+@Entity
+@Table(name = "NIFI_FEED_STATS_ROLLUP")
+public class JpaNifiFeedProcessorStatsRollup {
+
+    /**
+     * The rollup grains, in seconds
+     */
+    public static final int MINUTE = 60;
+    public static final int HOUR = 60 * MINUTE;
+    public static final int DAY = 24 * HOUR;
+
+    public static final int[] GRAINS = {MINUTE, HOUR, DAY};
+
+    @EmbeddedId
+    private NifiFeedProcessorStatsRollupPK rollupPK;
+
+    @Column(name = "BYTES_IN")
+    private Long bytesIn = 0L;
+
+    @Column(name = "BYTES_OUT")
+    private Long bytesOut = 0L;
+
+    @Column(name = "DURATION_MILLIS")
+    private Long duration = 0L;
+
+    @Column(name = "TOTAL_EVENTS")
+    private Long totalCount = 0L;
+
+    @Column(name = "JOBS_STARTED")
+    private Long jobsStarted = 0L;
+
+    @Column(name = "JOBS_FINISHED")
+    private Long jobsFinished = 0L;
+
+    @Column(name = "JOBS_FAILED")
+    private Long jobsFailed = 0L;
+
+    @Column(name = "JOB_DURATION")
+    private Long jobDuration = 0L;
+
+    @Column(name = "FLOW_FILES_STARTED")
+    private Long flowFilesStarted = 0L;
+
+    @Column(name = "FLOW_FILES_FINISHED")
+    private Long flowFilesFinished = 0L;
+
+    @Column(name = "FAILED_EVENTS")
+    private Long failedCount = 0L;
+
+    /**
+     * The number of stats rows summed into this bucket
+     */
+    @Column(name = "STATS_COUNT")
+    private Long statsCount = 0L;
+
+    public JpaNifiFeedProcessorStatsRollup() {
+
+    }
+
+    public JpaNifiFeedProcessorStatsRollup(NifiFeedProcessorStatsRollupPK rollupPK) {
+        this.rollupPK = rollupPK;
+    }
+
+    /**
+     * @return the start of the bucket of the given grain that contains the time
+     */
+    public static DateTime bucketTime(DateTime time, int grainSeconds) {
+        long grainMillis = grainSeconds * 1000L;
+        return new DateTime(Math.floorDiv(time.getMillis(), grainMillis) * grainMillis);
+    }
+
+    /**
+     * Add the stats to this bucket
+     */
+    public void add(NifiFeedProcessorStats stats) {
+        bytesIn += value(stats.getBytesIn());
+        bytesOut += value(stats.getBytesOut());
+        duration += value(stats.getDuration());
+        totalCount += value(stats.getTotalCount());
+        jobsStarted += value(stats.getJobsStarted());
+        jobsFinished += value(stats.getJobsFinished());
+        jobsFailed += value(stats.getJobsFailed());
+        jobDuration += value(stats.getJobDuration());
+        flowFilesStarted += value(stats.getFlowFilesStarted());
+        flowFilesFinished += value(stats.getFlowFilesFinished());
+        failedCount += value(stats.getFailedCount());
+        statsCount++;
+    }
+
+    /**
+     * Add another bucket to this bucket
+     */
+    public void add(JpaNifiFeedProcessorStatsRollup rollup) {
+        add(rollup, 1L);
+    }
+
+    /**
+     * Subtract another bucket from this bucket
+     */
+    public void subtract(JpaNifiFeedProcessorStatsRollup rollup) {
+        add(rollup, -1L);
+    }
+
+    private void add(JpaNifiFeedProcessorStatsRollup rollup, long sign) {
+        bytesIn += sign * rollup.bytesIn;
+        bytesOut += sign * rollup.bytesOut;
+        duration += sign * rollup.duration;
+        totalCount += sign * rollup.totalCount;
+        jobsStarted += sign * rollup.jobsStarted;
+        jobsFinished += sign * rollup.jobsFinished;
+        jobsFailed += sign * rollup.jobsFailed;
+        jobDuration += sign * rollup.jobDuration;
+        flowFilesStarted += sign * rollup.flowFilesStarted;
+        flowFilesFinished += sign * rollup.flowFilesFinished;
+        failedCount += sign * rollup.failedCount;
+        statsCount += sign * rollup.statsCount;
+    }
+
+    private static long value(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    public NifiFeedProcessorStatsRollupPK getRollupPK() {
+        return rollupPK;
+    }
+
+    public Long getBytesIn() {
+        return bytesIn;
+    }
+
+    public Long getBytesOut() {
+        return bytesOut;
+    }
+
+    public Long getDuration() {
+        return duration;
+    }
+
+    public Long getTotalCount() {
+        return totalCount;
+    }
+
+    public Long getJobsStarted() {
+        return jobsStarted;
+    }
+
+    public Long getJobsFinished() {
+        return jobsFinished;
+    }
+
+    public Long getJobsFailed() {
+        return jobsFailed;
+    }
+
+    public Long getJobDuration() {
+        return jobDuration;
+    }
+
+    public Long getFlowFilesStarted() {
+        return flowFilesStarted;
+    }
+
+    public Long getFlowFilesFinished() {
+        return flowFilesFinished;
+    }
+
+    public Long getFailedCount() {
+        return failedCount;
+    }
+
+    public Long getStatsCount() {
+        return statsCount;
+    }
+
+    @Embeddable
+    public static class NifiFeedProcessorStatsRollupPK implements Serializable, Comparable<NifiFeedProcessorStatsRollupPK> {
+
+        private static final long serialVersionUID = 4871022312395473271L;
+
+        @Column(name = "FEED_NAME")
+        private String feedName;
+
+        @Column(name = "GRAIN_SEC")
+        private Integer grainSeconds;
+
+        @Type(type = "com.thinkbiganalytics.jpa.PersistentDateTimeAsMillisLong")
+        @Column(name = "BUCKET_TIME")
+        private DateTime bucketTime;
+
+        public NifiFeedProcessorStatsRollupPK() {
+
+        }
+
+        public NifiFeedProcessorStatsRollupPK(String feedName, Integer grainSeconds, DateTime bucketTime) {
+            this.feedName = feedName;
+            this.grainSeconds = grainSeconds;
+            this.bucketTime = bucketTime;
+        }
+
+        public String getFeedName() {
+            return feedName;
+        }
+
+        public void setFeedName(String feedName) {
+            this.feedName = feedName;
+        }
+
+        public Integer getGrainSeconds() {
+            return grainSeconds;
+        }
+
+        public void setGrainSeconds(Integer grainSeconds) {
+            this.grainSeconds = grainSeconds;
+        }
+
+        public DateTime getBucketTime() {
+            return bucketTime;
+        }
+
+        public void setBucketTime(DateTime bucketTime) {
+            this.bucketTime = bucketTime;
+        }
+
+        /**
+         * Order the keys so concurrent writers lock the rollup rows in the same order
+         */
+        @Override
+        public int compareTo(NifiFeedProcessorStatsRollupPK o) {
+            int compare = feedName.compareTo(o.feedName);
+            if (compare == 0) {
+                compare = grainSeconds.compareTo(o.grainSeconds);
+            }
+            if (compare == 0) {
+                compare = Long.compare(bucketTime.getMillis(), o.bucketTime.getMillis());
+            }
+            return compare;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            NifiFeedProcessorStatsRollupPK that = (NifiFeedProcessorStatsRollupPK) o;
+
+            if (!feedName.equals(that.feedName)) {
+                return false;
+            }
+            if (!grainSeconds.equals(that.grainSeconds)) {
+                return false;
+            }
+            return bucketTime.getMillis() == that.bucketTime.getMillis();
+        }
+
+        @Override
+        public int hashCode() {
+            int result = feedName.hashCode();
+            result = 31 * result + grainSeconds.hashCode();
+            result = 31 * result + Long.hashCode(bucketTime.getMillis());
+            return result;
+        }
+    }
+}
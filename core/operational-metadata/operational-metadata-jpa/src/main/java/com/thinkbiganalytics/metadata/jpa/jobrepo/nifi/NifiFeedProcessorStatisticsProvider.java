@@ -35,10 +35,15 @@ import com.thinkbiganalytics.security.AccessController;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.inject.Inject;
 
@@ -57,6 +62,34 @@ public class NifiFeedProcessorStatisticsProvider implements com.thinkbiganalytic
 
     private NifiEventRepository nifiEventRepository;
 
+    @Inject
+    private NifiFeedProcessorStatsRollupRepository rollupRepository;
+
+    /**
+     * Maintain the 1 minute, 1 hour and 1 day rollups of the stats and use them when charting the stats over time
+     */
+    @Value("${kylo.ops.mgr.stats.rollup.enabled:true}")
+    private boolean rollupEnabled = true;
+
+    /**
+     * The minimum number of points a rollup grain needs to produce for the time window to be used.
+     * The coarsest grain producing at least this many points is queried.
+     */
+    @Value("${kylo.ops.mgr.stats.rollup.min-points:60}")
+    private int rollupMinPoints = 60;
+
+    /**
+     * The number of days to keep the 1 minute rollups.  0 keeps them forever
+     */
+    @Value("${kylo.ops.mgr.stats.rollup.retention.minute-days:7}")
+    private int minuteRetentionDays = 7;
+
+    /**
+     * The number of days to keep the 1 hour rollups.  0 keeps them forever
+     */
+    @Value("${kylo.ops.mgr.stats.rollup.retention.hour-days:90}")
+    private int hourRetentionDays = 90;
+
     @Inject
     private ItemLastModifiedProvider itemLastModifiedProvider;
 
@@ -86,6 +119,135 @@ public class NifiFeedProcessorStatisticsProvider implements com.thinkbiganalytic
         return stats;
     }
 
+    @Override
+    public void rollup(List<? extends NifiFeedProcessorStats> stats) {
+        if (!rollupEnabled || stats == null || stats.isEmpty()) {
+            return;
+        }
+        //sum the stats into their buckets first and lock the rows in key order so concurrent receivers do not deadlock
+        Map<JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK, JpaNifiFeedProcessorStatsRollup> buckets = new TreeMap<>();
+        for (NifiFeedProcessorStats stat : stats) {
+            if (stat.getFeedName() == null || stat.getMinEventTime() == null) {
+                continue;
+            }
+            for (int grain : JpaNifiFeedProcessorStatsRollup.GRAINS) {
+                JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK pk =
+                    new JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK(stat.getFeedName(), grain, JpaNifiFeedProcessorStatsRollup.bucketTime(stat.getMinEventTime(), grain));
+                buckets.computeIfAbsent(pk, JpaNifiFeedProcessorStatsRollup::new).add(stat);
+            }
+        }
+        for (JpaNifiFeedProcessorStatsRollup bucket : buckets.values()) {
+            JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK pk = bucket.getRollupPK();
+            JpaNifiFeedProcessorStatsRollup existing = rollupRepository.findForUpdate(pk.getFeedName(), pk.getGrainSeconds(), pk.getBucketTime());
+            if (existing != null) {
+                existing.add(bucket);
+            } else {
+                rollupRepository.save(bucket);
+            }
+        }
+    }
+
+    @Override
+    public void rebuildRollups(String feedName, DateTime start, DateTime end) {
+        if (!rollupEnabled || feedName == null || start == null || end == null) {
+            return;
+        }
+        int minute = JpaNifiFeedProcessorStatsRollup.MINUTE;
+        DateTime from = JpaNifiFeedProcessorStatsRollup.bucketTime(start, minute);
+        DateTime to = JpaNifiFeedProcessorStatsRollup.bucketTime(end, minute).plusMinutes(1);
+
+        //lock the saved minutes before reading the stats so a receiver rolling up the same minutes waits for the rebuild
+        Map<JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK, JpaNifiFeedProcessorStatsRollup> saved = new TreeMap<>();
+        for (JpaNifiFeedProcessorStatsRollup bucket : rollupRepository.findForUpdateWithinTime(feedName, minute, from, to)) {
+            saved.put(bucket.getRollupPK(), bucket);
+        }
+        Map<JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK, JpaNifiFeedProcessorStatsRollup> rebuilt = new TreeMap<>();
+        for (JpaNifiFeedProcessorStats stat : statisticsRepository.findForFeedWithinTime(feedName, from, to)) {
+            JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK pk =
+                new JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK(feedName, minute, JpaNifiFeedProcessorStatsRollup.bucketTime(stat.getMinEventTime(), minute));
+            rebuilt.computeIfAbsent(pk, JpaNifiFeedProcessorStatsRollup::new).add(stat);
+        }
+
+        //replace the minutes and apply the difference to the hours and days containing them
+        Map<JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK, JpaNifiFeedProcessorStatsRollup> deltas = new TreeMap<>();
+        Set<JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK> minutes = new TreeSet<>(saved.keySet());
+        minutes.addAll(rebuilt.keySet());
+        for (JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK pk : minutes) {
+            JpaNifiFeedProcessorStatsRollup existing = saved.get(pk);
+            JpaNifiFeedProcessorStatsRollup bucket = rebuilt.get(pk);
+            JpaNifiFeedProcessorStatsRollup delta = new JpaNifiFeedProcessorStatsRollup(pk);
+            if (bucket != null) {
+                delta.add(bucket);
+            }
+            if (existing != null) {
+                delta.subtract(existing);
+            }
+
+            if (existing == null) {
+                rollupRepository.save(bucket);
+            } else if (bucket == null) {
+                rollupRepository.delete(existing);
+            } else {
+                existing.add(delta);
+            }
+
+            for (int grain : JpaNifiFeedProcessorStatsRollup.GRAINS) {
+                if (grain != minute) {
+                    JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK coarsePk =
+                        new JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK(feedName, grain, JpaNifiFeedProcessorStatsRollup.bucketTime(pk.getBucketTime(), grain));
+                    deltas.computeIfAbsent(coarsePk, JpaNifiFeedProcessorStatsRollup::new).add(delta);
+                }
+            }
+        }
+        for (JpaNifiFeedProcessorStatsRollup delta : deltas.values()) {
+            JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK pk = delta.getRollupPK();
+            JpaNifiFeedProcessorStatsRollup existing = rollupRepository.findForUpdate(pk.getFeedName(), pk.getGrainSeconds(), pk.getBucketTime());
+            if (existing != null) {
+                existing.add(delta);
+            } else {
+                rollupRepository.save(delta);
+            }
+        }
+    }
+
+    @Override
+    public int deleteExpiredRollups() {
+        DateTime today = JpaNifiFeedProcessorStatsRollup.bucketTime(DateTime.now(), JpaNifiFeedProcessorStatsRollup.DAY);
+        int deleted = 0;
+        if (minuteRetentionDays > 0) {
+            deleted += rollupRepository.deleteBefore(JpaNifiFeedProcessorStatsRollup.MINUTE, today.minusDays(minuteRetentionDays));
+        }
+        if (hourRetentionDays > 0) {
+            deleted += rollupRepository.deleteBefore(JpaNifiFeedProcessorStatsRollup.HOUR, today.minusDays(hourRetentionDays));
+        }
+        return deleted;
+    }
+
+    /**
+     * Find the coarsest rollup grain that still yields enough points for the time window.
+     * The raw stats are used if the window is too small for any grain, or if the rollups do not yet cover the start of the window
+     *
+     * @return the grain in seconds, or null to query the raw stats
+     */
+    private Integer findRollupGrain(String feedName, DateTime start, DateTime end) {
+        if (!rollupEnabled || start == null || end == null) {
+            return null;
+        }
+        long windowSeconds = (end.getMillis() - start.getMillis()) / 1000;
+        for (int i = JpaNifiFeedProcessorStatsRollup.GRAINS.length - 1; i >= 0; i--) {
+            int grain = JpaNifiFeedProcessorStatsRollup.GRAINS[i];
+            if (windowSeconds / grain >= rollupMinPoints) {
+                DateProjection firstBucket = rollupRepository.findFirstBucketTime(feedName, grain);
+                if (firstBucket != null && firstBucket.getDateProjection() != null
+                    && !firstBucket.getDateProjection().isAfter(JpaNifiFeedProcessorStatsRollup.bucketTime(start, grain))) {
+                    return grain;
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
     public List<? extends JpaNifiFeedProcessorStats> findFeedProcessorStatisticsByProcessorId(String feedName, TimeFrame timeFrame) {
         DateTime now = DateTime.now();
         return findFeedProcessorStatisticsByProcessorId(feedName, timeFrame.startTimeRelativeTo(now), now);
@@ -197,6 +359,11 @@ public class NifiFeedProcessorStatisticsProvider implements com.thinkbiganalytic
     }
 
     public List<? extends JpaNifiFeedProcessorStats> findForFeedStatisticsGroupedByTime(String feedName, DateTime start, DateTime end) {
+        Integer grain = findRollupGrain(feedName, start, end);
+        if (grain != null) {
+            return findRollupsForFeed(feedName, grain, start, end);
+        }
+
         QJpaNifiFeedProcessorStats stats = QJpaNifiFeedProcessorStats.jpaNifiFeedProcessorStats;
 
         QJpaOpsManagerFeed feed = QJpaOpsManagerFeed.jpaOpsManagerFeed;
@@ -228,6 +395,41 @@ public class NifiFeedProcessorStatisticsProvider implements com.thinkbiganalytic
         return (List<JpaNifiFeedProcessorStats>) query.fetch();
     }
 
+    /**
+     * Find the rollups of the given grain for a feed between the two dates.
+     * Each bucket is returned in the same shape as the stats grouped by time with the grain as the collection interval
+     */
+    private List<? extends JpaNifiFeedProcessorStats> findRollupsForFeed(String feedName, int grain, DateTime start, DateTime end) {
+        QJpaNifiFeedProcessorStatsRollup rollup = QJpaNifiFeedProcessorStatsRollup.jpaNifiFeedProcessorStatsRollup;
+
+        QJpaOpsManagerFeed feed = QJpaOpsManagerFeed.jpaOpsManagerFeed;
+
+        JPAQuery
+            query = factory.select(
+            Projections.bean(JpaNifiFeedProcessorStats.class,
+                             rollup.rollupPK.feedName.as("feedName"),
+                             rollup.bytesIn, rollup.bytesOut, rollup.duration,
+                             rollup.jobsStarted, rollup.jobsFinished, rollup.jobDuration,
+                             rollup.flowFilesStarted, rollup.flowFilesFinished, rollup.failedCount,
+                             rollup.rollupPK.bucketTime.as("minEventTime"),
+                             rollup.jobsStarted.castToNum(BigDecimal.class).divide(rollup.rollupPK.grainSeconds).castToNum(BigDecimal.class).as("jobsStartedPerSecond"),
+                             rollup.jobsFinished.castToNum(BigDecimal.class).divide(rollup.rollupPK.grainSeconds).castToNum(BigDecimal.class).as("jobsFinishedPerSecond"),
+                             rollup.rollupPK.grainSeconds.castToNum(Long.class).as("collectionIntervalSeconds"),
+                             rollup.jobsFailed, rollup.totalCount,
+                             rollup.statsCount.as("resultSetCount"))
+        )
+            .from(rollup)
+            .innerJoin(feed).on(feed.name.eq(rollup.rollupPK.feedName))
+            .where(rollup.rollupPK.feedName.eq(feedName)
+                       .and(FeedAclIndexQueryAugmentor.generateExistsExpression(feed.id, accessController.isEntityAccessControlled()))
+                       .and(rollup.rollupPK.grainSeconds.eq(grain))
+                       .and(rollup.rollupPK.bucketTime.goe(JpaNifiFeedProcessorStatsRollup.bucketTime(start, grain))
+                                .and(rollup.rollupPK.bucketTime.loe(end))))
+            .orderBy(rollup.rollupPK.bucketTime.asc());
+
+        return (List<JpaNifiFeedProcessorStats>) query.fetch();
+    }
+
     public List<? extends NifiFeedProcessorErrors> findFeedProcessorErrors(String feedName, DateTime start, DateTime end) {
         return accessController.isEntityAccessControlled() ? statisticsRepository.findWithErrorsWithinTimeWithAcl(feedName, start, end)
                                                            : statisticsRepository.findWithErrorsWithinTimeWithoutAcl(feedName, start, end);
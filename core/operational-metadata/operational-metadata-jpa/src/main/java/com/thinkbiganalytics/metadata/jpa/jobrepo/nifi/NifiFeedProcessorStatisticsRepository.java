@@ -51,6 +51,12 @@ public interface NifiFeedProcessorStatisticsRepository extends JpaRepository<Jpa
                    + "where stats.minEventTime between :startTime and :endTime ")
     List<JpaNifiFeedProcessorStats> findWithinTimeWindowWithoutAcl(@Param("startTime") DateTime start, @Param("endTime") DateTime end);
 
+    @Query(value = "select stats from JpaNifiFeedProcessorStats as stats "
+                   + " where stats.feedName = :feedName "
+                   + " and stats.minEventTime >= :startTime "
+                   + " and stats.minEventTime < :endTime ")
+    List<JpaNifiFeedProcessorStats> findForFeedWithinTime(@Param("feedName") String feedName, @Param("startTime") DateTime start, @Param("endTime") DateTime end);
+
     @Query(value = "select max(stats.maxEventId) from JpaNifiFeedProcessorStats as stats")
     Long findMaxEventId();
 
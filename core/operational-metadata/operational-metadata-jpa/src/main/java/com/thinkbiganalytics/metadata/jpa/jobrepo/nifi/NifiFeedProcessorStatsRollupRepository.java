@@ -0,0 +1,67 @@
+package com.thinkbiganalytics.metadata.jpa.jobrepo.nifi;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.joda.time.DateTime;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+import javax.persistence.LockModeType;
+
+/**
+ * Spring data repository for {@link JpaNifiFeedProcessorStatsRollup}
+ */
+public interface NifiFeedProcessorStatsRollupRepository extends JpaRepository<JpaNifiFeedProcessorStatsRollup, JpaNifiFeedProcessorStatsRollup.NifiFeedProcessorStatsRollupPK> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select rollup from JpaNifiFeedProcessorStatsRollup as rollup "
+           + " where rollup.rollupPK.feedName = :feedName "
+           + " and rollup.rollupPK.grainSeconds = :grainSeconds "
+           + " and rollup.rollupPK.bucketTime = :bucketTime")
+    JpaNifiFeedProcessorStatsRollup findForUpdate(@Param("feedName") String feedName, @Param("grainSeconds") Integer grainSeconds, @Param("bucketTime") DateTime bucketTime);
+
+    @Query("select min(rollup.rollupPK.bucketTime) as dateProjection from JpaNifiFeedProcessorStatsRollup as rollup "
+           + " where rollup.rollupPK.feedName = :feedName "
+           + " and rollup.rollupPK.grainSeconds = :grainSeconds")
+    DateProjection findFirstBucketTime(@Param("feedName") String feedName, @Param("grainSeconds") Integer grainSeconds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select rollup from JpaNifiFeedProcessorStatsRollup as rollup "
+           + " where rollup.rollupPK.feedName = :feedName "
+           + " and rollup.rollupPK.grainSeconds = :grainSeconds "
+           + " and rollup.rollupPK.bucketTime >= :startTime "
+           + " and rollup.rollupPK.bucketTime < :endTime "
+           + " order by rollup.rollupPK.bucketTime asc")
+    List<JpaNifiFeedProcessorStatsRollup> findForUpdateWithinTime(@Param("feedName") String feedName, @Param("grainSeconds") Integer grainSeconds, @Param("startTime") DateTime start,
+                                                                  @Param("endTime") DateTime end);
+
+    @Modifying
+    @Query("delete from JpaNifiFeedProcessorStatsRollup as rollup "
+           + " where rollup.rollupPK.grainSeconds = :grainSeconds "
+           + " and rollup.rollupPK.bucketTime < :beforeTime")
+    int deleteBefore(@Param("grainSeconds") Integer grainSeconds, @Param("beforeTime") DateTime before);
+
+}
@@ -29,6 +29,7 @@ import com.thinkbiganalytics.metadata.api.jobrepo.step.BatchStepExecutionContext
 import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JpaBatchJobExecution;
 import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.JpaNifiEventStepExecution;
 
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.Type;
 import org.joda.time.DateTime;
@@ -46,14 +47,12 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
-import javax.persistence.TableGenerator;
 import javax.persistence.Version;
 
 /**
@@ -66,16 +65,24 @@ public class JpaBatchStepExecution implements Serializable, BatchStepExecution {
     private static final long serialVersionUID = -4282924110260629615L;
 
 
-    @TableGenerator(
+    /**
+     * Ids are reserved from GENERATED_KEYS 50 at a time so a batch of new rows does not update the key table once per row.
+     * The pooled-lo optimizer hands out the ids starting at the stored value, which is the next free id, so it works with the existing key rows
+     */
+    @GenericGenerator(
         name = "STEP_EXECUTION_KEY_GENERATOR",
-        table = "GENERATED_KEYS",
-        pkColumnName = "PK_COLUMN",
-        valueColumnName = "VALUE_COLUMN",
-        pkColumnValue = "STEP_EXECUTION_ID",
-        allocationSize = 1)
+        strategy = "org.hibernate.id.enhanced.TableGenerator",
+        parameters = {
+            @Parameter(name = "table_name", value = "GENERATED_KEYS"),
+            @Parameter(name = "segment_column_name", value = "PK_COLUMN"),
+            @Parameter(name = "value_column_name", value = "VALUE_COLUMN"),
+            @Parameter(name = "segment_value", value = "STEP_EXECUTION_ID"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")
+        })
     @Id
     @Column(name = "STEP_EXECUTION_ID")
-    @GeneratedValue(generator = "STEP_EXECUTION_KEY_GENERATOR", strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = "STEP_EXECUTION_KEY_GENERATOR")
     private Long stepExecutionId;
 
     @Version
@@ -41,7 +41,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -132,40 +136,7 @@ public class JpaBatchStepExecutionProvider implements BatchStepExecutionProvider
         JpaBatchStepExecution stepExecution = batchStepExecutionRepository.findByProcessorAndJobFlowFile(event.getComponentId(), event.getJobFlowFileId());
         if (stepExecution == null) {
             if (!"KYLO".equalsIgnoreCase(event.getEventType())) {
-                stepExecution = new JpaBatchStepExecution();
-                stepExecution.setJobExecution(jobExecution);
-                stepExecution.setStartTime(event.getStartTime() != null ? DateTimeUtil.convertToUTC(event.getStartTime()) :
-                                           DateTimeUtil.convertToUTC(event.getEventTime()).minus(event.getEventDuration()));
-                stepExecution.setEndTime(DateTimeUtil.convertToUTC(event.getEventTime()));
-                stepExecution.setStepName(event.getComponentName());
-                if (StringUtils.isBlank(stepExecution.getStepName())) {
-                    stepExecution.setStepName("Unknown Step ");
-                }
-                log.info("New Step Execution {} on Job: {} using event {} ", stepExecution.getStepName(), jobExecution.getJobExecutionId(), event.getEventId());
-
-                boolean failure = event.isFailure();
-                if (failure) {
-                    //notify failure listeners
-                    failStep(jobExecution, stepExecution, event.getFlowFileUuid(), event.getComponentId());
-                    if (StringUtils.isBlank(stepExecution.getExitMessage())) {
-                        stepExecution.setExitMessage(event.getDetails());
-                    }
-
-                } else {
-                    stepExecution.completeStep();
-                }
-                //add in execution contexts
-                assignStepExecutionContextMap(event, stepExecution);
-
-                //Attach the NifiEvent object to this StepExecution
-                JpaNifiEventStepExecution eventStepExecution = new JpaNifiEventStepExecution(jobExecution, stepExecution, event.getEventId(), event.getJobFlowFileId());
-                eventStepExecution.setComponentId(event.getComponentId());
-                eventStepExecution.setJobFlowFileId(event.getJobFlowFileId());
-                stepExecution.setNifiEventStepExecution(eventStepExecution);
-                Set<BatchStepExecution> steps = jobExecution.getStepExecutions();
-                if (steps == null) {
-                    ((JpaBatchJobExecution) jobExecution).setStepExecutions(new HashSet<>());
-                }
+                stepExecution = newStepExecution(jobExecution, event);
                 //saving the StepExecution will cascade and save the nifiEventStep
                 stepExecution = batchStepExecutionRepository.save(stepExecution);
                 jobExecution.getStepExecutions().add(stepExecution);
@@ -173,39 +144,143 @@ public class JpaBatchStepExecutionProvider implements BatchStepExecutionProvider
             }
 
         } else {
-            log.info("Updating step {} ",event.getComponentName());
-            //update it
-            assignStepExecutionContextMap(event, stepExecution);
-            //update the timing info
-            Long originatingNiFiEventId = stepExecution.getNifiEventStepExecution().getEventId();
-            //only update the end time if the eventid is > than the first one
-            if (event.getEventId() > originatingNiFiEventId) {
-                DateTime newEndTime = DateTimeUtil.convertToUTC(event.getEventTime());
-                if (newEndTime.isAfter(stepExecution.getEndTime())) {
-                    stepExecution.setEndTime(newEndTime);
+            updateStepExecution(jobExecution, stepExecution, event);
+            stepExecution = batchStepExecutionRepository.save(stepExecution);
+          }
+
+        return stepExecution;
+
+    }
+
+    /**
+     * Create or update the steps for a group of events belonging to the same job.
+     * The existing steps are matched from the job's step executions rather than queried per event, and all new steps are saved together so Hibernate can write them with JDBC batch inserts.
+     * Events are applied in the order given.
+     *
+     * @param jobExecution the job execution, with its step executions fetched
+     * @param events       the events for this job
+     * @return the created or updated steps
+     */
+    public List<BatchStepExecution> createStepExecutions(BatchJobExecution jobExecution, List<ProvenanceEventRecordDTO> events) {
+        if (jobExecution.getStepExecutions() == null) {
+            ((JpaBatchJobExecution) jobExecution).setStepExecutions(new HashSet<>());
+        }
+        Map<String, JpaBatchStepExecution> stepsByProcessorAndFlowFile = new HashMap<>();
+        for (BatchStepExecution step : jobExecution.getStepExecutions()) {
+            NifiEventStepExecution nifiEventStepExecution = step.getNifiEventStepExecution();
+            if (nifiEventStepExecution != null) {
+                stepsByProcessorAndFlowFile.put(stepKey(nifiEventStepExecution.getComponentId(), nifiEventStepExecution.getJobFlowFileId()), (JpaBatchStepExecution) step);
+            }
+        }
+
+        List<JpaBatchStepExecution> newSteps = new ArrayList<>();
+        //new steps have no id yet, so they are tracked by reference
+        Set<JpaBatchStepExecution> newStepRefs = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<JpaBatchStepExecution> updatedSteps = new LinkedHashSet<>();
+        for (ProvenanceEventRecordDTO event : events) {
+            String key = stepKey(event.getComponentId(), event.getJobFlowFileId());
+            JpaBatchStepExecution stepExecution = stepsByProcessorAndFlowFile.get(key);
+            if (stepExecution == null) {
+                if (!"KYLO".equalsIgnoreCase(event.getEventType())) {
+                    stepExecution = newStepExecution(jobExecution, event);
+                    stepsByProcessorAndFlowFile.put(key, stepExecution);
+                    newSteps.add(stepExecution);
+                    newStepRefs.add(stepExecution);
                 }
             } else {
-                DateTime newStartTime = DateTimeUtil.convertToUTC(event.getStartTime());
-                if (newStartTime.isBefore(stepExecution.getStartTime())) {
-                    stepExecution.setStartTime(newStartTime);
+                updateStepExecution(jobExecution, stepExecution, event);
+                if (!newStepRefs.contains(stepExecution)) {
+                    updatedSteps.add(stepExecution);
                 }
             }
+        }
 
-            boolean failure = event.isFailure();
-            if (failure) {
-                //notify failure listeners
-                log.info("Failing Step");
-                failStep(jobExecution, stepExecution, event.getFlowFileUuid(), event.getComponentId());
-                if (StringUtils.isBlank(stepExecution.getExitMessage())) {
-                    stepExecution.setExitMessage(event.getDetails());
-                }
+        List<BatchStepExecution> steps = new ArrayList<>();
+        if (!newSteps.isEmpty()) {
+            //saving the StepExecutions will cascade and save the nifiEventSteps
+            List<JpaBatchStepExecution> savedSteps = batchStepExecutionRepository.save(newSteps);
+            //the step hashCode uses the generated id so the steps are added to the job once saved
+            jobExecution.getStepExecutions().addAll(savedSteps);
+            steps.addAll(savedSteps);
+        }
+        if (!updatedSteps.isEmpty()) {
+            steps.addAll(batchStepExecutionRepository.save(updatedSteps));
+        }
+        log.debug("Created {} and updated {} steps on Job: {} from {} events ", newSteps.size(), updatedSteps.size(), jobExecution.getJobExecutionId(), events.size());
+        return steps;
+    }
+
+    private String stepKey(String componentId, String jobFlowFileId) {
+        return componentId + ":" + jobFlowFileId;
+    }
 
+    private JpaBatchStepExecution newStepExecution(BatchJobExecution jobExecution, ProvenanceEventRecordDTO event) {
+        JpaBatchStepExecution stepExecution = new JpaBatchStepExecution();
+        stepExecution.setJobExecution(jobExecution);
+        stepExecution.setStartTime(event.getStartTime() != null ? DateTimeUtil.convertToUTC(event.getStartTime()) :
+                                   DateTimeUtil.convertToUTC(event.getEventTime()).minus(event.getEventDuration()));
+        stepExecution.setEndTime(DateTimeUtil.convertToUTC(event.getEventTime()));
+        stepExecution.setStepName(event.getComponentName());
+        if (StringUtils.isBlank(stepExecution.getStepName())) {
+            stepExecution.setStepName("Unknown Step ");
+        }
+        log.info("New Step Execution {} on Job: {} using event {} ", stepExecution.getStepName(), jobExecution.getJobExecutionId(), event.getEventId());
+
+        boolean failure = event.isFailure();
+        if (failure) {
+            //notify failure listeners
+            failStep(jobExecution, stepExecution, event.getFlowFileUuid(), event.getComponentId());
+            if (StringUtils.isBlank(stepExecution.getExitMessage())) {
+                stepExecution.setExitMessage(event.getDetails());
             }
-            stepExecution = batchStepExecutionRepository.save(stepExecution);
-          }
 
+        } else {
+            stepExecution.completeStep();
+        }
+        //add in execution contexts
+        assignStepExecutionContextMap(event, stepExecution);
+
+        //Attach the NifiEvent object to this StepExecution
+        JpaNifiEventStepExecution eventStepExecution = new JpaNifiEventStepExecution(jobExecution, stepExecution, event.getEventId(), event.getJobFlowFileId());
+        eventStepExecution.setComponentId(event.getComponentId());
+        eventStepExecution.setJobFlowFileId(event.getJobFlowFileId());
+        stepExecution.setNifiEventStepExecution(eventStepExecution);
+        Set<BatchStepExecution> steps = jobExecution.getStepExecutions();
+        if (steps == null) {
+            ((JpaBatchJobExecution) jobExecution).setStepExecutions(new HashSet<>());
+        }
         return stepExecution;
+    }
+
+    private void updateStepExecution(BatchJobExecution jobExecution, JpaBatchStepExecution stepExecution, ProvenanceEventRecordDTO event) {
+        log.info("Updating step {} ",event.getComponentName());
+        //update it
+        assignStepExecutionContextMap(event, stepExecution);
+        //update the timing info
+        Long originatingNiFiEventId = stepExecution.getNifiEventStepExecution().getEventId();
+        //only update the end time if the eventid is > than the first one
+        if (event.getEventId() > originatingNiFiEventId) {
+            DateTime newEndTime = DateTimeUtil.convertToUTC(event.getEventTime());
+            if (newEndTime.isAfter(stepExecution.getEndTime())) {
+                stepExecution.setEndTime(newEndTime);
+            }
+        } else {
+            DateTime newStartTime = DateTimeUtil.convertToUTC(event.getStartTime());
+            if (newStartTime.isBefore(stepExecution.getStartTime())) {
+                stepExecution.setStartTime(newStartTime);
+            }
+        }
 
+        boolean failure = event.isFailure();
+        if (failure) {
+            //notify failure listeners
+            log.info("Failing Step");
+            failStep(jobExecution, stepExecution, event.getFlowFileUuid(), event.getComponentId());
+            if (StringUtils.isBlank(stepExecution.getExitMessage())) {
+                stepExecution.setExitMessage(event.getDetails());
+            }
+
+        }
     }
 
     private void checkForSavepointTriggerFailure(ProvenanceEventRecordDTO event, JpaBatchStepExecution stepExecution) {
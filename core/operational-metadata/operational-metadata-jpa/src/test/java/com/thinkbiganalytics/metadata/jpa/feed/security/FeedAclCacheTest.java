@@ -0,0 +1,110 @@
+package com.thinkbiganalytics.metadata.jpa.feed.security;
+/*-
+ * #%L
+ * kylo-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.feed.security.FeedOpsAclEntry;
+import com.thinkbiganalytics.metadata.config.RoleSetExposingSecurityExpressionRoot;
+import com.thinkbiganalytics.metadata.jpa.feed.OpsManagerFeedId;
+import com.thinkbiganalytics.security.AccessController;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.util.UUID;
+import java.util.function.Predicate;
+
+public class FeedAclCacheTest {
+
+    private final String feed1 = UUID.randomUUID().toString();
+    private final String feed2 = UUID.randomUUID().toString();
+    private final String feed3 = UUID.randomUUID().toString();
+
+    private FeedAclCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new FeedAclCache();
+        cache.accessController = Mockito.mock(AccessController.class);
+        Mockito.when(cache.accessController.isEntityAccessControlled()).thenReturn(true);
+    }
+
+    @Test
+    public void testAccessByUserAndGroup() {
+        add(feed1, "dladmin", FeedOpsAclEntry.PrincipalType.USER);
+        add(feed2, "analysts", FeedOpsAclEntry.PrincipalType.GROUP);
+        add(feed3, "admin", FeedOpsAclEntry.PrincipalType.GROUP);
+
+        RoleSetExposingSecurityExpressionRoot user = user("dladmin", "analysts", "designers");
+        Assert.assertTrue(cache.hasAccess(user, feed1));
+        Assert.assertTrue(cache.hasAccess(user, feed2));
+        Assert.assertFalse(cache.hasAccess(user, feed3));
+        Assert.assertFalse(cache.hasAccess(user, UUID.randomUUID().toString()));
+
+        Predicate<String> accessibleFeeds = cache.accessibleFeeds(user);
+        Assert.assertTrue(accessibleFeeds.test(feed1));
+        Assert.assertTrue(accessibleFeeds.test(feed2));
+        Assert.assertFalse(accessibleFeeds.test(feed3));
+
+        // a group with the same name as the user is not the user
+        Assert.assertFalse(cache.hasAccess(user("analyst", "dladmin"), feed1));
+    }
+
+    @Test
+    public void testRemovedEntriesRevokeAccess() {
+        add(feed1, "analysts", FeedOpsAclEntry.PrincipalType.GROUP);
+        add(feed2, "analysts", FeedOpsAclEntry.PrincipalType.GROUP);
+
+        RoleSetExposingSecurityExpressionRoot user = user("analyst", "analysts");
+        Predicate<String> before = cache.accessibleFeeds(user);
+        Assert.assertTrue(before.test(feed1));
+
+        cache.onRemovedItem(new JpaFeedOpsAclEntry(new OpsManagerFeedId(feed1), "analysts", FeedOpsAclEntry.PrincipalType.GROUP));
+        Assert.assertFalse(cache.hasAccess(user, feed1));
+        Assert.assertFalse(cache.accessibleFeeds(user).test(feed1));
+        Assert.assertTrue(cache.accessibleFeeds(user).test(feed2));
+
+        // the earlier view is a snapshot and is unaffected by the change
+        Assert.assertTrue(before.test(feed1));
+
+        cache.onRemoveAll();
+        Assert.assertFalse(cache.hasAccess(user, feed2));
+        Assert.assertFalse(cache.accessibleFeeds(user).test(feed2));
+    }
+
+    @Test
+    public void testAccessWhenNotAccessControlled() {
+        Mockito.when(cache.accessController.isEntityAccessControlled()).thenReturn(false);
+        Assert.assertTrue(cache.hasAccess(user("analyst"), feed1));
+        Assert.assertTrue(cache.accessibleFeeds(user("analyst")).test(feed1));
+    }
+
+    private void add(String feedId, String principalName, FeedOpsAclEntry.PrincipalType type) {
+        JpaFeedOpsAclEntry entry = new JpaFeedOpsAclEntry(new OpsManagerFeedId(feedId), principalName, type);
+        cache.onAddedItem(entry.getId(), entry);
+    }
+
+    private RoleSetExposingSecurityExpressionRoot user(String name, String... groups) {
+        return new RoleSetExposingSecurityExpressionRoot(new UsernamePasswordAuthenticationToken(name, "secret", AuthorityUtils.createAuthorityList(groups)));
+    }
+}
@@ -0,0 +1,183 @@
+package com.thinkbiganalytics.metadata.jpa.jobrepo.nifi;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.config.OperationalMetadataConfig;
+import com.thinkbiganalytics.metadata.jpa.TestJpaConfiguration;
+import com.thinkbiganalytics.metadata.jpa.feed.JpaOpsManagerFeed;
+import com.thinkbiganalytics.metadata.jpa.feed.OpsManagerFeedId;
+import com.thinkbiganalytics.metadata.jpa.feed.OpsManagerFeedRepository;
+import com.thinkbiganalytics.metadata.jpa.feed.security.FeedOpsAccessControlConfig;
+import com.thinkbiganalytics.security.AccessController;
+import com.thinkbiganalytics.spring.CommonsSpringConfiguration;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.inject.Inject;
+
+@SuppressWarnings("SpringJavaAutowiringInspection")
+@RunWith(SpringJUnit4ClassRunner.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+@SpringBootTest(classes = {CommonsSpringConfiguration.class,
+                           OperationalMetadataConfig.class,
+                           TestJpaConfiguration.class,
+                           NifiFeedProcessorStatsRollupTest.class,
+                           FeedOpsAccessControlConfig.class})
+@Transactional
+@Configuration
+public class NifiFeedProcessorStatsRollupTest {
+
+    private static final String FEED_NAME = "rollup.feed";
+
+    private static final DateTime END = new DateTime(2017, 6, 30, 0, 0, DateTimeZone.UTC);
+
+    private static final DateTime START = END.minusDays(90);
+
+    @Bean
+    public AccessController accessController() {
+        AccessController mock = Mockito.mock(AccessController.class);
+        Mockito.when(mock.isEntityAccessControlled()).thenReturn(false);
+        return mock;
+    }
+
+    @Inject
+    private NifiFeedProcessorStatisticsProvider statisticsProvider;
+
+    @Inject
+    private OpsManagerFeedRepository feedRepository;
+
+    @Inject
+    private NifiFeedProcessorStatsRollupRepository rollupRepository;
+
+    private JpaNifiFeedProcessorStats newStats(DateTime minEventTime, long jobsStarted) {
+        JpaNifiFeedProcessorStats stats = new JpaNifiFeedProcessorStats(FEED_NAME, "processor-1");
+        stats.setMinEventTime(minEventTime);
+        stats.setMaxEventTime(minEventTime.plusSeconds(3));
+        stats.setCollectionIntervalSeconds(3L);
+        stats.setJobsStarted(jobsStarted);
+        stats.setTotalCount(jobsStarted * 2);
+        return stats;
+    }
+
+    private JpaNifiFeedProcessorStatsRollup findRollup(int grain, DateTime bucketTime) {
+        return rollupRepository.findForUpdate(FEED_NAME, grain, bucketTime);
+    }
+
+    private void saveAndRollup(JpaNifiFeedProcessorStats... stats) {
+        List<JpaNifiFeedProcessorStats> list = Arrays.asList(stats);
+        statisticsProvider.save(new ArrayList<>(list));
+        statisticsProvider.rollup(list);
+    }
+
+    @Test
+    public void testLargeWindowReadsDailyRollups() {
+        feedRepository.save(new JpaOpsManagerFeed(OpsManagerFeedId.create(), FEED_NAME));
+        saveAndRollup(newStats(START.plusHours(1), 2L), newStats(START.plusHours(1).plusSeconds(10), 3L), newStats(START.plusDays(10), 4L));
+        //a later batch adding to a bucket that already exists
+        saveAndRollup(newStats(START.plusHours(5), 1L), newStats(END.minusHours(1), 5L));
+
+        List<? extends JpaNifiFeedProcessorStats> rollups = statisticsProvider.findForFeedStatisticsGroupedByTime(FEED_NAME, START, END);
+        Assert.assertEquals(3, rollups.size());
+
+        JpaNifiFeedProcessorStats firstDay = rollups.get(0);
+        Assert.assertEquals(START.getMillis(), firstDay.getMinEventTime().getMillis());
+        Assert.assertEquals(Long.valueOf(JpaNifiFeedProcessorStatsRollup.DAY), firstDay.getCollectionIntervalSeconds());
+        Assert.assertEquals(Long.valueOf(6L), firstDay.getJobsStarted());
+        Assert.assertEquals(Long.valueOf(12L), firstDay.getTotalCount());
+        Assert.assertEquals(Long.valueOf(4L), rollups.get(1).getJobsStarted());
+        Assert.assertEquals(Long.valueOf(5L), rollups.get(2).getJobsStarted());
+    }
+
+    @Test
+    public void testSmallWindowReadsRawStats() {
+        feedRepository.save(new JpaOpsManagerFeed(OpsManagerFeedId.create(), FEED_NAME));
+        saveAndRollup(newStats(END.minusMinutes(5), 2L), newStats(END.minusMinutes(5).plusSeconds(3), 3L));
+
+        List<? extends JpaNifiFeedProcessorStats> stats = statisticsProvider.findForFeedStatisticsGroupedByTime(FEED_NAME, END.minusMinutes(10), END);
+        Assert.assertEquals(2, stats.size());
+        Assert.assertEquals(Long.valueOf(3L), stats.get(0).getCollectionIntervalSeconds());
+    }
+
+    @Test
+    public void testWindowBeforeRollupsReadsRawStats() {
+        feedRepository.save(new JpaOpsManagerFeed(OpsManagerFeedId.create(), FEED_NAME));
+        //stats saved before the rollups were maintained
+        statisticsProvider.save(new ArrayList<>(Arrays.asList(newStats(START.plusHours(1), 2L))));
+        saveAndRollup(newStats(START.plusDays(10), 4L));
+
+        List<? extends JpaNifiFeedProcessorStats> stats = statisticsProvider.findForFeedStatisticsGroupedByTime(FEED_NAME, START, END);
+        Assert.assertEquals(2, stats.size());
+        Assert.assertEquals(Long.valueOf(3L), stats.get(0).getCollectionIntervalSeconds());
+    }
+
+    @Test
+    public void testRebuildRollups() {
+        feedRepository.save(new JpaOpsManagerFeed(OpsManagerFeedId.create(), FEED_NAME));
+        DateTime minute = START.plusHours(1);
+        //stats whose rollup failed
+        statisticsProvider.save(new ArrayList<>(Arrays.asList(newStats(minute, 2L))));
+        saveAndRollup(newStats(minute.plusSeconds(10), 3L), newStats(minute.plusMinutes(5), 1L));
+        //a rollup without any saved stats
+        statisticsProvider.rollup(Arrays.asList(newStats(minute.plusMinutes(2), 7L)));
+
+        statisticsProvider.rebuildRollups(FEED_NAME, minute, minute.plusMinutes(10));
+
+        Assert.assertEquals(Long.valueOf(5L), findRollup(JpaNifiFeedProcessorStatsRollup.MINUTE, minute).getJobsStarted());
+        Assert.assertEquals(Long.valueOf(2L), findRollup(JpaNifiFeedProcessorStatsRollup.MINUTE, minute).getStatsCount());
+        Assert.assertNull(findRollup(JpaNifiFeedProcessorStatsRollup.MINUTE, minute.plusMinutes(2)));
+        Assert.assertEquals(Long.valueOf(1L), findRollup(JpaNifiFeedProcessorStatsRollup.MINUTE, minute.plusMinutes(5)).getJobsStarted());
+        Assert.assertEquals(Long.valueOf(6L), findRollup(JpaNifiFeedProcessorStatsRollup.HOUR, minute).getJobsStarted());
+        Assert.assertEquals(Long.valueOf(12L), findRollup(JpaNifiFeedProcessorStatsRollup.HOUR, minute).getTotalCount());
+        Assert.assertEquals(Long.valueOf(6L), findRollup(JpaNifiFeedProcessorStatsRollup.DAY, START).getJobsStarted());
+        Assert.assertEquals(Long.valueOf(3L), findRollup(JpaNifiFeedProcessorStatsRollup.DAY, START).getStatsCount());
+    }
+
+    @Test
+    public void testDeleteExpiredRollups() {
+        feedRepository.save(new JpaOpsManagerFeed(OpsManagerFeedId.create(), FEED_NAME));
+        DateTime old = START.plusHours(1);
+        DateTime recent = JpaNifiFeedProcessorStatsRollup.bucketTime(DateTime.now(), JpaNifiFeedProcessorStatsRollup.MINUTE).minusMinutes(5);
+        saveAndRollup(newStats(old, 2L), newStats(recent, 3L));
+
+        Assert.assertEquals(2, statisticsProvider.deleteExpiredRollups());
+
+        Assert.assertNull(findRollup(JpaNifiFeedProcessorStatsRollup.MINUTE, old));
+        Assert.assertNull(findRollup(JpaNifiFeedProcessorStatsRollup.HOUR, old));
+        Assert.assertEquals(Long.valueOf(2L), findRollup(JpaNifiFeedProcessorStatsRollup.DAY, START).getJobsStarted());
+        Assert.assertNotNull(findRollup(JpaNifiFeedProcessorStatsRollup.MINUTE, recent));
+        Assert.assertNotNull(findRollup(JpaNifiFeedProcessorStatsRollup.HOUR, JpaNifiFeedProcessorStatsRollup.bucketTime(recent, JpaNifiFeedProcessorStatsRollup.HOUR)));
+    }
+}
@@ -0,0 +1,189 @@
+package com.thinkbiganalytics.metadata.jpa.jobrepo.step;
+
+/*-
+ * #%L
+ * kylo-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.DateTimeUtil;
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.jobrepo.ExecutionConstants;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.step.BatchStepExecution;
+import com.thinkbiganalytics.metadata.config.OperationalMetadataConfig;
+import com.thinkbiganalytics.metadata.jpa.TestJpaConfiguration;
+import com.thinkbiganalytics.metadata.jpa.feed.JpaOpsManagerFeed;
+import com.thinkbiganalytics.metadata.jpa.feed.OpsManagerFeedId;
+import com.thinkbiganalytics.metadata.jpa.feed.OpsManagerFeedRepository;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JpaBatchJobExecution;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JpaBatchJobExecutionProvider;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.security.AccessController;
+import com.thinkbiganalytics.spring.CommonsSpringConfiguration;
+import com.thinkbiganalytics.test.security.WithMockJaasUser;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+/**
+ * Tests that the batched step creation writes the same rows as creating the steps one event at a time
+ */
+@SuppressWarnings("SpringJavaAutowiringInspection")
+@RunWith(SpringJUnit4ClassRunner.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+@SpringBootTest(classes = {CommonsSpringConfiguration.class,
+                           OperationalMetadataConfig.class,
+                           TestJpaConfiguration.class,
+                           JpaBatchStepExecutionProviderTest.class})
+@Configuration
+public class JpaBatchStepExecutionProviderTest {
+
+    private static final String FEED_NAME = "batch.steps";
+
+    private static final long EVENT_TIME = 1500000000000L;
+
+    @Bean
+    public AccessController accessController() {
+        AccessController mock = Mockito.mock(AccessController.class);
+        Mockito.when(mock.isEntityAccessControlled()).thenReturn(false);
+        return mock;
+    }
+
+    @Inject
+    private JpaBatchJobExecutionProvider jobExecutionProvider;
+
+    @Inject
+    private OpsManagerFeedRepository feedRepository;
+
+    @Inject
+    private MetadataAccess metadataAccess;
+
+    @WithMockJaasUser(username = "dladmin",
+                      password = "secret",
+                      authorities = {"admin"})
+    @Test
+    public void testBatchedStepsMatchPerEventSteps() {
+        metadataAccess.commit(() -> feedRepository.save(new JpaOpsManagerFeed(OpsManagerFeedId.create(), FEED_NAME)));
+
+        String perEventFlowFile = UUID.randomUUID().toString();
+        Long perEventJobId = metadataAccess.commit(() -> {
+            BatchJobExecution jobExecution = newJobExecution(perEventFlowFile);
+            for (ProvenanceEventRecordDTO event : events(perEventFlowFile)) {
+                jobExecutionProvider.save(jobExecution, event);
+            }
+            return jobExecution.getJobExecutionId();
+        });
+
+        String batchFlowFile = UUID.randomUUID().toString();
+        Long batchJobId = metadataAccess.commit(() -> {
+            BatchJobExecution jobExecution = newJobExecution(batchFlowFile);
+            jobExecutionProvider.save(jobExecution, events(batchFlowFile));
+            return jobExecution.getJobExecutionId();
+        });
+
+        metadataAccess.read(() -> {
+            List<String> perEventRows = rows(jobExecutionProvider.findByJobExecutionId(perEventJobId, true));
+            List<String> batchRows = rows(jobExecutionProvider.findByJobExecutionId(batchJobId, true));
+            Assert.assertEquals(3, perEventRows.size());
+            Assert.assertEquals(perEventRows, batchRows);
+
+            Set<Long> stepIds = new HashSet<>();
+            jobExecutionProvider.findByJobExecutionId(perEventJobId, true).getStepExecutions().forEach(step -> stepIds.add(step.getStepExecutionId()));
+            jobExecutionProvider.findByJobExecutionId(batchJobId, true).getStepExecutions().forEach(step -> stepIds.add(step.getStepExecutionId()));
+            Assert.assertEquals(6, stepIds.size());
+            return null;
+        });
+    }
+
+    private BatchJobExecution newJobExecution(String jobFlowFileId) {
+        JpaBatchJobExecution jobExecution = new JpaBatchJobExecution();
+        jobExecution.setJobInstance(jobExecutionProvider.createJobInstance(event(jobFlowFileId, 1L, "processor-1", "CREATE")));
+        jobExecution.setCreateTime(DateTimeUtil.getNowUTCTime());
+        jobExecution.setStartTime(DateTimeUtil.convertToUTC(EVENT_TIME));
+        jobExecution.setStatus(BatchJobExecution.JobStatus.STARTED);
+        jobExecution.setExitCode(ExecutionConstants.ExitCode.EXECUTING);
+        jobExecution.setLastUpdated(DateTimeUtil.getNowUTCTime());
+        jobExecution.setStepExecutions(new HashSet<>());
+        return jobExecutionProvider.save(jobExecution);
+    }
+
+    /**
+     * Events for three processors.  The first processor reports a second event that extends its step, and the last one fails
+     */
+    private List<ProvenanceEventRecordDTO> events(String jobFlowFileId) {
+        List<ProvenanceEventRecordDTO> events = new ArrayList<>();
+        events.add(event(jobFlowFileId, 1L, "processor-1", "CREATE"));
+        events.add(event(jobFlowFileId, 2L, "processor-2", "ATTRIBUTES_MODIFIED"));
+        events.add(event(jobFlowFileId, 3L, "processor-1", "ATTRIBUTES_MODIFIED"));
+        ProvenanceEventRecordDTO failure = event(jobFlowFileId, 4L, "processor-3", "DROP");
+        failure.setIsFailure(true);
+        failure.setDetails("Unable to write the file");
+        events.add(failure);
+        return events;
+    }
+
+    private ProvenanceEventRecordDTO event(String jobFlowFileId, Long eventId, String componentId, String eventType) {
+        ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+        event.setEventId(eventId);
+        event.setJobFlowFileId(jobFlowFileId);
+        event.setFlowFileUuid(jobFlowFileId);
+        event.setFeedName(FEED_NAME);
+        event.setComponentId(componentId);
+        event.setComponentName("Step " + componentId);
+        event.setComponentType("UpdateAttribute");
+        event.setEventType(eventType);
+        event.setStartTime(EVENT_TIME + eventId * 1000);
+        event.setEventTime(EVENT_TIME + eventId * 1000 + 500);
+        event.setEventDuration(500L);
+        event.setUpdatedAttributes(Collections.singletonMap("attribute", eventType));
+        return event;
+    }
+
+    /**
+     * @return the persisted values of each step, excluding its generated id, ordered by step name
+     */
+    private List<String> rows(BatchJobExecution jobExecution) {
+        Map<String, String> rows = new TreeMap<>();
+        for (BatchStepExecution step : jobExecution.getStepExecutions()) {
+            rows.put(step.getStepName(), step.getStepName() + "|" + step.getStatus() + "|" + step.getExitCode() + "|" + step.getExitMessage()
+                                         + "|" + step.getStartTime().getMillis() + "|" + step.getEndTime().getMillis()
+                                         + "|" + step.getNifiEventStepExecution().getEventId() + "|" + step.getNifiEventStepExecution().getComponentId()
+                                         + "|" + new TreeMap<>(step.getStepExecutionContextAsMap()));
+        }
+        return rows.values().stream().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,226 @@
+package com.thinkbiganalytics.modeshape.index.elasticsearch;
+
+/*-
+ * #%L
+ * kylo-modeshape-elasticsearch-index-provider
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers index and delete requests for Elasticsearch and sends them with the bulk API over a pooled, keep-alive HTTP client.
+ *
+ * <p>Pending requests are sent when the number of buffered requests reaches the bulk size, when the flush interval elapses, or when {@link #flush()} is called.
+ * The indexes written by a batch are refreshed once after the batch is sent.</p>
+ */
+class KyloEsBulkWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(KyloEsBulkWriter.class);
+
+    static final int DEFAULT_BULK_SIZE = 100;
+    static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000L;
+    private static final int MAX_CONNECTIONS = 10;
+
+    private final String baseUrl;
+    private final int bulkSize;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ScheduledExecutorService flushScheduler;
+
+    /**
+     * Guards the buffer
+     */
+    private final Object bufferLock = new Object();
+
+    /**
+     * Held while a batch is sent so that batches reach Elasticsearch in the order they were buffered
+     */
+    private final Object flushLock = new Object();
+
+    private StringBuilder buffer = new StringBuilder();
+    private int bufferedCount = 0;
+    private Set<String> bufferedIndexes = new LinkedHashSet<>();
+
+    KyloEsBulkWriter(String host, int port, int bulkSize, long flushIntervalMillis) {
+        this.baseUrl = String.format("http://%s:%d", host, port);
+        this.bulkSize = bulkSize > 0 ? bulkSize : DEFAULT_BULK_SIZE;
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager).build();
+
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kylo-es-bulk-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = flushIntervalMillis > 0 ? flushIntervalMillis : DEFAULT_FLUSH_INTERVAL_MILLIS;
+        flushScheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        log.debug("Initialized bulk writer for {} with bulk size {} and flush interval {} ms", baseUrl, this.bulkSize, interval);
+    }
+
+    /**
+     * Buffers a request to index the specified document.
+     *
+     * @return {@code true} if the request was buffered, or {@code false} if it could not be built
+     */
+    boolean index(String index, String type, String id, JSONObject document) {
+        return add("index", index, type, id, document);
+    }
+
+    /**
+     * Buffers a request to delete the specified document.
+     *
+     * @return {@code true} if the request was buffered, or {@code false} if it could not be built
+     */
+    boolean delete(String index, String type, String id) {
+        return add("delete", index, type, id, null);
+    }
+
+    private boolean add(String action, String index, String type, String id, JSONObject document) {
+        String actionLine;
+        try {
+            JSONObject metadata = new JSONObject();
+            metadata.put("_index", index);
+            metadata.put("_type", type);
+            metadata.put("_id", id);
+            actionLine = new JSONObject().put(action, metadata).toString();
+        } catch (JSONException e) {
+            log.warn("Unable to construct bulk {} request for id {} in index {}: {}", action, id, index, e.getMessage());
+            return false;
+        }
+
+        boolean full;
+        synchronized (bufferLock) {
+            buffer.append(actionLine).append('\n');
+            if (document != null) {
+                buffer.append(document.toString()).append('\n');
+            }
+            bufferedIndexes.add(index);
+            full = ++bufferedCount >= bulkSize;
+        }
+        if (full) {
+            flush();
+        }
+        return true;
+    }
+
+    /**
+     * Sends the buffered requests to Elasticsearch and refreshes the indexes they wrote to.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            String body;
+            int count;
+            Set<String> indexes;
+            synchronized (bufferLock) {
+                if (bufferedCount == 0) {
+                    return;
+                }
+                body = buffer.toString();
+                count = bufferedCount;
+                indexes = bufferedIndexes;
+                buffer = new StringBuilder();
+                bufferedCount = 0;
+                bufferedIndexes = new LinkedHashSet<>();
+            }
+
+            try {
+                sendBulk(body, count);
+                post("/" + StringUtils.join(indexes, ",") + "/_refresh", null);
+            } catch (IOException | RuntimeException e) {
+                log.error("Unable to send {} buffered requests to Elasticsearch at {}", count, baseUrl, e);
+            }
+        }
+    }
+
+    private void sendBulk(String body, int count) throws IOException {
+        String response = post("/_bulk", body);
+        if (response == null) {
+            log.warn("Bulk request of {} documents failed", count);
+            return;
+        }
+        try {
+            if (new JSONObject(response).optBoolean("errors", false)) {
+                log.warn("Bulk request of {} documents completed with errors: {}", count, StringUtils.abbreviate(response, 1000));
+                return;
+            }
+        } catch (JSONException e) {
+            log.warn("Unable to parse bulk response: {}", e.getMessage());
+        }
+        log.info("Indexed {} metadata documents", count);
+    }
+
+    /**
+     * Posts the specified body to Elasticsearch.
+     *
+     * @return the response body, or {@code null} if the request was not successful
+     */
+    private String post(String path, String body) throws IOException {
+        HttpPost method = new HttpPost(baseUrl + path);
+        if (body != null) {
+            method.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        }
+        try (CloseableHttpResponse resp = httpClient.execute(method)) {
+            int statusCode = resp.getStatusLine().getStatusCode();
+            String response = (resp.getEntity() != null) ? EntityUtils.toString(resp.getEntity()) : "";
+            if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED) {
+                return response;
+            }
+            log.warn("Request to {} failed with status {}: {}", path, statusCode, StringUtils.abbreviate(response, 1000));
+            return null;
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    /**
+     * Sends any buffered requests and releases the HTTP connections.
+     */
+    void close() {
+        flushScheduler.shutdown();
+        flush();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("Unable to close Elasticsearch HTTP client: {}", e.getMessage());
+        }
+        connectionManager.shutdown();
+    }
+}
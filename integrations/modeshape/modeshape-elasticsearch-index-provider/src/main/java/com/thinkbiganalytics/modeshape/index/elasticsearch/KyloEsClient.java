@@ -23,15 +23,6 @@ package com.thinkbiganalytics.modeshape.index.elasticsearch;
 import com.thinkbiganalytics.metadata.api.MetadataAccess;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpStatus;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpDelete;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 import org.modeshape.jcr.index.elasticsearch.client.EsClient;
@@ -42,7 +33,6 @@ import org.slf4j.LoggerFactory;
 import com.thinkbiganalytics.metadata.modeshape.JcrMetadataAccess;
 import com.thinkbiganalytics.metadata.modeshape.support.JcrPropertyUtil;
 
-import java.io.IOException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.List;
@@ -75,13 +65,47 @@ public class KyloEsClient extends EsClient {
     private static final String USR_PROPERTIES_PROPERTY = "usr:properties";
     private static final String FEED_ID_PROPERTY = "meta:feedId";
 
+    private final KyloEsBulkWriter bulkWriter;
+
     public KyloEsClient(String host, int port) {
+        this(host, port, KyloEsBulkWriter.DEFAULT_BULK_SIZE, KyloEsBulkWriter.DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    public KyloEsClient(String host, int port, int bulkSize, long bulkFlushIntervalMillis) {
+        this(host, port, new KyloEsBulkWriter(host, port, bulkSize, bulkFlushIntervalMillis));
+    }
+
+    KyloEsClient(String host, int port, KyloEsBulkWriter bulkWriter) {
         super(host, port);
         this.kyloHost = host;
         this.kyloPort = port;
+        this.bulkWriter = bulkWriter;
         log.debug("Initialized with host {} and port {}", this.kyloHost, this.kyloPort);
     }
 
+    /**
+     * Sends the buffered metadata documents. Called by ModeShape when an index is committed.
+     */
+    @Override
+    public void flush(String name) {
+        bulkWriter.flush();
+    }
+
+    /**
+     * Sends the buffered metadata documents, which refreshes the indexes they were written to.
+     */
+    @Override
+    public void refresh(String name) {
+        bulkWriter.flush();
+    }
+
+    /**
+     * Sends any buffered metadata documents and releases the HTTP connections.
+     */
+    public void close() {
+        bulkWriter.close();
+    }
+
     @Override
     public boolean deleteDocument(String name, String type, String id) {
         if (isEntityACategory(name)) {
@@ -167,31 +191,13 @@ public class KyloEsClient extends EsClient {
     }
 
     private boolean submitCategoryMetadataToIndex(JSONObject fullDocumentJsonObject, String type, KyloEsNodeDetails kyloEsNodeDetails) {
-        CloseableHttpClient client = HttpClients.createDefault();
-        HttpPost method = new HttpPost(String.format("http://%s:%d/%s/%s/%s", kyloHost, kyloPort, "kylo-categories-" + kyloEsNodeDetails.getWorkspaceName(), type, kyloEsNodeDetails.getId()));
-
-        try {
-            StringEntity requestEntity;
-            requestEntity = new StringEntity(fullDocumentJsonObject.toString(), ContentType.APPLICATION_JSON);
-            method.setEntity(requestEntity);
-            CloseableHttpResponse resp = client.execute(method);
-            int statusCode = resp.getStatusLine().getStatusCode();
-            if (statusCode == HttpStatus.SC_CREATED || statusCode == HttpStatus.SC_OK) {
-                log.info("[category] Indexed metadata for category id: {}", kyloEsNodeDetails.getId());
-                return true;
-            } else {
-                log.warn("[category] Indexing metadata failed for category id: {}", kyloEsNodeDetails.getId());
-                return false;
-            }
-        } catch (ClientProtocolException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            method.releaseConnection();
+        if (bulkWriter.index("kylo-categories-" + kyloEsNodeDetails.getWorkspaceName(), type, kyloEsNodeDetails.getId(), fullDocumentJsonObject)) {
+            log.debug("[category] Queued metadata for indexing for category id: {}", kyloEsNodeDetails.getId());
+            return true;
+        } else {
+            log.warn("[category] Indexing metadata failed for category id: {}", kyloEsNodeDetails.getId());
+            return false;
         }
-
-        return false;
     }
 
     private JSONObject constructCategoryMetadataToIndex(String name, String type, String id, KyloEsNodeDetails kyloEsNodeDetails) {
@@ -242,22 +248,9 @@ public class KyloEsClient extends EsClient {
     }
 
     private boolean deleteIndexedCategoryMetadata(KyloEsNodeDetails kyloEsNodeDetails, String type) {
-        CloseableHttpClient client = HttpClients.createDefault();
-        HttpDelete method = new HttpDelete(String.format("http://%s:%d/%s/%s/%s", kyloHost, kyloPort, "kylo-categories-" + kyloEsNodeDetails.getWorkspaceName(), type, kyloEsNodeDetails.getId()));
-        boolean retVal = false;
-        try {
-            CloseableHttpResponse resp = client.execute(method);
-            int statusCode = resp.getStatusLine().getStatusCode();
-            retVal = (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_NOT_FOUND);
-        } catch (ClientProtocolException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            method.releaseConnection();
-        }
+        boolean retVal = bulkWriter.delete("kylo-categories-" + kyloEsNodeDetails.getWorkspaceName(), type, kyloEsNodeDetails.getId());
         if (retVal) {
-            log.info("[category] Deleted indexed metadata for category id: {}", kyloEsNodeDetails.getId());
+            log.debug("[category] Queued deletion of indexed metadata for category id: {}", kyloEsNodeDetails.getId());
         } else {
             log.warn("[category] Unable to delete indexed metadata for category id: {}", kyloEsNodeDetails.getId());
         }
@@ -315,31 +308,13 @@ public class KyloEsClient extends EsClient {
     }
 
     private boolean submitFeedMetadataToIndex(JSONObject fullDocumentJsonObject, String type, KyloEsNodeDetails kyloEsNodeDetails, KyloEsClientFeedIds kyloEsClientFeedIds) {
-        CloseableHttpClient client = HttpClients.createDefault();
-        HttpPost method = new HttpPost(String.format("http://%s:%d/%s/%s/%s", kyloHost, kyloPort, "kylo-feeds-" + kyloEsNodeDetails.getWorkspaceName(), type, kyloEsClientFeedIds.getTbaFeedSummaryId()));
-
-        try {
-            StringEntity requestEntity;
-            requestEntity = new StringEntity(fullDocumentJsonObject.toString(), ContentType.APPLICATION_JSON);
-            method.setEntity(requestEntity);
-            CloseableHttpResponse resp = client.execute(method);
-            int statusCode = resp.getStatusLine().getStatusCode();
-            if (statusCode == HttpStatus.SC_CREATED || statusCode == HttpStatus.SC_OK) {
-                log.info("[feed] Indexed metadata for feed id: {}", kyloEsClientFeedIds.getTbaFeedId());
-                return true;
-            } else {
-                log.warn("[feed] Indexing metadata failed for feed id: {}", kyloEsClientFeedIds.getTbaFeedId());
-                return false;
-            }
-        } catch (ClientProtocolException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            method.releaseConnection();
+        if (bulkWriter.index("kylo-feeds-" + kyloEsNodeDetails.getWorkspaceName(), type, kyloEsClientFeedIds.getTbaFeedSummaryId(), fullDocumentJsonObject)) {
+            log.debug("[feed] Queued metadata for indexing for feed id: {}", kyloEsClientFeedIds.getTbaFeedId());
+            return true;
+        } else {
+            log.warn("[feed] Indexing metadata failed for feed id: {}", kyloEsClientFeedIds.getTbaFeedId());
+            return false;
         }
-
-        return false;
     }
 
     private JSONObject constructFeedMetadataToIndex(String name, String type, KyloEsClientFeedIds kyloEsClientFeedIds) {
@@ -399,22 +374,9 @@ public class KyloEsClient extends EsClient {
     }
 
     private boolean deleteIndexedFeedMetadata(KyloEsNodeDetails kyloEsNodeDetails, String type) {
-        CloseableHttpClient client = HttpClients.createDefault();
-        HttpDelete method = new HttpDelete(String.format("http://%s:%d/%s/%s/%s", kyloHost, kyloPort, "kylo-feeds-" + kyloEsNodeDetails.getWorkspaceName(), type, kyloEsNodeDetails.getId()));
-        boolean retVal = false;
-        try {
-            CloseableHttpResponse resp = client.execute(method);
-            int statusCode = resp.getStatusLine().getStatusCode();
-            retVal = (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_NOT_FOUND);
-        } catch (ClientProtocolException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            method.releaseConnection();
-        }
+        boolean retVal = bulkWriter.delete("kylo-feeds-" + kyloEsNodeDetails.getWorkspaceName(), type, kyloEsNodeDetails.getId());
         if (retVal) {
-            log.info("[feed] Deleted indexed metadata for feed (using node id: {})", kyloEsNodeDetails.getId());
+            log.debug("[feed] Queued deletion of indexed metadata for feed (using node id: {})", kyloEsNodeDetails.getId());
         } else {
             log.warn("[feed] Unable to delete indexed metadata for feed (using node id: {})", kyloEsNodeDetails.getId());
         }
@@ -41,6 +41,8 @@ public class KyloEsIndexProvider extends EsIndexProvider {
     private static final Logger log = LoggerFactory.getLogger(KyloEsIndexProvider.class);
     private String host;
     private int port;
+    private int bulkSize = KyloEsBulkWriter.DEFAULT_BULK_SIZE;
+    private long bulkFlushIntervalMillis = KyloEsBulkWriter.DEFAULT_FLUSH_INTERVAL_MILLIS;
     private KyloEsClient kyloClient;
 
     @Override
@@ -48,7 +50,8 @@ public class KyloEsIndexProvider extends EsIndexProvider {
         log.debug("Using KyloEsIndexProvider");
         //Params are set here:
         //com.thinkbiganalytics.search.ElasticSearchRestModeShapeConfigurationService#getElasticSearchIndexProviderConfiguration()
-        kyloClient = new KyloEsClient(host, port);
+        //Index and delete requests are buffered and sent in bulk when the index is committed, or after bulkSize requests or bulkFlushIntervalMillis
+        kyloClient = new KyloEsClient(host, port, bulkSize, bulkFlushIntervalMillis);
         SpringApplicationContext.autowire(kyloClient);
         log.info("Initialized Elasticsearch provider for ModeShape");
     }
@@ -60,4 +63,12 @@ public class KyloEsIndexProvider extends EsIndexProvider {
                                                   ChangeSetAdapter.NodeTypePredicate matcher) {
         return EsManagedIndexBuilder.create(kyloClient, context(), defn, nodeTypesSupplier, workspaceName, matcher);
     }
+
+    @Override
+    protected void postShutdown() {
+        super.postShutdown();
+        if (kyloClient != null) {
+            kyloClient.close();
+        }
+    }
 }
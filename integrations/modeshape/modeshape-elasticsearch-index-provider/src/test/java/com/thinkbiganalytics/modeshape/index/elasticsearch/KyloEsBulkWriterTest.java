@@ -0,0 +1,145 @@
+package com.thinkbiganalytics.modeshape.index.elasticsearch;
+
+/*-
+ * #%L
+ * kylo-modeshape-elasticsearch-index-provider
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests when the {@link KyloEsBulkWriter} sends its buffered requests, using a local HTTP server in place of Elasticsearch.
+ */
+public class KyloEsBulkWriterTest {
+
+    private HttpServer server;
+
+    /**
+     * The requests received by the server, as "path body"
+     */
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            Scanner scanner = new Scanner(exchange.getRequestBody(), StandardCharsets.UTF_8.name()).useDelimiter("\\A");
+            String body = scanner.hasNext() ? scanner.next() : "";
+            requests.add(exchange.getRequestURI().getPath() + " " + body);
+            byte[] response = "{\"errors\":false}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testFlushWhenBulkSizeReached() throws Exception {
+        KyloEsBulkWriter writer = newWriter(2, TimeUnit.MINUTES.toMillis(10));
+        try {
+            assertTrue(writer.index("kylo-feeds-default", "default", "1", document("feed1")));
+            assertEquals(0, requests.size());
+
+            assertTrue(writer.delete("kylo-categories-default", "default", "2"));
+            assertEquals(2, requests.size());
+            assertTrue(requests.get(0).startsWith("/_bulk "));
+            assertTrue(requests.get(0).contains("\"index\""));
+            assertTrue(requests.get(0).contains("feed1"));
+            assertTrue(requests.get(0).contains("\"delete\""));
+            assertEquals("/kylo-feeds-default,kylo-categories-default/_refresh ", requests.get(1));
+
+            // the buffer is empty again so nothing is sent until it fills up
+            writer.index("kylo-feeds-default", "default", "3", document("feed3"));
+            assertEquals(2, requests.size());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testFlushWhenIntervalElapsed() throws Exception {
+        KyloEsBulkWriter writer = newWriter(100, 50);
+        try {
+            writer.index("kylo-feeds-default", "default", "1", document("feed1"));
+
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (requests.size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, requests.size());
+            assertTrue(requests.get(0).startsWith("/_bulk "));
+            assertTrue(requests.get(0).contains("feed1"));
+            assertEquals("/kylo-feeds-default/_refresh ", requests.get(1));
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testFlushOnCommit() throws Exception {
+        KyloEsBulkWriter writer = newWriter(100, TimeUnit.MINUTES.toMillis(10));
+        KyloEsClient client = new KyloEsClient("localhost", server.getAddress().getPort(), writer);
+        try {
+            writer.index("kylo-feeds-default", "default", "1", document("feed1"));
+            writer.index("kylo-feeds-default", "default", "2", document("feed2"));
+            assertEquals(0, requests.size());
+
+            // ModeShape flushes the client when the index is committed
+            client.flush("kylo-feeds-default");
+            assertEquals(2, requests.size());
+            assertTrue(requests.get(0).contains("feed1"));
+            assertTrue(requests.get(0).contains("feed2"));
+            assertEquals("/kylo-feeds-default/_refresh ", requests.get(1));
+
+            // nothing is left to send
+            client.flush("kylo-feeds-default");
+            assertEquals(2, requests.size());
+        } finally {
+            client.close();
+        }
+    }
+
+    private KyloEsBulkWriter newWriter(int bulkSize, long flushIntervalMillis) {
+        return new KyloEsBulkWriter("localhost", server.getAddress().getPort(), bulkSize, flushIntervalMillis);
+    }
+
+    private JSONObject document(String name) throws Exception {
+        return new JSONObject().put("tba:systemName", name);
+    }
+}
@@ -0,0 +1,92 @@
+package com.thinkbiganalytics.nifi.core.benchmark;
+
+/*-
+ * #%L
+ * thinkbig-nifi-core-benchmarks
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.util.JdbcCommon;
+
+import org.apache.avro.Schema;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts a synthetic result set with the writers used by GetTableData. Each invocation converts {@link #ROWS} rows so the reported score is rows per second,
+ * and with the gc profiler gc.alloc.rate.norm is the bytes allocated per row.
+ *
+ * Run with: java -jar target/benchmarks.jar JdbcCommonBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JdbcCommonBenchmark {
+
+    /**
+     * Number of rows converted in each invocation
+     */
+    public static final int ROWS = 10000;
+
+    @Param({"MIXED", "STRINGS", "NUMBERS"})
+    private SyntheticResultSet.ColumnMix columns;
+
+    private SyntheticResultSet results;
+
+    private Schema schema;
+
+    @Setup
+    public void setup() throws Exception {
+        results = new SyntheticResultSet(columns, ROWS);
+        schema = JdbcCommon.createSchema(results.getResultSet());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long delimited() throws Exception {
+        results.rewind();
+        CountingOutputStream out = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        JdbcCommon.convertToDelimitedStream(results.getResultSet(), out, null, ",");
+        return out.getByteCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long avro() throws Exception {
+        results.rewind();
+        CountingOutputStream out = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        JdbcCommon.convertToAvroStream(results.getResultSet(), out, null, schema);
+        return out.getByteCount();
+    }
+}
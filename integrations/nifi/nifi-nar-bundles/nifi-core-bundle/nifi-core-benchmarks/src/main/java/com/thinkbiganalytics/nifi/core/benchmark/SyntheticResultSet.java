@@ -0,0 +1,207 @@
+package com.thinkbiganalytics.nifi.core.benchmark;
+
+/*-
+ * #%L
+ * thinkbig-nifi-core-benchmarks
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Random;
+
+/**
+ * Generates an in-memory {@link ResultSet} of random rows for a set of columns, similar to what a JDBC driver would return for a source table.
+ *
+ * The result set can be replayed with {@link #rewind()}.
+ */
+public class SyntheticResultSet {
+
+    /**
+     * Columns of the result set
+     */
+    public enum ColumnMix {
+        /**
+         * A typical source table with ids, names, amounts and audit dates
+         */
+        MIXED(new int[]{Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.DECIMAL, Types.DOUBLE, Types.BOOLEAN, Types.DATE, Types.TIMESTAMP, Types.BIGINT, Types.VARCHAR}),
+
+        /**
+         * Only character columns
+         */
+        STRINGS(new int[]{Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.CHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.NVARCHAR, Types.VARCHAR}),
+
+        /**
+         * Only numeric columns
+         */
+        NUMBERS(new int[]{Types.INTEGER, Types.BIGINT, Types.SMALLINT, Types.DOUBLE, Types.FLOAT, Types.DECIMAL, Types.INTEGER, Types.BIGINT, Types.DOUBLE, Types.TINYINT});
+
+        private final int[] types;
+
+        ColumnMix(int[] types) {
+            this.types = types;
+        }
+    }
+
+    private final int[] types;
+
+    private final Object[][] rows;
+
+    private final ResultSet resultSet;
+
+    private final ResultSetMetaData metaData;
+
+    private int cursor = -1;
+
+    private Object lastValue;
+
+    public SyntheticResultSet(ColumnMix mix, int rowCount) {
+        this.types = mix.types;
+        this.rows = new Object[rowCount][];
+
+        Random random = new Random(42L);
+        for (int row = 0; row < rowCount; row++) {
+            rows[row] = new Object[types.length];
+            for (int col = 0; col < types.length; col++) {
+                rows[row][col] = (col > 0 && random.nextInt(20) == 0) ? null : randomValue(types[col], row, random);
+            }
+        }
+
+        this.metaData = (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return types.length;
+                case "getColumnName":
+                case "getColumnLabel":
+                    return "col" + args[0];
+                case "getColumnType":
+                    return types[(Integer) args[0] - 1];
+                case "getTableName":
+                    return "synthetic";
+                case "isSigned":
+                    return true;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+
+        this.resultSet = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "next":
+                    return ++cursor < rows.length;
+                case "getMetaData":
+                    return metaData;
+                case "wasNull":
+                    return lastValue == null;
+                case "getStatement":
+                    return null;
+                case "close":
+                    return null;
+                default:
+                    return getValue(method.getName(), (Integer) args[0]);
+            }
+        });
+    }
+
+    /**
+     * Gets the result set.
+     */
+    public ResultSet getResultSet() {
+        return resultSet;
+    }
+
+    /**
+     * Moves the cursor back before the first row.
+     */
+    public void rewind() {
+        cursor = -1;
+    }
+
+    private Object getValue(String getter, int column) {
+        Object value = rows[cursor][column - 1];
+        lastValue = value;
+
+        switch (getter) {
+            case "getObject":
+                return value;
+            case "getString":
+                return (value != null) ? value.toString() : null;
+            case "getInt":
+                return (value != null) ? ((Number) value).intValue() : 0;
+            case "getLong":
+                return (value != null) ? ((Number) value).longValue() : 0L;
+            case "getFloat":
+                return (value != null) ? ((Number) value).floatValue() : 0f;
+            case "getDouble":
+                return (value != null) ? ((Number) value).doubleValue() : 0d;
+            case "getBoolean":
+                return (value != null) && (Boolean) value;
+            case "getBigDecimal":
+                return (value != null) ? new BigDecimal(value.toString()) : null;
+            case "getTimestamp":
+                return (value != null) ? new Timestamp(((java.util.Date) value).getTime()) : null;
+            case "getDate":
+                return (value != null) ? new Date(((java.util.Date) value).getTime()) : null;
+            case "getTime":
+                return (value != null) ? new Time(((java.util.Date) value).getTime()) : null;
+            case "getBytes":
+                return (value != null) ? value.toString().getBytes(StandardCharsets.UTF_8) : null;
+            default:
+                throw new UnsupportedOperationException(getter);
+        }
+    }
+
+    private static Object randomValue(int type, int row, Random random) {
+        switch (type) {
+            case Types.INTEGER:
+                return row;
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return random.nextInt(100);
+            case Types.BIGINT:
+                return random.nextLong();
+            case Types.DOUBLE:
+            case Types.FLOAT:
+                return random.nextDouble() * 1000;
+            case Types.DECIMAL:
+                return BigDecimal.valueOf(random.nextInt(10000000), 2);
+            case Types.BOOLEAN:
+                return random.nextBoolean();
+            case Types.DATE:
+            case Types.TIMESTAMP:
+                return new Timestamp(1483228800000L + random.nextInt(Integer.MAX_VALUE) * 1000L);
+            default:
+                // names, emails and addresses, occasionally with a delimiter that must be escaped
+                StringBuilder sb = new StringBuilder();
+                int length = 5 + random.nextInt(30);
+                for (int i = 0; i < length; i++) {
+                    sb.append((char) ('a' + random.nextInt(26)));
+                }
+                if (random.nextInt(10) == 0) {
+                    sb.append(", ").append(row);
+                }
+                return sb.toString();
+        }
+    }
+}
@@ -29,12 +29,17 @@ import org.joda.time.DateTimeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -49,10 +54,22 @@ public class GetTableDataSupport {
 
     private int timeout;
 
+    private int fetchSize;
+
     public GetTableDataSupport(Connection conn, int timeout) {
+        this(conn, timeout, 0);
+    }
+
+    /**
+     * @param conn      the database connection
+     * @param timeout   the query timeout in seconds
+     * @param fetchSize the number of rows to fetch from the database at a time, or zero to use the driver's default
+     */
+    public GetTableDataSupport(Connection conn, int timeout, int fetchSize) {
         Validate.notNull(conn);
         this.conn = conn;
         this.timeout = timeout;
+        this.fetchSize = fetchSize;
     }
 
     protected static Date maxAllowableDateFromUnit(Date fromDate, UnitSizes unit) {
@@ -92,6 +109,7 @@ public class GetTableDataSupport {
 
         logger.info("Executing full GetTableData query {}", query);
         st.setQueryTimeout(timeout);
+        setFetchSize(st);
 
         return st.executeQuery(query);
     }
@@ -128,6 +146,7 @@ public class GetTableDataSupport {
         if (range.getMinDate().before(range.getMaxDate())) {
             PreparedStatement ps = conn.prepareStatement(sb.toString());
             ps.setQueryTimeout(timeout);
+            setFetchSize(ps);
             ps.setTimestamp(1, new java.sql.Timestamp(range.getMinDate().getTime()));
             ps.setTimestamp(2, new java.sql.Timestamp(range.getMaxDate().getTime()));
 
@@ -137,6 +156,173 @@ public class GetTableDataSupport {
         return rs;
     }
 
+    /**
+     * Splits a full load into ranges of the specified numeric or date field. The bounds are taken from the minimum and maximum values of the field, and rows
+     * with a null value are included in the first range.
+     *
+     * @param tableName  the table
+     * @param splitField the name of the numeric or date field used to split the table
+     * @param splitCount the maximum number of ranges
+     * @return the ranges covering the entire table
+     */
+    public List<SplitRange> splitFullLoad(String tableName, String splitField, int splitCount) throws SQLException {
+        Validate.notEmpty(splitField);
+        final String query = "SELECT MIN(tbl." + splitField + "), MAX(tbl." + splitField + ") FROM " + tableName + " tbl";
+        logger.info("Executing GetTableData split bounds query {}", query);
+
+        Object min = null;
+        Object max = null;
+        try (final Statement st = conn.createStatement()) {
+            st.setQueryTimeout(timeout);
+            try (final ResultSet rs = st.executeQuery(query)) {
+                if (rs.next()) {
+                    min = rs.getObject(1);
+                    max = rs.getObject(2);
+                }
+            }
+        }
+
+        if (min == null || max == null) {
+            return Collections.singletonList(new SplitRange(null, true, null, true, true));
+        }
+
+        final List<Object> bounds = splitBounds(min, max, splitCount);
+        final List<SplitRange> ranges = new ArrayList<>(bounds.size() - 1);
+        for (int i = 0; i < bounds.size() - 1; ++i) {
+            final boolean last = (i == bounds.size() - 2);
+            ranges.add(new SplitRange(bounds.get(i), true, bounds.get(i + 1), last, i == 0));
+        }
+
+        logger.info("Split {} on {} into {} ranges with min {} max {}", tableName, splitField, ranges.size(), min, max);
+        return ranges;
+    }
+
+    /**
+     * Splits an incremental load into ranges of the date field. The ranges cover the same period as {@link #selectIncremental}.
+     *
+     * @param overlapTime  the number of seconds to overlap with the last load status
+     * @param lastLoadDate the last batch load date
+     * @param splitCount   the maximum number of ranges
+     * @return the ranges covering the load period, or an empty list if there is nothing to load
+     */
+    public static List<SplitRange> splitIncremental(int overlapTime, Date lastLoadDate, int backoffTime, UnitSizes unit, int splitCount) {
+        final Date now = new Date(DateTimeUtils.currentTimeMillis());
+        DateRange range = new DateRange(lastLoadDate, now, overlapTime, backoffTime, unit);
+
+        logger.info("Load range with min {} max {}", range.getMinDate(), range.getMaxDate());
+        if (!range.getMinDate().before(range.getMaxDate())) {
+            return Collections.emptyList();
+        }
+
+        final List<Object> bounds = splitBounds(range.getMinDate(), range.getMaxDate(), splitCount);
+        final List<SplitRange> ranges = new ArrayList<>(bounds.size() - 1);
+        for (int i = 0; i < bounds.size() - 1; ++i) {
+            ranges.add(new SplitRange(bounds.get(i), i != 0, bounds.get(i + 1), false, false));
+        }
+        return ranges;
+    }
+
+    /**
+     * Selects the rows of the specified range.
+     *
+     * @param tableName  the table
+     * @param splitField the name of the field the table was split on
+     * @param range      the range of the split field
+     */
+    public ResultSet selectRange(String tableName, String[] selectFields, String splitField, SplitRange range) throws SQLException {
+        final List<String> conditions = new ArrayList<>(2);
+        final List<Object> params = new ArrayList<>(2);
+        if (range.getLower() != null) {
+            conditions.add("tbl." + splitField + (range.isLowerInclusive() ? " >= ?" : " > ?"));
+            params.add(range.getLower());
+        }
+        if (range.getUpper() != null) {
+            conditions.add("tbl." + splitField + (range.isUpperInclusive() ? " <= ?" : " < ?"));
+            params.add(range.getUpper());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("select ").append(selectStatement(selectFields, "tbl")).append(" from ").append(tableName).append(" tbl");
+        if (!conditions.isEmpty()) {
+            sb.append(" WHERE ");
+            if (range.isNullIncluded()) {
+                sb.append("(").append(StringUtils.join(conditions, " and ")).append(") or tbl.").append(splitField).append(" is null");
+            } else {
+                sb.append(StringUtils.join(conditions, " and "));
+            }
+        }
+
+        PreparedStatement ps = conn.prepareStatement(sb.toString());
+        ps.setQueryTimeout(timeout);
+        setFetchSize(ps);
+        for (int i = 0; i < params.size(); ++i) {
+            if (params.get(i) instanceof Date) {
+                ps.setTimestamp(i + 1, new Timestamp(((Date) params.get(i)).getTime()));
+            } else {
+                ps.setObject(i + 1, params.get(i));
+            }
+        }
+
+        logger.info("Executing range GetTableData query {} for {}", ps, range);
+        return ps.executeQuery();
+    }
+
+    private void setFetchSize(Statement st) throws SQLException {
+        if (fetchSize > 0) {
+            st.setFetchSize(fetchSize);
+        }
+    }
+
+    /**
+     * Divides the values between {@code min} and {@code max} into equal ranges. Integral values are split on whole numbers so that the ranges do not overlap.
+     *
+     * @return the distinct bounds of the ranges, starting with {@code min} and ending with {@code max}
+     */
+    protected static List<Object> splitBounds(Object min, Object max, int splitCount) {
+        final boolean date = (min instanceof Date && max instanceof Date);
+        final boolean integral = date || (isIntegral(min) && isIntegral(max));
+        final BigDecimal lower = toDecimal(min);
+        final BigDecimal width = toDecimal(max).subtract(lower);
+
+        final List<Object> bounds = new ArrayList<>(splitCount + 1);
+        bounds.add(min);
+        for (int i = 1; i < splitCount; ++i) {
+            BigDecimal bound = lower.add(width.multiply(BigDecimal.valueOf(i)).divide(BigDecimal.valueOf(splitCount), 10, RoundingMode.FLOOR));
+            Object value;
+            if (date) {
+                value = new Date(bound.longValue());
+            } else if (integral) {
+                value = bound.setScale(0, RoundingMode.FLOOR).longValue();
+            } else {
+                value = bound;
+            }
+            if (toDecimal(value).compareTo(toDecimal(bounds.get(bounds.size() - 1))) > 0 && toDecimal(value).compareTo(toDecimal(max)) < 0) {
+                bounds.add(value);
+            }
+        }
+        bounds.add(max);
+        return bounds;
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long || value instanceof BigInteger
+               || (value instanceof BigDecimal && ((BigDecimal) value).scale() <= 0);
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        if (value instanceof Date) {
+            return BigDecimal.valueOf(((Date) value).getTime());
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).stripTrailingZeros();
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        } else if (value instanceof Number) {
+            return new BigDecimal(value.toString()).stripTrailingZeros();
+        } else {
+            throw new IllegalArgumentException("Split field must be a numeric or date type but found: " + (value != null ? value.getClass().getName() : null));
+        }
+    }
+
     /**
      * Output format for table rows.
      */
@@ -191,5 +377,52 @@ public class GetTableDataSupport {
 
     }
 
+    /**
+     * A range of values of the field a table is split on. A {@code null} bound is unbounded.
+     */
+    public static class SplitRange {
+
+        private final Object lower;
+        private final boolean lowerInclusive;
+        private final Object upper;
+        private final boolean upperInclusive;
+        private final boolean nullIncluded;
+
+        public SplitRange(Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive, boolean nullIncluded) {
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+            this.nullIncluded = nullIncluded;
+        }
+
+        public Object getLower() {
+            return lower;
+        }
+
+        public boolean isLowerInclusive() {
+            return lowerInclusive;
+        }
+
+        public Object getUpper() {
+            return upper;
+        }
+
+        public boolean isUpperInclusive() {
+            return upperInclusive;
+        }
+
+        /**
+         * Indicates that rows with a {@code null} value are included in this range
+         */
+        public boolean isNullIncluded() {
+            return nullIncluded;
+        }
+
+        public String toString() {
+            return (lowerInclusive ? "[" : "(") + lower + ", " + upper + (upperInclusive ? "]" : ")") + (nullIncluded ? " or null" : "");
+        }
+    }
+
 
 }
@@ -35,8 +35,11 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 import java.util.stream.Collectors;
 
@@ -53,6 +56,11 @@ public class TableMergeSyncSupport implements Serializable {
     
     private static final Logger logger = LoggerFactory.getLogger(TableMergeSyncSupport.class);
 
+    /**
+     * Name Hive uses for the partition of null and empty values
+     */
+    private static final String HIVE_DEFAULT_PARTITION = "__HIVE_DEFAULT_PARTITION__";
+
     protected Connection conn;
 
     public TableMergeSyncSupport(Connection conn) {
@@ -241,8 +249,12 @@ public class TableMergeSyncSupport implements Serializable {
         } else {
             if (shouldDedupe) {
                 batches = createPartitionBatches(partitionSpec, sourceSchema, sourceTable, feedPartitionValue);
+                // Rows in new partitions cannot duplicate existing rows so the target doesn't need to be rewritten
+                if (isPartitionDisjoint(targetSchema, targetTable, batches)) {
+                    sql = generateMergeWithDedupeDisjointPartitionQuery(selectFields, partitionSpec, sourceSchema, sourceTable, targetSchema, targetTable, feedPartitionValue);
+                }
                 // Newer tables with processing_dttm in target will always be unique so requires additional handling
-                if (hasProcessingDttm(selectFields)) {
+                else if (hasProcessingDttm(selectFields)) {
                     sql = generateMergeWithDedupePartitionQuery(selectFields, partitionSpec, batches, sourceSchema, sourceTable, targetSchema, targetTable, feedPartitionValue);
                 } else {
                     sql = generateMergeWithDedupePartitionQueryNoProcessingDttm(selectFields, partitionSpec, batches, sourceSchema, sourceTable, targetSchema, targetTable, feedPartitionValue);
@@ -408,6 +420,28 @@ public class TableMergeSyncSupport implements Serializable {
                " where processing_dttm = " + HiveUtils.quoteString(feedPartitionValue);
     }
 
+    /**
+     * Generates a merge query for appending distinct records from a source table into target table partitions that do not exist yet.
+     *
+     * @param selectFields       the list of fields in the select clause of the source table
+     * @param spec               the partition specification
+     * @param sourceSchema       the schema or database name of the source table
+     * @param sourceTable        the source table name
+     * @param targetSchema       the schema or database name of the target table
+     * @param targetTable        the target table name
+     * @param feedPartitionValue the source processing partition value
+     * @return the sql string
+     */
+    protected String generateMergeWithDedupeDisjointPartitionQuery(@Nonnull final String[] selectFields, @Nonnull final PartitionSpec spec, @Nonnull final String sourceSchema,
+                                                                   @Nonnull final String sourceTable, @Nonnull final String targetSchema, @Nonnull final String targetTable,
+                                                                   @Nonnull final String feedPartitionValue) {
+        final String selectSQL = StringUtils.join(selectFields, ",");
+        return "insert into table " + HiveUtils.quoteIdentifier(targetSchema, targetTable) + " " + spec.toDynamicPartitionSpec() +
+               " select distinct " + selectSQL + "," + spec.toDynamicSelectSQLSpec() +
+               " from " + HiveUtils.quoteIdentifier(sourceSchema, sourceTable) + " " +
+               " where processing_dttm = " + HiveUtils.quoteString(feedPartitionValue);
+    }
+
     /**
      * Produces a where clause that limits to the impacted partitions of the target table
      *
@@ -672,6 +706,11 @@ public class TableMergeSyncSupport implements Serializable {
         String anyPK = primaryKeys[0];
 
         List<PartitionBatch> batches = createPartitionBatchesforPKMerge(partitionSpec, sourceSchema, sourceTable, targetSchema, targetTable, feedPartitionValue, joinOnClause);
+
+        // No existing record matches a primary key so the source records can be appended without rewriting the target
+        if (batches.isEmpty()) {
+            return generateMergeWithPartitionQuery(selectFields, partitionSpec, sourceSchema, sourceTable, targetSchema, targetTable, feedPartitionValue);
+        }
         String targetPartitionWhereClause = targetPartitionsWhereClause(PartitionBatch.toPartitionBatchesForAlias(batches, "a"), false);
 
         // TODO: If the records matching the primary key between the source and target are in a different partition
@@ -804,6 +843,73 @@ public class TableMergeSyncSupport implements Serializable {
         return v;
     }
 
+    /**
+     * Determines if none of the specified partitions exist in the target table.
+     *
+     * @param targetSchema the schema or database name of the target table
+     * @param targetTable  the target table name
+     * @param batches      the partitions of the source table
+     * @return {@code true} if all partitions are new, or {@code false} otherwise
+     */
+    protected boolean isPartitionDisjoint(@Nonnull final String targetSchema, @Nonnull final String targetTable, @Nonnull final List<PartitionBatch> batches) {
+        final Set<List<String>> targetPartitions = resolveTablePartitions(targetSchema, targetTable);
+        for (PartitionBatch batch : batches) {
+            // Partition values may be followed by the record count
+            final int keyCount = batch.getPartitionSpec().getKeyNames().size();
+            if (targetPartitions.contains(Arrays.asList(batch.getPartitionValues()).subList(0, keyCount))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the partitions of the specified table.
+     *
+     * @param schema the database name
+     * @param table  the table name
+     * @return the values of each partition in the order of the partition keys
+     */
+    protected Set<List<String>> resolveTablePartitions(@Nonnull final String schema, @Nonnull final String table) {
+        final Set<List<String>> partitions = new HashSet<>();
+        final String sql = "show partitions " + HiveUtils.quoteIdentifier(schema, table);
+        try (final Statement st = conn.createStatement()) {
+            ResultSet rs = doSelectSQL(st, sql);
+            while (rs.next()) {
+                // Partition names are in the form key1=value1/key2=value2 with special characters escaped
+                List<String> values = new ArrayList<>();
+                for (String part : rs.getString(1).split("/")) {
+                    String value = unescapePartitionValue(StringUtils.substringAfter(part, "="));
+                    values.add(HIVE_DEFAULT_PARTITION.equals(value) ? "" : value);
+                }
+                partitions.add(values);
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to select partitions SQL {} with error {}", sql, e);
+            throw new RuntimeException("Failed to select partitions", e);
+        }
+        return partitions;
+    }
+
+    /**
+     * Reverses the escaping of special characters in a partition value.
+     */
+    private String unescapePartitionValue(@Nonnull final String value) {
+        final StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            int high = (c == '%' && i + 2 < value.length()) ? Character.digit(value.charAt(i + 1), 16) : -1;
+            int low = (high >= 0) ? Character.digit(value.charAt(i + 2), 16) : -1;
+            if (low >= 0) {
+                sb.append((char) ((high << 4) | low));
+                i += 2;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
     /**
      * Returns the list of columns that are common to both the source and target tables.
      *
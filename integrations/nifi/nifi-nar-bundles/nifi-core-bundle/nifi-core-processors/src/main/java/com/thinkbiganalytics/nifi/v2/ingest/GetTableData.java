@@ -20,6 +20,7 @@ package com.thinkbiganalytics.nifi.v2.ingest;
  * #L%
  */
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.thinkbiganalytics.ingest.GetTableDataSupport;
 import com.thinkbiganalytics.nifi.core.api.metadata.MetadataProviderService;
 import com.thinkbiganalytics.nifi.processor.AbstractNiFiProcessor;
@@ -38,6 +39,8 @@ import org.apache.nifi.annotation.behavior.WritesAttribute;
 import org.apache.nifi.annotation.behavior.WritesAttributes;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.PropertyValue;
 import org.apache.nifi.components.Validator;
@@ -52,21 +55,33 @@ import org.apache.nifi.processor.io.OutputStreamCallback;
 import org.apache.nifi.processor.util.StandardValidators;
 import org.apache.nifi.util.StopWatch;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -84,7 +99,10 @@ import static com.thinkbiganalytics.nifi.v2.ingest.IngestProperties.REL_SUCCESS;
     "Extracts data from a JDBC source table and can optional extract incremental data if provided criteria. Query result will be converted to a delimited format, or to Avro if specified. Streaming is used so arbitrarily large result sets are supported. This processor can be scheduled to run on a timer, or cron expression, using the standard scheduling methods, or it can be triggered by an incoming FlowFile. If it is triggered by an incoming FlowFile, then attributes of that FlowFile will be available when evaluating the select query. FlowFile attribute \'source.row.count\' indicates how many rows were selected.")
 @WritesAttributes({
         @WritesAttribute(attribute = "db.table.output.format", description = "Output format for database table ingested"),
-        @WritesAttribute(attribute = "db.table.avro.schema", description = "Avro schema for the database table ingested")
+        @WritesAttribute(attribute = "db.table.avro.schema", description = "Avro schema for the database table ingested"),
+        @WritesAttribute(attribute = "fragment.identifier", description = "When the extraction is split, all chunks produced from the same extraction will have the same randomly generated UUID"),
+        @WritesAttribute(attribute = "fragment.index", description = "When the extraction is split, the position of the chunk in the ordered list of ranges"),
+        @WritesAttribute(attribute = "fragment.count", description = "When the extraction is split, the number of chunks produced from the same extraction")
     })
 
 // Implements strategies outlined by https://thebibackend.wordpress.com/2011/05/18/incremental-load-part-i-overview/
@@ -94,6 +112,9 @@ public class GetTableData extends AbstractNiFiProcessor {
     public static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ISO_DATE_TIME;
     public static final String RESULT_ROW_COUNT = "source.row.count";
     public static final String EMPTY_STRING = "";
+    public static final String FRAGMENT_ID = "fragment.identifier";
+    public static final String FRAGMENT_INDEX = "fragment.index";
+    public static final String FRAGMENT_COUNT = "fragment.count";
 
     public static final Relationship REL_NO_DATA = new Relationship.Builder()
         .name("nodata")
@@ -196,7 +217,42 @@ public class GetTableData extends AbstractNiFiProcessor {
         .defaultValue(",")
         .expressionLanguageSupported(true)
         .build();
+    public static final PropertyDescriptor SPLIT_FIELD = new PropertyDescriptor.Builder()
+        .name("Split Field")
+        .description("Numeric or date source field used to split a full load into ranges when the Split Count is greater than 1. Incremental loads are split on the Date Field.")
+        .required(false)
+        .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+        .expressionLanguageSupported(true)
+        .build();
+    public static final PropertyDescriptor SPLIT_COUNT = new PropertyDescriptor.Builder()
+        .name("Split Count")
+        .description("Number of ranges to extract concurrently. Each range is selected on its own connection from the Source Database Connection pool and written to its own flow file, "
+                     + "ordered by the fragment.index attribute. A value of 1 extracts the table with a single query.")
+        .required(true)
+        .defaultValue("1")
+        .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+        .build();
+    public static final PropertyDescriptor FETCH_SIZE = new PropertyDescriptor.Builder()
+        .name("Fetch Size")
+        .description("Number of rows the JDBC driver should fetch from the database at a time, zero uses the driver's default.")
+        .required(true)
+        .defaultValue("0")
+        .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+        .build();
+    public static final PropertyDescriptor MAX_CONCURRENT_RANGES = new PropertyDescriptor.Builder()
+        .name("Max Concurrent Ranges")
+        .description("Maximum number of ranges selected at the same time, shared by all tasks of this processor. Each range holds a connection from the Source Database Connection pool "
+                     + "while it is selected, so this should not be more than the Max Total Connections of the pool. The remaining ranges wait for a connection to be released.")
+        .required(true)
+        .defaultValue("8")
+        .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+        .build();
     private final Set<Relationship> relationships;
+
+    /**
+     * Selects the ranges of a split extraction
+     */
+    private ExecutorService rangeExecutor;
     private final List<PropertyDescriptor> propDescriptors;
 
     public GetTableData() {
@@ -222,6 +278,10 @@ public class GetTableData extends AbstractNiFiProcessor {
         pds.add(UNIT_SIZE);
         pds.add(OUTPUT_TYPE);
         pds.add(OUTPUT_DELIMITER);
+        pds.add(SPLIT_FIELD);
+        pds.add(SPLIT_COUNT);
+        pds.add(FETCH_SIZE);
+        pds.add(MAX_CONCURRENT_RANGES);
         this.propDescriptors = Collections.unmodifiableList(pds);
     }
 
@@ -258,6 +318,31 @@ public class GetTableData extends AbstractNiFiProcessor {
         return propDescriptors;
     }
 
+    /**
+     * Starts the thread pool for selecting the ranges of a split extraction.
+     *
+     * @param context the process context
+     */
+    @OnScheduled
+    public void startRangeExecutor(final ProcessContext context) {
+        final int splitCount = context.getProperty(SPLIT_COUNT).asInteger();
+        if (splitCount > 1) {
+            final int threads = Math.min(splitCount, context.getProperty(MAX_CONCURRENT_RANGES).asInteger());
+            rangeExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("GetTableData-" + getIdentifier() + "-%d").build());
+        }
+    }
+
+    /**
+     * Stops the thread pool for selecting the ranges of a split extraction.
+     */
+    @OnStopped
+    public void stopRangeExecutor() {
+        if (rangeExecutor != null) {
+            rangeExecutor.shutdownNow();
+            rangeExecutor = null;
+        }
+    }
+
     @Override
     public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
         FlowFile flowFile = null;
@@ -290,6 +375,8 @@ public class GetTableData extends AbstractNiFiProcessor {
         final String outputType = context.getProperty(OUTPUT_TYPE).getValue();
         String outputDelimiter = context.getProperty(OUTPUT_DELIMITER).evaluateAttributeExpressions(incoming).getValue();
         final String delimiter = StringUtils.isBlank(outputDelimiter) ? "," : outputDelimiter;
+        final int splitCount = context.getProperty(SPLIT_COUNT).asInteger();
+        final int fetchSize = context.getProperty(FETCH_SIZE).asInteger();
 
         final PropertyValue waterMarkPropName = context.getProperty(HIGH_WATER_MARK_PROP).evaluateAttributeExpressions(incoming);
 
@@ -298,6 +385,35 @@ public class GetTableData extends AbstractNiFiProcessor {
         final LoadStrategy strategy = LoadStrategy.valueOf(loadStrategy);
         final StopWatch stopWatch = new StopWatch(true);
 
+        if (splitCount > 1) {
+            final String splitField = (strategy == LoadStrategy.INCREMENTAL) ? dateField : context.getProperty(SPLIT_FIELD).evaluateAttributeExpressions(incoming).getValue();
+            final RangeQuery query = new RangeQuery(dbcpService, tableName, selectFields, splitField, queryTimeout, fetchSize, outputType, delimiter);
+            try {
+                final List<GetTableDataSupport.SplitRange> ranges;
+                Date lastLoadDate = null;
+                if (strategy == LoadStrategy.INCREMENTAL) {
+                    lastLoadDate = toDate(LocalDateTime.parse(getIncrementalWaterMarkValue(incoming, waterMarkPropName), DATE_TIME_FORMAT));
+                    ranges = GetTableDataSupport.splitIncremental(overlapTime, lastLoadDate, backoffTime, GetTableDataSupport.UnitSizes.valueOf(unitSize), splitCount);
+                } else {
+                    if (StringUtils.isEmpty(splitField)) {
+                        throw new IllegalArgumentException("The processor is configured with a Split Count greater than 1 but the property 'Split Field' does not have a value");
+                    }
+                    try (final Connection conn = dbcpService.getConnection()) {
+                        ranges = new GetTableDataSupport(conn, queryTimeout).splitFullLoad(tableName, splitField, splitCount);
+                    }
+                }
+                transferRanges(session, incoming, query, ranges, lastLoadDate, waterMarkPropName, feedName, stopWatch);
+            } catch (final Exception e) {
+                if (incoming == null) {
+                    logger.error("Unable to execute SQL select from table due to {}. No incoming flow file to route to failure", new Object[]{e});
+                } else {
+                    logger.error("Unable to execute SQL select from table due to {}; routing to failure", new Object[]{incoming, e});
+                    session.transfer(incoming, REL_FAILURE);
+                }
+            }
+            return;
+        }
+
         try (final Connection conn = dbcpService.getConnection()) {
 
             FlowFile outgoing = (incoming == null ? session.create() : incoming);
@@ -310,7 +426,7 @@ public class GetTableData extends AbstractNiFiProcessor {
                 public void process(final OutputStream out) throws IOException {
                     ResultSet rs = null;
                     try {
-                        GetTableDataSupport support = new GetTableDataSupport(conn, queryTimeout);
+                        GetTableDataSupport support = new GetTableDataSupport(conn, queryTimeout, fetchSize);
                         if (strategy == LoadStrategy.FULL_LOAD) {
                             rs = support.selectFullLoad(tableName, selectFields);
                         } else if (strategy == LoadStrategy.INCREMENTAL) {
@@ -334,16 +450,7 @@ public class GetTableData extends AbstractNiFiProcessor {
                     } catch (final SQLException e) {
                         throw new IOException("SQL execution failure", e);
                     } finally {
-                        if (rs != null) {
-                            try {
-                                if (rs.getStatement() != null) {
-                                    rs.getStatement().close();
-                                }
-                                rs.close();
-                            } catch (SQLException e) {
-                                getLog().error("Error closing sql statement and resultset");
-                            }
-                        }
+                        close(rs);
                     }
                 }
             });
@@ -387,6 +494,116 @@ public class GetTableData extends AbstractNiFiProcessor {
         }
     }
 
+    /**
+     * Extracts the ranges concurrently and transfers each range as a flow file, in order. The incoming flow file, if any, is replaced by the chunks.
+     */
+    private void transferRanges(ProcessSession session, FlowFile incoming, RangeQuery query, List<GetTableDataSupport.SplitRange> ranges, Date lastLoadDate, PropertyValue waterMarkPropName,
+                                String feedName, StopWatch stopWatch) throws Exception {
+        final ComponentLog logger = getLog();
+        final List<RangeExtract> extracts = new ArrayList<>(ranges.size());
+        final List<FlowFile> chunks = new ArrayList<>(ranges.size());
+
+        try {
+            for (GetTableDataSupport.SplitRange range : ranges) {
+                extracts.add(new RangeExtract(query, range, Files.createTempFile("kylo-gettabledata-", ".tmp"),
+                                              (lastLoadDate != null) ? new LastFieldVisitor(query.splitField, lastLoadDate) : null));
+            }
+
+            // Run the range queries on pooled connections, at most Max Concurrent Ranges at a time
+            if (!extracts.isEmpty()) {
+                final ExecutorService executor = rangeExecutor;
+                if (executor == null) {
+                    throw new IllegalStateException("The processor is not scheduled");
+                }
+                final List<Future<Long>> futures = executor.invokeAll(extracts);
+                for (Future<Long> future : futures) {
+                    try {
+                        future.get();
+                    } catch (final ExecutionException e) {
+                        throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                    }
+                }
+            }
+
+            // Import chunks in range order
+            final String fragmentId = UUID.randomUUID().toString();
+            long nrOfRows = 0;
+            Date lastModifyDate = lastLoadDate;
+            for (int i = 0; i < extracts.size(); ++i) {
+                final RangeExtract extract = extracts.get(i);
+                nrOfRows += extract.nrOfRows;
+                if (extract.visitor != null && extract.visitor.getLastModifyDate().after(lastModifyDate)) {
+                    lastModifyDate = extract.visitor.getLastModifyDate();
+                }
+
+                chunks.add((incoming == null) ? session.create() : session.create(incoming));
+                chunks.set(i, session.importFrom(extract.file, false, chunks.get(i)));
+
+                final Map<String, String> attributes = new HashMap<>();
+                attributes.put(RESULT_ROW_COUNT, Long.toString(extract.nrOfRows));
+                attributes.put(ComponentAttributes.NUM_SOURCE_RECORDS.key(), Long.toString(extract.nrOfRows));
+                attributes.put("db.table.output.format", query.outputType);
+                attributes.put("db.table.avro.schema", (extract.schema != null) ? JdbcCommon.getAvroSchemaForFeedSetup(extract.schema) : EMPTY_STRING);
+                attributes.put(FRAGMENT_ID, fragmentId);
+                attributes.put(FRAGMENT_INDEX, Integer.toString(i));
+                attributes.put(FRAGMENT_COUNT, Integer.toString(extracts.size()));
+                chunks.set(i, session.putAllAttributes(chunks.get(i), attributes));
+
+                session.getProvenanceReporter().modifyContent(chunks.get(i), "Retrieved " + extract.nrOfRows + " rows for range " + extract.range, stopWatch.getElapsed(TimeUnit.MILLISECONDS));
+            }
+
+            if (nrOfRows == 0L) {
+                FlowFile outgoing;
+                if (chunks.isEmpty()) {
+                    outgoing = (incoming == null) ? session.create() : session.create(incoming);
+                    outgoing = session.putAttribute(outgoing, RESULT_ROW_COUNT, "0");
+                    outgoing = session.putAttribute(outgoing, ComponentAttributes.NUM_SOURCE_RECORDS.key(), "0");
+                } else {
+                    outgoing = chunks.get(0);
+                    session.remove(chunks.subList(1, chunks.size()));
+                }
+                logger.info("{} contains no data; transferring to 'nodata'", new Object[]{outgoing});
+                session.transfer(outgoing, REL_NO_DATA);
+            } else {
+                logger.info("{} contains {} records in {} chunks; transferring to 'success'", new Object[]{incoming, nrOfRows, chunks.size()});
+
+                if (lastLoadDate != null) {
+                    String newWaterMarkStr = format(lastModifyDate);
+                    for (int i = 0; i < chunks.size(); ++i) {
+                        chunks.set(i, setIncrementalWaterMarkValue(session, chunks.get(i), waterMarkPropName, newWaterMarkStr));
+                    }
+
+                    logger.info("Recorded load status feed {} date {}", new Object[]{feedName, newWaterMarkStr});
+                }
+                session.transfer(chunks, REL_SUCCESS);
+            }
+
+            if (incoming != null) {
+                session.remove(incoming);
+            }
+        } catch (final Exception e) {
+            session.remove(chunks);
+            throw e;
+        } finally {
+            for (RangeExtract extract : extracts) {
+                extract.deleteFile();
+            }
+        }
+    }
+
+    private void close(ResultSet rs) {
+        if (rs != null) {
+            try {
+                if (rs.getStatement() != null) {
+                    rs.getStatement().close();
+                }
+                rs.close();
+            } catch (SQLException e) {
+                getLog().error("Error closing sql statement and resultset");
+            }
+        }
+    }
+
     private String getIncrementalWaterMarkValue(FlowFile ff, PropertyValue waterMarkPropName) {
         if (!waterMarkPropName.isSet()) {
             // TODO validate when scheduled?
@@ -399,7 +616,7 @@ public class GetTableData extends AbstractNiFiProcessor {
                 throw new IllegalArgumentException("The processor is configured for incremental load but the "
                                                    + "property 'High-Water Mark Value Property Name' does not have a value");
             } else {
-                String value = ff.getAttribute(propName);
+                String value = (ff != null) ? ff.getAttribute(propName) : null;
 
                 // This can happen if the feed does not have an initial water mark, and the water mark
                 // load processor was not configure with a default value.  In this case default to the epoch.
@@ -439,6 +656,87 @@ public class GetTableData extends AbstractNiFiProcessor {
         }
     }
 
+    /**
+     * Settings shared by the queries of a split extraction
+     */
+    private static class RangeQuery {
+
+        final DBCPService dbcpService;
+        final String tableName;
+        final String[] selectFields;
+        final String splitField;
+        final int queryTimeout;
+        final int fetchSize;
+        final String outputType;
+        final String delimiter;
+
+        RangeQuery(DBCPService dbcpService, String tableName, String[] selectFields, String splitField, int queryTimeout, int fetchSize, String outputType, String delimiter) {
+            this.dbcpService = dbcpService;
+            this.tableName = tableName;
+            this.selectFields = selectFields;
+            this.splitField = splitField;
+            this.queryTimeout = queryTimeout;
+            this.fetchSize = fetchSize;
+            this.outputType = outputType;
+            this.delimiter = delimiter;
+        }
+    }
+
+    /**
+     * Selects one range of a split extraction into a local file
+     */
+    private class RangeExtract implements Callable<Long> {
+
+        final RangeQuery query;
+        final GetTableDataSupport.SplitRange range;
+        final Path file;
+        final LastFieldVisitor visitor;
+        long nrOfRows;
+        Schema schema;
+
+        RangeExtract(RangeQuery query, GetTableDataSupport.SplitRange range, Path file, LastFieldVisitor visitor) {
+            this.query = query;
+            this.range = range;
+            this.file = file;
+            this.visitor = visitor;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            boolean success = false;
+            try (final Connection conn = query.dbcpService.getConnection();
+                 final ResultSet rs = new GetTableDataSupport(conn, query.queryTimeout, query.fetchSize).selectRange(query.tableName, query.selectFields, query.splitField, range);
+                 final Statement statement = rs.getStatement();
+                 final OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                if (GetTableDataSupport.OutputType.DELIMITED.equals(GetTableDataSupport.OutputType.valueOf(query.outputType))) {
+                    nrOfRows = JdbcCommon.convertToDelimitedStream(rs, out, visitor, query.delimiter);
+                } else if (GetTableDataSupport.OutputType.AVRO.equals(GetTableDataSupport.OutputType.valueOf(query.outputType))) {
+                    schema = JdbcCommon.createSchema(rs);
+                    nrOfRows = JdbcCommon.convertToAvroStream(rs, out, visitor, schema);
+                } else {
+                    throw new RuntimeException("Unsupported output format type [" + query.outputType + "]");
+                }
+                success = true;
+                return nrOfRows;
+            } finally {
+                if (!success) {
+                    deleteFile();
+                }
+            }
+        }
+
+        /**
+         * Deletes the local file of this range.  Failures are logged so the files of the other ranges are still deleted
+         */
+        void deleteFile() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (final IOException e) {
+                getLog().warn("Unable to delete the temporary file {} for range {}", new Object[]{file, range, e});
+            }
+        }
+    }
+
     /**
      * Track the max date we read
      */
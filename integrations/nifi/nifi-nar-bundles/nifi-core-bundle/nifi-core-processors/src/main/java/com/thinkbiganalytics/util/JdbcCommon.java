@@ -32,20 +32,20 @@ import org.apache.avro.io.DatumWriter;
 import org.apache.commons.lang3.CharUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.text.translate.CharSequenceTranslator;
-import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -91,6 +91,21 @@ public class JdbcCommon {
 
     private static final Logger log = LoggerFactory.getLogger(JdbcCommon.class);
 
+    /**
+     * Formats date and timestamp values
+     */
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = ISODateTimeFormat.dateTime().withZoneUTC();
+
+    /**
+     * Formats time values
+     */
+    private static final DateTimeFormatter TIME_FORMATTER = ISODateTimeFormat.time().withZoneUTC();
+
+    /**
+     * Size of the buffer for encoding delimited text
+     */
+    private static final int WRITER_BUFFER_SIZE = 64 * 1024;
+
     /**
      * Converts the specified SQL result set to a delimited text file written to the specified output stream.
      *
@@ -110,85 +125,78 @@ public class JdbcCommon {
             log.warn("Received empty resultset or no metadata.");
             return 0;
         }
-        OutputStreamWriter writer = new OutputStreamWriter(outStream);
-        final ResultSetMetaData meta = rs.getMetaData();
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(outStream, StandardCharsets.UTF_8), WRITER_BUFFER_SIZE);
+        final ColumnReader[] columns = createColumnReaders(rs.getMetaData());
         final DelimiterEscaper escaper = new DelimiterEscaper(delimiter);
 
         // Write header
-        final int nrOfColumns = meta.getColumnCount();
-        StringBuffer sb = new StringBuffer();
-        for (int i = 1; i <= nrOfColumns; i++) {
-            String columnName = meta.getColumnName(i);
-            sb.append(escaper.translate(columnName));
-            if (i != nrOfColumns) {
-                sb.append(delimiter);
-            } else {
-                sb.append("\n");
+        for (int i = 0; i < columns.length; i++) {
+            if (i != 0) {
+                writer.write(delimiter);
             }
+            escaper.write(columns[i].name, writer);
         }
-        writer.append(sb.toString());
+        writer.write('\n');
+
         long nrOfRows = 0;
         while (rs.next()) {
             if (visitor != null) {
                 visitor.visitRow(rs);
             }
-            sb = new StringBuffer();
             nrOfRows++;
-            for (int i = 1; i <= nrOfColumns; i++) {
+            for (final ColumnReader column : columns) {
                 String val = null;
 
-                int colType = meta.getColumnType(i);
-                if (colType == Types.DATE || colType == Types.TIMESTAMP) {
+                if (column.index != 1) {
+                    writer.write(delimiter);
+                }
+                if (column.sqlType == Types.DATE || column.sqlType == Types.TIMESTAMP) {
                     Timestamp sqlDate = null;
                     try {
                         // Extract timestamp
-                        sqlDate = extractSqlDate(rs, i);
+                        sqlDate = extractSqlDate(rs, column.index);
                     } catch (Exception e) {
                         // Still failed, maybe exotic date type
                         if (dateConversionWarning++ < 10) {
-                            log.warn("{} is not convertible to timestamp or date", rs.getMetaData().getColumnName(i));
+                            log.warn("{} is not convertible to timestamp or date", column.name);
                         }
                     }
 
                     if (visitor != null) {
-                        visitor.visitColumn(rs.getMetaData().getColumnName(i), colType, sqlDate);
+                        visitor.visitColumn(column.name, column.sqlType, sqlDate);
                     }
                     if (sqlDate != null) {
-                        DateTimeFormatter formatter = ISODateTimeFormat.dateTime().withZoneUTC();
-                        val = formatter.print(new DateTime(sqlDate.getTime()));
+                        val = DATE_TIME_FORMATTER.print(sqlDate.getTime());
                     }
-                } else if (colType == Types.TIME) {
-                    Time time = rs.getTime(i);
+                } else if (column.sqlType == Types.TIME) {
+                    Time time = rs.getTime(column.index);
                     if (visitor != null) {
-                        visitor.visitColumn(rs.getMetaData().getColumnName(i), colType, time);
+                        visitor.visitColumn(column.name, column.sqlType, time);
                     }
                     if (time != null) {
-                        DateTimeFormatter formatter = ISODateTimeFormat.time().withZoneUTC();
-                        val = formatter.print(new DateTime(time.getTime()));
+                        val = TIME_FORMATTER.print(time.getTime());
                     }
-                } else if (colType == Types.BLOB) {
-                    byte[] bytes = rs.getBytes(i);
+                } else if (column.sqlType == Types.BLOB) {
+                    byte[] bytes = rs.getBytes(column.index);
 
-                    if (bytes != null)
-                        val = rs.getBytes(i).toString();
+                    if (bytes != null) {
+                        val = bytes.toString();
+                    }
 
                     if (visitor != null) {
-                        visitor.visitColumn(rs.getMetaData().getColumnName(i), colType, val);
+                        visitor.visitColumn(column.name, column.sqlType, val);
                     }
                 } else {
-                    val = rs.getString(i);
+                    val = rs.getString(column.index);
                     if (visitor != null) {
-                        visitor.visitColumn(rs.getMetaData().getColumnName(i), colType, val);
+                        visitor.visitColumn(column.name, column.sqlType, val);
                     }
                 }
-                sb.append((val == null ? "" : escaper.translate(val)));
-                if (i != nrOfColumns) {
-                    sb.append(delimiter);
-                } else {
-                    sb.append("\n");
+                if (val != null) {
+                    escaper.write(val, writer);
                 }
             }
-            writer.append(sb.toString());
+            writer.write('\n');
         }
         writer.flush();
         return nrOfRows;
@@ -218,90 +226,104 @@ public class JdbcCommon {
     public static long convertToAvroStream(final ResultSet rs, final OutputStream outStream, final RowVisitor visitor, final Schema schema) throws SQLException, IOException {
         int dateConversionWarning = 0;
         final GenericRecord rec = new GenericData.Record(schema);
+        final ColumnReader[] columns = createColumnReaders(rs.getMetaData());
 
         final DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(schema);
         try (final DataFileWriter<GenericRecord> dataFileWriter = new DataFileWriter<>(datumWriter)) {
             dataFileWriter.create(schema, outStream);
 
-            final ResultSetMetaData meta = rs.getMetaData();
-            final int nrOfColumns = meta.getColumnCount();
             long nrOfRows = 0;
             while (rs.next()) {
                 if (visitor != null) {
                     visitor.visitRow(rs);
                 }
-                for (int i = 1; i <= nrOfColumns; i++) {
-                    final int javaSqlType = meta.getColumnType(i);
-                    final Object value = rs.getObject(i);
-
-                    if (value == null) {
-                        rec.put(i - 1, null);
-
-                    } else if (javaSqlType == BINARY || javaSqlType == VARBINARY || javaSqlType == LONGVARBINARY || javaSqlType == ARRAY || javaSqlType == BLOB || javaSqlType == CLOB) {
-                        // bytes requires little bit different handling
-                        byte[] bytes = rs.getBytes(i);
-                        ByteBuffer bb = ByteBuffer.wrap(bytes);
-                        rec.put(i - 1, bb);
-
-                    } else if (value instanceof Byte) {
-                        // tinyint(1) type is returned by JDBC driver as java.sql.Types.TINYINT
-                        // But value is returned by JDBC as java.lang.Byte
-                        // (at least H2 JDBC works this way)
-                        // direct put to avro record results:
-                        // org.apache.avro.AvroRuntimeException: Unknown datum type java.lang.Byte
-                        rec.put(i - 1, ((Byte) value).intValue());
-
-                    } else if (value instanceof BigDecimal || value instanceof BigInteger) {
-                        // Avro can't handle BigDecimal and BigInteger as numbers - it will throw an AvroRuntimeException such as: "Unknown datum type: java.math.BigDecimal: 38"
-                        rec.put(i - 1, value.toString());
-
-                    } else if (value instanceof Number || value instanceof Boolean) {
-                        rec.put(i - 1, value);
-
-                    } else if (value instanceof Date) {
-                        final DateTimeFormatter formatter = ISODateTimeFormat.dateTime().withZoneUTC();
-                        rec.put(i - 1, formatter.print(new DateTime(((Date) value).getTime())));
-
-                    } else if (value instanceof Time) {
-                        final DateTimeFormatter formatter = ISODateTimeFormat.time().withZoneUTC();
-                        rec.put(i - 1, formatter.print(new DateTime(((Time) value).getTime())));
-
-                    } else if (value instanceof Timestamp) {
-                        final DateTimeFormatter formatter = ISODateTimeFormat.dateTime().withZoneUTC();
-                        rec.put(i - 1, formatter.print(new DateTime(((Timestamp) value).getTime())));
+                for (final ColumnReader column : columns) {
+                    final int i = column.index;
+                    final Object value;
+                    java.util.Date dateValue = null;
+
+                    switch (column.avroType) {
+                        case STRING:
+                            value = rs.getString(i);
+                            break;
 
-                    } else {
-                        // The different types that we support are numbers (int, long, double, float),
-                        // as well as boolean values and Strings. Since Avro doesn't provide
-                        // timestamp types, we want to convert those to Strings. So we will cast anything other
-                        // than numbers or booleans to strings by using the toString() method.
-                        rec.put(i - 1, value.toString());
-                    }
+                        case BOOLEAN: {
+                            final boolean v = rs.getBoolean(i);
+                            value = rs.wasNull() ? null : v;
+                            break;
+                        }
 
-                    //notify the visitor
-                    if (javaSqlType == Types.DATE || javaSqlType == Types.TIMESTAMP) {
-                        Timestamp sqlDate = null;
-                        try {
-                            // Extract timestamp
-                            sqlDate = extractSqlDate(rs, i);
-
-                        } catch (Exception e) {
-                            if (dateConversionWarning++ < 10) {
-                                log.warn("{} is not convertible to timestamp or date", rs.getMetaData().getColumnName(i));
-                            }
+                        case INT: {
+                            final int v = rs.getInt(i);
+                            value = rs.wasNull() ? null : v;
+                            break;
                         }
 
-                        if (visitor != null) {
-                            visitor.visitColumn(rs.getMetaData().getColumnName(i), javaSqlType, sqlDate);
+                        case LONG: {
+                            final long v = rs.getLong(i);
+                            value = rs.wasNull() ? null : v;
+                            break;
                         }
-                    } else if (javaSqlType == Types.TIME) {
-                        Time time = rs.getTime(i);
-                        if (visitor != null) {
-                            visitor.visitColumn(rs.getMetaData().getColumnName(i), javaSqlType, time);
+
+                        case FLOAT: {
+                            final float v = rs.getFloat(i);
+                            value = rs.wasNull() ? null : v;
+                            break;
                         }
-                    } else {
-                        if (visitor != null) {
-                            visitor.visitColumn(rs.getMetaData().getColumnName(i), javaSqlType, (value != null) ? value.toString() : null);
+
+                        case DOUBLE: {
+                            final double v = rs.getDouble(i);
+                            value = rs.wasNull() ? null : v;
+                            break;
+                        }
+
+                        case DECIMAL: {
+                            // Avro can't handle BigDecimal as a number - it will throw an AvroRuntimeException such as: "Unknown datum type: java.math.BigDecimal: 38"
+                            final BigDecimal v = rs.getBigDecimal(i);
+                            value = (v != null) ? v.toString() : null;
+                            break;
+                        }
+
+                        case DATE_TIME:
+                            try {
+                                // Extract timestamp
+                                dateValue = extractSqlDate(rs, i);
+                            } catch (Exception e) {
+                                if (dateConversionWarning++ < 10) {
+                                    log.warn("{} is not convertible to timestamp or date", column.name);
+                                }
+                            }
+                            value = (dateValue != null) ? DATE_TIME_FORMATTER.print(dateValue.getTime()) : null;
+                            break;
+
+                        case TIME:
+                            dateValue = rs.getTime(i);
+                            value = (dateValue != null) ? TIME_FORMATTER.print(dateValue.getTime()) : null;
+                            break;
+
+                        case BYTES: {
+                            // bytes requires little bit different handling
+                            final byte[] v = rs.getBytes(i);
+                            value = (v != null) ? ByteBuffer.wrap(v) : null;
+                            break;
+                        }
+
+                        default: {
+                            // Types without a direct Avro type, such as ROWID, are converted to Strings by using the toString() method.
+                            final Object v = rs.getObject(i);
+                            value = (v != null) ? v.toString() : null;
+                        }
+                    }
+                    rec.put(i - 1, value);
+
+                    //notify the visitor
+                    if (visitor != null) {
+                        if (column.avroType == AvroType.DATE_TIME || column.avroType == AvroType.TIME) {
+                            visitor.visitColumn(column.name, column.sqlType, dateValue);
+                        } else if (value instanceof ByteBuffer) {
+                            visitor.visitColumn(column.name, column.sqlType, ((ByteBuffer) value).array().toString());
+                        } else {
+                            visitor.visitColumn(column.name, column.sqlType, (value != null) ? value.toString() : null);
                         }
                     }
                 }
@@ -313,6 +335,89 @@ public class JdbcCommon {
         }
     }
 
+    /**
+     * Determines how each column of a result set should be read.
+     *
+     * @param meta the result set metadata
+     * @return the column readers, in column order
+     * @throws SQLException if the metadata cannot be read
+     */
+    @Nonnull
+    private static ColumnReader[] createColumnReaders(@Nonnull final ResultSetMetaData meta) throws SQLException {
+        final ColumnReader[] columns = new ColumnReader[meta.getColumnCount()];
+        for (int i = 1; i <= columns.length; i++) {
+            final int sqlType = meta.getColumnType(i);
+            final AvroType avroType;
+
+            switch (sqlType) {
+                case CHAR:
+                case LONGNVARCHAR:
+                case LONGVARCHAR:
+                case NCHAR:
+                case NVARCHAR:
+                case VARCHAR:
+                    avroType = AvroType.STRING;
+                    break;
+
+                case BIT:
+                case BOOLEAN:
+                    avroType = AvroType.BOOLEAN;
+                    break;
+
+                case INTEGER:
+                    avroType = meta.isSigned(i) ? AvroType.INT : AvroType.LONG;
+                    break;
+
+                case SMALLINT:
+                case TINYINT:
+                    avroType = AvroType.INT;
+                    break;
+
+                case BIGINT:
+                    avroType = AvroType.LONG;
+                    break;
+
+                case FLOAT:
+                case REAL:
+                    avroType = AvroType.FLOAT;
+                    break;
+
+                case DOUBLE:
+                    avroType = AvroType.DOUBLE;
+                    break;
+
+                case DECIMAL:
+                case NUMERIC:
+                    avroType = AvroType.DECIMAL;
+                    break;
+
+                case DATE:
+                case TIMESTAMP:
+                    avroType = AvroType.DATE_TIME;
+                    break;
+
+                case TIME:
+                    avroType = AvroType.TIME;
+                    break;
+
+                case BINARY:
+                case VARBINARY:
+                case LONGVARBINARY:
+                case ARRAY:
+                case BLOB:
+                case CLOB:
+                    avroType = AvroType.BYTES;
+                    break;
+
+                default:
+                    avroType = AvroType.OBJECT;
+            }
+
+            columns[i - 1] = new ColumnReader(i, meta.getColumnName(i), sqlType, avroType);
+        }
+        return columns;
+    }
+
     public static Schema createSchema(final ResultSet rs) throws SQLException {
         final ResultSetMetaData meta = rs.getMetaData();
         final int nrOfColumns = meta.getColumnCount();
@@ -406,6 +511,46 @@ public class JdbcCommon {
         return builder.endRecord();
     }
 
+    /**
+     * How a column value is read from a result set and stored in an Avro record.
+     */
+    private enum AvroType {
+        STRING, BOOLEAN, INT, LONG, FLOAT, DOUBLE, DECIMAL, DATE_TIME, TIME, BYTES, OBJECT
+    }
+
+    /**
+     * A column of a result set, resolved once from the result set metadata.
+     */
+    private static class ColumnReader {
+
+        /**
+         * Index of the column, starting at 1
+         */
+        final int index;
+
+        /**
+         * Name of the column
+         */
+        final String name;
+
+        /**
+         * SQL type from {@link Types}
+         */
+        final int sqlType;
+
+        /**
+         * Getter used for Avro records
+         */
+        final AvroType avroType;
+
+        ColumnReader(final int index, final String name, final int sqlType, @Nonnull final AvroType avroType) {
+            this.index = index;
+            this.name = name;
+            this.sqlType = sqlType;
+            this.avroType = avroType;
+        }
+    }
+
     /**
      * Escapes values in delimited text files.
      */
@@ -454,16 +599,25 @@ public class JdbcCommon {
         @Override
         public int translate(@Nonnull final CharSequence input, final int index, @Nonnull final Writer out) throws IOException {
             Preconditions.checkState(index == 0, "Unsupported translation index %d", index);
-            String inputString = input.toString();
-            if (StringUtils.containsAny(inputString, searchStrings)) {
+            write(input.toString(), out);
+            return Character.codePointCount(input, 0, input.length());
+        }
+
+        /**
+         * Writes the specified value, escaped if necessary, to the specified writer.
+         *
+         * @param input the value
+         * @param out   the destination
+         * @throws IOException if an I/O error occurs
+         */
+        void write(@Nonnull final String input, @Nonnull final Writer out) throws IOException {
+            if (StringUtils.containsAny(input, searchStrings)) {
                 out.write(QUOTE);
-                out.write(StringUtils.replaceEach(inputString, searchStrings, replacementStrings));
+                out.write(StringUtils.replaceEach(input, searchStrings, replacementStrings));
                 out.write(QUOTE);
             } else {
-                out.write(input.toString());
+                out.write(input);
             }
-
-            return Character.codePointCount(input, 0, input.length());
         }
     }
 
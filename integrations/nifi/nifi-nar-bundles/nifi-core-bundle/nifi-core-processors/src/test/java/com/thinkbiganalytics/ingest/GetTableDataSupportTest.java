@@ -20,11 +20,13 @@ package com.thinkbiganalytics.ingest;
  * #L%
  */
 
+import org.joda.time.DateTimeUtils;
 import org.joda.time.DateTimeZone;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
@@ -33,12 +35,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
 
 import static com.thinkbiganalytics.nifi.v2.ingest.GetTableData.DATE_TIME_FORMAT;
 import static com.thinkbiganalytics.nifi.v2.ingest.GetTableData.toDate;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  */
@@ -174,6 +180,34 @@ public class GetTableDataSupportTest {
         assertEquals(range.getMaxDate(), new Date(1458802800000L));
     }
 
+    @Test
+    public void testSplitBounds() throws Exception {
+        assertEquals(Arrays.asList(1, 26L, 51L, 76L, 101), GetTableDataSupport.splitBounds(1, 101, 4));
+        assertEquals(Arrays.asList(1L, 2L, 3L), GetTableDataSupport.splitBounds(1L, 3L, 4));
+        assertEquals(Arrays.asList(5, 5), GetTableDataSupport.splitBounds(5, 5, 4));
+        assertEquals(Arrays.asList(new Date(0L), new Date(500L), new Date(1000L)), GetTableDataSupport.splitBounds(new Date(0L), new Date(1000L), 2));
+        assertEquals(3, GetTableDataSupport.splitBounds(new BigDecimal("0.5"), new BigDecimal("1.5"), 2).size());
+    }
+
+    @Test
+    public void testSplitIncremental() throws Exception {
+        Date lastLoad = new Date(1458872000000L);
+        DateTimeUtils.setCurrentMillisFixed(1458872600000L);
+        try {
+            List<GetTableDataSupport.SplitRange> ranges = GetTableDataSupport.splitIncremental(0, lastLoad, 0, GetTableDataSupport.UnitSizes.NONE, 3);
+            assertEquals(3, ranges.size());
+            assertEquals(lastLoad, ranges.get(0).getLower());
+            assertFalse(ranges.get(0).isLowerInclusive());
+            assertTrue(ranges.get(1).isLowerInclusive());
+            assertEquals(new Date(1458872600000L), ranges.get(2).getUpper());
+            assertFalse(ranges.get(2).isUpperInclusive());
+
+            assertTrue(GetTableDataSupport.splitIncremental(0, new Date(1458872600000L), 0, GetTableDataSupport.UnitSizes.NONE, 3).isEmpty());
+        } finally {
+            DateTimeUtils.setCurrentMillisSystem();
+        }
+    }
+
     @Test
     public void testSelectIncremental() throws Exception {
         Statement st = Mockito.mock(Statement.class);
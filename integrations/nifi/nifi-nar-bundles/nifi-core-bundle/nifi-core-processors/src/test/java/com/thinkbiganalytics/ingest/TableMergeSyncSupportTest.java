@@ -313,6 +313,38 @@ public class TableMergeSyncSupportTest {
         verifyUnique(results);
     }
 
+    @Test
+    /**
+     * Tests the merge partition with dedupe into new partitions and then into existing partitions
+     */
+    public void testMergePartitionDisjoint() throws Exception {
+
+        // Insert one record to start in a partition not loaded by the source
+        hiveShell.execute(
+            "insert into emp_sr.employee partition(country='USA',year=2010) (`id`, `timestamp`, `name`,`company`,`zip`,`phone`,`email`,  `hired`, `processing_dttm`)  values (60,'1','Billy',"
+            + "'ABC','94550',"
+            + "'555-1212',"
+            + "'billy@acme.org','2010-01-01','20150119974340');");
+
+        List<PartitionBatch> batches = fetchPartitionBatches();
+        assertTrue(mergeSyncSupport.isPartitionDisjoint(targetSchema, targetTable, batches));
+
+        // Call merge
+        mergeSyncSupport.doMerge(sourceSchema, sourceTable, targetSchema, targetTable, spec, processingPartition, true);
+
+        // We should have 5 records 4 from the sourceTable and 1 existing
+        List<String> results = fetchEmployees(targetSchema, targetTable);
+        assertEquals(5, results.size());
+        assertFalse(mergeSyncSupport.isPartitionDisjoint(targetSchema, targetTable, batches));
+
+        // Merging the same source again should not add duplicates
+        mergeSyncSupport.doMerge(sourceSchema, sourceTable, targetSchema, targetTable, spec, processingPartition, true);
+
+        results = fetchEmployees(targetSchema, targetTable);
+        assertEquals(5, results.size());
+        verifyUnique(results);
+    }
+
     @Test
     /**
      * Tests the merge partition without dedupe and the merge partition with dedupe
@@ -67,6 +67,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -291,11 +292,87 @@ public class GetTableDataTest {
                                              + "2|Jon|Stephens|Jon.Stephens@sakilastaff.com|2006-02-15T03:57:16.000Z\n");
     }
 
+    /**
+     * Verify a full load split into ranges.
+     */
+    @Test
+    public void testSplitFullLoad() {
+        runner.setProperty(GetTableData.SPLIT_FIELD, "id");
+        runner.setProperty(GetTableData.SPLIT_COUNT, "2");
+        runner.setProperty(GetTableData.FETCH_SIZE, "100");
+        runner.enqueue(new byte[0]);
+        runner.run();
+
+        List<MockFlowFile> flowFiles = runner.getFlowFilesForRelationship(CommonProperties.REL_SUCCESS);
+        Assert.assertEquals(0, runner.getFlowFilesForRelationship(CommonProperties.REL_FAILURE).size());
+        Assert.assertEquals(0, runner.getFlowFilesForRelationship(GetTableData.REL_NO_DATA).size());
+        Assert.assertEquals(2, flowFiles.size());
+        Assert.assertEquals(flowFiles.get(0).getAttribute(GetTableData.FRAGMENT_ID), flowFiles.get(1).getAttribute(GetTableData.FRAGMENT_ID));
+
+        flowFiles.get(0).assertAttributeEquals(GetTableData.FRAGMENT_INDEX, "0");
+        flowFiles.get(0).assertAttributeEquals(GetTableData.FRAGMENT_COUNT, "2");
+        flowFiles.get(0).assertAttributeEquals(GetTableData.RESULT_ROW_COUNT, "1");
+        flowFiles.get(0).assertContentEquals("id,first_name,last_name,email,last_updated\n"
+                                             + "1,Mike,Hillyer,Mike.Hillyer@sakilastaff.com,2006-02-15T03:57:16.000Z\n");
+
+        flowFiles.get(1).assertAttributeEquals(GetTableData.FRAGMENT_INDEX, "1");
+        flowFiles.get(1).assertAttributeEquals(GetTableData.FRAGMENT_COUNT, "2");
+        flowFiles.get(1).assertAttributeEquals(GetTableData.RESULT_ROW_COUNT, "1");
+        flowFiles.get(1).assertContentEquals("id,first_name,last_name,email,last_updated\n"
+                                             + "2,Jon,Stephens,Jon.Stephens@sakilastaff.com,2006-02-15T03:57:16.000Z\n");
+    }
+
+    /**
+     * Verify a split full load fails without a split field.
+     */
+    @Test
+    public void testSplitWithoutField() {
+        runner.setProperty(GetTableData.SPLIT_COUNT, "2");
+        runner.enqueue(new byte[0]);
+        runner.run();
+
+        Assert.assertEquals(1, runner.getFlowFilesForRelationship(CommonProperties.REL_FAILURE).size());
+        Assert.assertEquals(0, runner.getFlowFilesForRelationship(CommonProperties.REL_SUCCESS).size());
+    }
+
+    /**
+     * Verify the ranges of a split load are selected one at a time when limited to one connection, and each range's statement and result set are closed.
+     */
+    @Test
+    public void testSplitFullLoadOneConnection() throws Exception {
+        runner.setProperty(GetTableData.SPLIT_FIELD, "id");
+        runner.setProperty(GetTableData.SPLIT_COUNT, "2");
+        runner.setProperty(GetTableData.MAX_CONCURRENT_RANGES, "1");
+        runner.enqueue(new byte[0]);
+        runner.run();
+
+        List<MockFlowFile> flowFiles = runner.getFlowFilesForRelationship(CommonProperties.REL_SUCCESS);
+        Assert.assertEquals(0, runner.getFlowFilesForRelationship(CommonProperties.REL_FAILURE).size());
+        Assert.assertEquals(2, flowFiles.size());
+        flowFiles.get(0).assertAttributeEquals(GetTableData.RESULT_ROW_COUNT, "1");
+        flowFiles.get(1).assertAttributeEquals(GetTableData.RESULT_ROW_COUNT, "1");
+
+        final MockDBCPService jdbcService = (MockDBCPService) runner.getControllerService(JDBC_SERVICE_IDENTIFIER);
+        Assert.assertEquals(2, jdbcService.rangeStatements.size());
+        for (PreparedStatement statement : jdbcService.rangeStatements) {
+            Mockito.verify(statement).close();
+            Mockito.verify(statement.executeQuery()).close();
+        }
+    }
+
     /**
      * A mock implementation of {@link DBCPService} for unit testing.
      */
     private class MockDBCPService extends AbstractControllerService implements DBCPService {
 
+        /**
+         * Rows of the simple results
+         */
+        final Object[][] simpleRows = new Object[][]{
+            new Object[]{1, "Mike", "Hillyer", "Mike.Hillyer@sakilastaff.com", new Timestamp(1139975836000L)},
+            new Object[]{2, "Jon", "Stephens", "Jon.Stephens@sakilastaff.com", new Timestamp(1139975836000L)}
+        };
+
         /**
          * A SQL connection
          */
@@ -311,6 +388,11 @@ public class GetTableDataTest {
          */
         final DatabaseMetaData databaseMetaData = Mockito.mock(DatabaseMetaData.class);
 
+        /**
+         * Prepared statements created for split ranges
+         */
+        final List<PreparedStatement> rangeStatements = new CopyOnWriteArrayList<>();
+
         /**
          * Constructs a {@code MockDBCPService}.
          */
@@ -321,6 +403,11 @@ public class GetTableDataTest {
 
             Mockito.when(statement.executeQuery("SELECT tbl.id,tbl.email FROM empty tbl")).then(invocation -> getEmptyResults());
             Mockito.when(statement.executeQuery("SELECT tbl.id,tbl.first_name,tbl.last_name,tbl.email,tbl.last_updated FROM mytable tbl")).then(invocation -> getSimpleResults());
+            Mockito.when(statement.executeQuery("SELECT MIN(tbl.id), MAX(tbl.id) FROM mytable tbl")).then(invocation -> getBoundsResults());
+            Mockito.when(connection.prepareStatement("select tbl.id,tbl.first_name,tbl.last_name,tbl.email,tbl.last_updated from mytable tbl WHERE (tbl.id >= ? and tbl.id < ?) or tbl.id is null"))
+                .then(invocation -> getRangeResults(0));
+            Mockito.when(connection.prepareStatement("select tbl.id,tbl.first_name,tbl.last_name,tbl.email,tbl.last_updated from mytable tbl WHERE tbl.id >= ? and tbl.id <= ?"))
+                .then(invocation -> getRangeResults(1));
 
             Mockito.when(connection.getMetaData()).thenReturn(databaseMetaData);
             Mockito.when(databaseMetaData.getIdentifierQuoteString()).thenReturn("");
@@ -358,6 +445,11 @@ public class GetTableDataTest {
                     throw new SQLException("Not a Date: " + object);
                 }
             });
+            Mockito.when(results.getInt(Mockito.anyInt())).then(invocation -> {
+                final int index = invocation.getArgumentAt(0, Integer.class) - 1;
+                final Object object = queue.peek()[index];
+                return (object != null) ? ((Number) object).intValue() : 0;
+            });
             Mockito.when(results.getObject(Mockito.anyInt())).then(invocation -> {
                 final int index = invocation.getArgumentAt(0, Integer.class) - 1;
                 return queue.peek()[index];
@@ -459,6 +551,46 @@ public class GetTableDataTest {
          * @throws SQLException never
          */
         ResultSet getSimpleResults() throws SQLException {
+            return getResultSet(getSimpleMetadata(), simpleRows);
+        }
+
+        /**
+         * Creates a result set with the minimum and maximum id of the simple results.
+         *
+         * @return a new result set
+         * @throws SQLException never
+         */
+        ResultSet getBoundsResults() throws SQLException {
+            final ResultSetMetaData metadata = Mockito.mock(ResultSetMetaData.class);
+            Mockito.when(metadata.getColumnCount()).thenReturn(2);
+            Mockito.when(metadata.getColumnType(1)).thenReturn(Types.TINYINT);
+            Mockito.when(metadata.getColumnType(2)).thenReturn(Types.TINYINT);
+
+            return getResultSet(metadata, new Object[][]{new Object[]{1, 3}});
+        }
+
+        /**
+         * Creates a prepared statement for one row of the simple results.
+         *
+         * @param index the index of the row
+         * @return a new prepared statement
+         * @throws SQLException never
+         */
+        PreparedStatement getRangeResults(final int index) throws SQLException {
+            final ResultSet results = getResultSet(getSimpleMetadata(), new Object[][]{simpleRows[index]});
+            final PreparedStatement preparedStatement = Mockito.mock(PreparedStatement.class);
+            Mockito.when(preparedStatement.executeQuery()).thenReturn(results);
+            Mockito.when(results.getStatement()).thenReturn(preparedStatement);
+            rangeStatements.add(preparedStatement);
+            return preparedStatement;
+        }
+
+        /**
+         * Creates the metadata for simple results.
+         *
+         * @return the result set metadata
+         */
+        ResultSetMetaData getSimpleMetadata() {
             final ResultSetMetaData metadata = Mockito.mock(ResultSetMetaData.class);
             Mockito.when(metadata.getColumnCount()).thenReturn(5);
             Mockito.when(metadata.getColumnName(1)).thenReturn("id");
@@ -472,13 +604,7 @@ public class GetTableDataTest {
             Mockito.when(metadata.getColumnType(4)).thenReturn(Types.VARCHAR);
             Mockito.when(metadata.getColumnType(5)).thenReturn(Types.TIMESTAMP);
             Mockito.when(metadata.getTableName(Mockito.anyInt())).thenReturn("mytable");
-
-            final Object[][] rows = new Object[][]{
-                new Object[]{1, "Mike", "Hillyer", "Mike.Hillyer@sakilastaff.com", new Timestamp(1139975836000L)},
-                new Object[]{2, "Jon", "Stephens", "Jon.Stephens@sakilastaff.com", new Timestamp(1139975836000L)}
-            };
-
-            return getResultSet(metadata, rows);
+            return metadata;
         }
     }
 
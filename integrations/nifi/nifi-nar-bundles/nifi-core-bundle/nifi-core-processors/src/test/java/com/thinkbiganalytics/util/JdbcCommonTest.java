@@ -92,9 +92,16 @@ public class JdbcCommonTest {
 
         // Mock result set
         final ResultSet results = Mockito.mock(ResultSet.class);
+        Mockito.when(results.getBigDecimal(5)).thenReturn(new BigDecimal("3.14159265359"));
+        Mockito.when(results.getBoolean(10)).thenReturn(true);
         Mockito.when(results.getByte(4)).thenReturn((byte) 42);
         Mockito.when(results.getBytes(3)).thenReturn(new byte[]{72, 73});
         Mockito.when(results.getDate(7)).thenReturn(new Date(1483660800000L));
+        Mockito.when(results.getDouble(14)).thenReturn(1.61803);
+        Mockito.when(results.getFloat(13)).thenReturn(2.5f);
+        Mockito.when(results.getInt(4)).thenReturn(42);
+        Mockito.when(results.getInt(11)).thenReturn(12);
+        Mockito.when(results.getLong(6)).thenReturn(Long.MAX_VALUE);
         Mockito.when(results.getMetaData()).thenReturn(metadata);
         Mockito.when(results.getObject(1)).thenReturn("Fun Friday");
         Mockito.when(results.getObject(2)).thenReturn(null);
@@ -110,6 +117,7 @@ public class JdbcCommonTest {
         Mockito.when(results.getObject(12)).thenReturn((RowId) () -> new byte[]{1});
         Mockito.when(results.getObject(13)).thenReturn(2.5f);
         Mockito.when(results.getObject(14)).thenReturn(1.61803);
+        Mockito.when(results.getString(1)).thenReturn("Fun Friday");
         Mockito.when(results.getTime(8)).thenReturn(new Time(42600000L));
         Mockito.when(results.getTimestamp(7)).thenThrow(SQLException.class);
         Mockito.when(results.getTimestamp(9)).thenReturn(new Timestamp(1483703400000L));
@@ -231,6 +239,32 @@ public class JdbcCommonTest {
         assertEquals("event empty date time timestamp custom\n\"Fun Friday\"  2017-01-06T00:00:00.000Z 11:50:00.000Z 2017-01-06T11:50:00.000Z \n", new String(out.toByteArray(), "UTF-8"));
     }
 
+    /**
+     * Verify delimited text is encoded as UTF-8 and escaped.
+     */
+    @Test
+    public void convertToDelimitedStreamEncoding() throws Exception {
+        // Mock result set metadata
+        final ResultSetMetaData metadata = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(metadata.getColumnCount()).thenReturn(2);
+        Mockito.when(metadata.getColumnName(1)).thenReturn("id");
+        Mockito.when(metadata.getColumnName(2)).thenReturn("name");
+        Mockito.when(metadata.getColumnType(1)).thenReturn(Types.INTEGER);
+        Mockito.when(metadata.getColumnType(2)).thenReturn(Types.NVARCHAR);
+
+        // Mock result set
+        final ResultSet results = Mockito.mock(ResultSet.class);
+        Mockito.when(results.getMetaData()).thenReturn(metadata);
+        Mockito.when(results.getString(1)).thenReturn("1", "2");
+        Mockito.when(results.getString(2)).thenReturn("Zo\u00eb", "Smith, \"Jr\"");
+        Mockito.when(results.next()).thenReturn(true, true, false);
+
+        // Test converting to delimited text
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2L, JdbcCommon.convertToDelimitedStream(results, out, null, ","));
+        assertEquals("id,name\n1,Zo\u00eb\n2,\"Smith, \\\"Jr\\\"\"\n", new String(out.toByteArray(), "UTF-8"));
+    }
+
     /**
      * Verify row count for a {@code null} result set.
      */
@@ -21,39 +21,57 @@ package com.thinkbiganalytics.nifi.v2.elasticsearch;
  */
 
 
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 import com.thinkbiganalytics.hashing.InsecureHashingMessageUtil;
 import com.thinkbiganalytics.nifi.processor.AbstractNiFiProcessor;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.nifi.annotation.behavior.InputRequirement;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.processor.ProcessContext;
 import org.apache.nifi.processor.ProcessSession;
 import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.processor.util.StandardValidators;
-import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONObject;
-import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.transport.TransportClient;
-import org.elasticsearch.common.settings.Settings;
-import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.unit.ByteSizeValue;
 
-import java.net.InetAddress;
-import java.nio.charset.Charset;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 /**
  * This processor indexes json data in elasticsearch
@@ -61,8 +79,27 @@ import java.util.UUID;
 @InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
 @Tags({"elasticsearch", "thinkbig"})
 @CapabilityDescription("Write FlowFile from a JSON array to Elasticsearch (V2)")
+@WritesAttributes({
+    @WritesAttribute(attribute = IndexElasticSearch.INDEXED_COUNT, description = "Number of documents indexed in elasticsearch"),
+    @WritesAttribute(attribute = IndexElasticSearch.FAILED_COUNT, description = "Number of documents that could not be indexed in elasticsearch"),
+    @WritesAttribute(attribute = IndexElasticSearch.FAILURE_MESSAGE, description = "The reason the first document could not be indexed, if any")
+})
 public class IndexElasticSearch extends AbstractNiFiProcessor {
 
+    public static final String INDEXED_COUNT = "elasticsearch.indexed.count";
+    public static final String FAILED_COUNT = "elasticsearch.failed.count";
+    public static final String FAILURE_MESSAGE = "elasticsearch.failure.message";
+
+    /**
+     * Transport port used when the client is not provided by a controller service
+     */
+    private static final int DEFAULT_PORT = 9300;
+
+    /**
+     * Maximum time to wait for the bulk requests of a flow file to complete
+     */
+    private static final long BULK_TIMEOUT_MINUTES = 10;
+
     /**
      * Success Relationship for JSON objects that are successfully indexed in elasticsearch
      */
@@ -102,13 +139,23 @@ public class IndexElasticSearch extends AbstractNiFiProcessor {
         .expressionLanguageSupported(true)
         .build();
 
+    /**
+     * Property for the client service
+     */
+    public static final PropertyDescriptor CLIENT_SERVICE = new PropertyDescriptor.Builder()
+        .name("Elasticsearch Client Service")
+        .description("Service providing a long-lived Elasticsearch client. If not set, the processor connects to the HostName and ClusterName.")
+        .required(false)
+        .identifiesControllerService(ElasticSearchClientService.class)
+        .build();
+
     /**
      * Property for the elastic search host name
      */
     public static final PropertyDescriptor HOST_NAME = new PropertyDescriptor.Builder()
         .name("HostName")
-        .description("Elasticsearch host")
-        .required(true)
+        .description("Elasticsearch host. Required if the Elasticsearch Client Service is not set.")
+        .required(false)
         .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
         .expressionLanguageSupported(true)
         .build();
@@ -118,8 +165,8 @@ public class IndexElasticSearch extends AbstractNiFiProcessor {
      */
     public static final PropertyDescriptor CLUSTER_NAME = new PropertyDescriptor.Builder()
         .name("ClusterName")
-        .description("Elasticsearch cluster")
-        .required(true)
+        .description("Elasticsearch cluster. Required if the Elasticsearch Client Service is not set.")
+        .required(false)
         .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
         .expressionLanguageSupported(true)
         .build();
@@ -159,9 +206,48 @@ public class IndexElasticSearch extends AbstractNiFiProcessor {
         .expressionLanguageSupported(true)
         .build();
 
+    /**
+     * Property for the maximum number of documents in a bulk request
+     */
+    public static final PropertyDescriptor BULK_ACTIONS = new PropertyDescriptor.Builder()
+        .name("Bulk Size")
+        .description("Maximum number of documents sent in a single bulk request")
+        .required(true)
+        .defaultValue("1000")
+        .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+        .build();
+
+    /**
+     * Property for the maximum size of a bulk request
+     */
+    public static final PropertyDescriptor BULK_BYTES = new PropertyDescriptor.Builder()
+        .name("Bulk Size Limit")
+        .description("Maximum size of the documents sent in a single bulk request")
+        .required(true)
+        .defaultValue("5 MB")
+        .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+        .build();
+
+    /**
+     * Property for the number of bulk requests that may be in flight
+     */
+    public static final PropertyDescriptor CONCURRENT_REQUESTS = new PropertyDescriptor.Builder()
+        .name("Concurrent Bulk Requests")
+        .description("Number of bulk requests that may be in flight while the next one is being read. Reading waits when the limit is reached. "
+                     + "Zero sends each bulk request synchronously.")
+        .required(true)
+        .defaultValue("1")
+        .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+        .build();
+
     private final Set<Relationship> relationships;
     private final List<PropertyDescriptor> propDescriptors;
 
+    /**
+     * Clients connected by this processor when no client service is set, by cluster and host name
+     */
+    private final ConcurrentMap<String, TransportClient> clients = new ConcurrentHashMap<>();
+
     /**
      * default constructor constructs the relationship and property collections
      */
@@ -174,11 +260,15 @@ public class IndexElasticSearch extends AbstractNiFiProcessor {
         final List<PropertyDescriptor> pds = new ArrayList<>();
         pds.add(INDEX_NAME);
         pds.add(TYPE);
+        pds.add(CLIENT_SERVICE);
         pds.add(HOST_NAME);
         pds.add(CLUSTER_NAME);
         pds.add(ID_FIELD);
         pds.add(CATEGORY_NAME);
         pds.add(FEED_NAME);
+        pds.add(BULK_ACTIONS);
+        pds.add(BULK_BYTES);
+        pds.add(CONCURRENT_REQUESTS);
         propDescriptors = Collections.unmodifiableList(pds);
     }
 
@@ -192,6 +282,36 @@ public class IndexElasticSearch extends AbstractNiFiProcessor {
         return propDescriptors;
     }
 
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        final List<ValidationResult> results = new ArrayList<>();
+        if (!context.getProperty(CLIENT_SERVICE).isSet()) {
+            for (PropertyDescriptor property : new PropertyDescriptor[]{HOST_NAME, CLUSTER_NAME}) {
+                if (!context.getProperty(property).isSet()) {
+                    results.add(new ValidationResult.Builder()
+                                    .subject(property.getName())
+                                    .valid(false)
+                                    .explanation(property.getName() + " is required if the " + CLIENT_SERVICE.getName() + " is not set")
+                                    .build());
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Closes the clients connected by this processor.
+     */
+    @OnStopped
+    public void closeClients() {
+        for (String key : clients.keySet()) {
+            TransportClient client = clients.remove(key);
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
     @Override
     public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
         final ComponentLog logger = getLog();
@@ -207,25 +327,40 @@ public class IndexElasticSearch extends AbstractNiFiProcessor {
             String idField = context.getProperty(ID_FIELD).evaluateAttributeExpressions(flowFile).getValue();
             String categoryName = context.getProperty(CATEGORY_NAME).evaluateAttributeExpressions(flowFile).getValue();
             String feedName = context.getProperty(FEED_NAME).evaluateAttributeExpressions(flowFile).getValue();
+            ElasticSearchClientService clientService = context.getProperty(CLIENT_SERVICE).asControllerService(ElasticSearchClientService.class);
+
+            final Client client = (clientService != null) ? clientService.getClient() : getClient(clusterName, hostName);
+            final BulkSettings bulkSettings = new BulkSettings(context.getProperty(BULK_ACTIONS).asInteger(),
+                                                               context.getProperty(BULK_BYTES).asDataSize(DataUnit.B).longValue(),
+                                                               context.getProperty(CONCURRENT_REQUESTS).asInteger());
+            final IndexResult result = new IndexResult();
+
+            session.read(flowFile, in -> sendToElasticSearch(in,
+                                                             client,
+                                                             indexName,
+                                                             type,
+                                                             idField,
+                                                             categoryName,
+                                                             feedName,
+                                                             bulkSettings,
+                                                             result));
+
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put(INDEXED_COUNT, Long.toString(result.indexed.get()));
+            attributes.put(FAILED_COUNT, Long.toString(result.failed.get()));
+            if (result.failureMessage.get() != null) {
+                attributes.put(FAILURE_MESSAGE, result.failureMessage.get());
+            }
+            flowFile = session.putAllAttributes(flowFile, attributes);
 
-            final StringBuffer sb = new StringBuffer();
-            session.read(flowFile, in -> sb.append(IOUtils.toString(in, Charset.defaultCharset())));
-
-            logger.debug("The json that was received is: " + sb.toString());
-
-            boolean success = sendToElasticSearch(sb.toString(),
-                                                  hostName,
-                                                  indexName,
-                                                  type,
-                                                  clusterName,
-                                                  idField,
-                                                  categoryName,
-                                                  feedName);
-
-            if (!success) {
+            if (result.isFailure()) {
+                logger.error("Error occurred while batch updating {} documents: {}", new Object[]{result.failed.get(), result.failureMessage.get()});
                 logger.info("*** Completed with failed status");
                 session.transfer(flowFile, REL_FAILURE);
             } else {
+                if (result.failed.get() > 0) {
+                    logger.warn("Indexed {} documents but {} documents failed: {}", new Object[]{result.indexed.get(), result.failed.get(), result.failureMessage.get()});
+                }
                 logger.info("*** Completed with success status");
                 session.transfer(flowFile, REL_SUCCESS);
             }
@@ -236,54 +371,169 @@ public class IndexElasticSearch extends AbstractNiFiProcessor {
 
     }
 
-    private boolean sendToElasticSearch(String json,
-                                        String hostName,
-                                        String index,
-                                        String type,
-                                        String clusterName,
-                                        String idField,
-                                        String categoryName,
-                                        String feedName
-                                        ) throws Exception {
+    /**
+     * Gets a client connected by this processor for the specified cluster and host.
+     */
+    private Client getClient(String clusterName, String hostName) throws UnknownHostException {
+        final String key = clusterName + "@" + hostName;
+        TransportClient client = clients.get(key);
+        if (client == null) {
+            client = StandardElasticSearchClientService.createClient(clusterName, new String[]{hostName}, DEFAULT_PORT);
+            TransportClient existing = clients.putIfAbsent(key, client);
+            if (existing != null) {
+                client.close();
+                client = existing;
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Reads the JSON array one document at a time and indexes the documents with bulk requests bounded by the bulk settings.
+     */
+    private void sendToElasticSearch(InputStream in,
+                                     Client client,
+                                     String index,
+                                     String type,
+                                     String idField,
+                                     String categoryName,
+                                     String feedName,
+                                     BulkSettings bulkSettings,
+                                     IndexResult result) {
         final ComponentLog logger = getLog();
-        Settings settings = Settings.settingsBuilder()
-            .put("cluster.name", clusterName).build();
-        Client client = TransportClient.builder().settings(settings).build()
-            .addTransportAddress(new InetSocketTransportAddress(InetAddress.getByName(hostName), 9300));
-
-        JSONArray array = new JSONArray(json);
-        BulkRequestBuilder bulkRequest = client.prepareBulk();
-
-        for (int i = 0; i < array.length(); i++) {
-            JSONObject jsonObj = array.getJSONObject(i);
-            String id = null;
-
-            if (idField != null && idField.length() > 0) {
-                id = jsonObj.getString(idField);
-                logger.debug("Document index id using field " + idField + ": " + id);
-            } else if (StringUtils.isNotEmpty(categoryName) && (StringUtils.isNotEmpty(feedName))) {
-                String hash = InsecureHashingMessageUtil.getHashMD5(jsonObj.toString());
-                if (StringUtils.isNotEmpty(hash)) {
-                    id = categoryName + "::" + feedName + "::" + hash;
-                    logger.debug("Document index id using hash: " + id);
+        final BulkProcessor bulkProcessor = BulkProcessor.builder(client, result)
+            .setBulkActions(bulkSettings.actions)
+            .setBulkSize(new ByteSizeValue(bulkSettings.bytes))
+            .setConcurrentRequests(bulkSettings.concurrentRequests)
+            .build();
+
+        try {
+            readDocuments(in, idField, categoryName, feedName, (id, source) -> {
+                logger.debug("Document index id: " + id);
+                result.added.incrementAndGet();
+                bulkProcessor.add(client.prepareIndex(index, type, id)
+                                      .setSource(source)
+                                      .request());
+            });
+        } finally {
+            try {
+                if (!bulkProcessor.awaitClose(BULK_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                    result.incomplete("Timed out waiting for bulk requests to complete");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.incomplete("Interrupted waiting for bulk requests to complete");
+            }
+        }
+    }
+
+    /**
+     * Reads the JSON array one document at a time, passing the id and source of each document to the consumer.
+     *
+     * <p>The id is the value of the id field if set, otherwise a hash of the document prefixed by the category and feed, otherwise a random UUID.</p>
+     *
+     * @param in           the JSON array
+     * @param idField      the field holding the document id, or {@code null}
+     * @param categoryName the category system name, or {@code null}
+     * @param feedName     the feed system name, or {@code null}
+     * @param consumer     receives the id and source of each document
+     * @throws ProcessException if the content is not a JSON array of objects
+     */
+    static void readDocuments(InputStream in, String idField, String categoryName, String feedName, BiConsumer<String, String> consumer) {
+        try {
+            final JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            final JsonParser parser = new JsonParser();
+            reader.beginArray();
+
+            while (reader.hasNext()) {
+                JSONObject jsonObj = new JSONObject(parser.parse(reader).toString());
+                String id = null;
+
+                if (idField != null && idField.length() > 0) {
+                    id = jsonObj.getString(idField);
+                } else if (StringUtils.isNotEmpty(categoryName) && (StringUtils.isNotEmpty(feedName))) {
+                    String hash = InsecureHashingMessageUtil.getHashMD5(jsonObj.toString());
+                    if (StringUtils.isNotEmpty(hash)) {
+                        id = categoryName + "::" + feedName + "::" + hash;
+                    }
+                }
+
+                if (StringUtils.isEmpty(id)) {
+                    id = UUID.randomUUID().toString();
                 }
+
+                jsonObj.put("post_date", String.valueOf(System.currentTimeMillis()));
+                consumer.accept(id, jsonObj.toString());
             }
+            reader.endArray();
+        } catch (final Exception e) {
+            throw new ProcessException("Unable to read JSON documents", e);
+        }
+    }
+
+    /**
+     * Limits on the bulk requests for a flow file
+     */
+    private static class BulkSettings {
+
+        final int actions;
+        final long bytes;
+        final int concurrentRequests;
+
+        BulkSettings(int actions, long bytes, int concurrentRequests) {
+            this.actions = actions;
+            this.bytes = bytes;
+            this.concurrentRequests = concurrentRequests;
+        }
+    }
 
-            if (StringUtils.isEmpty(id)) {
-                id = UUID.randomUUID().toString();
-                logger.debug("Document index id auto-generated + " + id);
+    /**
+     * Counts the documents indexed by the bulk requests of a flow file
+     */
+    static class IndexResult implements BulkProcessor.Listener {
+
+        final AtomicLong added = new AtomicLong();
+        final AtomicLong indexed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicReference<String> failureMessage = new AtomicReference<>();
+        volatile boolean incomplete;
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed()) {
+                    failed.incrementAndGet();
+                    failureMessage.compareAndSet(null, "[" + item.getId() + "]: " + item.getFailureMessage());
+                } else {
+                    indexed.incrementAndGet();
+                }
             }
+        }
 
-            jsonObj.put("post_date", String.valueOf(System.currentTimeMillis()));
-            bulkRequest.add(client.prepareIndex(index, type, id)
-                                .setSource(jsonObj.toString())
-            );
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            failed.addAndGet(request.numberOfActions());
+            failureMessage.compareAndSet(null, String.valueOf(failure));
         }
-        BulkResponse bulkResponse = bulkRequest.get();
-        if (bulkResponse.hasFailures()) {
-            logger.error("Error occurred while batch updating" + bulkResponse.buildFailureMessage());
-            return false;
+
+        /**
+         * Marks the bulk requests as not completed, counting the documents without a response as failed.
+         */
+        void incomplete(String message) {
+            incomplete = true;
+            failed.addAndGet(Math.max(0, added.get() - indexed.get() - failed.get()));
+            failureMessage.compareAndSet(null, message);
+        }
+
+        /**
+         * Indicates if the flow file should be routed to failure, either because no document was indexed or because the outcome of some documents is unknown.
+         */
+        boolean isFailure() {
+            return incomplete || (failed.get() > 0 && indexed.get() == 0);
         }
-        return true;
     }
 }
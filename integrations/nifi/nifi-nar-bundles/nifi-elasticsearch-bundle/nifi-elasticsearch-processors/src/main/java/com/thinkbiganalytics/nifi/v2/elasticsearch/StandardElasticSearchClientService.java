@@ -0,0 +1,157 @@
+package com.thinkbiganalytics.nifi.v2.elasticsearch;
+
+/*-
+ * #%L
+ * thinkbig-nifi-elasticsearch-processors
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnDisabled;
+import org.apache.nifi.annotation.lifecycle.OnEnabled;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.controller.AbstractControllerService;
+import org.apache.nifi.controller.ConfigurationContext;
+import org.apache.nifi.processor.util.StandardValidators;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The default implementation of {@link ElasticSearchClientService}. A transport client is connected when the service is enabled and closed when it is disabled.
+ */
+@Tags({"elasticsearch", "thinkbig"})
+@CapabilityDescription("Provides a long-lived Elasticsearch transport client (V2) shared by processors")
+public class StandardElasticSearchClientService extends AbstractControllerService implements ElasticSearchClientService {
+
+    /**
+     * Property for the elastic search host names
+     */
+    public static final PropertyDescriptor HOST_NAMES = new PropertyDescriptor.Builder()
+        .name("HostNames")
+        .description("Comma-separated list of Elasticsearch hosts")
+        .required(true)
+        .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+        .expressionLanguageSupported(true)
+        .build();
+
+    /**
+     * Property for the elastic search transport port
+     */
+    public static final PropertyDescriptor PORT = new PropertyDescriptor.Builder()
+        .name("Port")
+        .description("Elasticsearch transport port")
+        .required(true)
+        .defaultValue("9300")
+        .addValidator(StandardValidators.PORT_VALIDATOR)
+        .build();
+
+    /**
+     * Property for the elastic search cluster name
+     */
+    public static final PropertyDescriptor CLUSTER_NAME = new PropertyDescriptor.Builder()
+        .name("ClusterName")
+        .description("Elasticsearch cluster")
+        .required(true)
+        .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+        .expressionLanguageSupported(true)
+        .build();
+
+    private static final List<PropertyDescriptor> properties;
+
+    static {
+        final List<PropertyDescriptor> props = new ArrayList<>();
+        props.add(HOST_NAMES);
+        props.add(PORT);
+        props.add(CLUSTER_NAME);
+        properties = Collections.unmodifiableList(props);
+    }
+
+    private volatile TransportClient client;
+
+    @Override
+    protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return properties;
+    }
+
+    /**
+     * Connects the transport client.
+     *
+     * @param context the configuration context
+     * @throws UnknownHostException if a host cannot be resolved
+     */
+    @OnEnabled
+    public void onEnabled(final ConfigurationContext context) throws UnknownHostException {
+        final String hostNames = context.getProperty(HOST_NAMES).evaluateAttributeExpressions().getValue();
+        final int port = context.getProperty(PORT).asInteger();
+        final String clusterName = context.getProperty(CLUSTER_NAME).evaluateAttributeExpressions().getValue();
+
+        client = createClient(clusterName, hostNames.split(","), port);
+        getLogger().info("Connected Elasticsearch client to cluster {} at {}", new Object[]{clusterName, hostNames});
+    }
+
+    /**
+     * Closes the transport client.
+     */
+    @OnDisabled
+    public void onDisabled() {
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+    }
+
+    @Override
+    public Client getClient() {
+        if (client == null) {
+            throw new IllegalStateException("Elasticsearch client service is not enabled");
+        }
+        return client;
+    }
+
+    /**
+     * Creates a transport client for the specified cluster.
+     *
+     * @param clusterName the cluster name
+     * @param hostNames   the host names
+     * @param port        the transport port
+     * @return the client
+     * @throws UnknownHostException if a host cannot be resolved
+     */
+    static TransportClient createClient(final String clusterName, final String[] hostNames, final int port) throws UnknownHostException {
+        final Settings settings = Settings.settingsBuilder()
+            .put("cluster.name", clusterName).build();
+        final TransportClient client = TransportClient.builder().settings(settings).build();
+        try {
+            for (String hostName : hostNames) {
+                client.addTransportAddress(new InetSocketTransportAddress(InetAddress.getByName(hostName.trim()), port));
+            }
+        } catch (final UnknownHostException | RuntimeException e) {
+            client.close();
+            throw e;
+        }
+        return client;
+    }
+}
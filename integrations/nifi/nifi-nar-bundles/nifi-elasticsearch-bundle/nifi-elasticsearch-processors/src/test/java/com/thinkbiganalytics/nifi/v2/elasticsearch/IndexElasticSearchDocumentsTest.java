@@ -0,0 +1,186 @@
+package com.thinkbiganalytics.nifi.v2.elasticsearch;
+
+/*-
+ * #%L
+ * thinkbig-nifi-elasticsearch-processors
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.nifi.controller.AbstractControllerService;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.codehaus.jettison.json.JSONObject;
+import org.elasticsearch.client.Client;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verifies the validation of {@link IndexElasticSearch} and the reading of its JSON documents, without an Elasticsearch cluster
+ */
+public class IndexElasticSearchDocumentsTest {
+
+    /**
+     * Verify the host and cluster are required without a client service.
+     */
+    @Test
+    public void validateWithoutClientService() {
+        TestRunner runner = newTestRunner();
+        runner.assertNotValid();
+
+        runner.setProperty(IndexElasticSearch.HOST_NAME, "localhost");
+        runner.assertNotValid();
+
+        runner.setProperty(IndexElasticSearch.CLUSTER_NAME, "cluster");
+        runner.assertValid();
+    }
+
+    /**
+     * Verify the host and cluster are not required with a client service.
+     */
+    @Test
+    public void validateWithClientService() throws InitializationException {
+        TestRunner runner = newTestRunner();
+        TestClientService clientService = new TestClientService();
+        runner.addControllerService("client", clientService);
+        runner.enableControllerService(clientService);
+        runner.setProperty(IndexElasticSearch.CLIENT_SERVICE, "client");
+        runner.assertValid();
+    }
+
+    /**
+     * Verify documents are identified by the id field.
+     */
+    @Test
+    public void readDocumentsWithIdField() throws Exception {
+        List<String[]> documents = readDocuments("[{\"id\": \"1\", \"name\": \"a\"}, {\"id\": \"2\", \"name\": \"b\"}]", "id", "category", "feed");
+
+        Assert.assertEquals(2, documents.size());
+        Assert.assertEquals("1", documents.get(0)[0]);
+        Assert.assertEquals("2", documents.get(1)[0]);
+        JSONObject source = new JSONObject(documents.get(1)[1]);
+        Assert.assertEquals("b", source.getString("name"));
+        Assert.assertTrue(source.has("post_date"));
+    }
+
+    /**
+     * Verify documents without an id field are identified by a hash of their content.
+     */
+    @Test
+    public void readDocumentsWithHashId() {
+        List<String[]> documents = readDocuments("[{\"name\": \"a\"}, {\"name\": \"a\"}, {\"name\": \"b\"}]", null, "category", "feed");
+
+        Assert.assertEquals(3, documents.size());
+        Assert.assertTrue(documents.get(0)[0].startsWith("category::feed::"));
+        Assert.assertEquals(documents.get(0)[0], documents.get(1)[0]);
+        Assert.assertNotEquals(documents.get(0)[0], documents.get(2)[0]);
+    }
+
+    /**
+     * Verify documents get a random id without an id field, category or feed.
+     */
+    @Test
+    public void readDocumentsWithRandomId() {
+        List<String[]> documents = readDocuments("[{\"name\": \"a\"}, {\"name\": \"a\"}]", null, null, null);
+
+        Assert.assertEquals(2, documents.size());
+        Assert.assertNotEquals(documents.get(0)[0], documents.get(1)[0]);
+    }
+
+    /**
+     * Verify an empty array has no documents.
+     */
+    @Test
+    public void readEmptyDocuments() {
+        Assert.assertTrue(readDocuments("[]", "id", null, null).isEmpty());
+    }
+
+    /**
+     * Verify the documents before an invalid document are read before it fails.
+     */
+    @Test
+    public void readInvalidDocuments() {
+        List<String[]> documents = new ArrayList<>();
+        try {
+            IndexElasticSearch.readDocuments(toStream("[{\"id\": \"1\"}, {\"id\": "), "id", null, null, (id, source) -> documents.add(new String[]{id, source}));
+            Assert.fail("Expected ProcessException");
+        } catch (ProcessException e) {
+            Assert.assertEquals(1, documents.size());
+        }
+    }
+
+    /**
+     * Verify content that is not an array is rejected.
+     */
+    @Test(expected = ProcessException.class)
+    public void readDocumentsNotInArray() {
+        readDocuments("{\"id\": \"1\"}", "id", null, null);
+    }
+
+    /**
+     * Verify documents without a response are counted as failed when the bulk requests do not complete.
+     */
+    @Test
+    public void incompleteResult() {
+        IndexElasticSearch.IndexResult result = new IndexElasticSearch.IndexResult();
+        result.added.set(10);
+        result.indexed.set(4);
+        result.failed.set(1);
+        Assert.assertFalse(result.isFailure());
+
+        result.incomplete("Timed out");
+        Assert.assertTrue(result.isFailure());
+        Assert.assertEquals(4, result.indexed.get());
+        Assert.assertEquals(6, result.failed.get());
+        Assert.assertEquals("Timed out", result.failureMessage.get());
+    }
+
+    private static TestRunner newTestRunner() {
+        TestRunner runner = TestRunners.newTestRunner(new IndexElasticSearch());
+        runner.setProperty(IndexElasticSearch.INDEX_NAME, "index");
+        runner.setProperty(IndexElasticSearch.TYPE, "type");
+        return runner;
+    }
+
+    private static List<String[]> readDocuments(String json, String idField, String categoryName, String feedName) {
+        List<String[]> documents = new ArrayList<>();
+        IndexElasticSearch.readDocuments(toStream(json), idField, categoryName, feedName, (id, source) -> documents.add(new String[]{id, source}));
+        return documents;
+    }
+
+    private static InputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A client service that does not connect to a cluster
+     */
+    private static class TestClientService extends AbstractControllerService implements ElasticSearchClientService {
+
+        @Override
+        public Client getClient() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
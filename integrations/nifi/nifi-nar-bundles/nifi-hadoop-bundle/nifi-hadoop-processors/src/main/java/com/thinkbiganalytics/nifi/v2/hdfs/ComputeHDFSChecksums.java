@@ -24,6 +24,7 @@ package com.thinkbiganalytics.nifi.v2.hdfs;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 
@@ -34,6 +35,8 @@ import org.apache.hadoop.fs.Path;
 import org.apache.nifi.annotation.behavior.EventDriven;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.processor.ProcessContext;
@@ -44,10 +47,17 @@ import org.apache.nifi.processor.util.StandardValidators;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 
@@ -116,6 +126,18 @@ public class ComputeHDFSChecksums extends AbstractHadoopProcessor {
         .expressionLanguageSupported(true)
         .build();
 
+    /**
+     * the maximum number of checksums computed at the same time
+     */
+    public static final PropertyDescriptor MAX_CONCURRENT_CHECKSUMS = new PropertyDescriptor.Builder()
+        .name("max.concurrent.checksums")
+        .description("Maximum number of file checksums requested from HDFS at the same time, shared by all tasks of this processor. " +
+                     "The remaining files are skipped as soon as a checksum doesn't match or a file is not found.")
+        .required(true)
+        .defaultValue("1")
+        .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+        .build();
+
     /**
      * Output paths to other NiFi processors
      */
@@ -129,9 +151,19 @@ public class ComputeHDFSChecksums extends AbstractHadoopProcessor {
     @Override
     protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
         return ImmutableList.<PropertyDescriptor>builder().addAll(super.getSupportedPropertyDescriptors()).
-            add(DIRECTORY).add(FAIL_IF_INCORRECT_CHECKSUM).add(FILES).build();
+            add(DIRECTORY).add(FAIL_IF_INCORRECT_CHECKSUM).add(FILES).add(MAX_CONCURRENT_CHECKSUMS).build();
     }
 
+    /**
+     * Computes the checksums
+     */
+    private ExecutorService executor;
+
+    /**
+     * Maximum number of checksums computed at the same time
+     */
+    private int maxConcurrentChecksums;
+
     @Override
     protected void modifyConfig(ProcessContext context, Configuration config) {   }
 
@@ -145,6 +177,28 @@ public class ComputeHDFSChecksums extends AbstractHadoopProcessor {
         return relationships;
     }
 
+    /**
+     * Creates the thread pool for computing checksums.
+     *
+     * @param context the process context
+     */
+    @OnScheduled
+    public void startExecutor(@Nonnull final ProcessContext context) {
+        maxConcurrentChecksums = context.getProperty(MAX_CONCURRENT_CHECKSUMS).asInteger();
+        executor = Executors.newFixedThreadPool(maxConcurrentChecksums, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ComputeHDFSChecksums-%d").build());
+    }
+
+    /**
+     * Stops the thread pool for computing checksums.
+     */
+    @OnStopped
+    public void stopExecutor() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
     @Override
     public void onTrigger(@Nonnull final ProcessContext context, @Nonnull final ProcessSession session) throws ProcessException {
         FlowFile flowFile = session.get();
@@ -169,24 +223,29 @@ public class ComputeHDFSChecksums extends AbstractHadoopProcessor {
                 filesList = new File[0];
             }
 
-            for (File f : filesList) {
-                String name = f.getName();
-                Path filePath;
-                if (absolutePath == null || absolutePath.isEmpty()) {
-                    filePath = new Path(name);
-                } else {
-                    filePath = new Path(absolutePath, name);
-                }
-                FileChecksum computed_checksum = fs.getFileChecksum(filePath);
-                String b64_checksum = Base64.getEncoder().encodeToString(computed_checksum.getBytes());
-                f.setComputedChecksum(new Checksum(b64_checksum.length(), b64_checksum,
-                                                   computed_checksum.getAlgorithmName()));
-                if (failIfWrongChecksum && !Objects.equals(b64_checksum, f.getChecksum().getValue())) {
-                    getLog().error("Checksums don't match! File: " + filePath.toString() + " checksum provided: " +
-                                   f.getChecksum().getValue() + " checksum computed: " + b64_checksum);
-                    session.transfer(flowFile, REL_FAILURE);
-                    return;
+            // Keep at most maxConcurrentChecksums requests in flight and stop submitting on the first mismatch
+            final CompletionService<File> completionService = new ExecutorCompletionService<>(executor);
+            final List<Future<File>> futures = new ArrayList<>(filesList.length);
+            int submitted = 0;
+            try {
+                for (int completed = 0; completed < filesList.length; ++completed) {
+                    while (submitted < filesList.length && submitted - completed < maxConcurrentChecksums) {
+                        final File f = filesList[submitted++];
+                        final Path filePath = getPath(absolutePath, f.getName());
+                        futures.add(completionService.submit(() -> computeChecksum(fs, f, filePath)));
+                    }
+
+                    File f = getResult(completionService.take());
+                    String b64_checksum = f.getComputedChecksum().getValue();
+                    if (failIfWrongChecksum && !Objects.equals(b64_checksum, f.getChecksum().getValue())) {
+                        getLog().error("Checksums don't match! File: " + getPath(absolutePath, f.getName()).toString() + " checksum provided: " +
+                                       f.getChecksum().getValue() + " checksum computed: " + b64_checksum);
+                        session.transfer(flowFile, REL_FAILURE);
+                        return;
+                    }
                 }
+            } finally {
+                futures.forEach(future -> future.cancel(true));
             }
         } catch (JsonSyntaxException e) {
             getLog().error("Files list attribute does not contain a proper JSON array");
@@ -198,11 +257,70 @@ public class ComputeHDFSChecksums extends AbstractHadoopProcessor {
             return;
         } catch (IOException e) {
             throw new ProcessException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessException(e);
         }
         flowFile = session.putAttribute(flowFile, FILES.getName(), jsonParser.toJson(filesList));
         session.transfer(flowFile, REL_SUCCESS);
     }
 
+    /**
+     * Gets the path of the specified file.
+     *
+     * @param absolutePath the directory containing the file, or {@code null} if the file name is an absolute path
+     * @param name         the file name
+     * @return the file path
+     */
+    @Nonnull
+    private Path getPath(final String absolutePath, final String name) {
+        if (absolutePath == null || absolutePath.isEmpty()) {
+            return new Path(name);
+        } else {
+            return new Path(absolutePath, name);
+        }
+    }
+
+    /**
+     * Computes the checksum of the specified file and sets it as the computed checksum.
+     *
+     * @param fs       the file system
+     * @param f        the file
+     * @param filePath the file path
+     * @return the file
+     * @throws IOException if the checksum cannot be computed
+     */
+    @Nonnull
+    private File computeChecksum(@Nonnull final FileSystem fs, @Nonnull final File f, @Nonnull final Path filePath) throws IOException {
+        FileChecksum computed_checksum = fs.getFileChecksum(filePath);
+        String b64_checksum = Base64.getEncoder().encodeToString(computed_checksum.getBytes());
+        f.setComputedChecksum(new Checksum(b64_checksum.length(), b64_checksum, computed_checksum.getAlgorithmName()));
+        return f;
+    }
+
+    /**
+     * Waits for the checksum and rethrows the exception thrown while computing it.
+     *
+     * @param future the checksum result
+     * @return the file
+     * @throws IOException          if the checksum cannot be computed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Nonnull
+    private File getResult(@Nonnull final Future<File> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw new ProcessException(e.getCause());
+            }
+        }
+    }
+
     class File {
 
         private String name;
@@ -31,6 +31,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.tools.DistCp;
+import org.apache.hadoop.tools.DistCpConstants;
 import org.apache.hadoop.tools.DistCpOptions;
 import org.apache.nifi.annotation.behavior.EventDriven;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
@@ -114,6 +115,17 @@ public class DistCopyHDFS extends AbstractHadoopProcessor {
         .expressionLanguageSupported(true)
         .build();
 
+    /**
+     * Property that defines the maximum number of simultaneous copies
+     */
+    public static final PropertyDescriptor MAX_MAPS = new PropertyDescriptor.Builder()
+        .name("max.maps")
+        .description("Maximum number of map tasks copying files at the same time")
+        .required(true)
+        .defaultValue(Integer.toString(DistCpConstants.DEFAULT_MAPS))
+        .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+        .build();
+
     /**
      * Output paths to other NiFi processors
      */
@@ -122,7 +134,7 @@ public class DistCopyHDFS extends AbstractHadoopProcessor {
     @Override
     protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
         return ImmutableList.<PropertyDescriptor>builder().addAll(super.getSupportedPropertyDescriptors()).
-            add(DESTINATION).add(SOURCE).add(FILES).build();
+            add(DESTINATION).add(SOURCE).add(FILES).add(MAX_MAPS).build();
     }
 
     /**
@@ -157,6 +169,7 @@ public class DistCopyHDFS extends AbstractHadoopProcessor {
         String filesJSON = context.getProperty(FILES).evaluateAttributeExpressions(flowFile).getValue();
         String source = context.getProperty(SOURCE).evaluateAttributeExpressions(flowFile).getValue();
         String destination = context.getProperty(DESTINATION).evaluateAttributeExpressions(flowFile).getValue();
+        int maxMaps = context.getProperty(MAX_MAPS).asInteger();
         Gson jsonParser = new Gson();
         File[] filesList;
         ArrayList<Path> pathsList = new ArrayList<>();
@@ -185,9 +198,13 @@ public class DistCopyHDFS extends AbstractHadoopProcessor {
                 }
                 pathsList.add(new Path(source));
             }
-            DistCp distCp = getDistCp(pathsList, new Path(destination));
+            DistCp distCp = getDistCp(pathsList, new Path(destination), maxMaps);
             Job job = distCp.execute();
-            job.waitForCompletion(false);
+            if (!job.waitForCompletion(false)) {
+                getLog().error("DistCp job " + job.getJobID() + " failed: " + job.getStatus().getFailureInfo());
+                session.transfer(flowFile, REL_FAILURE);
+                return;
+            }
         } catch (JsonSyntaxException e) {
             getLog().error("Files list attribute does not contain a proper JSON array");
             session.transfer(flowFile, REL_FAILURE);
@@ -208,12 +225,14 @@ public class DistCopyHDFS extends AbstractHadoopProcessor {
      *
      * @param pathsList   A list of paths to be recursively copied from one cluster to another
      * @param destination The root location on the target cluster
+     * @param maxMaps     The maximum number of simultaneous copies
      * @return a DistCp object
      * @throws Exception if the construction of the {@link DistCp} object fails for any reason
      */
-    protected DistCp getDistCp(List<Path> pathsList, Path destination) throws Exception {
+    protected DistCp getDistCp(List<Path> pathsList, Path destination, int maxMaps) throws Exception {
         final Configuration conf = getConfiguration();
         DistCpOptions opts = new DistCpOptions(pathsList, destination);
+        opts.setMaxMaps(maxMaps);
         return new DistCp(conf, opts);
     }
 
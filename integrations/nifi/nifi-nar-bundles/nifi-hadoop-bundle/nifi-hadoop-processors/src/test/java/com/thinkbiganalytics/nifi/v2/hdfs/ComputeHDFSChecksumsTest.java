@@ -301,6 +301,49 @@ public class ComputeHDFSChecksumsTest {
         inOrder.verifyNoMoreInteractions();
     }
 
+    @Test
+    public void testMultipleFilesConcurrently() throws Exception {
+        String fileName = "000000_0";
+        String fileName2 = "000000_1";
+        String fileName3 = "000000_2";
+        String directory = "/dropzone";
+
+        Mockito.when(fileSystem.getFileChecksum(new Path(directory, fileName)))
+            .thenReturn(new MD5MD5CRC32FileChecksum(0, 512, new MD5Hash("112233445566778899aabbccddeeff00")));
+        Mockito.when(fileSystem.getFileChecksum(new Path(directory, fileName2)))
+            .thenReturn(new MD5MD5CRC32FileChecksum(0, 512, new MD5Hash("112233445566778899aabbccddeeff01")));
+        Mockito.when(fileSystem.getFileChecksum(new Path(directory, fileName3)))
+            .thenReturn(new MD5MD5CRC32FileChecksum(0, 512, new MD5Hash("112233445566778899aabbccddeeff02")));
+
+        runner.setProperty(ComputeHDFSChecksums.DIRECTORY, directory);
+        runner.setProperty(ComputeHDFSChecksums.FAIL_IF_INCORRECT_CHECKSUM, "True");
+        runner.setProperty(ComputeHDFSChecksums.MAX_CONCURRENT_CHECKSUMS, "2");
+        runner.setProperty(ComputeHDFSChecksums.FILES,
+                           String.format("[" + fileEntry + "," + fileEntry + "," + fileEntry + "]",
+                                         fileName, "AAAAAAAAAAAAAAIAESIzRFVmd4iZqrvM3e7/AAAAAAA=",
+                                         fileName2, "AAAAAAAAAAAAAAIAESIzRFVmd4iZqrvM3e7/AQAAAAA=",
+                                         fileName3, "AAAAAAAAAAAAAAIAESIzRFVmd4iZqrvM3e7/AgAAAAA="));
+        runner.enqueue(new byte[0]);
+        runner.run();
+
+        // Check relationships
+        Assert.assertEquals(0, runner.getFlowFilesForRelationship(ComputeHDFSChecksums.REL_FAILURE).size());
+        Assert.assertEquals(1, runner.getFlowFilesForRelationship(ComputeHDFSChecksums.REL_SUCCESS).size());
+
+        // Check computed checksums are kept in the original order
+        String filesJSON = runner.getFlowFilesForRelationship(ComputeHDFSChecksums.REL_SUCCESS).get(0).getAttribute("files");
+        ComputeHDFSChecksums.File[] files = new Gson().fromJson(filesJSON, ComputeHDFSChecksums.File[].class);
+        Assert.assertEquals("AAAAAAAAAAAAAAIAESIzRFVmd4iZqrvM3e7/AAAAAAA=", files[0].getComputedChecksum().getValue());
+        Assert.assertEquals("AAAAAAAAAAAAAAIAESIzRFVmd4iZqrvM3e7/AQAAAAA=", files[1].getComputedChecksum().getValue());
+        Assert.assertEquals("AAAAAAAAAAAAAAIAESIzRFVmd4iZqrvM3e7/AgAAAAA=", files[2].getComputedChecksum().getValue());
+
+        // Check file system calls
+        Mockito.verify(fileSystem).getFileChecksum(new Path(directory, fileName));
+        Mockito.verify(fileSystem).getFileChecksum(new Path(directory, fileName2));
+        Mockito.verify(fileSystem).getFileChecksum(new Path(directory, fileName3));
+        Mockito.verifyNoMoreInteractions(fileSystem);
+    }
+
     @Test
     public void testFileNotFoundException() throws Exception {
         String fileName = "000000_0";
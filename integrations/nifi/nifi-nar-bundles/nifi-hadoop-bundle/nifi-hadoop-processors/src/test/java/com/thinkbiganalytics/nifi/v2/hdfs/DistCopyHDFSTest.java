@@ -24,6 +24,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.tools.DistCp;
 import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.processor.ProcessContext;
@@ -73,6 +74,7 @@ public class DistCopyHDFSTest {
         runner.setValidateExpressionUsage(false);
 
         Mockito.when(distCp.execute()).thenReturn(job);
+        Mockito.when(job.waitForCompletion(false)).thenReturn(true);
     }
 
     /**
@@ -140,6 +142,26 @@ public class DistCopyHDFSTest {
         Assert.assertEquals(proc.TEST_pathsList, new ArrayList<>(Arrays.asList(source)));
     }
 
+    @Test
+    public void testJobFailed() throws Exception {
+        Mockito.when(job.waitForCompletion(false)).thenReturn(false);
+        Mockito.when(job.getStatus()).thenReturn(Mockito.mock(JobStatus.class));
+
+        runner.setProperty(DistCopyHDFS.DESTINATION, "/dropzone");
+        runner.setProperty(DistCopyHDFS.SOURCE, "/var");
+        runner.setProperty(DistCopyHDFS.MAX_MAPS, "50");
+        runner.enqueue(new byte[0]);
+        runner.run();
+
+        // Check relationships
+        Assert.assertEquals(1, runner.getFlowFilesForRelationship(DistCopyHDFS.REL_FAILURE).size());
+        Assert.assertEquals(0, runner.getFlowFilesForRelationship(DistCopyHDFS.REL_SUCCESS).size());
+
+        // Check maximum simultaneous copies provided to DistCp
+        TestableDistCopyHDFS proc = (TestableDistCopyHDFS) runner.getProcessor();
+        Assert.assertEquals(50, proc.TEST_maxMaps);
+    }
+
     @Test
     public void testSourceAndFilesSet() throws Exception {
         String source = "/var";
@@ -234,6 +256,7 @@ public class DistCopyHDFSTest {
 
         private List<Path> TEST_pathsList;
         private Path TEST_destination;
+        private int TEST_maxMaps;
 
         @Nullable
         @Override
@@ -248,9 +271,10 @@ public class DistCopyHDFSTest {
         }
 
         @Override
-        protected DistCp getDistCp(List<Path> pathsList, Path destination) {
+        protected DistCp getDistCp(List<Path> pathsList, Path destination, int maxMaps) {
             TEST_pathsList = pathsList;
             TEST_destination = destination;
+            TEST_maxMaps = maxMaps;
             return distCp;
         }
 
@@ -0,0 +1,170 @@
+package com.thinkbiganalytics.nifi.provenance.benchmark;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-benchmarks
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.thinkbiganalytics.nifi.provenance.ProvenanceEventRecordConverter;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.stats.GroupedStats;
+import com.thinkbiganalytics.nifi.provenance.model.stats.GroupedStatsV2;
+import com.thinkbiganalytics.nifi.provenance.repo.FeedEventStatistics;
+import com.thinkbiganalytics.nifi.provenance.repo.FeedProcessorStatisticsAggregator;
+import com.thinkbiganalytics.nifi.provenance.repo.FeedStatisticsManager;
+import com.thinkbiganalytics.nifi.provenance.util.ProvenanceEventUtil;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays synthetic feed flows through each stage of the Kylo provenance reporting pipeline.
+ * Each invocation processes {@link #EVENTS} events so the reported score is events per second, and with the gc profiler gc.alloc.rate.norm is the bytes allocated per event.
+ *
+ * Run with: java -jar target/benchmarks.jar ProvenancePipelineBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProvenancePipelineBenchmark {
+
+    /**
+     * Number of events replayed in each invocation
+     */
+    public static final int EVENTS = 10000;
+
+    @Param({"LINEAR", "SPLIT", "MERGE", "STREAMING"})
+    private SyntheticFlowGenerator.FlowShape shape;
+
+    /**
+     * Number of distinct feeds the flows belong to
+     */
+    @Param({"1", "20"})
+    private int feeds;
+
+    /**
+     * Number of children for a split, or parents for a merge
+     */
+    @Param({"50"})
+    private int fanOut;
+
+    private ProvenanceEventRecord[] events;
+
+    private GroupedStats[] eventStats;
+
+    private ProvenanceEventRecordDTOHolder eventHolder;
+
+    @Setup
+    public void setup() {
+        List<ProvenanceEventRecord> eventList = new SyntheticFlowGenerator(shape, feeds, fanOut).generate(EVENTS);
+        events = eventList.toArray(new ProvenanceEventRecord[eventList.size()]);
+
+        //the per event stats and the JMS payload, as they would be built while processing the events
+        eventStats = new GroupedStats[EVENTS];
+        List<ProvenanceEventRecordDTO> dtos = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            eventStats[i] = new GroupedStatsV2(events[i].getSourceQueueIdentifier());
+            FeedProcessorStatisticsAggregator.getInstance().add(eventStats[i], events[i], (long) i);
+            ProvenanceEventRecordDTO dto = ProvenanceEventRecordConverter.convert(events[i]);
+            dto.setEventId((long) i);
+            dtos.add(dto);
+        }
+        eventHolder = new ProvenanceEventRecordDTOHolder();
+        eventHolder.setEvents(dtos);
+        FeedEventStatistics.getInstance().clear();
+    }
+
+    /**
+     * The flow file lineage is kept between events.  Start each replay of the same events with an empty lineage
+     */
+    @TearDown(Level.Invocation)
+    public void clearLineage() {
+        FeedEventStatistics.getInstance().clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void feedStatisticsManagerAddEvent() {
+        FeedStatisticsManager feedStatisticsManager = FeedStatisticsManager.getInstance();
+        for (int i = 0; i < events.length; i++) {
+            feedStatisticsManager.addEvent(events[i], (long) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void feedEventStatisticsAssignParentsAndChildren(Blackhole blackhole) {
+        FeedEventStatistics feedEventStatistics = FeedEventStatistics.getInstance();
+        for (int i = 0; i < events.length; i++) {
+            ProvenanceEventRecord event = events[i];
+            if (ProvenanceEventUtil.isStartingFlowEvent(event)) {
+                feedEventStatistics.checkAndAssignStartingFlowFile(event, (long) i);
+            }
+            blackhole.consume(feedEventStatistics.assignParentsAndChildren(event));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public GroupedStats feedProcessorStatisticsAggregatorAddStats() {
+        GroupedStats total = new GroupedStatsV2();
+        FeedProcessorStatisticsAggregator aggregator = FeedProcessorStatisticsAggregator.getInstance();
+        for (GroupedStats stats : eventStats) {
+            aggregator.addStats1(total, stats);
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void convertEvents(Blackhole blackhole) {
+        for (ProvenanceEventRecord event : events) {
+            blackhole.consume(ProvenanceEventRecordConverter.convert(event));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public byte[] serializeEvents() {
+        return SerializationUtils.serialize(eventHolder);
+    }
+}
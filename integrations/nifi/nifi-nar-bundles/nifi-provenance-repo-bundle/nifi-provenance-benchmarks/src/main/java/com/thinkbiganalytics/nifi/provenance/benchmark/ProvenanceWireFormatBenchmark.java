@@ -0,0 +1,169 @@
+package com.thinkbiganalytics.nifi.provenance.benchmark;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-benchmarks
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.nifi.provenance.KyloProcessorFlowType;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.codec.ProvenanceWireFormat;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
+import com.thinkbiganalytics.nifi.provenance.model.util.GroupedStatsUtil;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the java serialization of the JMS payloads sent from NiFi to Ops Manager with the {@link ProvenanceWireFormat}.
+ *
+ * Run with: java -jar target/benchmarks.jar ProvenanceWireFormatBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProvenanceWireFormatBenchmark {
+
+    /**
+     * Number of events in each batch
+     */
+    @Param({"100", "1000"})
+    private int events;
+
+    /**
+     * Number of distinct feeds the events belong to
+     */
+    @Param({"1", "20"})
+    private int feeds;
+
+    private ProvenanceEventRecordDTOHolder eventHolder;
+
+    private AggregatedFeedProcessorStatisticsHolder statsHolder;
+
+    private byte[] serializedEvents;
+
+    private byte[] encodedEvents;
+
+    private byte[] serializedStats;
+
+    private byte[] encodedStats;
+
+    @Setup
+    public void setup() {
+        List<ProvenanceEventRecordDTO> eventList = new ArrayList<>(events);
+        long eventTime = System.currentTimeMillis();
+        String[] jobFlowFiles = new String[feeds];
+        for (int i = 0; i < feeds; i++) {
+            jobFlowFiles[i] = UUID.randomUUID().toString();
+        }
+        for (int i = 0; i < events; i++) {
+            int feed = i % feeds;
+            int processor = (i / feeds) % 8;
+            ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+            event.setEventId(10000L + i);
+            event.setEventTime(eventTime + i * 3);
+            event.setStartTime(eventTime + i * 3 - 12);
+            event.setEventType(processor == 0 ? "CREATE" : processor == 7 ? "DROP" : "ATTRIBUTES_MODIFIED");
+            event.setFlowFileUuid(UUID.randomUUID().toString());
+            event.setJobFlowFileId(jobFlowFiles[feed]);
+            event.setFirstEventProcessorId("feed-" + feed + "-processor-0");
+            event.setComponentId("feed-" + feed + "-processor-" + processor);
+            event.setComponentName("Processor " + processor);
+            event.setComponentType("UpdateAttribute");
+            event.setGroupId("feed-" + feed + "-group");
+            event.setFeedName("category.feed" + feed);
+            event.setFeedProcessGroupId("feed-" + feed + "-group");
+            event.setSourceConnectionIdentifier("feed-" + feed + "-connection-" + processor);
+            event.setFileSizeBytes(2048L);
+            event.setFileSize("2 KB");
+            event.setIsStartOfJob(processor == 0);
+            event.setIsFinalJobEvent(processor == 7);
+            event.setProcessorType(KyloProcessorFlowType.NORMAL_FLOW);
+            event.setParentUuids(Collections.singletonList(jobFlowFiles[feed]));
+            eventList.add(event);
+        }
+        eventHolder = new ProvenanceEventRecordDTOHolder();
+        eventHolder.setEvents(eventList);
+        statsHolder = GroupedStatsUtil.gatherStats(eventList);
+
+        serializedEvents = SerializationUtils.serialize(eventHolder);
+        encodedEvents = ProvenanceWireFormat.encode(eventHolder);
+        serializedStats = SerializationUtils.serialize(statsHolder);
+        encodedStats = ProvenanceWireFormat.encode(statsHolder);
+    }
+
+    @Benchmark
+    public byte[] javaSerializeEvents() {
+        return SerializationUtils.serialize(eventHolder);
+    }
+
+    @Benchmark
+    public byte[] wireFormatEncodeEvents() {
+        return ProvenanceWireFormat.encode(eventHolder);
+    }
+
+    @Benchmark
+    public Object javaDeserializeEvents() {
+        return SerializationUtils.deserialize(serializedEvents);
+    }
+
+    @Benchmark
+    public Object wireFormatDecodeEvents() {
+        return ProvenanceWireFormat.decode(encodedEvents);
+    }
+
+    @Benchmark
+    public byte[] javaSerializeStats() {
+        return SerializationUtils.serialize(statsHolder);
+    }
+
+    @Benchmark
+    public byte[] wireFormatEncodeStats() {
+        return ProvenanceWireFormat.encode(statsHolder);
+    }
+
+    @Benchmark
+    public Object javaDeserializeStats() {
+        return SerializationUtils.deserialize(serializedStats);
+    }
+
+    @Benchmark
+    public Object wireFormatDecodeStats() {
+        return ProvenanceWireFormat.decode(encodedStats);
+    }
+}
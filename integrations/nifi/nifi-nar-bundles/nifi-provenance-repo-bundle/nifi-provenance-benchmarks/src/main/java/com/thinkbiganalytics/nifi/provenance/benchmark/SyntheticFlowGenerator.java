@@ -0,0 +1,181 @@
+package com.thinkbiganalytics.nifi.provenance.benchmark;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-benchmarks
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Builds the provenance events NiFi would report for feeds of a given shape.
+ * The events are returned in the order NiFi would hand them to the provenance repository so they can be replayed through the Kylo reporting pipeline.
+ */
+public class SyntheticFlowGenerator {
+
+    /**
+     * The shape of the synthetic feed flows
+     */
+    public enum FlowShape {
+        /**
+         * Each flow file passes through a chain of processors
+         */
+        LINEAR,
+        /**
+         * Each flow file is split into many children that are processed individually
+         */
+        SPLIT,
+        /**
+         * Many flow files are merged together into one
+         */
+        MERGE,
+        /**
+         * A high rate of short lived flow files on the same feed
+         */
+        STREAMING
+    }
+
+    private static final long FILE_SIZE = 2048L;
+
+    private final FlowShape shape;
+
+    private final int feeds;
+
+    /**
+     * The number of children for a split, or parents for a merge
+     */
+    private final int fanOut;
+
+    private long eventTime = 1500000000000L;
+
+    public SyntheticFlowGenerator(FlowShape shape, int feeds, int fanOut) {
+        this.shape = shape;
+        this.feeds = feeds;
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Generate whole flows, round robin over the feeds, until there are the requested number of events.
+     * The last flow is cut short if needed so exactly that number of events is returned.
+     *
+     * @param events the number of events to generate
+     * @return the events
+     */
+    public List<ProvenanceEventRecord> generate(int events) {
+        List<ProvenanceEventRecord> flowEvents = new ArrayList<>(events + fanOut * 3);
+        int flow = 0;
+        while (flowEvents.size() < events) {
+            String feed = "feed-" + (flow % feeds);
+            switch (shape) {
+                case LINEAR:
+                    linearFlow(feed, flowEvents);
+                    break;
+                case SPLIT:
+                    splitFlow(feed, flowEvents);
+                    break;
+                case MERGE:
+                    mergeFlow(feed, flowEvents);
+                    break;
+                case STREAMING:
+                    streamingFlow(feed, flowEvents);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported flow shape " + shape);
+            }
+            flow++;
+        }
+        return new ArrayList<>(flowEvents.subList(0, events));
+    }
+
+    private void linearFlow(String feed, List<ProvenanceEventRecord> flowEvents) {
+        String flowFile = UUID.randomUUID().toString();
+        flowEvents.add(event(feed, "GenerateFlowFile", ProvenanceEventType.CREATE, flowFile).build());
+        flowEvents.add(event(feed, "UpdateAttribute", ProvenanceEventType.ATTRIBUTES_MODIFIED, flowFile).build());
+        flowEvents.add(event(feed, "ReplaceText", ProvenanceEventType.CONTENT_MODIFIED, flowFile).build());
+        flowEvents.add(event(feed, "PutFile", ProvenanceEventType.SEND, flowFile).build());
+        flowEvents.add(event(feed, "PutFile", ProvenanceEventType.DROP, flowFile).build());
+    }
+
+    private void splitFlow(String feed, List<ProvenanceEventRecord> flowEvents) {
+        String flowFile = UUID.randomUUID().toString();
+        flowEvents.add(event(feed, "GetFile", ProvenanceEventType.RECEIVE, flowFile).build());
+        StandardProvenanceEventRecord.Builder split = event(feed, "SplitText", ProvenanceEventType.FORK, flowFile).addParentUuid(flowFile);
+        List<String> children = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            String child = UUID.randomUUID().toString();
+            children.add(child);
+            split.addChildUuid(child);
+        }
+        flowEvents.add(split.build());
+        flowEvents.add(event(feed, "SplitText", ProvenanceEventType.DROP, flowFile).build());
+        for (String child : children) {
+            flowEvents.add(event(feed, "UpdateAttribute", ProvenanceEventType.ATTRIBUTES_MODIFIED, child).build());
+            flowEvents.add(event(feed, "PutFile", ProvenanceEventType.DROP, child).build());
+        }
+    }
+
+    private void mergeFlow(String feed, List<ProvenanceEventRecord> flowEvents) {
+        String merged = UUID.randomUUID().toString();
+        StandardProvenanceEventRecord.Builder merge = event(feed, "MergeContent", ProvenanceEventType.JOIN, merged).addChildUuid(merged);
+        List<String> parents = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            String parent = UUID.randomUUID().toString();
+            parents.add(parent);
+            merge.addParentUuid(parent);
+            flowEvents.add(event(feed, "GenerateFlowFile", ProvenanceEventType.CREATE, parent).build());
+        }
+        flowEvents.add(merge.build());
+        for (String parent : parents) {
+            flowEvents.add(event(feed, "MergeContent", ProvenanceEventType.DROP, parent).build());
+        }
+        flowEvents.add(event(feed, "PutFile", ProvenanceEventType.SEND, merged).build());
+        flowEvents.add(event(feed, "PutFile", ProvenanceEventType.DROP, merged).build());
+    }
+
+    private void streamingFlow(String feed, List<ProvenanceEventRecord> flowEvents) {
+        String flowFile = UUID.randomUUID().toString();
+        flowEvents.add(event(feed, "ConsumeKafka", ProvenanceEventType.RECEIVE, flowFile).build());
+        flowEvents.add(event(feed, "PublishKafka", ProvenanceEventType.SEND, flowFile).build());
+        flowEvents.add(event(feed, "PublishKafka", ProvenanceEventType.DROP, flowFile).build());
+    }
+
+    /**
+     * Build an event for the processor of the given type in the feed.  Each event is 3ms after the previous one
+     */
+    private StandardProvenanceEventRecord.Builder event(String feed, String componentType, ProvenanceEventType eventType, String flowFile) {
+        eventTime += 3;
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventTime(eventTime)
+            .setFlowFileEntryDate(eventTime)
+            .setLineageStartDate(eventTime)
+            .setComponentId(feed + "-" + componentType)
+            .setComponentType(componentType)
+            .setCurrentContentClaim("container", "section", "identifier", 0L, FILE_SIZE)
+            .setFlowFileUUID(flowFile)
+            .setEventType(eventType)
+            .setTransitUri("file://" + feed)
+            .setSourceQueueIdentifier(feed + "-" + componentType + "-queue");
+    }
+}
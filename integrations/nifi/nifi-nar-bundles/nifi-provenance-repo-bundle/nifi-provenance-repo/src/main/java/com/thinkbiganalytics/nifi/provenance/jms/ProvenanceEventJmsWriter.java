@@ -24,7 +24,9 @@ import com.thinkbiganalytics.jms.SendJmsMessage;
 import com.thinkbiganalytics.jms.Queues;
 import com.thinkbiganalytics.nifi.provenance.AggregationEventProcessingStats;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.codec.ProvenanceWireFormat;
 import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
+import com.thinkbiganalytics.nifi.provenance.repo.ConfigurationProperties;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +44,7 @@ import javax.annotation.PostConstruct;
  * 2 Queues are used.  The Queue names are constants shared with Kylo Operations Manager found in the {@link Queues} class.
  * Queues.PROVENANCE_EVENT_STATS_QUEUE  is the Statistics Queue name for creating the Summary statistics
  * Queues.FEED_MANAGER_QUEUE is the Batch Provenance Events Queue for creating the Jobs/Steps in Kylo
+ * When the binary wire format is enabled the data is encoded with the {@link ProvenanceWireFormat} and sent to the Queues.PROVENANCE_EVENT_STATS_QUEUE2 and Queues.FEED_MANAGER_QUEUE2 queues instead
  */
 public class ProvenanceEventJmsWriter {
 
@@ -92,7 +95,11 @@ public class ProvenanceEventJmsWriter {
      */
     public void writeStats(AggregatedFeedProcessorStatisticsHolder stats) {
         try {
-                sendJmsMessage.sendSerializedObjectToQueue(Queues.PROVENANCE_EVENT_STATS_QUEUE, stats);
+                if (ConfigurationProperties.getInstance().isBinaryWireFormat()) {
+                    sendJmsMessage.sendBytesToQueue(Queues.PROVENANCE_EVENT_STATS_QUEUE2, ProvenanceWireFormat.encode(stats));
+                } else {
+                    sendJmsMessage.sendSerializedObjectToQueue(Queues.PROVENANCE_EVENT_STATS_QUEUE, stats);
+                }
               //  AggregationEventProcessingStats.addStreamingEvents(stats.getEventCount().intValue());
                 notifySuccess(Queues.PROVENANCE_EVENT_STATS_QUEUE, stats);
         } catch (Exception e) {
@@ -109,7 +116,11 @@ public class ProvenanceEventJmsWriter {
     public void writeBatchEvents(ProvenanceEventRecordDTOHolder events) {
         try {
             logger.info("SENDING Batch Events to JMS {} ", events);
-            sendJmsMessage.sendSerializedObjectToQueue(Queues.FEED_MANAGER_QUEUE, events);
+            if (ConfigurationProperties.getInstance().isBinaryWireFormat()) {
+                sendJmsMessage.sendBytesToQueue(Queues.FEED_MANAGER_QUEUE2, ProvenanceWireFormat.encode(events));
+            } else {
+                sendJmsMessage.sendSerializedObjectToQueue(Queues.FEED_MANAGER_QUEUE, events);
+            }
             AggregationEventProcessingStats.addBatchEvents(events.getEvents().size());
             notifySuccess(Queues.FEED_MANAGER_QUEUE, events);
         } catch (Exception e) {
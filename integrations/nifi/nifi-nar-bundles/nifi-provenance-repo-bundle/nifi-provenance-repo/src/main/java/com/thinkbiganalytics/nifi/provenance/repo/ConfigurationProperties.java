@@ -45,6 +45,16 @@ public class ConfigurationProperties {
     public static final Integer DEFAULT_THROTTLE_STARTING_FEED_FLOWS_THRESHOLD = 15;
     public static final Integer DEFAULT_THROTTLE_STARTING_FEED_FLOWS_TIME_PERIOD_MILLIS = 1000;
 
+    public static final Integer DEFAULT_EVENT_SHARDS = 16;
+
+    /**
+     * primitive so referencing it does not initialize this class (FeedEventStatistics uses it while this class is loading)
+     */
+    public static final long DEFAULT_LINEAGE_MAX_ENTRIES = 10000000L;
+
+    public static final Integer DEFAULT_JOURNAL_SEGMENT_SIZE_MB = 64;
+    public static final Long DEFAULT_JOURNAL_COMPACTION_INTERVAL_SECONDS = 60L;
+
     public static final Integer DEFAULT_REMOTE_INPUT_PORT_EXPIRE_TIME_SECONDS = 20*1000*60; //20 min
 
     public static final String DEFAULT_ORPHAN_CHILD_FLOW_FILE_PROCESSORS = "{\"CLONE\":[\"ConvertCSVToAvro\"]}";
@@ -65,6 +75,20 @@ public class ConfigurationProperties {
 
     private Integer remoteInputPortExpireTimeSeconds = DEFAULT_REMOTE_INPUT_PORT_EXPIRE_TIME_SECONDS;
 
+    private Integer eventShards = DEFAULT_EVENT_SHARDS;
+
+    private Long lineageMaxEntries = DEFAULT_LINEAGE_MAX_ENTRIES;
+
+    private boolean lineageOffHeap = false;
+
+    private boolean journalEnabled = true;
+
+    private Integer journalSegmentSizeMb = DEFAULT_JOURNAL_SEGMENT_SIZE_MB;
+
+    private Long journalCompactionIntervalSeconds = DEFAULT_JOURNAL_COMPACTION_INTERVAL_SECONDS;
+
+    private boolean binaryWireFormat = false;
+
     //JSON MAP of eventType to processors that create children that are removed without provenance.
     private String orphanChildFlowFileProcessorsString;
 
@@ -119,6 +143,13 @@ public class ConfigurationProperties {
         this.throttleStartingFeedFlowsTimePeriodMillis = new Integer(properties.getProperty("kylo.provenance.event.throttle.threshold.time.millis", DEFAULT_THROTTLE_STARTING_FEED_FLOWS_TIME_PERIOD_MILLIS + ""));
         orphanChildFlowFileProcessorsString = properties.getProperty("kylo.provenance.orphan.child.flowfile.processors", DEFAULT_ORPHAN_CHILD_FLOW_FILE_PROCESSORS);
         this.remoteInputPortExpireTimeSeconds = new Integer(properties.getProperty("kylo.provenance.remote.event.expire.time.seconds",DEFAULT_REMOTE_INPUT_PORT_EXPIRE_TIME_SECONDS+""));
+        this.eventShards = new Integer(properties.getProperty("kylo.provenance.event.shards", DEFAULT_EVENT_SHARDS + ""));
+        this.lineageMaxEntries = new Long(properties.getProperty("kylo.provenance.lineage.max.entries", DEFAULT_LINEAGE_MAX_ENTRIES + ""));
+        this.lineageOffHeap = Boolean.parseBoolean(properties.getProperty("kylo.provenance.lineage.offheap", "false"));
+        this.journalEnabled = Boolean.parseBoolean(properties.getProperty("kylo.provenance.journal.enabled", "true"));
+        this.journalSegmentSizeMb = new Integer(properties.getProperty("kylo.provenance.journal.segment.size.mb", DEFAULT_JOURNAL_SEGMENT_SIZE_MB + ""));
+        this.journalCompactionIntervalSeconds = new Long(properties.getProperty("kylo.provenance.journal.compaction.interval.seconds", DEFAULT_JOURNAL_COMPACTION_INTERVAL_SECONDS + ""));
+        this.binaryWireFormat = Boolean.parseBoolean(properties.getProperty("kylo.provenance.jms.binary.wire.format", "false"));
         //only update this on the initial run.  Any changes will be detected and updated with the ConfigurationPropertiesRefresher
         if(lastModified == null) {
             FeedEventStatistics.getInstance().updateEventTypeProcessorTypeSkipChildren(orphanChildFlowFileProcessorsString);
@@ -152,6 +183,58 @@ public class ConfigurationProperties {
         return remoteInputPortExpireTimeSeconds == null ? DEFAULT_REMOTE_INPUT_PORT_EXPIRE_TIME_SECONDS : remoteInputPortExpireTimeSeconds;
     }
 
+    /**
+     * The number of independent shards the provenance events are routed to by their feed flow file.
+     * This is only read on startup
+     */
+    public Integer getEventShards() {
+        return eventShards == null || eventShards < 1 ? DEFAULT_EVENT_SHARDS : eventShards;
+    }
+
+    /**
+     * The max number of entries in each of the flow file lineage maps.  This is only read on startup
+     */
+    public Long getLineageMaxEntries() {
+        return lineageMaxEntries == null || lineageMaxEntries < 1 ? DEFAULT_LINEAGE_MAX_ENTRIES : lineageMaxEntries;
+    }
+
+    /**
+     * Should the flow file lineage maps be stored in direct (off-heap) memory.  This is only read on startup
+     */
+    public boolean isLineageOffHeap() {
+        return lineageOffHeap;
+    }
+
+    /**
+     * Should changes to the feed event statistics be journaled so they can be recovered if NiFi crashes.  This is only read on startup
+     */
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    /**
+     * The size in bytes of each memory mapped journal generation, split evenly into one segment per event shard.  This is only read on startup
+     */
+    public int getJournalSegmentSizeBytes() {
+        int sizeMb = journalSegmentSizeMb == null || journalSegmentSizeMb < 1 ? DEFAULT_JOURNAL_SEGMENT_SIZE_MB : Math.min(journalSegmentSizeMb, 1024);
+        return sizeMb * 1024 * 1024;
+    }
+
+    /**
+     * How often the journal is compacted into a new feed event statistics snapshot.  This is only read on startup
+     */
+    public Long getJournalCompactionIntervalSeconds() {
+        return journalCompactionIntervalSeconds == null || journalCompactionIntervalSeconds < 1 ? DEFAULT_JOURNAL_COMPACTION_INTERVAL_SECONDS : journalCompactionIntervalSeconds;
+    }
+
+    /**
+     * Should the events and stats be sent to Ops Manager using the compact {@link com.thinkbiganalytics.nifi.provenance.model.codec.ProvenanceWireFormat}
+     * instead of java serialization
+     */
+    public boolean isBinaryWireFormat() {
+        return binaryWireFormat;
+    }
+
     public void populateChanges(Map<String, PropertyChange> changes, boolean old) {
         changes.computeIfAbsent(BACKUP_LOCATION_KEY, key -> new PropertyChange(key)).setValue(backupLocation, old);
         changes.computeIfAbsent(MAX_FEED_EVENTS_KEY, key -> new PropertyChange(key)).setValue(maxFeedEvents + "", old);
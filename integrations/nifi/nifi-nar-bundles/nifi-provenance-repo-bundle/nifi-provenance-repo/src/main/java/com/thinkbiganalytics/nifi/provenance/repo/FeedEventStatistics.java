@@ -29,6 +29,9 @@ import com.google.common.cache.RemovalNotification;
 import com.thinkbiganalytics.json.ObjectMapperSerializer;
 import com.thinkbiganalytics.nifi.provenance.RemoteMessageResponseWithRelatedFlowFiles;
 import com.thinkbiganalytics.nifi.provenance.model.RemoteEventMessageResponse;
+import com.thinkbiganalytics.nifi.provenance.repo.lineage.EventIdLongMap;
+import com.thinkbiganalytics.nifi.provenance.repo.lineage.FlowFileIdMap;
+import com.thinkbiganalytics.nifi.provenance.repo.lineage.FlowFileLongMap;
 import com.thinkbiganalytics.nifi.provenance.util.ProvenanceEventUtil;
 
 import org.apache.commons.io.serialization.ValidatingObjectInputStream;
@@ -45,14 +48,17 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -73,13 +79,13 @@ public class FeedEventStatistics implements Serializable {
     protected Map<String, String> feedFlowFileIdToFeedProcessorId = new ConcurrentHashMap<>();
 
     ////Track feedFlowFile relationships to parent/child flow files for lifetime feed job execution
-    protected Set<String> detailedTrackingFeedFlowFileId = new HashSet<>();
+    protected Set<String> detailedTrackingFeedFlowFileId = ConcurrentHashMap.newKeySet();
 
     /**
      * Map of all the flow files as they pertain to the starting feed flow file
      * Used to expire EventStatistics
      */
-    protected Map<String, String> allFlowFileToFeedFlowFile = new ConcurrentHashMap<>();
+    protected FlowFileIdMap allFlowFileToFeedFlowFile;
 
 
     /**
@@ -113,14 +119,14 @@ public class FeedEventStatistics implements Serializable {
     /**
      * Map of the FlowFile Id to Event Time that is not a drop event
      */
-    protected Map<String, Long> flowFileLastNonDropEventTime = new ConcurrentHashMap<>();
+    protected FlowFileLongMap flowFileLastNonDropEventTime;
 
     /**
      * Map of the EventId to the duration in millis
      */
-    protected Map<Long, Long> eventDuration = new ConcurrentHashMap<>();
+    protected EventIdLongMap eventDuration;
 
-    protected Map<Long, Long> eventStartTime = new ConcurrentHashMap<>();
+    protected EventIdLongMap eventStartTime;
 
     /**
      * feed flowFile Id to startTime
@@ -139,7 +145,7 @@ public class FeedEventStatistics implements Serializable {
     /**
      * Set of Event Ids that are events that finish the feed flow execution.  Last Job Event Ids
      */
-    protected Set<Long> eventsThatCompleteFeedFlow = new HashSet<>();
+    protected Set<Long> eventsThatCompleteFeedFlow = ConcurrentHashMap.newKeySet();
 
     /**
      * Count of how many flow files are still processing for a given feedFlowFile execution
@@ -168,7 +174,7 @@ public class FeedEventStatistics implements Serializable {
     /**
      * Count of the flows running by feed processor
      */
-    protected Set<String> changedFeedProcessorRunningFeedFlows = new HashSet<>();
+    protected Set<String> changedFeedProcessorRunningFeedFlows = ConcurrentHashMap.newKeySet();
 
     protected AtomicBoolean feedProcessorRunningFeedFlowsChanged = new AtomicBoolean(false);
 
@@ -180,6 +186,13 @@ public class FeedEventStatistics implements Serializable {
 
     private boolean deleteBackupAfterLoad = true;
 
+    /**
+     * Write ahead journal of the flow file lineage changes made since the last snapshot.  Disabled until {@link #configureJournal(boolean, int, int, long)} is called
+     */
+    private transient FeedEventStatisticsJournal journal = new FeedEventStatisticsJournal(backupLocation, 0, 1);
+
+    private long journalCompactionIntervalSeconds;
+
     /**
      * Map of the NiFi Event to Nifi Class that should be skipped
      */
@@ -196,7 +209,7 @@ public class FeedEventStatistics implements Serializable {
     /**
      * List of the input processor ids that are streaming
      */
-    protected List<String> streamingFeedProcessorIdsList = new ArrayList<>();
+    protected List<String> streamingFeedProcessorIdsList = new CopyOnWriteArrayList<>();
 
     protected Cache<Long, ReprocessRemoteDropEvent> remoteDropEventsReprocessCache = CacheBuilder.newBuilder()
         .expireAfterWrite(1, TimeUnit.MINUTES)
@@ -206,7 +219,7 @@ public class FeedEventStatistics implements Serializable {
     private static final FeedEventStatistics instance = new FeedEventStatistics();
 
     private FeedEventStatistics() {
-
+        configureLineageStore(ConfigurationProperties.DEFAULT_LINEAGE_MAX_ENTRIES, false);
     }
 
     public static FeedEventStatistics getInstance() {
@@ -236,6 +249,53 @@ public class FeedEventStatistics implements Serializable {
         return skip;
     }
 
+    /**
+     * Create the primitive maps holding the flow file lineage and event timing, copying over any entries already tracked.
+     * This is called when the repository is initialized, before any events are processed.
+     *
+     * @param maxEntries the max number of entries in each map
+     * @param offHeap    true to store the maps in direct memory, false to store them on the heap
+     */
+    public void configureLineageStore(long maxEntries, boolean offHeap) {
+        FlowFileIdMap allFlowFileToFeedFlowFile = new FlowFileIdMap("flowFileToFeedFlowFile", maxEntries, offHeap);
+        FlowFileLongMap flowFileLastNonDropEventTime = new FlowFileLongMap("flowFileLastNonDropEventTime", maxEntries, offHeap);
+        EventIdLongMap eventDuration = new EventIdLongMap("eventDuration", maxEntries, offHeap);
+        EventIdLongMap eventStartTime = new EventIdLongMap("eventStartTime", maxEntries, offHeap);
+        if (this.allFlowFileToFeedFlowFile != null) {
+            allFlowFileToFeedFlowFile.putAll(this.allFlowFileToFeedFlowFile.toMap());
+            flowFileLastNonDropEventTime.putAll(this.flowFileLastNonDropEventTime.toMap());
+            eventDuration.putAll(this.eventDuration.toMap());
+            eventStartTime.putAll(this.eventStartTime.toMap());
+        }
+        this.allFlowFileToFeedFlowFile = allFlowFileToFeedFlowFile;
+        this.flowFileLastNonDropEventTime = flowFileLastNonDropEventTime;
+        this.eventDuration = eventDuration;
+        this.eventStartTime = eventStartTime;
+        log.info("Configured the flow file lineage store with a max of {} entries per map, offHeap: {} ", maxEntries, offHeap);
+    }
+
+    /**
+     * @return the number of entries held in the flow file lineage and event timing maps
+     */
+    public long getLineageStoreSize() {
+        return allFlowFileToFeedFlowFile.size() + flowFileLastNonDropEventTime.size() + eventDuration.size() + eventStartTime.size();
+    }
+
+    /**
+     * @return the number of bytes used by the flow file lineage and event timing maps
+     */
+    public long getLineageStoreSizeInBytes() {
+        return allFlowFileToFeedFlowFile.sizeInBytes() + flowFileLastNonDropEventTime.sizeInBytes() + eventDuration.sizeInBytes() + eventStartTime.sizeInBytes();
+    }
+
+    /**
+     * @return the number of entries that were not tracked because a lineage map was full
+     */
+    public long getLineageStoreRejectedEntries() {
+        return allFlowFileToFeedFlowFile.getRejectedEntries() + flowFileLastNonDropEventTime.getRejectedEntries() + eventDuration.getRejectedEntries() + eventStartTime
+            .getRejectedEntries();
+    }
+
     public void updateEventTypeProcessorTypeSkipChildren(String json) {
         try {
             Map<String, Set<String>> m = ObjectMapperSerializer.deserialize(json, new TypeReference<Map<String, Set<String>>>() {
@@ -248,50 +308,126 @@ public class FeedEventStatistics implements Serializable {
 
     }
 
+    /**
+     * Journal the lineage changes to memory mapped files next to the backup location.
+     * This is called when the repository is initialized, before the backup is loaded
+     *
+     * @param enabled                  true to journal changes
+     * @param segmentSize              the size in bytes of each journal generation
+     * @param stripes                  the number of independently locked segments each generation is split into
+     * @param compactionIntervalSeconds how often the journal is compacted into a new snapshot
+     */
+    public void configureJournal(boolean enabled, int segmentSize, int stripes, long compactionIntervalSeconds) {
+        journal.close();
+        journal = new FeedEventStatisticsJournal(getBackupLocation(), segmentSize, stripes);
+        if (enabled) {
+            //journal.open() is called once the snapshot and any existing journal is recovered
+            this.journalCompactionIntervalSeconds = compactionIntervalSeconds;
+        } else {
+            this.journalCompactionIntervalSeconds = 0L;
+        }
+    }
+
+    private boolean isJournalConfigured() {
+        return journalCompactionIntervalSeconds > 0;
+    }
+
     public boolean backup() {
+        if (isJournalConfigured()) {
+            boolean success = checkpoint();
+            journal.close();
+            return success;
+        }
         return backup(getBackupLocation());
     }
 
     public boolean backup(String location) {
+        return backup(location, 0L);
+    }
 
-        try (FileOutputStream fos = new FileOutputStream(location);
+    /**
+     * Write the snapshot to a temp file and move it over the previous snapshot so a crash while writing never leaves a partial snapshot
+     *
+     * @param location          the snapshot location
+     * @param journalGeneration the first journal generation not included in this snapshot
+     */
+    private boolean backup(String location, long journalGeneration) {
+        File target = new File(location);
+        File temp = new File(location + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp);
              GZIPOutputStream gz = new GZIPOutputStream(fos);
              ObjectOutputStream oos = new ObjectOutputStream(gz)) {
             //cleanup any files that should be removed before backup
             detailedTrackingFlowFilesToDelete.cleanUp();
 
-            oos.writeObject(new FeedEventStatisticsDataV3(this));
+            oos.writeObject(new FeedEventStatisticsDataV4(this, journalGeneration));
             oos.close();
-            return true;
-
         } catch (Exception ex) {
             log.error("Error backing up feed event statistics to {}. {} ", location, ex.getMessage(), ex);
+            return false;
+        }
+        try {
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (Exception ex) {
+            log.error("Error moving the feed event statistics backup {} to {}. {} ", temp, location, ex.getMessage(), ex);
         }
         return false;
     }
 
+    /**
+     * Compact the journal.  Start a new journal generation, write a snapshot of the statistics and delete the journal generations included in the snapshot.
+     * Changes made while the snapshot is written are in the new generation and replaying them over the snapshot is harmless as the journal records hold absolute values
+     *
+     * @return true if the snapshot was written
+     */
+    public synchronized boolean checkpoint() {
+        long start = System.currentTimeMillis();
+        long generation = journal.roll();
+        boolean success = backup(getBackupLocation(), generation);
+        if (success) {
+            journal.deleteBefore(generation);
+            log.debug("Compacted the feed event statistics journal into {} in {} ms. {} ", getBackupLocation(), (System.currentTimeMillis() - start), this);
+        }
+        return success;
+    }
+
     public boolean loadBackup() {
+        if (isJournalConfigured()) {
+            return recover();
+        }
         return loadBackup(getBackupLocation());
     }
 
-    public boolean loadBackup(String location) {
-        FeedEventStatisticsData inStats = null;
-        try (FileInputStream fin = new FileInputStream(location);
-             GZIPInputStream gis = new GZIPInputStream(fin);
-             ValidatingObjectInputStream ois = new ValidatingObjectInputStream(gis)) {
-
-            ois.accept(FeedEventStatisticsDataV3.class, FeedEventStatisticsDataV2.class, FeedEventStatisticsData.class);
-            ois.accept("java.lang.*", "java.util.*", "[Ljava.lang.*", "[Ljava.util.*");
-            inStats = (FeedEventStatisticsData) ois.readObject();
-            ois.close();
-
-        } catch (Exception ex) {
-            if (!(ex instanceof FileNotFoundException)) {
-                log.error("Unable to load feed event statistics backup from {}. {} ", location, ex.getMessage(), ex);
-            } else {
-                log.info("Kylo feed event statistics backup file not found. Not loading backup from {}. ", location);
+    /**
+     * Load the last snapshot, replay the journal written after it and start journaling the new changes
+     *
+     * @return true if a snapshot or journal was recovered
+     */
+    private boolean recover() {
+        long start = System.currentTimeMillis();
+        FeedEventStatisticsData snapshot = readBackup(getBackupLocation());
+        long fromGeneration = 0L;
+        if (snapshot != null) {
+            load(snapshot);
+            if (snapshot instanceof FeedEventStatisticsDataV4) {
+                fromGeneration = ((FeedEventStatisticsDataV4) snapshot).getJournalGeneration();
             }
         }
+        long replayed = journal.replay(this, fromGeneration);
+        journal.open();
+        checkpoint();
+        journal.scheduleCompaction(this::checkpoint, journalCompactionIntervalSeconds);
+        log.info("Recovered the feed event statistics from {} and {} journaled changes in {} ms. {} ", getBackupLocation(), replayed, (System.currentTimeMillis() - start), this);
+        return snapshot != null || replayed > 0;
+    }
+
+    public boolean loadBackup(String location) {
+        FeedEventStatisticsData inStats = readBackup(location);
         if (inStats != null) {
             boolean success = this.load(inStats);
             //DELETE backup
@@ -312,6 +448,27 @@ public class FeedEventStatistics implements Serializable {
         return false;
     }
 
+    private FeedEventStatisticsData readBackup(String location) {
+        FeedEventStatisticsData inStats = null;
+        try (FileInputStream fin = new FileInputStream(location);
+             GZIPInputStream gis = new GZIPInputStream(fin);
+             ValidatingObjectInputStream ois = new ValidatingObjectInputStream(gis)) {
+
+            ois.accept(FeedEventStatisticsDataV4.class, FeedEventStatisticsDataV3.class, FeedEventStatisticsDataV2.class, FeedEventStatisticsData.class);
+            ois.accept("java.lang.*", "java.util.*", "[Ljava.lang.*", "[Ljava.util.*");
+            inStats = (FeedEventStatisticsData) ois.readObject();
+            ois.close();
+
+        } catch (Exception ex) {
+            if (!(ex instanceof FileNotFoundException)) {
+                log.error("Unable to load feed event statistics backup from {}. {} ", location, ex.getMessage(), ex);
+            } else {
+                log.info("Kylo feed event statistics backup file not found. Not loading backup from {}. ", location);
+            }
+        }
+        return inStats;
+    }
+
 
     public void clear() {
         this.feedFlowFileIdToFeedProcessorId.clear();
@@ -344,6 +501,10 @@ public class FeedEventStatistics implements Serializable {
         this.feedFlowProcessing.putAll(other.feedFlowProcessing);
         this.skippedEvents.set(other.skippedEvents.get());
         this.feedFlowFileFailureCount.putAll(other.feedFlowFileFailureCount);
+        if (other instanceof FeedEventStatisticsDataV4) {
+            //snapshots written by the journal compaction are taken while flows are running, so restore the running counts as well
+            this.feedProcessorRunningFeedFlows.putAll(((FeedEventStatisticsDataV4) other).feedProcessorRunningFeedFlows);
+        }
         return true;
 
 
@@ -355,17 +516,29 @@ public class FeedEventStatistics implements Serializable {
         RemoteEventMessageResponse remoteEventMessageResponse = response.getRemoteEventMessageResponse();
 
         log.debug("KYLO-DEBUG: Loading remote events into feed statistics feed flowfile: {}, source flow file: {}, feed processor: {}, startTime: {}, feed flow running count: {}, tracking details:{}  ",remoteEventMessageResponse.getFeedFlowFileId(),remoteEventMessageResponse.getSourceFlowFileId(),remoteEventMessageResponse.getFeedProcessorId(), remoteEventMessageResponse.getFeedFlowFileStartTime(), remoteEventMessageResponse.getFeedFlowRunningCount(),remoteEventMessageResponse.isTrackingDetails() );
+        String feedFlowFileId = remoteEventMessageResponse.getFeedFlowFileId();
         if(remoteEventMessageResponse.isTrackingDetails()){
-            this.detailedTrackingFeedFlowFileId.add(remoteEventMessageResponse.getFeedFlowFileId());
+            this.detailedTrackingFeedFlowFileId.add(feedFlowFileId);
+            journal.feedFlowTracking(feedFlowFileId);
+        }
+        this.feedFlowFileIdToFeedProcessorId.put(feedFlowFileId,remoteEventMessageResponse.getFeedProcessorId());
+        journal.feedFlowProcessor(feedFlowFileId, remoteEventMessageResponse.getFeedProcessorId());
+        assignFeedFlowFile(feedFlowFileId, feedFlowFileId);
+        assignFeedFlowFile(remoteEventMessageResponse.getSourceFlowFileId(), feedFlowFileId);
+        this.feedFlowFileStartTime.putIfAbsent(feedFlowFileId,remoteEventMessageResponse.getFeedFlowFileStartTime());
+        Long startTime = feedFlowFileStartTime.get(feedFlowFileId);
+        if (startTime != null) {
+            journal.feedFlowStartTime(feedFlowFileId, startTime);
         }
-        this.feedFlowFileIdToFeedProcessorId.put(remoteEventMessageResponse.getFeedFlowFileId(),remoteEventMessageResponse.getFeedProcessorId());
-        this.allFlowFileToFeedFlowFile.put(remoteEventMessageResponse.getFeedFlowFileId(),remoteEventMessageResponse.getFeedFlowFileId());
-        this.allFlowFileToFeedFlowFile.put(remoteEventMessageResponse.getSourceFlowFileId(),remoteEventMessageResponse.getFeedFlowFileId());
-        this.feedFlowFileStartTime.putIfAbsent(remoteEventMessageResponse.getFeedFlowFileId(),remoteEventMessageResponse.getFeedFlowFileStartTime());
         //set the running flow count to 0 for this feed if it doesnt exist  When Kylo processes the remote feed events it will correctly assign the running count.
-        this.feedFlowProcessing.putIfAbsent(remoteEventMessageResponse.getFeedFlowFileId(),new AtomicInteger(0));
+        this.feedFlowProcessing.putIfAbsent(feedFlowFileId,new AtomicInteger(0));
+        AtomicInteger processing = feedFlowProcessing.get(feedFlowFileId);
+        journal.feedFlowProcessing(feedFlowFileId, processing::get);
 
-        response.getRelatedFlowFiles().stream().forEach(ff -> allFlowFileToFeedFlowFile.putIfAbsent(ff, remoteEventMessageResponse.getFeedFlowFileId()));
+        response.getRelatedFlowFiles().stream().forEach(ff -> {
+            allFlowFileToFeedFlowFile.putIfAbsent(ff, feedFlowFileId);
+            journal.flowFileFeedFlow(ff, allFlowFileToFeedFlowFile.get(ff));
+        });
 
     }
 
@@ -419,9 +592,9 @@ public class FeedEventStatistics implements Serializable {
                 String startingFlowFile = allFlowFileToFeedFlowFile.get(sourceSystemFlowFileIdentifier);
                 if(StringUtils.isNotBlank(startingFlowFile)){
                     //remove it from the remote map
-                    allFlowFileToFeedFlowFile.put(event.getFlowFileUuid(),startingFlowFile);
+                    assignFeedFlowFile(event.getFlowFileUuid(),startingFlowFile);
                     if (feedFlowProcessing.containsKey(startingFlowFile)) {
-                        feedFlowProcessing.get(startingFlowFile).incrementAndGet();
+                        incrementFeedFlowProcessing(startingFlowFile);
                     }
                     log.info("KYLO-DEBUG: Received a Remote Event.  EventId:{}, Flow File: {}, coming from a previous flowfile {}.  Assigning relationship ",eventId,event.getFlowFileUuid(),sourceSystemFlowFileIdentifier);
                     result.setStartingFlowFileId(startingFlowFile);
@@ -437,14 +610,18 @@ public class FeedEventStatistics implements Serializable {
             }
             else {
                 //startingFlowFiles.add(event.getFlowFileUuid());
-                allFlowFileToFeedFlowFile.put(event.getFlowFileUuid(), event.getFlowFileUuid());
+                assignFeedFlowFile(event.getFlowFileUuid(), event.getFlowFileUuid());
                 //add the flow to active processing
-                feedFlowProcessing.computeIfAbsent(event.getFlowFileUuid(), feedFlowFileId -> new AtomicInteger(0)).incrementAndGet();
+                AtomicInteger processing = feedFlowProcessing.computeIfAbsent(event.getFlowFileUuid(), feedFlowFileId -> new AtomicInteger(0));
+                journal.feedFlowProcessing(event.getFlowFileUuid(), processing::incrementAndGet);
                 feedFlowFileIdToFeedProcessorId.put(event.getFlowFileUuid(), event.getComponentId());
+                journal.feedFlowProcessor(event.getFlowFileUuid(), event.getComponentId());
 
-                feedProcessorRunningFeedFlows.computeIfAbsent(event.getComponentId(), processorId -> new AtomicLong(0)).incrementAndGet();
-                feedProcessorRunningFeedFlowsChanged.set(true);
+                AtomicLong running = feedProcessorRunningFeedFlows.computeIfAbsent(event.getComponentId(), processorId -> new AtomicLong(0));
+                journal.runningFeedFlows(event.getComponentId(), running::incrementAndGet);
+                //add to the changed set before flagging the change so a concurrent drain never sees the flag without the processor
                 changedFeedProcessorRunningFeedFlows.add(event.getComponentId());
+                feedProcessorRunningFeedFlowsChanged.set(true);
                 //  feedFlowToRelatedFlowFiles.computeIfAbsent(event.getFlowFileUuid(), feedFlowFileId -> new HashSet<>()).add(event.getFlowFileUuid());
                 result.setRegisteredStartingEvent(true);
             }
@@ -461,6 +638,37 @@ public class FeedEventStatistics implements Serializable {
         return feedProcessorRunningFeedFlowsChanged.get();
     }
 
+    /**
+     * Check if the running feed flows changed and reset the flag in a single step so changes made by concurrent events are not lost
+     *
+     * @return true if the running feed flows changed since the last call
+     */
+    public boolean checkAndResetFeedProcessorRunningFeedFlowsChanged() {
+        return feedProcessorRunningFeedFlowsChanged.getAndSet(false);
+    }
+
+    /**
+     * Find the feed flow file an event belongs to without modifying any of the flow file relationships.
+     * This is used to choose the lock the event registers its lineage under, so it resolves the feed flow file the same way
+     * {@link #assignParentsAndChildren(ProvenanceEventRecord)} and {@link #checkAndAssignStartingFlowFile(ProvenanceEventRecord, Long)} will
+     *
+     * @param event the event
+     * @return the feed flow file id, or null if the event is not yet related to a feed flow
+     */
+    public String resolveFeedFlowFileId(ProvenanceEventRecord event) {
+        String feedFlowFile = allFlowFileToFeedFlowFile.get(event.getFlowFileUuid());
+        if (feedFlowFile == null && hasParents(event)) {
+            feedFlowFile = determineParentFeedFlow(event);
+        }
+        if (feedFlowFile == null && ProvenanceEventUtil.isStartingFlowEvent(event)) {
+            String sourceSystemFlowFileIdentifier = ProvenanceEventUtil.parseSourceSystemFlowFileIdentifier(event);
+            if (sourceSystemFlowFileIdentifier != null) {
+                feedFlowFile = allFlowFileToFeedFlowFile.get(sourceSystemFlowFileIdentifier);
+            }
+        }
+        return feedFlowFile;
+    }
+
     /**
      * attach the event that has parents/children to a tracking feedflowfile (if possible)
      * This is for the Many to one case
@@ -498,9 +706,9 @@ public class FeedEventStatistics implements Serializable {
             if (startingFlowFile == null) {
                 startingFlowFile = determineParentFeedFlow(event);
                 if (startingFlowFile != null) {
-                    allFlowFileToFeedFlowFile.put(event.getFlowFileUuid(), startingFlowFile);
+                    assignFeedFlowFile(event.getFlowFileUuid(), startingFlowFile);
                     if (feedFlowProcessing.containsKey(startingFlowFile)) {
-                        feedFlowProcessing.get(startingFlowFile).incrementAndGet();
+                        incrementFeedFlowProcessing(startingFlowFile);
                         trackingEventFlowFile = true;
                     }
                 }
@@ -510,14 +718,15 @@ public class FeedEventStatistics implements Serializable {
         }
         if (startingFlowFile != null && event.getChildUuids() != null && !event.getChildUuids().isEmpty() && !shouldSkipChildren(event.getEventType(), event.getComponentType())) {
             for (String child : event.getChildUuids()) {
-                allFlowFileToFeedFlowFile.put(child, startingFlowFile);
+                assignFeedFlowFile(child, startingFlowFile);
                 //Add children flow files to active processing
                 //skip this add if we already did it while iterating the parents.
                 //NiFi will create a new Flow File for this event (event.getFlowFileId) and it will also be part of the children
                 if (feedFlowProcessing.containsKey(startingFlowFile) && (!trackingEventFlowFile || (trackingEventFlowFile && !child.equalsIgnoreCase(event.getFlowFileUuid())))) {
-                    feedFlowProcessing.get(startingFlowFile).incrementAndGet();
+                    incrementFeedFlowProcessing(startingFlowFile);
                 }
                 flowFileLastNonDropEventTime.put(child, event.getEventTime());
+                journal.flowFileEventTime(child, event.getEventTime());
             }
         }
 
@@ -525,6 +734,15 @@ public class FeedEventStatistics implements Serializable {
 
     }
 
+    private void assignFeedFlowFile(String flowFileId, String feedFlowFileId) {
+        allFlowFileToFeedFlowFile.put(flowFileId, feedFlowFileId);
+        journal.flowFileFeedFlow(flowFileId, feedFlowFileId);
+    }
+
+    private void incrementFeedFlowProcessing(String feedFlowFileId) {
+        journal.feedFlowProcessing(feedFlowFileId, feedFlowProcessing.get(feedFlowFileId)::incrementAndGet);
+    }
+
 
     public void calculateTimes(ProvenanceEventRecord event, Long eventId) {
         //  eventIdEventTime.put(eventId,event.getEventTime());
@@ -538,6 +756,7 @@ public class FeedEventStatistics implements Serializable {
         DateTime st = new DateTime(startTime);
         if (ProvenanceEventUtil.isStartingFeedFlow(event)) {
             feedFlowFileStartTime.put(event.getFlowFileUuid(), startTime);
+            journal.feedFlowStartTime(event.getFlowFileUuid(), startTime);
         }
 
         Long duration = event.getEventTime() - startTime;
@@ -546,6 +765,7 @@ public class FeedEventStatistics implements Serializable {
 
         if (!ProvenanceEventType.DROP.equals(event.getEventType())) {
             flowFileLastNonDropEventTime.put(event.getFlowFileUuid(), event.getEventTime());
+            journal.flowFileEventTime(event.getFlowFileUuid(), event.getEventTime());
         }
 
     }
@@ -583,6 +803,7 @@ public class FeedEventStatistics implements Serializable {
 
     public void setTrackingDetails(ProvenanceEventRecord event) {
         detailedTrackingFeedFlowFileId.add(event.getFlowFileUuid());
+        journal.feedFlowTracking(event.getFlowFileUuid());
     }
 
     private boolean hasParents(ProvenanceEventRecord event) {
@@ -661,6 +882,7 @@ public class FeedEventStatistics implements Serializable {
     private void clearMapsForEventFlowFile(String eventFlowFileId) {
         flowFileLastNonDropEventTime.remove(eventFlowFileId);
         allFlowFileToFeedFlowFile.remove(eventFlowFileId);
+        journal.flowFileRemoved(eventFlowFileId);
     }
 
     /**
@@ -681,6 +903,36 @@ public class FeedEventStatistics implements Serializable {
         return changedFeedProcessorRunningFeedFlows.stream().collect(Collectors.toMap(processorId -> processorId, processorId -> feedProcessorRunningFeedFlows.get(processorId).get()));
     }
 
+    /**
+     * Get the Running count by processorId for the processors that changed, removing each processor from the changed set as it is read.
+     * Processors changed by concurrent events after they are read will be returned on the next call
+     */
+    public Map<String, Long> drainRunningFeedFlowsChanged() {
+        Map<String, Long> changedRunningFlows = new HashMap<>();
+        Iterator<String> iterator = changedFeedProcessorRunningFeedFlows.iterator();
+        while (iterator.hasNext()) {
+            String processorId = iterator.next();
+            iterator.remove();
+            AtomicLong runningCount = feedProcessorRunningFeedFlows.get(processorId);
+            changedRunningFlows.put(processorId, runningCount != null ? runningCount.get() : 0L);
+        }
+        return changedRunningFlows;
+    }
+
+    /**
+     * Drain the changed running counts by processorId, ensuring the feedProcessorIds exist in the map
+     */
+    public Map<String, Long> drainRunningFeedFlowsChangedForFeed(Set<String> feedProcessorIds) {
+        Map<String, Long> changedRunningFlows = drainRunningFeedFlowsChanged();
+        if (feedProcessorIds != null) {
+            feedProcessorIds.stream().filter(id -> !changedRunningFlows.containsKey(id)).forEach(id -> {
+                AtomicLong runningCount = feedProcessorRunningFeedFlows.getOrDefault(id, new AtomicLong(0L));
+                changedRunningFlows.put(id, runningCount.longValue());
+            });
+        }
+        return changedRunningFlows;
+    }
+
     public Map<String, Long> getRunningFeedFlows(Set<String> feedNames) {
         return changedFeedProcessorRunningFeedFlows.stream().collect(Collectors.toMap(processorId -> processorId, processorId -> feedProcessorRunningFeedFlows.get(processorId).get()));
     }
@@ -732,9 +984,9 @@ public class FeedEventStatistics implements Serializable {
         if (feedProcessor != null) {
             AtomicLong runningCount = feedProcessorRunningFeedFlows.get(feedProcessor);
             if (runningCount != null && runningCount.get() >= 1) {
-                runningCount.decrementAndGet();
-                feedProcessorRunningFeedFlowsChanged.set(true);
+                journal.runningFeedFlows(feedProcessor, runningCount::decrementAndGet);
                 changedFeedProcessorRunningFeedFlows.add(feedProcessor);
+                feedProcessorRunningFeedFlowsChanged.set(true);
             }
         }
     }
@@ -748,6 +1000,7 @@ public class FeedEventStatistics implements Serializable {
             feedFlowProcessing.remove(feedFlowFile);
 
             feedFlowFileIdToFeedProcessorId.remove(feedFlowFile);
+            journal.feedFlowRemoved(feedFlowFile);
         }
     }
 
@@ -917,11 +1170,12 @@ public class FeedEventStatistics implements Serializable {
             AtomicInteger activeCounts = feedFlowProcessing.get(feedFlowFileId);
             log.debug("KYLO-DEBUG: DROP EVENT issued for EventId:{}, FlowFile:{}, componentId:{}, componentType: {}, activeCounts:{} ",eventId,event.getFlowFileUuid(),event.getComponentId(),event.getComponentType(),activeCounts);
             if (activeCounts != null) {
-                feedFlowProcessing.get(feedFlowFileId).decrementAndGet();
-                if (activeCounts.get() <= 0) {
+                int remaining = journal.feedFlowProcessing(feedFlowFileId, activeCounts::decrementAndGet);
+                if (remaining <= 0) {
                     //Feed is finished
                     eventsThatCompleteFeedFlow.add(eventId);
                     feedFlowFileEndTime.put(feedFlowFileId, event.getEventTime());
+                    journal.feedFlowEndTime(feedFlowFileId, event.getEventTime());
                     decrementRunningProcessorFeedFlows(feedFlowFileId);
                 }
 
@@ -940,7 +1194,8 @@ public class FeedEventStatistics implements Serializable {
 
         if (feedFlowFileId != null && ProvenanceEventUtil.isTerminatedByFailureRelationship(event)) {
             //add to failureMap
-            feedFlowFileFailureCount.computeIfAbsent(feedFlowFileId, flowFileId -> new AtomicInteger(0)).incrementAndGet();
+            AtomicInteger failures = feedFlowFileFailureCount.computeIfAbsent(feedFlowFileId, flowFileId -> new AtomicInteger(0));
+            journal.feedFlowFailures(feedFlowFileId, failures::incrementAndGet);
         }
 
 
@@ -950,6 +1205,58 @@ public class FeedEventStatistics implements Serializable {
         checkAndClear(event, eventId);
     }
 
+    // Journal replay.  These apply a journaled change without journaling it again
+
+    void replayFlowFileFeedFlow(String flowFileId, String feedFlowFileId) {
+        allFlowFileToFeedFlowFile.put(flowFileId, feedFlowFileId);
+    }
+
+    void replayFlowFileRemoved(String flowFileId) {
+        flowFileLastNonDropEventTime.remove(flowFileId);
+        allFlowFileToFeedFlowFile.remove(flowFileId);
+    }
+
+    void replayFlowFileEventTime(String flowFileId, long eventTime) {
+        flowFileLastNonDropEventTime.put(flowFileId, eventTime);
+    }
+
+    void replayFeedFlowProcessor(String feedFlowFileId, String feedProcessorId) {
+        feedFlowFileIdToFeedProcessorId.put(feedFlowFileId, feedProcessorId);
+    }
+
+    void replayFeedFlowTracking(String feedFlowFileId) {
+        detailedTrackingFeedFlowFileId.add(feedFlowFileId);
+    }
+
+    void replayFeedFlowProcessing(String feedFlowFileId, int count) {
+        feedFlowProcessing.computeIfAbsent(feedFlowFileId, id -> new AtomicInteger(0)).set(count);
+    }
+
+    void replayFeedFlowStartTime(String feedFlowFileId, long startTime) {
+        feedFlowFileStartTime.put(feedFlowFileId, startTime);
+    }
+
+    void replayFeedFlowEndTime(String feedFlowFileId, long endTime) {
+        feedFlowFileEndTime.put(feedFlowFileId, endTime);
+    }
+
+    void replayFeedFlowFailures(String feedFlowFileId, int count) {
+        feedFlowFileFailureCount.computeIfAbsent(feedFlowFileId, id -> new AtomicInteger(0)).set(count);
+    }
+
+    void replayFeedFlowRemoved(String feedFlowFileId) {
+        detailedTrackingFeedFlowFileId.remove(feedFlowFileId);
+        feedFlowFileFailureCount.remove(feedFlowFileId);
+        feedFlowFileEndTime.remove(feedFlowFileId);
+        feedFlowFileStartTime.remove(feedFlowFileId);
+        feedFlowProcessing.remove(feedFlowFileId);
+        feedFlowFileIdToFeedProcessorId.remove(feedFlowFileId);
+    }
+
+    void replayRunningFeedFlows(String feedProcessorId, long count) {
+        feedProcessorRunningFeedFlows.computeIfAbsent(feedProcessorId, id -> new AtomicLong(0)).set(count);
+    }
+
     public void setDeleteBackupAfterLoad(boolean deleteBackupAfterLoad) {
         this.deleteBackupAfterLoad = deleteBackupAfterLoad;
     }
@@ -959,6 +1266,9 @@ public class FeedEventStatistics implements Serializable {
         final StringBuilder sb = new StringBuilder("FeedEventStatistics{");
         sb.append("detailedTrackingFeedFlowFileId=").append(detailedTrackingFeedFlowFileId.size());
         sb.append(", allFlowFileToFeedFlowFile=").append(allFlowFileToFeedFlowFile.size());
+        sb.append(", lineageStoreSize=").append(getLineageStoreSize());
+        sb.append(", lineageStoreBytes=").append(getLineageStoreSizeInBytes());
+        sb.append(", lineageStoreRejected=").append(getLineageStoreRejectedEntries());
         sb.append(", feedFlowProcessing=").append(feedFlowProcessing.size());
         sb.append(", skippedEvents=").append(skippedEvents);
         sb.append(", remoteDropEventsReprocessCache=").append(remoteDropEventsReprocessCache.size());
@@ -109,10 +109,10 @@ public class FeedEventStatisticsData implements Serializable {
     public FeedEventStatisticsData(FeedEventStatistics other) {
         this.feedFlowFileIdToFeedProcessorId = other.feedFlowFileIdToFeedProcessorId;
         this.detailedTrackingFeedFlowFileId = other.detailedTrackingFeedFlowFileId;
-        this.allFlowFileToFeedFlowFile = other.allFlowFileToFeedFlowFile;
-        this.flowFileLastNonDropEventTime = other.flowFileLastNonDropEventTime;
-        this.eventDuration = other.eventDuration;
-        this.eventStartTime = other.eventStartTime;
+        this.allFlowFileToFeedFlowFile = other.allFlowFileToFeedFlowFile.toMap();
+        this.flowFileLastNonDropEventTime = other.flowFileLastNonDropEventTime.toMap();
+        this.eventDuration = other.eventDuration.toMap();
+        this.eventStartTime = other.eventStartTime.toMap();
         this.feedFlowFileStartTime = other.feedFlowFileStartTime;
         this.feedFlowFileEndTime = other.feedFlowFileEndTime;
         this.eventsThatCompleteFeedFlow = other.eventsThatCompleteFeedFlow;
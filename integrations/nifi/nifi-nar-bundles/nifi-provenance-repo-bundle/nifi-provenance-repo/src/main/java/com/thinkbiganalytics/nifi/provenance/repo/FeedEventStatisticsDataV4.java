@@ -0,0 +1,45 @@
+package com.thinkbiganalytics.nifi.provenance.repo;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Snapshot of the feed event statistics written when the journal is compacted.
+ * Records the first journal generation whose changes are not part of this snapshot so only those are replayed on startup
+ */
+public class FeedEventStatisticsDataV4 extends FeedEventStatisticsDataV3 {
+
+    private static final long serialVersionUID = 4720360874125474937L;
+
+    private long journalGeneration;
+
+    public FeedEventStatisticsDataV4() {
+        super();
+    }
+
+    public FeedEventStatisticsDataV4(FeedEventStatistics other, long journalGeneration) {
+        super(other);
+        this.journalGeneration = journalGeneration;
+    }
+
+    public long getJournalGeneration() {
+        return journalGeneration;
+    }
+}
@@ -0,0 +1,564 @@
+package com.thinkbiganalytics.nifi.provenance.repo;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.thinkbiganalytics.nifi.provenance.repo.lineage.FlowFileUuid;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Memory mapped write ahead journal of the changes made to the {@link FeedEventStatistics} flow file lineage.
+ *
+ * Each change is appended to the current journal segment as it happens.  Since the segment is memory mapped the changes survive a NiFi crash without an explicit write.
+ * Each generation of the journal is split into stripes, each with its own segment file and lock, so changes made by the event shards are not serialized on a single lock.
+ * A change is written to the stripe for the id it changes, so the changes to a given id are in order within a generation.
+ * Periodically the statistics are compacted: a new journal generation is started, a snapshot of the statistics is written to the backup location and the older journal generations are deleted.
+ * On startup the last snapshot is loaded and the journal generations written after it are replayed.
+ *
+ * All the records hold absolute values (i.e. the current count rather than an increment) so replaying a change already captured in the snapshot is harmless.
+ * Counts are updated while holding the lock of the stripe they are journaled to, so the last record for a count in a generation is always its latest value.
+ */
+public class FeedEventStatisticsJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedEventStatisticsJournal.class);
+
+    private static final int MAGIC = 0x4B4A4E4C;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final int MIN_STRIPE_SIZE = 64 * 1024;
+
+    private static final String JOURNAL_SUFFIX = ".journal.";
+
+    /**
+     * Record types.  0 marks the end of the written records in a segment
+     */
+    static final byte END = 0;
+    static final byte FLOW_FILE_FEED_FLOW = 1;
+    static final byte FLOW_FILE_REMOVED = 2;
+    static final byte FLOW_FILE_EVENT_TIME = 3;
+    static final byte FEED_FLOW_PROCESSOR = 4;
+    static final byte FEED_FLOW_TRACKING = 5;
+    static final byte FEED_FLOW_PROCESSING = 6;
+    static final byte FEED_FLOW_START_TIME = 7;
+    static final byte FEED_FLOW_END_TIME = 8;
+    static final byte FEED_FLOW_FAILURES = 9;
+    static final byte FEED_FLOW_REMOVED = 10;
+    static final byte RUNNING_FEED_FLOWS = 11;
+
+    private static final byte ID_UUID = 0;
+    private static final byte ID_STRING = 1;
+
+    private final File directory;
+
+    private final String filePrefix;
+
+    private final int stripeSize;
+
+    private final Stripe[] stripes;
+
+    private volatile boolean enabled;
+
+    private long generation = 0L;
+
+    private ScheduledExecutorService compactionService;
+
+    private ScheduledFuture compactionFuture;
+
+    /**
+     * The segment of one stripe of the current generation.  Guarded by its own monitor
+     */
+    private static class Stripe {
+
+        private final int index;
+
+        private long generation;
+
+        private RandomAccessFile file;
+
+        private MappedByteBuffer buffer;
+
+        private Stripe(int index) {
+            this.index = index;
+        }
+
+        private void open(File segment, long generation, int size) throws IOException {
+            this.generation = generation;
+            file = new RandomAccessFile(segment, "rw");
+            file.setLength(size);
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(generation);
+        }
+
+        private void close() {
+            if (buffer != null) {
+                buffer.force();
+                buffer = null;
+            }
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    log.warn("Error closing the feed event statistics journal {} ", e.getMessage());
+                }
+                file = null;
+            }
+        }
+
+        /**
+         * Write the type last so a partially written record is never replayed
+         */
+        private void write(byte type, String id, String otherId, long value, boolean hasValue) {
+            int start = buffer.position();
+            buffer.position(start + 1);
+            putId(buffer, id);
+            if (otherId != null) {
+                putId(buffer, otherId);
+            }
+            if (hasValue) {
+                buffer.putLong(value);
+            }
+            buffer.put(start, type);
+        }
+    }
+
+    /**
+     * @param backupLocation the location of the statistics snapshot.  Journal segments are written next to it
+     * @param segmentSize    the size in bytes of each journal generation, split evenly across the stripes
+     * @param stripeCount    the number of stripes each generation is split into.  Usually the number of event shards
+     */
+    public FeedEventStatisticsJournal(String backupLocation, int segmentSize, int stripeCount) {
+        File backupFile = new File(backupLocation);
+        this.directory = backupFile.getAbsoluteFile().getParentFile();
+        this.filePrefix = backupFile.getName() + JOURNAL_SUFFIX;
+        this.stripes = new Stripe[Math.max(stripeCount, 1)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(i);
+        }
+        this.stripeSize = Math.max(segmentSize / stripes.length, MIN_STRIPE_SIZE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the generation of the segments currently being written
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Start writing to a new journal generation after any existing generation
+     */
+    public synchronized void open() {
+        generation = findSegments().keySet().stream().max(Long::compare).orElse(0L);
+        enabled = true;
+        roll();
+    }
+
+    /**
+     * Close the current segments and start a new generation.
+     * All changes appended after this call are written to the new generation.
+     *
+     * @return the new generation, or the current generation if the journal is not enabled
+     */
+    public synchronized long roll() {
+        if (!enabled) {
+            return generation;
+        }
+        generation++;
+        directory.mkdirs();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.close();
+                try {
+                    stripe.open(segmentFile(generation, stripe.index), generation, stripeSize);
+                } catch (IOException e) {
+                    log.error("Unable to create the feed event statistics journal {}.  Changes will no longer be journaled and only be saved on shutdown. {} ",
+                              segmentFile(generation, stripe.index), e.getMessage(), e);
+                    stripe.close();
+                    enabled = false;
+                    break;
+                }
+            }
+        }
+        if (!enabled) {
+            closeStripes();
+        }
+        return generation;
+    }
+
+    /**
+     * Roll the journal when a stripe of the given generation is full, unless another writer already rolled it
+     */
+    private synchronized void rollFull(long fullGeneration) {
+        if (generation == fullGeneration) {
+            roll();
+        }
+    }
+
+    /**
+     * Flush and close the current segments
+     */
+    public synchronized void close() {
+        enabled = false;
+        closeStripes();
+        if (compactionService != null) {
+            compactionService.shutdownNow();
+            compactionService = null;
+        }
+    }
+
+    private void closeStripes() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.close();
+            }
+        }
+    }
+
+    /**
+     * Run the compaction task on a schedule
+     */
+    public synchronized void scheduleCompaction(Runnable compaction, long intervalSeconds) {
+        if (compactionService == null) {
+            compactionService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("FeedEventStatistics-Compaction-%d").build());
+        }
+        if (compactionFuture != null) {
+            compactionFuture.cancel(false);
+        }
+        compactionFuture = compactionService.scheduleWithFixedDelay(() -> {
+            try {
+                compaction.run();
+            } catch (Exception e) {
+                log.error("Error compacting the feed event statistics journal {} ", e.getMessage(), e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Delete the journal segments older than the given generation.  Called once a snapshot containing their changes has been written
+     */
+    public void deleteBefore(long generation) {
+        findSegments().headMap(generation).values().stream().flatMap(List::stream).forEach(f -> {
+            if (!f.delete()) {
+                log.warn("Unable to delete the feed event statistics journal {} ", f);
+            }
+        });
+    }
+
+    private File segmentFile(long generation, int stripe) {
+        return new File(directory, filePrefix + String.format("%012d.%03d", generation, stripe));
+    }
+
+    /**
+     * @return the segment files of each generation, ordered by generation and stripe
+     */
+    private TreeMap<Long, List<File>> findSegments() {
+        TreeMap<Long, List<File>> segments = new TreeMap<>();
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(filePrefix));
+        if (files != null) {
+            for (File f : files) {
+                String[] suffix = f.getName().substring(filePrefix.length()).split("\\.");
+                if (suffix.length <= 2 && Arrays.stream(suffix).allMatch(StringUtils::isNumeric)) {
+                    segments.computeIfAbsent(Long.parseLong(suffix[0]), g -> new ArrayList<>()).add(f);
+                }
+            }
+        }
+        segments.values().forEach(generationFiles -> generationFiles.sort(Comparator.comparing(File::getName)));
+        return segments;
+    }
+
+    // Writing
+
+    private static int idSize(String id) {
+        if (FlowFileUuid.isCanonical(id)) {
+            return 17;
+        }
+        return 5 + (id == null ? 0 : id.length() * 3);
+    }
+
+    private static void putId(MappedByteBuffer buffer, String id) {
+        if (FlowFileUuid.isCanonical(id)) {
+            buffer.put(ID_UUID);
+            buffer.putLong(FlowFileUuid.mostSignificantBits(id));
+            buffer.putLong(FlowFileUuid.leastSignificantBits(id));
+        } else {
+            byte[] bytes = id == null ? new byte[0] : id.getBytes(StandardCharsets.UTF_8);
+            buffer.put(ID_STRING);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * Append the record to the stripe for its id.  Only that stripe is locked.
+     * If the stripe is full the stripe lock is released before the journal is rolled to a new generation and the write is retried
+     */
+    private void append(byte type, String id, String otherId, long value, boolean hasValue) {
+        if (id == null) {
+            return;
+        }
+        //leave room for the end marker
+        int size = 1 + idSize(id) + (otherId != null ? idSize(otherId) : 0) + (hasValue ? 8 : 0) + 1;
+        if (size > stripeSize - HEADER_SIZE) {
+            return;
+        }
+        Stripe stripe = stripes[Math.floorMod(id.hashCode(), stripes.length)];
+        for (int attempt = 0; attempt < 2; attempt++) {
+            long fullGeneration;
+            synchronized (stripe) {
+                if (!enabled || stripe.buffer == null) {
+                    return;
+                }
+                if (stripe.buffer.remaining() >= size) {
+                    stripe.write(type, id, otherId, value, hasValue);
+                    return;
+                }
+                fullGeneration = stripe.generation;
+            }
+            rollFull(fullGeneration);
+        }
+    }
+
+    /**
+     * Apply the update to a count and append its new value to the stripe for its id, holding the stripe lock for both.
+     * Concurrent updates to the same count are then journaled in the order they were applied.
+     * If the journal is disabled, or the stripe cannot be written, the update is applied without journaling it
+     *
+     * @return the result of the update
+     */
+    private long update(byte type, String id, LongSupplier update) {
+        if (!enabled || id == null) {
+            return update.getAsLong();
+        }
+        //leave room for the end marker
+        int size = 1 + idSize(id) + 8 + 1;
+        if (size > stripeSize - HEADER_SIZE) {
+            return update.getAsLong();
+        }
+        Stripe stripe = stripes[Math.floorMod(id.hashCode(), stripes.length)];
+        for (int attempt = 0; attempt < 2; attempt++) {
+            long fullGeneration;
+            synchronized (stripe) {
+                if (!enabled || stripe.buffer == null) {
+                    break;
+                }
+                if (stripe.buffer.remaining() >= size) {
+                    long value = update.getAsLong();
+                    stripe.write(type, id, null, value, true);
+                    return value;
+                }
+                fullGeneration = stripe.generation;
+            }
+            rollFull(fullGeneration);
+        }
+        return update.getAsLong();
+    }
+
+    public void flowFileFeedFlow(String flowFileId, String feedFlowFileId) {
+        if (enabled && feedFlowFileId != null) {
+            append(FLOW_FILE_FEED_FLOW, flowFileId, feedFlowFileId, 0L, false);
+        }
+    }
+
+    public void flowFileRemoved(String flowFileId) {
+        if (enabled) {
+            append(FLOW_FILE_REMOVED, flowFileId, null, 0L, false);
+        }
+    }
+
+    public void flowFileEventTime(String flowFileId, long eventTime) {
+        if (enabled) {
+            append(FLOW_FILE_EVENT_TIME, flowFileId, null, eventTime, true);
+        }
+    }
+
+    public void feedFlowProcessor(String feedFlowFileId, String feedProcessorId) {
+        if (enabled && feedProcessorId != null) {
+            append(FEED_FLOW_PROCESSOR, feedFlowFileId, feedProcessorId, 0L, false);
+        }
+    }
+
+    public void feedFlowTracking(String feedFlowFileId) {
+        if (enabled) {
+            append(FEED_FLOW_TRACKING, feedFlowFileId, null, 0L, false);
+        }
+    }
+
+    /**
+     * @param update updates the number of flow files processing in the feed flow and returns the new count
+     * @return the new count
+     */
+    public int feedFlowProcessing(String feedFlowFileId, LongSupplier update) {
+        return (int) update(FEED_FLOW_PROCESSING, feedFlowFileId, update);
+    }
+
+    public void feedFlowStartTime(String feedFlowFileId, long startTime) {
+        if (enabled) {
+            append(FEED_FLOW_START_TIME, feedFlowFileId, null, startTime, true);
+        }
+    }
+
+    public void feedFlowEndTime(String feedFlowFileId, long endTime) {
+        if (enabled) {
+            append(FEED_FLOW_END_TIME, feedFlowFileId, null, endTime, true);
+        }
+    }
+
+    /**
+     * @param update updates the number of failures in the feed flow and returns the new count
+     * @return the new count
+     */
+    public int feedFlowFailures(String feedFlowFileId, LongSupplier update) {
+        return (int) update(FEED_FLOW_FAILURES, feedFlowFileId, update);
+    }
+
+    public void feedFlowRemoved(String feedFlowFileId) {
+        if (enabled) {
+            append(FEED_FLOW_REMOVED, feedFlowFileId, null, 0L, false);
+        }
+    }
+
+    /**
+     * @param update updates the number of running feed flows of the feed processor and returns the new count
+     * @return the new count
+     */
+    public long runningFeedFlows(String feedProcessorId, LongSupplier update) {
+        return update(RUNNING_FEED_FLOWS, feedProcessorId, update);
+    }
+
+    // Reading
+
+    private static String readId(MappedByteBuffer buffer) {
+        byte kind = buffer.get();
+        if (kind == ID_UUID) {
+            return FlowFileUuid.toString(buffer.getLong(), buffer.getLong());
+        }
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replay the journal segments starting with the given generation into the statistics
+     *
+     * @param statistics     the statistics to update
+     * @param fromGeneration the first generation that is not part of the loaded snapshot
+     * @return the number of records replayed
+     */
+    public long replay(FeedEventStatistics statistics, long fromGeneration) {
+        long records = 0L;
+        for (List<File> segments : findSegments().tailMap(fromGeneration).values()) {
+            for (File segment : segments) {
+                records += replaySegment(statistics, segment);
+            }
+        }
+        return records;
+    }
+
+    private long replaySegment(FeedEventStatistics statistics, File segment) {
+        long records = 0L;
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "r")) {
+            MappedByteBuffer in = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC || in.getInt() != VERSION) {
+                log.warn("Skipping the invalid feed event statistics journal {} ", segment);
+                return 0L;
+            }
+            in.getLong();
+            while (in.hasRemaining()) {
+                byte type = in.get();
+                if (type == END) {
+                    break;
+                }
+                String id = readId(in);
+                switch (type) {
+                    case FLOW_FILE_FEED_FLOW:
+                        statistics.replayFlowFileFeedFlow(id, readId(in));
+                        break;
+                    case FLOW_FILE_REMOVED:
+                        statistics.replayFlowFileRemoved(id);
+                        break;
+                    case FLOW_FILE_EVENT_TIME:
+                        statistics.replayFlowFileEventTime(id, in.getLong());
+                        break;
+                    case FEED_FLOW_PROCESSOR:
+                        statistics.replayFeedFlowProcessor(id, readId(in));
+                        break;
+                    case FEED_FLOW_TRACKING:
+                        statistics.replayFeedFlowTracking(id);
+                        break;
+                    case FEED_FLOW_PROCESSING:
+                        statistics.replayFeedFlowProcessing(id, (int) in.getLong());
+                        break;
+                    case FEED_FLOW_START_TIME:
+                        statistics.replayFeedFlowStartTime(id, in.getLong());
+                        break;
+                    case FEED_FLOW_END_TIME:
+                        statistics.replayFeedFlowEndTime(id, in.getLong());
+                        break;
+                    case FEED_FLOW_FAILURES:
+                        statistics.replayFeedFlowFailures(id, (int) in.getLong());
+                        break;
+                    case FEED_FLOW_REMOVED:
+                        statistics.replayFeedFlowRemoved(id);
+                        break;
+                    case RUNNING_FEED_FLOWS:
+                        statistics.replayRunningFeedFlows(id, in.getLong());
+                        break;
+                    default:
+                        log.warn("Unknown record type {} in the feed event statistics journal {}.  Stopping replay of this journal ", type, segment);
+                        return records;
+                }
+                records++;
+            }
+        } catch (BufferUnderflowException e) {
+            log.warn("Reached the end of the feed event statistics journal {} in the middle of a record.  Stopping replay of this journal ", segment);
+        } catch (IOException e) {
+            log.error("Unable to replay the feed event statistics journal {}. {} ", segment, e.getMessage(), e);
+        }
+        log.info("Replayed {} changes from the feed event statistics journal {} ", records, segment);
+        return records;
+    }
+}
@@ -20,7 +20,6 @@ package com.thinkbiganalytics.nifi.provenance.repo;
  * #L%
  */
 
-import com.google.common.collect.EvictingQueue;
 import com.thinkbiganalytics.nifi.provenance.ProvenanceEventRecordConverter;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
 import com.thinkbiganalytics.nifi.provenance.model.stats.GroupedStats;
@@ -28,16 +27,13 @@ import com.thinkbiganalytics.nifi.provenance.model.stats.GroupedStatsV2;
 import com.thinkbiganalytics.nifi.provenance.util.ProvenanceEventUtil;
 
 import org.apache.nifi.provenance.ProvenanceEventRecord;
-import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.Map;
-import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Holds Statistics about a Feed and Processor updated during Nifi execution
@@ -72,59 +68,16 @@ public class FeedStatistics {
     private Map<String, GroupedStats> stats;
 
     /**
-     * Flag to indicate we are throttling the start Job events that get sent to ops manager
+     * Throttle for the starting feed flow events.  This is shared across all the shards for this feed processor and processor
      */
-    private AtomicBoolean isThrottled = new AtomicBoolean(false);
-
-    /**
-     * The
-     */
-    private Integer throttleStartingFeedFlowsThreshold = 15;
-
-    /**
-     * Rolling queue of the last {throttleStartingFeedFlowsThreshold} items based upon time
-     */
-    Queue<Long> startingFeedFlowQueue = null;
-
-
-    /**
-     * Time to before the throttle key will rest
-     * Rapid events need to be slow for this amount of time before resetting the key
-     */
-    private Integer throttleStartingFeedFlowsTimePeriod = 1000;
+    private StartingFeedFlowThrottle startingFeedFlowThrottle;
 
 
     private String batchKey(ProvenanceEventRecord event, String feedFlowFileId, boolean isStartingFeedFlow) {
         String key = event.getComponentId() + ":" + event.getEventType().name();
 
         if (isStartingFeedFlow) {
-            if (startingFeedFlowQueue == null) {
-                startingFeedFlowQueue = EvictingQueue.create(throttleStartingFeedFlowsThreshold);
-            }
-
-            startingFeedFlowQueue.add(event.getEventTime());
-            if (startingFeedFlowQueue.size() >= throttleStartingFeedFlowsThreshold) {
-                Long diff = event.getEventTime() - startingFeedFlowQueue.peek();
-                if (diff < throttleStartingFeedFlowsTimePeriod) {
-                    //we got more than x events within the threshold... throttle
-                    key += eventTimeNearestSecond(event);
-                    if (isThrottled.compareAndSet(false, true)) {
-                        log.debug(
-                            "Detected over {} flows starting within the given window of {} ms for key {}.  Throttling back starting events (for batch job processing) to only 1 per second until it slows down. ",
-                            throttleStartingFeedFlowsThreshold, throttleStartingFeedFlowsTimePeriod, key);
-                    }
-                } else {
-                    key += ":" + feedFlowFileId;
-                    startingFeedFlowQueue.clear();
-                    if (isThrottled.compareAndSet(true, false)) {
-                        log.debug("Resetting the batch job processing throttle flow rate.  Fewer than {} flows within the given window of {} ms for key {} were detected.",
-                                  throttleStartingFeedFlowsThreshold, throttleStartingFeedFlowsTimePeriod, key);
-                    }
-                }
-
-            } else {
-                key = key + ":" + feedFlowFileId;
-            }
+            return startingFeedFlowThrottle.batchKey(event, key, feedFlowFileId);
         } else {
             key += ":" + feedFlowFileId;
         }
@@ -135,22 +88,16 @@ public class FeedStatistics {
     }
 
 
-    private Long eventTimeNearestSecond(ProvenanceEventRecord event) {
-        return new DateTime(event.getEventTime()).withMillisOfSecond(0).getMillis();
-    }
-
-    private Long nowToNearestSecond(ProvenanceEventRecord event) {
-        return DateTime.now().withMillis(0).getMillis();
+    public FeedStatistics(String feedProcessorId, String processorId) {
+        this(feedProcessorId, processorId, new StartingFeedFlowThrottle());
     }
 
-
-    public FeedStatistics(String feedProcessorId, String processorId) {
+    public FeedStatistics(String feedProcessorId, String processorId, StartingFeedFlowThrottle startingFeedFlowThrottle) {
         this.feedProcessorId = feedProcessorId;
         this.processorId = processorId;
+        this.startingFeedFlowThrottle = startingFeedFlowThrottle;
         stats = new ConcurrentHashMap<>();
         this.limit = ConfigurationProperties.getInstance().getFeedProcessorMaxEvents();
-        this.throttleStartingFeedFlowsThreshold = ConfigurationProperties.getInstance().getThrottleStartingFeedFlowsThreshold();
-        this.throttleStartingFeedFlowsTimePeriod = ConfigurationProperties.getInstance().getDefaultThrottleStartingFeedFlowsTimePeriodMillis();
     }
 
     public GroupedStats getStats(ProvenanceEventRecord event) {
@@ -180,8 +127,8 @@ public class FeedStatistics {
             log.debug("KYLO-DEBUG: Register DROP event on Event.  EventId:{}, FlowFile: {}, FeedFlowFile:{}, componentId: {}, componentType: {} ",eventId,event.getFlowFileUuid(),feedFlowFileId,event.getComponentId(), event.getComponentType());
         }
 
-        if (((!isStartingFeedFlow && FeedEventStatistics.getInstance().isTrackingDetails(event.getFlowFileUuid())) || (isStartingFeedFlow && lastRecords.size() <= limit)) && !lastRecords
-            .containsKey(batchKey)) {
+        boolean trackEvent = isStartingFeedFlow ? startingFeedFlowThrottle.registerStartingEvent(batchKey, limit) : FeedEventStatistics.getInstance().isTrackingDetails(event.getFlowFileUuid());
+        if (!lastRecords.containsKey(batchKey) && trackEvent) {
             // if we are tracking details send the event off for jms
             if (isStartingFeedFlow) {
                 FeedEventStatistics.getInstance().setTrackingDetails(event);
@@ -264,6 +211,57 @@ public class FeedStatistics {
         stats.clear();
     }
 
+    /**
+     * Detach the events and stats collected so far and start collecting into new maps.
+     * This should be called while holding the lock of the shard that owns this object so it only swaps references and does not block the writers for long.
+     *
+     * @return the events and stats collected since the last snapshot
+     */
+    public Snapshot snapshotAndClear() {
+        Snapshot snapshot = new Snapshot(feedProcessorId, processorId, lastRecords.values(), stats.values());
+        lastRecords = new ConcurrentHashMap<>(limit);
+        stats = new ConcurrentHashMap<>();
+        return snapshot;
+    }
+
+    /**
+     * The events and stats detached from a {@link FeedStatistics} object
+     */
+    public static class Snapshot {
+
+        private final String feedProcessorId;
+        private final String processorId;
+        private final Collection<ProvenanceEventRecordDTO> eventsToSend;
+        private final Collection<GroupedStats> stats;
+
+        public Snapshot(String feedProcessorId, String processorId, Collection<ProvenanceEventRecordDTO> eventsToSend, Collection<GroupedStats> stats) {
+            this.feedProcessorId = feedProcessorId;
+            this.processorId = processorId;
+            this.eventsToSend = eventsToSend;
+            this.stats = stats;
+        }
+
+        public String getFeedProcessorId() {
+            return feedProcessorId;
+        }
+
+        public String getProcessorId() {
+            return processorId;
+        }
+
+        public Collection<ProvenanceEventRecordDTO> getEventsToSend() {
+            return eventsToSend;
+        }
+
+        public Collection<GroupedStats> getStats() {
+            return stats;
+        }
+
+        public boolean hasStats() {
+            return stats.stream().anyMatch(s -> s.getTotalCount() > 0);
+        }
+    }
+
     public void setLimit(Integer limit) {
         this.limit = limit;
     }
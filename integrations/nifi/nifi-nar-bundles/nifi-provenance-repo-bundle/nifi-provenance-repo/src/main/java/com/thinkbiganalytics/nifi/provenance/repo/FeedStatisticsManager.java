@@ -20,6 +20,7 @@ package com.thinkbiganalytics.nifi.provenance.repo;
  * #L%
  */
 
+import com.google.common.util.concurrent.Striped;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.thinkbiganalytics.nifi.provenance.jms.KyloFeedBatchStreamTypeJmsListener;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
@@ -33,8 +34,8 @@ import org.apache.nifi.provenance.ProvenanceEventRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -45,6 +46,8 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -56,11 +59,34 @@ public class FeedStatisticsManager {
 
     private static final Logger log = LoggerFactory.getLogger(FeedStatisticsManager.class);
 
+    /**
+     * Number of lineage locks for each shard
+     */
+    private static final int LINEAGE_LOCK_STRIPES_PER_SHARD = 4;
+
     private Long sendJmsTimeMillis = ConfigurationProperties.DEFAULT_RUN_INTERVAL_MILLIS; //every 3 seconds
 
-    private Lock lock = new ReentrantLock();
+    /**
+     * Lock used when rescheduling the gather statistics timer
+     */
+    private Lock scheduleLock = new ReentrantLock();
 
-    private Map<String, FeedStatistics> feedStatisticsMap = new ConcurrentHashMap<>();
+    /**
+     * Locks held while an event registers its flow file lineage and takes its place in its shard, striped by feed flow file.
+     * Events of the same feed flow register one at a time, while events of other feed flows register concurrently
+     */
+    private Striped<Lock> lineageLocks;
+
+    /**
+     * Events are routed to a shard by their feed flow file id once their lineage is registered.
+     * Each shard has its own lock so events for different feed flows are processed concurrently
+     */
+    private FeedStatisticsShard[] shards;
+
+    /**
+     * Starting feed flow throttles by feedProcessorId + processorId, shared by all the shards
+     */
+    private Map<String, StartingFeedFlowThrottle> startingFeedFlowThrottles = new ConcurrentHashMap<>();
 
 
     private KyloFeedBatchStreamTypeJmsListener kyloFeedBatchStreamTypeJmsListener;
@@ -68,6 +94,7 @@ public class FeedStatisticsManager {
     private static final FeedStatisticsManager instance = new FeedStatisticsManager();
 
     private FeedStatisticsManager() {
+        initShards();
         initTimerThread();
     }
 
@@ -95,28 +122,132 @@ public class FeedStatisticsManager {
     private ScheduledExecutorService jmsGatherEventsToSendService = Executors.newSingleThreadScheduledExecutor(gatherStatsThreadFactory);
 
 
+    /**
+     * A partition of the FeedStatistics.  All events for a given feed flow file are processed by the same shard
+     */
+    private static class FeedStatisticsShard {
+
+        private final Lock lock = new ReentrantLock();
+
+        /**
+         * Signalled when the next ticket may be processed
+         */
+        private final Condition nextTurn = lock.newCondition();
+
+        /**
+         * Tickets are taken while holding the lineage lock, so the events of a feed flow are processed in the order their lineage was registered
+         */
+        private final AtomicLong nextTicket = new AtomicLong();
+
+        /**
+         * The ticket being processed. Guarded by the lock
+         */
+        private long nowServing = 0;
+
+        private final Map<String, FeedStatistics> feedStatisticsMap = new ConcurrentHashMap<>();
+    }
+
+    private void initShards() {
+        int shardCount = ConfigurationProperties.getInstance().getEventShards();
+        lineageLocks = Striped.lock(shardCount * LINEAGE_LOCK_STRIPES_PER_SHARD);
+        shards = new FeedStatisticsShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new FeedStatisticsShard();
+        }
+        log.info("Initialized {} shards to process provenance events ", shardCount);
+    }
+
+    /**
+     * Find the shard for the event based upon its feed flow file.
+     * If the event is not related to a feed flow the flow file of the event is used
+     */
+    private FeedStatisticsShard getShard(ProvenanceEventRecord event) {
+        String feedFlowFileId = FeedEventStatistics.getInstance().getFeedFlowFileId(event);
+        return getShard(feedFlowFileId != null ? feedFlowFileId : event.getFlowFileUuid());
+    }
+
+    private FeedStatisticsShard getShard(String shardKey) {
+        return shards[shardKey == null ? 0 : Math.floorMod(shardKey.hashCode(), shards.length)];
+    }
+
+    /**
+     * Gets the lock of the shard that processes the events of the feed flow.  Visible for testing
+     */
+    Lock getShardLock(String feedFlowFileId) {
+        return getShard(feedFlowFileId).lock;
+    }
+
+    /**
+     * The key of the lineage lock for the event.  This is the feed flow file the event belongs to, or the flow file of the event if it is not yet related to a feed flow
+     */
+    private String lineageKey(ProvenanceEventRecord event) {
+        String feedFlowFileId = FeedEventStatistics.getInstance().resolveFeedFlowFileId(event);
+        String key = feedFlowFileId != null ? feedFlowFileId : event.getFlowFileUuid();
+        return key != null ? key : "";
+    }
+
+    /**
+     * Acquire the lineage lock of the feed flow the event belongs to.
+     * If the event was related to a different feed flow while waiting for the lock, the lock of that feed flow is acquired instead
+     */
+    private Lock lockLineage(ProvenanceEventRecord event) {
+        String key = lineageKey(event);
+        while (true) {
+            Lock lock = lineageLocks.get(key);
+            lock.lock();
+            String currentKey = lineageKey(event);
+            if (currentKey.equals(key)) {
+                return lock;
+            }
+            lock.unlock();
+            key = currentKey;
+        }
+    }
+
+    /**
+     * Build up the feed flow file map relationships for the event
+     */
+    private void registerLineage(ProvenanceEventRecord event, Long eventId) {
+        boolean isStartingFlowEvent = ProvenanceEventUtil.isStartingFlowEvent(event);
+        RemoteProvenanceEventService.getInstance().checkAndAddRemoteInputPortSendEvent(event, eventId);
+
+        if (isStartingFlowEvent) {
+            FeedEventStatistics.StartingFlowFileResult result = FeedEventStatistics.getInstance().checkAndAssignStartingFlowFile(event, eventId);
+            if (result.isRemote() && result.isRegisteredStartingEvent()) {
+                //clear the remote maps
+                log.info("KYLO-DEBUG: Removing Remote Provenance Event maps for eventId:{}, source flowfile: {} ", eventId,result.getSourceSystemFlowFileIdentifier());
+            }
+
+        }
+        FeedEventStatistics.getInstance().assignParentsAndChildren(event);
+    }
+
+
     public void addEvent(ProvenanceEventRecord event, Long eventId) {
-        lock.lock();
+        FeedStatisticsShard shard;
+        long ticket;
+        Lock lineageLock = lockLineage(event);
         try {
-            //build up feed flow file map relationships
-            boolean isStartingFlowEvent = ProvenanceEventUtil.isStartingFlowEvent(event);
-            RemoteProvenanceEventService.getInstance().checkAndAddRemoteInputPortSendEvent(event, eventId);
-
-            if (isStartingFlowEvent) {
-                FeedEventStatistics.StartingFlowFileResult result = FeedEventStatistics.getInstance().checkAndAssignStartingFlowFile(event, eventId);
-                if (result.isRemote() && result.isRegisteredStartingEvent()) {
-                    //clear the remote maps
-                    log.info("KYLO-DEBUG: Removing Remote Provenance Event maps for eventId:{}, source flowfile: {} ", eventId,result.getSourceSystemFlowFileIdentifier());
-                }
+            //register the lineage first so the event is routed by the feed flow file it was assigned to
+            registerLineage(event, eventId);
+            shard = getShard(event);
+            ticket = shard.nextTicket.getAndIncrement();
+        } finally {
+            lineageLock.unlock();
+        }
 
+        //wait for the shard without holding the lineage lock.  The ticket keeps the events of a feed flow in order
+        shard.lock.lock();
+        try {
+            while (shard.nowServing != ticket) {
+                shard.nextTurn.awaitUninterruptibly();
             }
-            FeedEventStatistics.getInstance().assignParentsAndChildren(event);
-
             //generate statistics and process the event
             String feedProcessorId = FeedEventStatistics.getInstance().getFeedProcessorId(event);
             if (feedProcessorId != null) {
                 String key = feedProcessorId + event.getComponentId();
-                ProvenanceEventRecordDTO dto = feedStatisticsMap.computeIfAbsent(key, feedStatisticsKey -> new FeedStatistics(feedProcessorId, event.getComponentId())).addEvent(event, eventId);
+                ProvenanceEventRecordDTO dto = shard.feedStatisticsMap.computeIfAbsent(key, feedStatisticsKey -> new FeedStatistics(feedProcessorId, event.getComponentId(), getStartingFeedFlowThrottle(
+                    feedStatisticsKey))).addEvent(event, eventId);
                 String host = KyloProvenanceEventRepositoryUtil.getNodeIdAddressString();
                 boolean isClustered = KyloProvenanceEventRepositoryUtil.isClustered();
                 if (dto != null && host != null && isClustered) {
@@ -131,8 +262,33 @@ public class FeedStatisticsManager {
                 }
             }
         } finally {
-            lock.unlock();
+            //hand the shard to the next ticket, even if this event failed
+            shard.nowServing++;
+            shard.nextTurn.signalAll();
+            shard.lock.unlock();
+        }
+    }
+
+    private StartingFeedFlowThrottle getStartingFeedFlowThrottle(String feedStatisticsKey) {
+        return startingFeedFlowThrottles.computeIfAbsent(feedStatisticsKey, key -> new StartingFeedFlowThrottle());
+    }
+
+    /**
+     * Detach the events and stats from each shard.
+     * Each shard is locked only long enough to swap out its collections, so writers on the other shards are never blocked
+     */
+    private List<FeedStatistics.Snapshot> snapshotShards() {
+        List<FeedStatistics.Snapshot> snapshots = new ArrayList<>();
+        for (FeedStatisticsShard shard : shards) {
+            shard.lock.lock();
+            try {
+                shard.feedStatisticsMap.values().forEach(feedStatistics -> snapshots.add(feedStatistics.snapshotAndClear()));
+            } finally {
+                shard.lock.unlock();
+            }
         }
+        startingFeedFlowThrottles.values().forEach(StartingFeedFlowThrottle::reset);
+        return snapshots;
     }
 
     private void ensureStreamingFeedMetadata() {
@@ -144,61 +300,58 @@ public class FeedStatisticsManager {
 
 
     public void gatherStatistics() {
-        lock.lock();
         List<ProvenanceEventRecordDTO> eventsToSend = null;
         Map<String, AggregatedFeedProcessorStatistics> statsToSend = null;
-        try {
-            //Gather Events and Stats to send Ops Manager
-            //filter out the streaming feeds
-            ensureStreamingFeedMetadata();
-            eventsToSend =
-                feedStatisticsMap.values().stream()
-                    .flatMap(stats -> stats.getEventsToSend().stream().filter(event -> !FeedEventStatistics.getInstance().streamingFeedProcessorIdsList.contains(event.getFirstEventProcessorId())))
-                    .sorted(Comparator.comparing(ProvenanceEventRecordDTO::getEventTime)
-                                .thenComparing(ProvenanceEventRecordDTO::getEventId))
-                    .collect(Collectors.toList());
-
-            final String collectionId = UUID.randomUUID().toString();
-            Map<String, Long> runningFlowsCount = new HashMap<>();
-
-            for (FeedStatistics feedStatistics : feedStatisticsMap.values()) {
-                if (feedStatistics.hasStats()) {
-                    if (statsToSend == null) {
-                        statsToSend = new ConcurrentHashMap<>();
-                    }
-                    AggregatedFeedProcessorStatistics
-                        feedProcessorStatistics =
-                        statsToSend.computeIfAbsent(feedStatistics.getFeedProcessorId(),
-                                                    feedProcessorId -> new AggregatedFeedProcessorStatistics(feedStatistics.getFeedProcessorId(), collectionId, sendJmsTimeMillis));
-
-                    AggregatedProcessorStatistics
-                        processorStatistics =
-                        feedProcessorStatistics.getProcessorStats()
-                            .computeIfAbsent(feedStatistics.getProcessorId(), processorId -> new AggregatedProcessorStatisticsV2(feedStatistics.getProcessorId(), null, collectionId));
-
-                    //accumulate the stats together into the processorStatistics object grouped by source connection id
-                    feedStatistics.getStats().stream().forEach(stats -> {
-                        FeedProcessorStatisticsAggregator.getInstance().addStats1(processorStatistics.getStats(stats.getSourceConnectionIdentifier()), stats);
-                    });
-                }
-            }
-            boolean runningFlowsChanged = FeedEventStatistics.getInstance().isFeedProcessorRunningFeedFlowsChanged();
+        //Gather Events and Stats to send Ops Manager
+        List<FeedStatistics.Snapshot> snapshots = snapshotShards();
+        boolean runningFlowsChanged = FeedEventStatistics.getInstance().checkAndResetFeedProcessorRunningFeedFlowsChanged();
+        if (log.isDebugEnabled()) {
+            log.debug("Flow file lineage store size: {} entries, {} bytes, {} rejected entries ", FeedEventStatistics.getInstance().getLineageStoreSize(),
+                      FeedEventStatistics.getInstance().getLineageStoreSizeInBytes(), FeedEventStatistics.getInstance().getLineageStoreRejectedEntries());
+        }
 
-            if ((eventsToSend != null && !eventsToSend.isEmpty()) || (statsToSend != null && !statsToSend.isEmpty())) {
-                //send it off to jms on a different thread
-                JmsSender jmsSender = new JmsSender(eventsToSend, statsToSend.values(), FeedEventStatistics.getInstance().getRunningFeedFlowsForFeed(statsToSend.keySet()), runningFlowsChanged);
-                this.jmsService.submit(new JmsSenderConsumer(jmsSender));
-            } else {
-                JmsSender jmsSender = new JmsSender(null, null, FeedEventStatistics.getInstance().getRunningFeedFlowsChanged(), runningFlowsChanged);
-                this.jmsService.submit(new JmsSenderConsumer(jmsSender));
+        //filter out the streaming feeds
+        ensureStreamingFeedMetadata();
+        eventsToSend =
+            snapshots.stream()
+                .flatMap(stats -> stats.getEventsToSend().stream().filter(event -> !FeedEventStatistics.getInstance().streamingFeedProcessorIdsList.contains(event.getFirstEventProcessorId())))
+                .sorted(Comparator.comparing(ProvenanceEventRecordDTO::getEventTime)
+                            .thenComparing(ProvenanceEventRecordDTO::getEventId))
+                .collect(Collectors.toList());
+
+        final String collectionId = UUID.randomUUID().toString();
+
+        for (FeedStatistics.Snapshot feedStatistics : snapshots) {
+            if (feedStatistics.hasStats()) {
+                if (statsToSend == null) {
+                    statsToSend = new ConcurrentHashMap<>();
+                }
+                AggregatedFeedProcessorStatistics
+                    feedProcessorStatistics =
+                    statsToSend.computeIfAbsent(feedStatistics.getFeedProcessorId(),
+                                                feedProcessorId -> new AggregatedFeedProcessorStatistics(feedStatistics.getFeedProcessorId(), collectionId, sendJmsTimeMillis));
+
+                AggregatedProcessorStatistics
+                    processorStatistics =
+                    feedProcessorStatistics.getProcessorStats()
+                        .computeIfAbsent(feedStatistics.getProcessorId(), processorId -> new AggregatedProcessorStatisticsV2(feedStatistics.getProcessorId(), null, collectionId));
+
+                //accumulate the stats together into the processorStatistics object grouped by source connection id
+                //the same processor may have stats in more than one shard.  These are all accumulated together here
+                feedStatistics.getStats().stream().forEach(stats -> {
+                    FeedProcessorStatisticsAggregator.getInstance().addStats1(processorStatistics.getStats(stats.getSourceConnectionIdentifier()), stats);
+                });
             }
+        }
 
-
-        } finally {
-            FeedEventStatistics.getInstance().markFeedProcessorRunningFeedFlowsUnchanged();
-
-            feedStatisticsMap.values().stream().forEach(stats -> stats.clear());
-            lock.unlock();
+        if ((eventsToSend != null && !eventsToSend.isEmpty()) || (statsToSend != null && !statsToSend.isEmpty())) {
+            //send it off to jms on a different thread
+            JmsSender jmsSender = new JmsSender(eventsToSend, statsToSend != null ? statsToSend.values() : null,
+                                                FeedEventStatistics.getInstance().drainRunningFeedFlowsChangedForFeed(statsToSend != null ? statsToSend.keySet() : null), runningFlowsChanged);
+            this.jmsService.submit(new JmsSenderConsumer(jmsSender));
+        } else {
+            JmsSender jmsSender = new JmsSender(null, null, FeedEventStatistics.getInstance().drainRunningFeedFlowsChanged(), runningFlowsChanged);
+            this.jmsService.submit(new JmsSenderConsumer(jmsSender));
         }
 
 
@@ -212,7 +365,7 @@ public class FeedStatisticsManager {
     };
 
     public void resetStatisticsInterval(Long interval) {
-        lock.lock();
+        scheduleLock.lock();
         sendJmsTimeMillis = interval;
         try {
             if (gatherStatsScheduledFuture != null) {
@@ -221,16 +374,18 @@ public class FeedStatisticsManager {
             initGatherStatisticsTimerThread(interval);
 
         } finally {
-            lock.unlock();
+            scheduleLock.unlock();
         }
     }
 
     public void resetMaxEvents(Integer limit) {
-        lock.lock();
-        try {
-            feedStatisticsMap.values().forEach(stats -> stats.setLimit(limit));
-        } finally {
-            lock.unlock();
+        for (FeedStatisticsShard shard : shards) {
+            shard.lock.lock();
+            try {
+                shard.feedStatisticsMap.values().forEach(stats -> stats.setLimit(limit));
+            } finally {
+                shard.lock.unlock();
+            }
         }
     }
 
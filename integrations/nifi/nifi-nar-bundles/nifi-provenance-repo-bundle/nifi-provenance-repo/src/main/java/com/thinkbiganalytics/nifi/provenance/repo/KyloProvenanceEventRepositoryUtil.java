@@ -52,10 +52,14 @@ public class KyloProvenanceEventRepositoryUtil {
     }
 
     public void initializeFeedEventStatistics() {
+        FeedEventStatistics.getInstance().configureLineageStore(ConfigurationProperties.getInstance().getLineageMaxEntries(), ConfigurationProperties.getInstance().isLineageOffHeap());
         String backupLocation = ConfigurationProperties.getInstance().getFeedEventStatisticsBackupLocation();
         if (backupLocation != null) {
             FeedEventStatistics.getInstance().setBackupLocation(backupLocation);
         }
+        FeedEventStatistics.getInstance().configureJournal(ConfigurationProperties.getInstance().isJournalEnabled(), ConfigurationProperties.getInstance().getJournalSegmentSizeBytes(),
+                                                           ConfigurationProperties.getInstance().getEventShards(),
+                                                           ConfigurationProperties.getInstance().getJournalCompactionIntervalSeconds());
         boolean success = FeedEventStatistics.getInstance().loadBackup();
         if (success) {
             log.info("Successfully loaded backup from {} ", FeedEventStatistics.getInstance().getBackupLocation());
@@ -0,0 +1,144 @@
+package com.thinkbiganalytics.nifi.provenance.repo;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.collect.EvictingQueue;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Throttles the starting feed flow events that are sent to Ops Manager for a given feed and processor.
+ * A single instance is shared by all the {@link FeedStatistics} shards for the same feed processor and processor so the
+ * throttle and the max starting events limit apply to the processor as a whole, regardless of which shard processed the event.
+ */
+public class StartingFeedFlowThrottle {
+
+    private static final Logger log = LoggerFactory.getLogger(StartingFeedFlowThrottle.class);
+
+    /**
+     * Flag to indicate we are throttling the start Job events that get sent to ops manager
+     */
+    private AtomicBoolean isThrottled = new AtomicBoolean(false);
+
+    /**
+     * The number of starting events allowed in the time period before throttling
+     */
+    private Integer throttleStartingFeedFlowsThreshold;
+
+    /**
+     * Time to before the throttle key will rest
+     * Rapid events need to be slow for this amount of time before resetting the key
+     */
+    private Integer throttleStartingFeedFlowsTimePeriod;
+
+    /**
+     * Rolling queue of the last {throttleStartingFeedFlowsThreshold} items based upon time
+     */
+    private Queue<Long> startingFeedFlowQueue = null;
+
+    /**
+     * The batch keys of the starting events registered to be sent during the current run interval
+     */
+    private Set<String> startingBatchKeys = ConcurrentHashMap.newKeySet();
+
+    public StartingFeedFlowThrottle() {
+        this(ConfigurationProperties.getInstance().getThrottleStartingFeedFlowsThreshold(), ConfigurationProperties.getInstance().getDefaultThrottleStartingFeedFlowsTimePeriodMillis());
+    }
+
+    public StartingFeedFlowThrottle(Integer throttleStartingFeedFlowsThreshold, Integer throttleStartingFeedFlowsTimePeriod) {
+        this.throttleStartingFeedFlowsThreshold = throttleStartingFeedFlowsThreshold;
+        this.throttleStartingFeedFlowsTimePeriod = throttleStartingFeedFlowsTimePeriod;
+    }
+
+    /**
+     * Build the batch key for a starting feed flow event.
+     * If more than the threshold of events are received in the time period the key is rolled up to the nearest second so only 1 event per second is sent
+     *
+     * @param event          the starting event
+     * @param key            the key prefix for the event
+     * @param feedFlowFileId the feed flow file
+     * @return the batch key
+     */
+    public synchronized String batchKey(ProvenanceEventRecord event, String key, String feedFlowFileId) {
+        if (startingFeedFlowQueue == null) {
+            startingFeedFlowQueue = EvictingQueue.create(throttleStartingFeedFlowsThreshold);
+        }
+
+        startingFeedFlowQueue.add(event.getEventTime());
+        if (startingFeedFlowQueue.size() >= throttleStartingFeedFlowsThreshold) {
+            Long diff = event.getEventTime() - startingFeedFlowQueue.peek();
+            if (diff < throttleStartingFeedFlowsTimePeriod) {
+                //we got more than x events within the threshold... throttle
+                key += eventTimeNearestSecond(event);
+                if (isThrottled.compareAndSet(false, true)) {
+                    log.debug(
+                        "Detected over {} flows starting within the given window of {} ms for key {}.  Throttling back starting events (for batch job processing) to only 1 per second until it slows down. ",
+                        throttleStartingFeedFlowsThreshold, throttleStartingFeedFlowsTimePeriod, key);
+                }
+            } else {
+                key += ":" + feedFlowFileId;
+                startingFeedFlowQueue.clear();
+                if (isThrottled.compareAndSet(true, false)) {
+                    log.debug("Resetting the batch job processing throttle flow rate.  Fewer than {} flows within the given window of {} ms for key {} were detected.",
+                              throttleStartingFeedFlowsThreshold, throttleStartingFeedFlowsTimePeriod, key);
+                }
+            }
+
+        } else {
+            key = key + ":" + feedFlowFileId;
+        }
+        return key;
+    }
+
+    /**
+     * Register the starting event batch key to be sent to ops manager
+     *
+     * @param batchKey the key
+     * @param limit    the max number of starting events to send per run interval
+     * @return true if the key was registered, false if its already registered or the limit has been reached
+     */
+    public boolean registerStartingEvent(String batchKey, Integer limit) {
+        return startingBatchKeys.size() <= limit && startingBatchKeys.add(batchKey);
+    }
+
+    /**
+     * Clear the registered starting events.  Called after each run interval
+     */
+    public void reset() {
+        startingBatchKeys.clear();
+    }
+
+    public boolean isThrottled() {
+        return isThrottled.get();
+    }
+
+    private Long eventTimeNearestSecond(ProvenanceEventRecord event) {
+        return new DateTime(event.getEventTime()).withMillisOfSecond(0).getMillis();
+    }
+}
@@ -0,0 +1,87 @@
+package com.thinkbiganalytics.nifi.provenance.repo.lineage;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Map of a provenance event id to a long value (i.e. the event duration) stored as primitive longs in a {@link PrimitiveLineageMap}
+ */
+public class EventIdLongMap {
+
+    private final PrimitiveLineageMap lineageMap;
+
+    public EventIdLongMap(String name, long maxEntries, boolean offHeap) {
+        this.lineageMap = new PrimitiveLineageMap(name, 1, 1, maxEntries, offHeap);
+    }
+
+    public Long get(Long eventId) {
+        if (eventId == null) {
+            return null;
+        }
+        long value = lineageMap.get(eventId, 0L);
+        return value != PrimitiveLineageMap.NO_VALUE ? value : null;
+    }
+
+    public boolean containsKey(Long eventId) {
+        return get(eventId) != null;
+    }
+
+    public void put(Long eventId, Long value) {
+        lineageMap.put(eventId, 0L, value, 0L);
+    }
+
+    public void putAll(Map<Long, Long> map) {
+        map.forEach(this::put);
+    }
+
+    public void remove(Long eventId) {
+        if (eventId != null) {
+            lineageMap.remove(eventId, 0L);
+        }
+    }
+
+    public void clear() {
+        lineageMap.clear();
+    }
+
+    public long size() {
+        return lineageMap.size();
+    }
+
+    public long sizeInBytes() {
+        return lineageMap.sizeInBytes();
+    }
+
+    public long getRejectedEntries() {
+        return lineageMap.getRejectedEntries();
+    }
+
+    /**
+     * Copy the entries to a regular map.  Used to backup the entries to disk
+     */
+    public Map<Long, Long> toMap() {
+        Map<Long, Long> map = new HashMap<>();
+        lineageMap.forEach((key0, key1, value0, value1) -> map.put(key0, value0));
+        return map;
+    }
+}
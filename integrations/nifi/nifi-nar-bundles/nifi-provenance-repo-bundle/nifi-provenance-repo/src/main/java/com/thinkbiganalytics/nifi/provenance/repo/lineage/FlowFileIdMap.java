@@ -0,0 +1,165 @@
+package com.thinkbiganalytics.nifi.provenance.repo.lineage;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map of a flow file id to another flow file id (i.e. a flow file to its feed flow file).
+ * Uuids are stored as primitive longs in a {@link PrimitiveLineageMap}.  Ids that are not uuids, and entries the lineage map rejects once it is full, fall back to a regular map
+ */
+public class FlowFileIdMap {
+
+    /**
+     * Buffer the value of a lookup is copied into, along with the last id decoded by the thread.
+     * Most lookups resolve to the same feed flow file, so its id is only converted back to a String when it changes
+     */
+    private static final ThreadLocal<LookupBuffer> lookupBuffer = ThreadLocal.withInitial(LookupBuffer::new);
+
+    private final PrimitiveLineageMap lineageMap;
+
+    /**
+     * Entries where the key or value is not a canonical uuid, or that did not fit in the lineage map
+     */
+    private final Map<String, String> heapEntries = new ConcurrentHashMap<>();
+
+    public FlowFileIdMap(String name, long maxEntries, boolean offHeap) {
+        this.lineageMap = new PrimitiveLineageMap(name, 2, 2, maxEntries, offHeap);
+    }
+
+    public String get(String flowFileId) {
+        if (flowFileId == null) {
+            return null;
+        }
+        if (FlowFileUuid.isCanonical(flowFileId)) {
+            LookupBuffer buffer = lookupBuffer.get();
+            if (lineageMap.get(FlowFileUuid.mostSignificantBits(flowFileId), FlowFileUuid.leastSignificantBits(flowFileId), buffer.value)) {
+                return buffer.decode();
+            }
+        }
+        return heapEntries.isEmpty() ? null : heapEntries.get(flowFileId);
+    }
+
+    public boolean containsKey(String flowFileId) {
+        return get(flowFileId) != null;
+    }
+
+    public void put(String flowFileId, String relatedFlowFileId) {
+        boolean canonicalKey = FlowFileUuid.isCanonical(flowFileId);
+        if (canonicalKey && FlowFileUuid.isCanonical(relatedFlowFileId)) {
+            if (lineageMap.put(FlowFileUuid.mostSignificantBits(flowFileId), FlowFileUuid.leastSignificantBits(flowFileId),
+                               FlowFileUuid.mostSignificantBits(relatedFlowFileId), FlowFileUuid.leastSignificantBits(relatedFlowFileId))) {
+                if (!heapEntries.isEmpty()) {
+                    heapEntries.remove(flowFileId);
+                }
+            } else {
+                //the lineage map is full. Keep the entry on the heap so the flow file can still be related to its feed flow
+                heapEntries.put(flowFileId, relatedFlowFileId);
+            }
+        } else {
+            heapEntries.put(flowFileId, relatedFlowFileId);
+            if (canonicalKey) {
+                lineageMap.remove(FlowFileUuid.mostSignificantBits(flowFileId), FlowFileUuid.leastSignificantBits(flowFileId));
+            }
+        }
+    }
+
+    public void putIfAbsent(String flowFileId, String relatedFlowFileId) {
+        if (FlowFileUuid.isCanonical(flowFileId) && FlowFileUuid.isCanonical(relatedFlowFileId) && !heapEntries.containsKey(flowFileId)) {
+            long key0 = FlowFileUuid.mostSignificantBits(flowFileId);
+            long key1 = FlowFileUuid.leastSignificantBits(flowFileId);
+            if (!lineageMap.putIfAbsent(key0, key1, FlowFileUuid.mostSignificantBits(relatedFlowFileId), FlowFileUuid.leastSignificantBits(relatedFlowFileId))
+                && !lineageMap.containsKey(key0, key1)) {
+                //not added because the lineage map is full
+                heapEntries.putIfAbsent(flowFileId, relatedFlowFileId);
+            }
+        } else if (get(flowFileId) == null) {
+            heapEntries.putIfAbsent(flowFileId, relatedFlowFileId);
+        }
+    }
+
+    public void putAll(Map<String, String> map) {
+        map.forEach(this::put);
+    }
+
+    public void remove(String flowFileId) {
+        if (flowFileId == null) {
+            return;
+        }
+        if (FlowFileUuid.isCanonical(flowFileId)) {
+            lineageMap.remove(FlowFileUuid.mostSignificantBits(flowFileId), FlowFileUuid.leastSignificantBits(flowFileId));
+        }
+        if (!heapEntries.isEmpty()) {
+            heapEntries.remove(flowFileId);
+        }
+    }
+
+    public void clear() {
+        lineageMap.clear();
+        heapEntries.clear();
+    }
+
+    public long size() {
+        return lineageMap.size() + heapEntries.size();
+    }
+
+    public long sizeInBytes() {
+        return lineageMap.sizeInBytes();
+    }
+
+    /**
+     * @return the number of entries the lineage map rejected because it was full.  These entries are kept on the heap instead
+     */
+    public long getRejectedEntries() {
+        return lineageMap.getRejectedEntries();
+    }
+
+    /**
+     * Copy the entries to a regular map.  Used to backup the entries to disk
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> map = new HashMap<>(heapEntries);
+        lineageMap.forEach((key0, key1, value0, value1) -> map.put(FlowFileUuid.toString(key0, key1), FlowFileUuid.toString(value0, value1)));
+        return map;
+    }
+
+    private static final class LookupBuffer {
+
+        private final long[] value = new long[2];
+        private long decodedMostSignificantBits;
+        private long decodedLeastSignificantBits;
+        private String decoded;
+
+        /**
+         * @return the id of the value copied into the buffer
+         */
+        private String decode() {
+            if (decoded == null || value[0] != decodedMostSignificantBits || value[1] != decodedLeastSignificantBits) {
+                decodedMostSignificantBits = value[0];
+                decodedLeastSignificantBits = value[1];
+                decoded = FlowFileUuid.toString(value[0], value[1]);
+            }
+            return decoded;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.thinkbiganalytics.nifi.provenance.repo.lineage;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map of a flow file id to a long value (i.e. an event time).
+ * Uuids are stored as primitive longs in a {@link PrimitiveLineageMap}.  Ids that are not uuids, and entries the lineage map rejects once it is full, fall back to a regular map
+ */
+public class FlowFileLongMap {
+
+    private final PrimitiveLineageMap lineageMap;
+
+    /**
+     * Entries where the key is not a canonical uuid, or that did not fit in the lineage map
+     */
+    private final Map<String, Long> heapEntries = new ConcurrentHashMap<>();
+
+    public FlowFileLongMap(String name, long maxEntries, boolean offHeap) {
+        this.lineageMap = new PrimitiveLineageMap(name, 2, 1, maxEntries, offHeap);
+    }
+
+    public Long get(String flowFileId) {
+        if (flowFileId == null) {
+            return null;
+        }
+        if (FlowFileUuid.isCanonical(flowFileId)) {
+            long value = lineageMap.get(FlowFileUuid.mostSignificantBits(flowFileId), FlowFileUuid.leastSignificantBits(flowFileId));
+            if (value != PrimitiveLineageMap.NO_VALUE) {
+                return value;
+            }
+        }
+        return heapEntries.isEmpty() ? null : heapEntries.get(flowFileId);
+    }
+
+    public boolean containsKey(String flowFileId) {
+        return get(flowFileId) != null;
+    }
+
+    public void put(String flowFileId, Long value) {
+        if (FlowFileUuid.isCanonical(flowFileId) && lineageMap.put(FlowFileUuid.mostSignificantBits(flowFileId), FlowFileUuid.leastSignificantBits(flowFileId), value, 0L)) {
+            if (!heapEntries.isEmpty()) {
+                heapEntries.remove(flowFileId);
+            }
+        } else {
+            //not a uuid, or the lineage map is full
+            heapEntries.put(flowFileId, value);
+        }
+    }
+
+    public void putAll(Map<String, Long> map) {
+        map.forEach(this::put);
+    }
+
+    public void remove(String flowFileId) {
+        if (flowFileId == null) {
+            return;
+        }
+        if (FlowFileUuid.isCanonical(flowFileId)) {
+            lineageMap.remove(FlowFileUuid.mostSignificantBits(flowFileId), FlowFileUuid.leastSignificantBits(flowFileId));
+        }
+        if (!heapEntries.isEmpty()) {
+            heapEntries.remove(flowFileId);
+        }
+    }
+
+    public void clear() {
+        lineageMap.clear();
+        heapEntries.clear();
+    }
+
+    public long size() {
+        return lineageMap.size() + heapEntries.size();
+    }
+
+    public long sizeInBytes() {
+        return lineageMap.sizeInBytes();
+    }
+
+    /**
+     * @return the number of entries the lineage map rejected because it was full.  These entries are kept on the heap instead
+     */
+    public long getRejectedEntries() {
+        return lineageMap.getRejectedEntries();
+    }
+
+    /**
+     * Copy the entries to a regular map.  Used to backup the entries to disk
+     */
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new HashMap<>(heapEntries);
+        lineageMap.forEach((key0, key1, value0, value1) -> map.put(FlowFileUuid.toString(key0, key1), value0));
+        return map;
+    }
+}
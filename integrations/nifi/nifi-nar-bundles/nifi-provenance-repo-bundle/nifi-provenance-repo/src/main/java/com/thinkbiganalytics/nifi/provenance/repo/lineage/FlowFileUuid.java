@@ -0,0 +1,104 @@
+package com.thinkbiganalytics.nifi.provenance.repo.lineage;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Converts NiFi flow file uuids between their String form and two longs (the most and least significant 64 bits of the uuid).
+ * Only the canonical lowercase form NiFi generates can be converted, so converting back will always give the original String
+ */
+public final class FlowFileUuid {
+
+    private static final int LENGTH = 36;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private FlowFileUuid() {
+
+    }
+
+    /**
+     * @return true if the id is a lowercase uuid (i.e. 8-4-4-4-12 hex digits) that can be stored as two longs
+     */
+    public static boolean isCanonical(String id) {
+        if (id == null || id.length() != LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param id a canonical uuid
+     * @return the most significant 64 bits of the uuid
+     */
+    public static long mostSignificantBits(String id) {
+        return parse(id, 0, 8) << 32 | parse(id, 9, 13) << 16 | parse(id, 14, 18);
+    }
+
+    /**
+     * @param id a canonical uuid
+     * @return the least significant 64 bits of the uuid
+     */
+    public static long leastSignificantBits(String id) {
+        return parse(id, 19, 23) << 48 | parse(id, 24, 36);
+    }
+
+    private static long parse(String id, int start, int end) {
+        long value = 0L;
+        for (int i = start; i < end; i++) {
+            value = value << 4 | Character.digit(id.charAt(i), 16);
+        }
+        return value;
+    }
+
+    /**
+     * @return the canonical String form of the uuid
+     */
+    public static String toString(long mostSignificantBits, long leastSignificantBits) {
+        char[] chars = new char[LENGTH];
+        format(mostSignificantBits >>> 32, chars, 0, 8);
+        chars[8] = '-';
+        format(mostSignificantBits >>> 16, chars, 9, 4);
+        chars[13] = '-';
+        format(mostSignificantBits, chars, 14, 4);
+        chars[18] = '-';
+        format(leastSignificantBits >>> 48, chars, 19, 4);
+        chars[23] = '-';
+        format(leastSignificantBits, chars, 24, 12);
+        return new String(chars);
+    }
+
+    private static void format(long value, char[] chars, int offset, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
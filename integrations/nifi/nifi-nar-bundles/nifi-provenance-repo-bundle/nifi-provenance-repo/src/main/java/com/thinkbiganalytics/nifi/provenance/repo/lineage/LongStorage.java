@@ -0,0 +1,107 @@
+package com.thinkbiganalytics.nifi.provenance.repo.lineage;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Fixed size array of primitive longs, either on the java heap or in direct (off-heap) memory.
+ * All slots are initialized to 0
+ */
+public interface LongStorage {
+
+    long get(int index);
+
+    void set(int index, long value);
+
+    /**
+     * @return the number of longs this storage holds
+     */
+    int length();
+
+    /**
+     * @return the number of bytes used by this storage
+     */
+    default long sizeInBytes() {
+        return length() * (long) Long.BYTES;
+    }
+
+    static LongStorage allocate(int length, boolean offHeap) {
+        return offHeap ? new OffHeapLongStorage(length) : new HeapLongStorage(length);
+    }
+
+    /**
+     * Storage backed by a long[]
+     */
+    class HeapLongStorage implements LongStorage {
+
+        private final long[] values;
+
+        public HeapLongStorage(int length) {
+            this.values = new long[length];
+        }
+
+        @Override
+        public long get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(int index, long value) {
+            values[index] = value;
+        }
+
+        @Override
+        public int length() {
+            return values.length;
+        }
+    }
+
+    /**
+     * Storage backed by a direct ByteBuffer.
+     * The memory is released when the buffer is garbage collected
+     */
+    class OffHeapLongStorage implements LongStorage {
+
+        private final LongBuffer values;
+
+        public OffHeapLongStorage(int length) {
+            this.values = ByteBuffer.allocateDirect(length * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        @Override
+        public long get(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        public void set(int index, long value) {
+            values.put(index, value);
+        }
+
+        @Override
+        public int length() {
+            return values.capacity();
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.thinkbiganalytics.nifi.provenance.repo.lineage;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrent hash map whose keys and values are one or two primitive longs (i.e. an event id or a 128 bit flow file uuid).
+ * Entries are stored inline in open addressing tables so there are no boxed keys, values or entry objects.
+ *
+ * The map is split into segments, each guarded by its own monitor, and is bounded by a max number of entries.
+ * Once the bound is reached new keys are rejected (and counted) rather than growing the map.
+ */
+public class PrimitiveLineageMap {
+
+    private static final Logger log = LoggerFactory.getLogger(PrimitiveLineageMap.class);
+
+    /**
+     * Value returned when a key is not in the map
+     */
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    private static final long EMPTY = 0L;
+    private static final long FULL = 1L;
+    private static final long DELETED = 2L;
+
+    private static final int DEFAULT_SEGMENTS = 64;
+    private static final int INITIAL_SEGMENT_CAPACITY = 256;
+    private static final float MAX_LOAD = 0.7f;
+
+    /**
+     * Log a warning every time this many entries are rejected
+     */
+    private static final long REJECTED_LOG_INTERVAL = 10000L;
+
+    private final String name;
+    private final int keyWidth;
+    private final int valueWidth;
+    /**
+     * state + key + value
+     */
+    private final int entryWidth;
+    private final boolean offHeap;
+    private final Segment[] segments;
+    private final int maxSegmentCapacity;
+    private final int maxSegmentEntries;
+    private final AtomicLong rejectedEntries = new AtomicLong(0);
+
+    /**
+     * Callback used to iterate the entries of the map
+     */
+    public interface EntryConsumer {
+
+        void accept(long key0, long key1, long value0, long value1);
+    }
+
+    public PrimitiveLineageMap(String name, int keyWidth, int valueWidth, long maxEntries, boolean offHeap) {
+        this(name, keyWidth, valueWidth, DEFAULT_SEGMENTS, maxEntries, offHeap);
+    }
+
+    public PrimitiveLineageMap(String name, int keyWidth, int valueWidth, int segmentCount, long maxEntries, boolean offHeap) {
+        if (keyWidth < 1 || keyWidth > 2 || valueWidth < 1 || valueWidth > 2) {
+            throw new IllegalArgumentException("Keys and values must be 1 or 2 longs wide");
+        }
+        if (Integer.bitCount(segmentCount) != 1) {
+            throw new IllegalArgumentException("The segment count must be a power of 2");
+        }
+        this.name = name;
+        this.keyWidth = keyWidth;
+        this.valueWidth = valueWidth;
+        this.entryWidth = 1 + keyWidth + valueWidth;
+        this.offHeap = offHeap;
+        //largest power of 2 capacity where the table (in bytes) still fits in a single array/buffer
+        this.maxSegmentCapacity = Integer.highestOneBit(Integer.MAX_VALUE / (entryWidth * Long.BYTES));
+        long entriesPerSegment = Math.max(1L, (maxEntries + segmentCount - 1) / segmentCount);
+        this.maxSegmentEntries = (int) Math.min(entriesPerSegment, (long) (maxSegmentCapacity * MAX_LOAD) - 1);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private static long mix(long key0, long key1) {
+        long h = key0 * 0x9E3779B97F4A7C15L ^ key1;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 32) & (segments.length - 1)];
+    }
+
+    /**
+     * @return the first value long for the key, or {@link #NO_VALUE} if the key is not in the map
+     */
+    public long get(long key0, long key1) {
+        long hash = mix(key0, key1);
+        return segmentFor(hash).getFirst(key0, key1, (int) hash);
+    }
+
+    /**
+     * Get both value longs for the key
+     *
+     * @param value array of length 2 that the value is copied into
+     * @return true if the key was found
+     */
+    public boolean get(long key0, long key1, long[] value) {
+        long hash = mix(key0, key1);
+        return segmentFor(hash).get(key0, key1, (int) hash, value);
+    }
+
+    public boolean containsKey(long key0, long key1) {
+        long hash = mix(key0, key1);
+        return segmentFor(hash).contains(key0, key1, (int) hash);
+    }
+
+    /**
+     * Add or replace the value for the key
+     *
+     * @return false if the key is new and the map is full
+     */
+    public boolean put(long key0, long key1, long value0, long value1) {
+        long hash = mix(key0, key1);
+        return segmentFor(hash).put(key0, key1, value0, value1, (int) hash, false);
+    }
+
+    /**
+     * Add the value only if the key is not in the map
+     *
+     * @return true if the value was added
+     */
+    public boolean putIfAbsent(long key0, long key1, long value0, long value1) {
+        long hash = mix(key0, key1);
+        return segmentFor(hash).put(key0, key1, value0, value1, (int) hash, true);
+    }
+
+    public boolean remove(long key0, long key1) {
+        long hash = mix(key0, key1);
+        return segmentFor(hash).remove(key0, key1, (int) hash);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Iterate all the entries.  Each segment is locked while it is iterated
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (Segment segment : segments) {
+            segment.forEach(consumer);
+        }
+    }
+
+    public long size() {
+        long size = 0L;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of bytes held by the tables of this map
+     */
+    public long sizeInBytes() {
+        long bytes = 0L;
+        for (Segment segment : segments) {
+            bytes += segment.table.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the number of new entries that were not added because the map was full
+     */
+    public long getRejectedEntries() {
+        return rejectedEntries.get();
+    }
+
+    public long getMaxEntries() {
+        return (long) maxSegmentEntries * segments.length;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    private void rejected() {
+        long count = rejectedEntries.incrementAndGet();
+        if (count % REJECTED_LOG_INTERVAL == 1) {
+            log.warn("The {} lineage map is full with {} entries and has rejected {} entries.  Increase kylo.provenance.lineage.max.entries to hold more flow files off the heap", name, size(), count);
+        }
+    }
+
+    private final class Segment {
+
+        private LongStorage table;
+        private int capacity;
+        private volatile int size;
+        /**
+         * full and deleted slots
+         */
+        private int filled;
+
+        private Segment() {
+            allocate(INITIAL_SEGMENT_CAPACITY);
+        }
+
+        private void allocate(int capacity) {
+            this.table = LongStorage.allocate(capacity * entryWidth, offHeap);
+            this.capacity = capacity;
+            this.filled = 0;
+            this.size = 0;
+        }
+
+        private boolean keyMatches(int offset, long key0, long key1) {
+            return table.get(offset + 1) == key0 && (keyWidth == 1 || table.get(offset + 2) == key1);
+        }
+
+        /**
+         * @return the offset of the entry for the key or -1 if not found
+         */
+        private int find(long key0, long key1, int hash) {
+            int mask = capacity - 1;
+            int slot = hash & mask;
+            while (true) {
+                int offset = slot * entryWidth;
+                long state = table.get(offset);
+                if (state == EMPTY) {
+                    return -1;
+                }
+                if (state == FULL && keyMatches(offset, key0, key1)) {
+                    return offset;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void write(int offset, long key0, long key1, long value0, long value1) {
+            table.set(offset, FULL);
+            table.set(offset + 1, key0);
+            if (keyWidth == 2) {
+                table.set(offset + 2, key1);
+            }
+            writeValue(offset, value0, value1);
+        }
+
+        private void writeValue(int offset, long value0, long value1) {
+            int valueOffset = offset + 1 + keyWidth;
+            table.set(valueOffset, value0);
+            if (valueWidth == 2) {
+                table.set(valueOffset + 1, value1);
+            }
+        }
+
+        synchronized long getFirst(long key0, long key1, int hash) {
+            int offset = find(key0, key1, hash);
+            return offset < 0 ? NO_VALUE : table.get(offset + 1 + keyWidth);
+        }
+
+        synchronized boolean get(long key0, long key1, int hash, long[] value) {
+            int offset = find(key0, key1, hash);
+            if (offset < 0) {
+                return false;
+            }
+            int valueOffset = offset + 1 + keyWidth;
+            value[0] = table.get(valueOffset);
+            value[1] = valueWidth == 2 ? table.get(valueOffset + 1) : 0L;
+            return true;
+        }
+
+        synchronized boolean contains(long key0, long key1, int hash) {
+            return find(key0, key1, hash) >= 0;
+        }
+
+        synchronized boolean put(long key0, long key1, long value0, long value1, int hash, boolean onlyIfAbsent) {
+            int mask = capacity - 1;
+            int slot = hash & mask;
+            int deletedSlot = -1;
+            while (true) {
+                int offset = slot * entryWidth;
+                long state = table.get(offset);
+                if (state == EMPTY) {
+                    break;
+                }
+                if (state == DELETED) {
+                    if (deletedSlot < 0) {
+                        deletedSlot = slot;
+                    }
+                } else if (keyMatches(offset, key0, key1)) {
+                    if (onlyIfAbsent) {
+                        return false;
+                    }
+                    writeValue(offset, value0, value1);
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size >= maxSegmentEntries) {
+                rejected();
+                return false;
+            }
+            if (deletedSlot >= 0) {
+                slot = deletedSlot;
+            } else {
+                filled++;
+            }
+            write(slot * entryWidth, key0, key1, value0, value1);
+            size++;
+            if (filled > capacity * MAX_LOAD) {
+                rehash();
+            }
+            return true;
+        }
+
+        synchronized boolean remove(long key0, long key1, int hash) {
+            int offset = find(key0, key1, hash);
+            if (offset < 0) {
+                return false;
+            }
+            table.set(offset, DELETED);
+            size--;
+            return true;
+        }
+
+        synchronized void clear() {
+            allocate(INITIAL_SEGMENT_CAPACITY);
+        }
+
+        synchronized void forEach(EntryConsumer consumer) {
+            for (int slot = 0; slot < capacity; slot++) {
+                int offset = slot * entryWidth;
+                if (table.get(offset) == FULL) {
+                    int valueOffset = offset + 1 + keyWidth;
+                    consumer.accept(table.get(offset + 1), keyWidth == 2 ? table.get(offset + 2) : 0L,
+                                    table.get(valueOffset), valueWidth == 2 ? table.get(valueOffset + 1) : 0L);
+                }
+            }
+        }
+
+        /**
+         * Grow the table if its more than half full, otherwise rebuild it at the same size to drop the deleted slots
+         */
+        private void rehash() {
+            LongStorage oldTable = table;
+            int oldCapacity = capacity;
+            int newCapacity = size >= oldCapacity / 2 && oldCapacity < maxSegmentCapacity ? oldCapacity * 2 : oldCapacity;
+            allocate(newCapacity);
+            int mask = newCapacity - 1;
+            for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+                int oldOffset = oldSlot * entryWidth;
+                if (oldTable.get(oldOffset) == FULL) {
+                    long key0 = oldTable.get(oldOffset + 1);
+                    long key1 = keyWidth == 2 ? oldTable.get(oldOffset + 2) : 0L;
+                    int slot = (int) mix(key0, key1) & mask;
+                    while (table.get(slot * entryWidth) != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    int offset = slot * entryWidth;
+                    for (int i = 0; i < entryWidth; i++) {
+                        table.set(offset + i, oldTable.get(oldOffset + i));
+                    }
+                    filled++;
+                    size++;
+                }
+            }
+        }
+    }
+}
@@ -35,7 +35,16 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.ObjectOutputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPOutputStream;
 
 public class TestLoadBackup {
@@ -95,6 +104,190 @@ public class TestLoadBackup {
 
     }
 
+    /**
+     * Test recovering the running flows from the last snapshot and the journal when NiFi crashes without writing a backup
+     */
+    @Test
+    public void testRecoverFromJournal() throws Exception {
+        File directory = Files.createTempDirectory("feed-event-statistics").toFile();
+        String originalBackupLocation = FeedEventStatistics.getInstance().getBackupLocation();
+        FeedEventStatistics.getInstance().setBackupLocation(new File(directory, "feed-event-statistics.gz").getAbsolutePath());
+        try {
+            FeedEventStatistics.getInstance().clear();
+            FeedEventStatistics.getInstance().configureJournal(true, 1024 * 1024, 4, 3600);
+            FeedEventStatistics.getInstance().loadBackup();
+
+            StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder();
+            String flowfileId = UUID.randomUUID().toString();
+            ProvenanceEventRecord eventRecord = builder.setEventTime(System.currentTimeMillis())
+                .setFlowFileEntryDate(DateTime.now().getMillis())
+                .setComponentId(UUID.randomUUID().toString())
+                .setComponentType("PROCESSOR")
+                .setCurrentContentClaim("container", "section", "identifier", 0L, 0L)
+                .setFlowFileUUID(flowfileId)
+                .setEventType(ProvenanceEventType.CREATE)
+                .build();
+            FeedEventStatistics.getInstance().checkAndAssignStartingFlowFile(eventRecord, eventRecord.getEventId());
+            FeedEventStatistics.getInstance().calculateTimes(eventRecord, eventRecord.getEventId());
+
+            //simulate a crash.  Nothing is backed up, the in memory statistics are lost
+            FeedEventStatistics.getInstance().configureJournal(true, 1024 * 1024, 4, 3600);
+            FeedEventStatistics.getInstance().clear();
+            Assert.assertNull(FeedEventStatistics.getInstance().getFeedFlowFileId(flowfileId));
+
+            boolean success = FeedEventStatistics.getInstance().loadBackup();
+            Assert.assertTrue(success);
+            Assert.assertEquals(flowfileId, FeedEventStatistics.getInstance().getFeedFlowFileId(flowfileId));
+            Assert.assertEquals(eventRecord.getFlowFileEntryDate(), FeedEventStatistics.getInstance().getFeedFlowStartTime(flowfileId).longValue());
+        } finally {
+            FeedEventStatistics.getInstance().configureJournal(false, 0, 1, 0);
+            FeedEventStatistics.getInstance().setBackupLocation(originalBackupLocation);
+            FeedEventStatistics.getInstance().clear();
+        }
+    }
+
+    /**
+     * Test recovering the running flows journaled concurrently to several stripes, with small segments so the journal rolls to new generations while writing
+     */
+    @Test
+    public void testRecoverFromStripedJournal() throws Exception {
+        File directory = Files.createTempDirectory("feed-event-statistics").toFile();
+        String originalBackupLocation = FeedEventStatistics.getInstance().getBackupLocation();
+        FeedEventStatistics.getInstance().setBackupLocation(new File(directory, "feed-event-statistics.gz").getAbsolutePath());
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            FeedEventStatistics.getInstance().clear();
+            FeedEventStatistics.getInstance().configureJournal(true, 4 * 64 * 1024, 4, 3600);
+            FeedEventStatistics.getInstance().loadBackup();
+
+            Map<String, Long> startTimes = new ConcurrentHashMap<>();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        String flowfileId = UUID.randomUUID().toString();
+                        ProvenanceEventRecord eventRecord = new StandardProvenanceEventRecord.Builder().setEventTime(System.currentTimeMillis())
+                            .setFlowFileEntryDate(DateTime.now().getMillis() - i)
+                            .setComponentId(UUID.randomUUID().toString())
+                            .setComponentType("PROCESSOR")
+                            .setCurrentContentClaim("container", "section", "identifier", 0L, 0L)
+                            .setFlowFileUUID(flowfileId)
+                            .setEventType(ProvenanceEventType.CREATE)
+                            .build();
+                        FeedEventStatistics.getInstance().checkAndAssignStartingFlowFile(eventRecord, eventRecord.getEventId());
+                        FeedEventStatistics.getInstance().calculateTimes(eventRecord, eventRecord.getEventId());
+                        startTimes.put(flowfileId, eventRecord.getFlowFileEntryDate());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            Assert.assertTrue(directory.list((dir, name) -> name.contains(".journal.")).length > 4);
+
+            //simulate a crash.  Nothing is backed up, the in memory statistics are lost
+            FeedEventStatistics.getInstance().configureJournal(true, 4 * 64 * 1024, 4, 3600);
+            FeedEventStatistics.getInstance().clear();
+
+            Assert.assertTrue(FeedEventStatistics.getInstance().loadBackup());
+            Assert.assertEquals(4000, startTimes.size());
+            startTimes.forEach((flowfileId, startTime) -> {
+                Assert.assertEquals(flowfileId, FeedEventStatistics.getInstance().getFeedFlowFileId(flowfileId));
+                Assert.assertEquals(startTime.longValue(), FeedEventStatistics.getInstance().getFeedFlowStartTime(flowfileId).longValue());
+            });
+        } finally {
+            executorService.shutdownNow();
+            FeedEventStatistics.getInstance().configureJournal(false, 0, 1, 0);
+            FeedEventStatistics.getInstance().setBackupLocation(originalBackupLocation);
+            FeedEventStatistics.getInstance().clear();
+        }
+    }
+
+    /**
+     * Test recovering the counts of running flows updated concurrently from several threads.
+     * The journal must hold the latest count, not whichever thread appended last
+     */
+    @Test
+    public void testRecoverConcurrentCountsFromJournal() throws Exception {
+        File directory = Files.createTempDirectory("feed-event-statistics").toFile();
+        String originalBackupLocation = FeedEventStatistics.getInstance().getBackupLocation();
+        FeedEventStatistics.getInstance().setBackupLocation(new File(directory, "feed-event-statistics.gz").getAbsolutePath());
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            FeedEventStatistics.getInstance().clear();
+            FeedEventStatistics.getInstance().configureJournal(true, 4 * 1024 * 1024, 4, 3600);
+            FeedEventStatistics.getInstance().loadBackup();
+
+            String componentId = UUID.randomUUID().toString();
+            String feedFlowFileId = UUID.randomUUID().toString();
+            ProvenanceEventRecord feedFlowEvent = event(componentId, feedFlowFileId, ProvenanceEventType.CREATE);
+            FeedEventStatistics.getInstance().checkAndAssignStartingFlowFile(feedFlowEvent, feedFlowEvent.getEventId());
+
+            List<String> children = new CopyOnWriteArrayList<>();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        //each thread forks the same feed flow and starts and finishes other flows of the same feed processor
+                        String child = UUID.randomUUID().toString();
+                        ProvenanceEventRecord fork = eventBuilder(componentId, feedFlowFileId, ProvenanceEventType.FORK)
+                            .addParentUuid(feedFlowFileId)
+                            .addChildUuid(child)
+                            .build();
+                        FeedEventStatistics.getInstance().assignParentsAndChildren(fork);
+                        children.add(child);
+
+                        String flowfileId = UUID.randomUUID().toString();
+                        ProvenanceEventRecord create = event(componentId, flowfileId, ProvenanceEventType.CREATE);
+                        FeedEventStatistics.getInstance().checkAndAssignStartingFlowFile(create, create.getEventId());
+                        if (i % 2 == 0) {
+                            FeedEventStatistics.getInstance().finishedEvent(event(componentId, flowfileId, ProvenanceEventType.DROP), (long) i);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            Assert.assertEquals(1001L, FeedEventStatistics.getInstance().getRunningFeedFlows(componentId).longValue());
+
+            //simulate a crash.  Nothing is backed up, the in memory statistics are lost
+            FeedEventStatistics.getInstance().configureJournal(true, 4 * 1024 * 1024, 4, 3600);
+            FeedEventStatistics.getInstance().clear();
+
+            Assert.assertTrue(FeedEventStatistics.getInstance().loadBackup());
+            Assert.assertEquals(1001L, FeedEventStatistics.getInstance().getRunningFeedFlows(componentId).longValue());
+
+            //the feed flow only ends once all 2000 forked flow files and the feed flow file itself are dropped
+            for (String child : children) {
+                FeedEventStatistics.getInstance().finishedEvent(event(componentId, child, ProvenanceEventType.DROP), 1L);
+            }
+            Assert.assertNull(FeedEventStatistics.getInstance().getFeedFlowEndTime(feedFlowEvent));
+            FeedEventStatistics.getInstance().finishedEvent(event(componentId, feedFlowFileId, ProvenanceEventType.DROP), 1L);
+            Assert.assertNotNull(FeedEventStatistics.getInstance().getFeedFlowEndTime(feedFlowEvent));
+            Assert.assertEquals(1000L, FeedEventStatistics.getInstance().getRunningFeedFlows(componentId).longValue());
+        } finally {
+            executorService.shutdownNow();
+            FeedEventStatistics.getInstance().configureJournal(false, 0, 1, 0);
+            FeedEventStatistics.getInstance().setBackupLocation(originalBackupLocation);
+            FeedEventStatistics.getInstance().clear();
+        }
+    }
+
+    private ProvenanceEventRecord event(String componentId, String flowfileId, ProvenanceEventType eventType) {
+        return eventBuilder(componentId, flowfileId, eventType).build();
+    }
+
+    private StandardProvenanceEventRecord.Builder eventBuilder(String componentId, String flowfileId, ProvenanceEventType eventType) {
+        return new StandardProvenanceEventRecord.Builder().setEventTime(System.currentTimeMillis())
+            .setFlowFileEntryDate(DateTime.now().getMillis())
+            .setComponentId(componentId)
+            .setComponentType("PROCESSOR")
+            .setCurrentContentClaim("container", "section", "identifier", 0L, 0L)
+            .setFlowFileUUID(flowfileId)
+            .setEventType(eventType);
+    }
+
 
     private void backupV2(String location) throws Exception {
 
@@ -0,0 +1,143 @@
+package com.thinkbiganalytics.nifi.provenance.repo;
+
+/*-
+ * #%L
+ * kylo-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Tests that events of different feed flows are added to the {@link FeedStatisticsManager} concurrently
+ */
+public class FeedStatisticsManagerConcurrencyTest {
+
+    private static final AtomicLong eventIds = new AtomicLong(1_000_000L);
+
+    private final String componentId = UUID.randomUUID().toString();
+
+    private FeedStatisticsManager manager;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        manager = FeedStatisticsManager.getInstance();
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testWritersToDifferentShardsDoNotBlock() throws Exception {
+        String blockedFlowFile = UUID.randomUUID().toString();
+        String otherFlowFile = flowFileOnOtherShard(blockedFlowFile);
+
+        Lock blockedShard = manager.getShardLock(blockedFlowFile);
+        Future<?> blockedWriter;
+        blockedShard.lock();
+        try {
+            blockedWriter = executor.submit(() -> manager.addEvent(event(blockedFlowFile, ProvenanceEventType.CREATE), eventIds.incrementAndGet()));
+            awaitLineage(blockedFlowFile);
+
+            // the blocked writer has registered its lineage and is waiting on its shard, which must not hold up other shards
+            executor.submit(() -> manager.addEvent(event(otherFlowFile, ProvenanceEventType.CREATE), eventIds.incrementAndGet())).get(10, TimeUnit.SECONDS);
+            executor.submit(() -> manager.addEvent(event(otherFlowFile, ProvenanceEventType.DROP), eventIds.incrementAndGet())).get(10, TimeUnit.SECONDS);
+            assertFalse(blockedWriter.isDone());
+        } finally {
+            blockedShard.unlock();
+        }
+        blockedWriter.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testEventsOfSameFeedFlowWaitForTheirShard() throws Exception {
+        String flowFile = UUID.randomUUID().toString();
+
+        Lock shard = manager.getShardLock(flowFile);
+        Future<?> first;
+        Future<?> second;
+        shard.lock();
+        try {
+            first = executor.submit(() -> manager.addEvent(event(flowFile, ProvenanceEventType.CREATE), eventIds.incrementAndGet()));
+            awaitLineage(flowFile);
+            second = executor.submit(() -> manager.addEvent(event(flowFile, ProvenanceEventType.DROP), eventIds.incrementAndGet()));
+
+            Thread.sleep(100);
+            assertFalse(first.isDone());
+            assertFalse(second.isDone());
+        } finally {
+            shard.unlock();
+        }
+
+        // both events take their turn once the shard is released
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Wait for the lineage of the starting flow file to be registered
+     */
+    private void awaitLineage(String flowFile) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (FeedEventStatistics.getInstance().getFeedFlowFileId(flowFile) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private String flowFileOnOtherShard(String flowFile) {
+        Lock shard = manager.getShardLock(flowFile);
+        String other = UUID.randomUUID().toString();
+        while (manager.getShardLock(other) == shard) {
+            other = UUID.randomUUID().toString();
+        }
+        assertNotSame(shard, manager.getShardLock(other));
+        return other;
+    }
+
+    private ProvenanceEventRecord event(String flowFile, ProvenanceEventType type) {
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventTime(System.currentTimeMillis())
+            .setFlowFileEntryDate(System.currentTimeMillis())
+            .setComponentId(componentId)
+            .setComponentType("com.thinkbiganalytics.ComponentType")
+            .setCurrentContentClaim("container", "section", "identifier", 0L, 0L)
+            .setFlowFileUUID(flowFile)
+            .setEventType(type)
+            .build();
+    }
+}
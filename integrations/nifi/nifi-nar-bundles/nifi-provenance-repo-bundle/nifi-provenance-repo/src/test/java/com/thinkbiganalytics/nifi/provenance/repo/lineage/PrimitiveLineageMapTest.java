@@ -0,0 +1,167 @@
+package com.thinkbiganalytics.nifi.provenance.repo.lineage;
+
+/*-
+ * #%L
+ * kylo-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Test the primitive flow file lineage maps
+ */
+public class PrimitiveLineageMapTest {
+
+    @Test
+    public void testFlowFileUuidConversion() {
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = UUID.randomUUID();
+            String id = uuid.toString();
+            Assert.assertTrue(FlowFileUuid.isCanonical(id));
+            Assert.assertEquals(uuid.getMostSignificantBits(), FlowFileUuid.mostSignificantBits(id));
+            Assert.assertEquals(uuid.getLeastSignificantBits(), FlowFileUuid.leastSignificantBits(id));
+            Assert.assertEquals(id, FlowFileUuid.toString(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+        }
+        Assert.assertFalse(FlowFileUuid.isCanonical(UUID.randomUUID().toString().toUpperCase()));
+        Assert.assertFalse(FlowFileUuid.isCanonical("not-a-uuid"));
+        Assert.assertFalse(FlowFileUuid.isCanonical(null));
+    }
+
+    @Test
+    public void testFlowFileIdMap() {
+        testFlowFileIdMap(false);
+        testFlowFileIdMap(true);
+    }
+
+    private void testFlowFileIdMap(boolean offHeap) {
+        FlowFileIdMap map = new FlowFileIdMap("test", 1000000, offHeap);
+        Map<String, String> expected = new HashMap<>();
+        String feedFlowFile = UUID.randomUUID().toString();
+        for (int i = 0; i < 50000; i++) {
+            String flowFile = UUID.randomUUID().toString();
+            map.put(flowFile, feedFlowFile);
+            expected.put(flowFile, feedFlowFile);
+        }
+        //ids that are not uuids
+        map.put("custom-flow-file", feedFlowFile);
+        expected.put("custom-flow-file", feedFlowFile);
+
+        Assert.assertEquals(expected.size(), map.size());
+        expected.forEach((flowFile, feedFlowFileId) -> Assert.assertEquals(feedFlowFileId, map.get(flowFile)));
+        Assert.assertEquals(expected, map.toMap());
+
+        //remove half and make sure the rest are still found
+        int count = 0;
+        for (String flowFile : expected.keySet()) {
+            if (count++ % 2 == 0) {
+                map.remove(flowFile);
+                Assert.assertNull(map.get(flowFile));
+            } else {
+                Assert.assertEquals(feedFlowFile, map.get(flowFile));
+            }
+        }
+        Assert.assertEquals(expected.size() / 2, map.size());
+        map.clear();
+        Assert.assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testFlowFileMapsKeepRejectedEntries() {
+        //a single entry for each of the 64 segments
+        FlowFileIdMap idMap = new FlowFileIdMap("test", 64, false);
+        FlowFileLongMap longMap = new FlowFileLongMap("test", 64, false);
+        Map<String, String> expected = new HashMap<>();
+        String feedFlowFile = UUID.randomUUID().toString();
+        for (int i = 0; i < 1000; i++) {
+            String flowFile = UUID.randomUUID().toString();
+            if (i % 2 == 0) {
+                idMap.put(flowFile, feedFlowFile);
+            } else {
+                idMap.putIfAbsent(flowFile, feedFlowFile);
+            }
+            longMap.put(flowFile, (long) i);
+            expected.put(flowFile, feedFlowFile);
+        }
+        Assert.assertTrue(idMap.getRejectedEntries() > 0);
+        Assert.assertTrue(longMap.getRejectedEntries() > 0);
+        Assert.assertEquals(expected.size(), idMap.size());
+        Assert.assertEquals(expected.size(), longMap.size());
+        expected.forEach((flowFile, feedFlowFileId) -> {
+            Assert.assertEquals(feedFlowFileId, idMap.get(flowFile));
+            Assert.assertNotNull(longMap.get(flowFile));
+        });
+        Assert.assertEquals(expected, idMap.toMap());
+
+        expected.keySet().forEach(flowFile -> {
+            idMap.remove(flowFile);
+            longMap.remove(flowFile);
+            Assert.assertNull(idMap.get(flowFile));
+            Assert.assertNull(longMap.get(flowFile));
+        });
+        Assert.assertEquals(0, idMap.size());
+        Assert.assertEquals(0, longMap.size());
+    }
+
+    @Test
+    public void testFlowFileIdMapDecodesEachValue() {
+        FlowFileIdMap map = new FlowFileIdMap("test", 1000, false);
+        String flowFile1 = UUID.randomUUID().toString();
+        String flowFile2 = UUID.randomUUID().toString();
+        String feedFlowFile1 = UUID.randomUUID().toString();
+        String feedFlowFile2 = UUID.randomUUID().toString();
+        map.put(flowFile1, feedFlowFile1);
+        map.put(flowFile2, feedFlowFile2);
+
+        //the last decoded id is reused until a lookup returns a different value
+        Assert.assertSame(map.get(flowFile1), map.get(flowFile1));
+        Assert.assertEquals(feedFlowFile2, map.get(flowFile2));
+        Assert.assertEquals(feedFlowFile1, map.get(flowFile1));
+    }
+
+    @Test
+    public void testEventIdLongMap() {
+        EventIdLongMap map = new EventIdLongMap("test", 1000000, false);
+        for (long eventId = 0; eventId < 100000; eventId++) {
+            map.put(eventId, eventId * 2);
+        }
+        for (long eventId = 0; eventId < 100000; eventId++) {
+            Assert.assertEquals(Long.valueOf(eventId * 2), map.get(eventId));
+            map.remove(eventId);
+        }
+        Assert.assertEquals(0, map.size());
+        Assert.assertNull(map.get(1L));
+    }
+
+    @Test
+    public void testMaxEntries() {
+        PrimitiveLineageMap map = new PrimitiveLineageMap("test", 1, 1, 4, 1000, false);
+        for (long key = 0; key < 2000; key++) {
+            map.put(key, 0L, key, 0L);
+        }
+        Assert.assertEquals(1000, map.size());
+        Assert.assertEquals(1000, map.getRejectedEntries());
+        //existing keys can still be updated
+        Assert.assertTrue(map.put(0L, 0L, 5L, 0L));
+        Assert.assertEquals(5L, map.get(0L, 0L));
+    }
+}
@@ -20,6 +20,7 @@ package com.thinkbiganalytics.nifi.rest.client;
  * #L%
  */
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.thinkbiganalytics.nifi.feedmgr.TemplateCreationHelper;
 import com.thinkbiganalytics.nifi.rest.model.flow.NifiFlowProcessGroup;
 import com.thinkbiganalytics.nifi.rest.model.visitor.NifiFlowBuilder;
@@ -34,6 +35,7 @@ import com.thinkbiganalytics.support.FeedNameUtil;
 import org.apache.nifi.web.api.dto.ProcessGroupDTO;
 import org.apache.nifi.web.api.dto.ProcessorDTO;
 import org.apache.nifi.web.api.dto.TemplateDTO;
+import org.apache.nifi.web.api.entity.ProcessGroupEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +47,13 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  */
@@ -53,10 +62,53 @@ public class DefaultNiFiFlowVisitorClient implements NiFiFlowVisitorClient {
     private static final Logger log = LoggerFactory.getLogger(DefaultNiFiFlowVisitorClient.class);
 
 
+    private static final int DEFAULT_CRAWLER_THREADS = 10;
+
+    /**
+     * Seconds an idle crawler thread is kept before it is stopped
+     */
+    private static final long CRAWLER_KEEP_ALIVE_SECONDS = 60;
+
     private NiFiRestClient restClient;
 
+    /**
+     * Fetches and walks the feed process groups in {@link #getFeedFlows(Collection, NifiConnectionOrderVisitorCache)}.  Threads are only kept while crawls are running.
+     */
+    private final ThreadPoolExecutor crawlerExecutor;
+
     public DefaultNiFiFlowVisitorClient(NiFiRestClient restClient) {
+        this(restClient, DEFAULT_CRAWLER_THREADS);
+    }
+
+    public DefaultNiFiFlowVisitorClient(NiFiRestClient restClient, int crawlerThreads) {
         this.restClient = restClient;
+        int threads = crawlerThreads > 0 ? crawlerThreads : DEFAULT_CRAWLER_THREADS;
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nifi-flow-crawler-%d").build();
+        this.crawlerExecutor = new ThreadPoolExecutor(threads, threads, CRAWLER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        this.crawlerExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public int getCrawlerThreads() {
+        return crawlerExecutor.getMaximumPoolSize();
+    }
+
+    public synchronized void setCrawlerThreads(int crawlerThreads) {
+        int threads = crawlerThreads > 0 ? crawlerThreads : DEFAULT_CRAWLER_THREADS;
+        //the core size may not be more than the maximum size, so change them in the order that keeps that true
+        if (threads > crawlerExecutor.getMaximumPoolSize()) {
+            crawlerExecutor.setMaximumPoolSize(threads);
+            crawlerExecutor.setCorePoolSize(threads);
+        } else {
+            crawlerExecutor.setCorePoolSize(threads);
+            crawlerExecutor.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * Stops the crawler threads.  Crawls that are running are interrupted.
+     */
+    public void shutdown() {
+        crawlerExecutor.shutdownNow();
     }
 
 
@@ -79,6 +131,20 @@ public class DefaultNiFiFlowVisitorClient implements NiFiFlowVisitorClient {
      * @throws NifiComponentNotFoundException
      */
     public NifiVisitableProcessGroup getFlowOrder(ProcessGroupDTO processGroupEntity, NifiConnectionOrderVisitorCache cache, boolean logRestAccessErrors) throws NifiComponentNotFoundException {
+        return getFlowOrder(processGroupEntity, null, cache, logRestAccessErrors);
+    }
+
+    /**
+     * Walks the process group.
+     *
+     * @param processGroupEntity  the process group to walk
+     * @param parentGroup         the parent of the process group, or {@code null} to look it up
+     * @param cache               the cache of process groups already fetched and walked
+     * @param logRestAccessErrors true to log errors looking up the parent
+     * @return the walked process group
+     */
+    private NifiVisitableProcessGroup getFlowOrder(ProcessGroupDTO processGroupEntity, ProcessGroupDTO parentGroup, NifiConnectionOrderVisitorCache cache, boolean logRestAccessErrors)
+        throws NifiComponentNotFoundException {
         if (cache == null) {
             cache = new NifiConnectionOrderVisitorCache();
         }
@@ -94,7 +160,7 @@ public class DefaultNiFiFlowVisitorClient implements NiFiFlowVisitorClient {
             group = new NifiVisitableProcessGroup(processGroupEntity);
             NifiConnectionOrderVisitor orderVisitor = new NifiConnectionOrderVisitor(restClient, group, finalCache);
             try {
-                Optional<ProcessGroupDTO> parent = cache.getProcessGroup(processGroupEntity.getParentGroupId());
+                Optional<ProcessGroupDTO> parent = parentGroup != null ? Optional.of(parentGroup) : cache.getProcessGroup(processGroupEntity.getParentGroupId());
                 if (!parent.isPresent()) {
                     parent = restClient.processGroups().findById(processGroupEntity.getParentGroupId(), false, false, logRestAccessErrors);
                 }
@@ -117,6 +183,19 @@ public class DefaultNiFiFlowVisitorClient implements NiFiFlowVisitorClient {
 
     public NifiFlowProcessGroup getFeedFlow(String processGroupId, NifiConnectionOrderVisitorCache cache) {
         NifiVisitableProcessGroup visitableGroup = getFlowOrder(processGroupId, cache);
+        return toFeedFlow(visitableGroup);
+    }
+
+    /**
+     * Fetches and walks a feed process group whose category has already been fetched
+     */
+    private NifiFlowProcessGroup getFeedFlow(String processGroupId, ProcessGroupDTO categoryGroup, NifiConnectionOrderVisitorCache cache) {
+        ProcessGroupDTO feedGroup = restClient.processGroups().findById(processGroupId, true, true).orElse(null);
+        NifiVisitableProcessGroup visitableGroup = getFlowOrder(feedGroup, categoryGroup, cache, true);
+        return toFeedFlow(visitableGroup);
+    }
+
+    private NifiFlowProcessGroup toFeedFlow(NifiVisitableProcessGroup visitableGroup) {
         NifiFlowProcessGroup flow = new NifiFlowBuilder().build(visitableGroup);
         String categoryName = flow.getParentGroupName();
         String feedName = flow.getName();
@@ -170,12 +249,11 @@ public class DefaultNiFiFlowVisitorClient implements NiFiFlowVisitorClient {
 
         log.info("get Graph of Nifi Flows looking for {} ", feedNames == null ? "ALL Feeds " : feedNames);
         long start = System.currentTimeMillis();
+        boolean allFeeds = feedNames == null || feedNames.isEmpty();
 
-        List<NifiFlowProcessGroup> feedFlows = new ArrayList<>();
-        ProcessGroupDTO processGroupEntity = restClient.processGroups().findRoot();
-        ProcessGroupDTO root = processGroupEntity;
-        //first level is the category
-        root.getContents().getProcessGroups().stream().sorted(new Comparator<ProcessGroupDTO>() {
+        //first level is the category.  Only the direct children of root are needed here, the feeds are fetched on their own below
+        ProcessGroupDTO root = restClient.processGroups().findById("root", false, true).orElseThrow(IllegalStateException::new);
+        List<ProcessGroupDTO> categories = root.getContents().getProcessGroups().stream().sorted(new Comparator<ProcessGroupDTO>() {
             @Override
             public int compare(ProcessGroupDTO o1, ProcessGroupDTO o2) {
                 if (TemplateCreationHelper.REUSABLE_TEMPLATES_PROCESS_GROUP_NAME.equalsIgnoreCase(o1.getName())) {
@@ -186,27 +264,70 @@ public class DefaultNiFiFlowVisitorClient implements NiFiFlowVisitorClient {
                 }
                 return o1.getName().compareTo(o2.getName());
             }
-        }).forEach(category -> {
-            for (ProcessGroupDTO feedProcessGroup : category.getContents().getProcessGroups()) {
-
-                //second level is the feed
-                String feedName = FeedNameUtil.fullName(category.getName(), feedProcessGroup.getName());
-                //if it is a versioned feed then strip the version to get the correct feed name
-                feedName = TemplateCreationHelper.parseVersionedProcessGroupName(feedName);
-                //if feednames are sent in, only add those that match or those in the reusable group
-                if ((feedNames == null || feedNames.isEmpty()) || (feedNames != null && (feedNames.contains(feedName) || TemplateCreationHelper.REUSABLE_TEMPLATES_PROCESS_GROUP_NAME
-                    .equalsIgnoreCase(category.getName())))) {
-                    NifiFlowProcessGroup feedFlow = getFeedFlow(feedProcessGroup.getId(), cache);
-                    feedFlow.setFeedName(feedName);
-                    feedFlows.add(feedFlow);
+        }).collect(Collectors.toList());
+
+        //second level is the feed. List the feeds of each category in parallel
+        List<Future<Set<ProcessGroupEntity>>> categoryFlows = new ArrayList<>();
+        for (ProcessGroupDTO category : categories) {
+            categoryFlows.add(crawlerExecutor.submit(() -> restClient.processGroups().flow(category.getId()).getFlow().getProcessGroups()));
+        }
+
+        //fetch and walk the feeds in parallel.  The category groups listed under root do not have their contents, so they are only used as the parent of the feed
+        //and are not added to the cache, the visitor fetches them in full if it needs to follow a connection out of the feed
+        List<String> feedFlowNames = new ArrayList<>();
+        List<Future<NifiFlowProcessGroup>> feedFlowResults = new ArrayList<>();
+        List<NifiFlowProcessGroup> feedFlows = new ArrayList<>();
+        long listed;
+        try {
+            for (int i = 0; i < categories.size(); i++) {
+                ProcessGroupDTO category = categories.get(i);
+                for (ProcessGroupEntity feedProcessGroup : getResult(categoryFlows.get(i))) {
+                    String feedName = FeedNameUtil.fullName(category.getName(), feedProcessGroup.getComponent().getName());
+                    //if it is a versioned feed then strip the version to get the correct feed name
+                    feedName = TemplateCreationHelper.parseVersionedProcessGroupName(feedName);
+                    //if feednames are sent in, only add those that match or those in the reusable group
+                    if (allFeeds || feedNames.contains(feedName) || TemplateCreationHelper.REUSABLE_TEMPLATES_PROCESS_GROUP_NAME.equalsIgnoreCase(category.getName())) {
+                        String feedProcessGroupId = feedProcessGroup.getComponent().getId();
+                        feedFlowNames.add(feedName);
+                        feedFlowResults.add(crawlerExecutor.submit(() -> getFeedFlow(feedProcessGroupId, category, cache)));
+                    }
                 }
             }
-        });
+            listed = System.currentTimeMillis();
+
+            for (int i = 0; i < feedFlowResults.size(); i++) {
+                NifiFlowProcessGroup feedFlow = getResult(feedFlowResults.get(i));
+                feedFlow.setFeedName(feedFlowNames.get(i));
+                feedFlows.add(feedFlow);
+            }
+        } finally {
+            //dont leave the remaining requests running if one of them failed
+            categoryFlows.forEach(future -> future.cancel(true));
+            feedFlowResults.forEach(future -> future.cancel(true));
+        }
+
         long end = System.currentTimeMillis();
-        log.info("finished Graph of Nifi Flows.  Returning {} flows, {} ", feedFlows.size(), (end - start) + " ms");
+        log.info("finished Graph of Nifi Flows.  Returning {} flows, {} ms. Listing feeds took {} ms, walking feeds took {} ms ", feedFlows.size(), (end - start), (listed - start),
+                 (end - listed));
         return feedFlows;
     }
 
+    /**
+     * Gets the result of the specified task, rethrowing any failure.
+     */
+    private <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NifiClientRuntimeException("Interrupted while walking the NiFi flows", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new NifiClientRuntimeException("Unable to walk the NiFi flows", e.getCause());
+        }
+    }
 
     //walk entire graph
     public List<NifiFlowProcessGroup> getFeedFlows() {
@@ -253,6 +374,4 @@ public class DefaultNiFiFlowVisitorClient implements NiFiFlowVisitorClient {
         TemplateDTO template = restClient.templates().findById(templateId).orElseThrow(() -> new NifiComponentNotFoundException(templateId, NifiConstants.NIFI_COMPONENT_TYPE.TEMPLATE, null));
         return getTemplateFeedFlow(template);
     }
-
-
 }
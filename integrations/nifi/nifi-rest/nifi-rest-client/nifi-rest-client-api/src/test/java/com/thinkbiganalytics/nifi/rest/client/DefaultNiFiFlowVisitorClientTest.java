@@ -0,0 +1,197 @@
+package com.thinkbiganalytics.nifi.rest.client;
+
+/*-
+ * #%L
+ * thinkbig-nifi-rest-client-api
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.thinkbiganalytics.nifi.rest.model.flow.NifiFlowProcessGroup;
+import com.thinkbiganalytics.nifi.rest.support.NifiConstants;
+import com.thinkbiganalytics.nifi.rest.visitor.NifiConnectionOrderVisitorCache;
+
+import org.apache.nifi.web.api.dto.FlowSnippetDTO;
+import org.apache.nifi.web.api.dto.ProcessGroupDTO;
+import org.apache.nifi.web.api.dto.ProcessorDTO;
+import org.apache.nifi.web.api.dto.flow.FlowDTO;
+import org.apache.nifi.web.api.dto.flow.ProcessGroupFlowDTO;
+import org.apache.nifi.web.api.entity.ProcessGroupEntity;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+public class DefaultNiFiFlowVisitorClientTest {
+
+    private NiFiProcessGroupsRestClient processGroups;
+
+    private DefaultNiFiFlowVisitorClient client;
+
+    @Before
+    public void setUp() {
+        processGroups = Mockito.mock(NiFiProcessGroupsRestClient.class);
+        NiFiRestClient restClient = Mockito.mock(NiFiRestClient.class);
+        Mockito.when(restClient.processGroups()).thenReturn(processGroups);
+        client = new DefaultNiFiFlowVisitorClient(restClient, 4);
+
+        // The categories listed under root do not include their contents
+        ProcessGroupDTO categoryB = group("category-b", "root", "categoryB", null);
+        ProcessGroupDTO categoryA = group("category-a", "root", "categoryA", null);
+        ProcessGroupDTO root = group("root", null, "root", contents(Arrays.asList(categoryB, categoryA)));
+        Mockito.when(processGroups.findById("root", false, true)).thenReturn(Optional.of(root));
+
+        mockFeeds(categoryA, "feed1", "feed2");
+        mockFeeds(categoryB, "feed3");
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+    }
+
+    /**
+     * Verify the feeds are walked in category order, with their category as the parent.
+     */
+    @Test
+    public void getFeedFlows() {
+        NifiConnectionOrderVisitorCache cache = new NifiConnectionOrderVisitorCache();
+        List<NifiFlowProcessGroup> flows = client.getFeedFlows(null, cache);
+
+        Assert.assertEquals(ImmutableList.of("categoryA.feed1", "categoryA.feed2", "categoryB.feed3"),
+                            flows.stream().map(NifiFlowProcessGroup::getFeedName).collect(Collectors.toList()));
+        Assert.assertEquals("categoryA", flows.get(0).getParentGroupName());
+
+        // The parents come from the root listing, and are not cached without their contents
+        Mockito.verify(processGroups, Mockito.never()).findById(Mockito.eq("category-a"), Mockito.anyBoolean(), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Assert.assertFalse(cache.getProcessGroup("category-a").isPresent());
+        Assert.assertTrue(cache.getCache().containsKey("categoryA-feed1"));
+    }
+
+    /**
+     * Verify only the requested feeds are walked.
+     */
+    @Test
+    public void getFeedFlowsByName() {
+        List<NifiFlowProcessGroup> flows = client.getFeedFlows(Collections.singleton("categoryB.feed3"));
+
+        Assert.assertEquals(1, flows.size());
+        Assert.assertEquals("categoryB.feed3", flows.get(0).getFeedName());
+        Mockito.verify(processGroups, Mockito.never()).findById("categoryA-feed1", true, true);
+    }
+
+    /**
+     * Verify the feeds are fetched concurrently.
+     */
+    @Test
+    public void getFeedFlowsInParallel() {
+        CountDownLatch fetching = new CountDownLatch(2);
+        AtomicBoolean concurrent = new AtomicBoolean(true);
+        for (String feedId : Arrays.asList("categoryA-feed1", "categoryA-feed2")) {
+            ProcessGroupDTO feed = processGroups.findById(feedId, true, true).get();
+            Mockito.when(processGroups.findById(feedId, true, true)).thenAnswer(invocation -> {
+                fetching.countDown();
+                if (!fetching.await(10, TimeUnit.SECONDS)) {
+                    concurrent.set(false);
+                }
+                return Optional.of(feed);
+            });
+        }
+
+        Assert.assertEquals(3, client.getFeedFlows().size());
+        Assert.assertTrue("feeds should be fetched at the same time", concurrent.get());
+    }
+
+    /**
+     * Verify a failure walking a feed fails the crawl.
+     */
+    @Test(expected = NifiComponentNotFoundException.class)
+    public void getFeedFlowsWithFailure() {
+        Mockito.when(processGroups.findById("categoryA-feed2", true, true))
+            .thenThrow(new NifiComponentNotFoundException("categoryA-feed2", NifiConstants.NIFI_COMPONENT_TYPE.PROCESS_GROUP, null));
+        client.getFeedFlows();
+    }
+
+    /**
+     * Verify changing the number of crawler threads.
+     */
+    @Test
+    public void setCrawlerThreads() {
+        client.setCrawlerThreads(2);
+        Assert.assertEquals(2, client.getCrawlerThreads());
+        client.setCrawlerThreads(20);
+        Assert.assertEquals(20, client.getCrawlerThreads());
+        client.setCrawlerThreads(0);
+        Assert.assertEquals(10, client.getCrawlerThreads());
+        Assert.assertEquals(3, client.getFeedFlows().size());
+    }
+
+    private void mockFeeds(ProcessGroupDTO category, String... feedNames) {
+        Set<ProcessGroupEntity> entities = new LinkedHashSet<>();
+        for (String feedName : feedNames) {
+            String feedId = category.getName() + "-" + feedName;
+            ProcessorDTO processor = new ProcessorDTO();
+            processor.setId(feedId + "-processor");
+            processor.setName("GetFile");
+            processor.setType("org.apache.nifi.processors.standard.GetFile");
+            processor.setParentGroupId(feedId);
+
+            FlowSnippetDTO contents = contents(Collections.emptyList());
+            contents.setProcessors(Collections.singleton(processor));
+            ProcessGroupDTO feed = group(feedId, category.getId(), feedName, contents);
+            Mockito.when(processGroups.findById(feedId, true, true)).thenReturn(Optional.of(feed));
+
+            ProcessGroupEntity entity = new ProcessGroupEntity();
+            entity.setComponent(group(feedId, category.getId(), feedName, null));
+            entities.add(entity);
+        }
+        FlowDTO flow = new FlowDTO();
+        flow.setProcessGroups(entities);
+        ProcessGroupFlowDTO processGroupFlow = new ProcessGroupFlowDTO();
+        processGroupFlow.setFlow(flow);
+        Mockito.when(processGroups.flow(category.getId())).thenReturn(processGroupFlow);
+    }
+
+    private static ProcessGroupDTO group(String id, String parentId, String name, FlowSnippetDTO contents) {
+        ProcessGroupDTO group = new ProcessGroupDTO();
+        group.setId(id);
+        group.setParentGroupId(parentId);
+        group.setName(name);
+        group.setContents(contents);
+        return group;
+    }
+
+    private static FlowSnippetDTO contents(List<ProcessGroupDTO> groups) {
+        FlowSnippetDTO contents = new FlowSnippetDTO();
+        contents.setProcessGroups(new LinkedHashSet<>(groups));
+        contents.setProcessors(Collections.emptySet());
+        contents.setConnections(Collections.emptySet());
+        return contents;
+    }
+}
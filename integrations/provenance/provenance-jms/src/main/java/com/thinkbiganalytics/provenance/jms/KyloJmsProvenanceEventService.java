@@ -21,6 +21,7 @@ package com.thinkbiganalytics.provenance.jms;
 
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.codec.ProvenanceWireFormat;
 import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
 import com.thinkbiganalytics.nifi.provenance.model.util.GroupedStatsUtil;
 import com.thinkbiganalytics.provenance.api.ProvenanceEventService;
@@ -36,6 +37,9 @@ import java.util.Map;
 
 /**
  * Send provenance data to JMS
+ * By default java serialized objects are sent to the thinkbig.feed-manager and thinkbig.provenance-event-stats queues.
+ * Set the {@link #BINARY_WIRE_FORMAT_CONFIG} parameter to true to encode the data using the compact {@link ProvenanceWireFormat} and send it to the thinkbig.feed-manager2 and
+ * thinkbig.provenance-event-stats2 queues. Only enable it once every receiving Kylo can read the binary format.
  */
 public class KyloJmsProvenanceEventService implements ProvenanceEventService {
 
@@ -44,12 +48,21 @@ public class KyloJmsProvenanceEventService implements ProvenanceEventService {
     private static final String KYLO_BATCH_EVENT_QUEUE = "thinkbig.feed-manager";
 
     private static final String KYLO_EVENT_STATS_QUEUE = "thinkbig.provenance-event-stats";
+
+    private static final String KYLO_BATCH_EVENT_BYTES_QUEUE = "thinkbig.feed-manager2";
+
+    private static final String KYLO_EVENT_STATS_BYTES_QUEUE = "thinkbig.provenance-event-stats2";
+
     public static final String JMS_URL_CONFIG = "jms.url";
 
+    public static final String BINARY_WIRE_FORMAT_CONFIG = "binaryWireFormat";
+
     private KyloJmsService kyloJmsService;
 
     private String jmsUrl;
 
+    private boolean binaryWireFormat = false;
+
     public KyloJmsProvenanceEventService() {
         kyloJmsService = new KyloJmsService();
     }
@@ -61,6 +74,9 @@ public class KyloJmsProvenanceEventService implements ProvenanceEventService {
         if (StringUtils.isBlank(jmsUrl)) {
             jmsUrl = "tcp://localhost:61616";
         }
+        if (params.containsKey(BINARY_WIRE_FORMAT_CONFIG)) {
+            binaryWireFormat = Boolean.valueOf(params.get(BINARY_WIRE_FORMAT_CONFIG));
+        }
     }
 
     @Override
@@ -96,11 +112,19 @@ public class KyloJmsProvenanceEventService implements ProvenanceEventService {
 
 
     private void sendKyloBatchEventMessage(String url, ProvenanceEventRecordDTOHolder msg) throws Exception {
-        kyloJmsService.sendMessage(url, KYLO_BATCH_EVENT_QUEUE, msg);
+        if (binaryWireFormat) {
+            kyloJmsService.sendBytes(url, KYLO_BATCH_EVENT_BYTES_QUEUE, ProvenanceWireFormat.encode(msg));
+        } else {
+            kyloJmsService.sendMessage(url, KYLO_BATCH_EVENT_QUEUE, msg);
+        }
     }
 
     private void sendKyloEventStatisticsMessage(String url, AggregatedFeedProcessorStatisticsHolder msg) throws Exception {
-        kyloJmsService.sendMessage(url, KYLO_EVENT_STATS_QUEUE, msg);
+        if (binaryWireFormat) {
+            kyloJmsService.sendBytes(url, KYLO_EVENT_STATS_BYTES_QUEUE, ProvenanceWireFormat.encode(msg));
+        } else {
+            kyloJmsService.sendMessage(url, KYLO_EVENT_STATS_QUEUE, msg);
+        }
     }
 
 
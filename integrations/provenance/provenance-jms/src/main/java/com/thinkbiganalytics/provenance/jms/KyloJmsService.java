@@ -24,7 +24,10 @@ import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessor
 import org.apache.activemq.ActiveMQConnectionFactory;
 
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 
+import javax.jms.BytesMessage;
 import javax.jms.Connection;
 import javax.jms.DeliveryMode;
 import javax.jms.Destination;
@@ -40,7 +43,7 @@ public class KyloJmsService {
 
     private Connection connection;
     private Session session;
-    private MessageProducer producer;
+    private Map<String, MessageProducer> producers = new HashMap<>();
 
 
 
@@ -51,6 +54,15 @@ public class KyloJmsService {
         sendMessage(session,producer,msg);
     }
 
+    public void sendBytes(String url, String queueName, byte[] bytes) throws Exception {
+        Connection connection = getOrCreateJmsConnection(url);
+        Session session = getOrCreateSession(connection);
+        MessageProducer producer = getOrCreateProducer(session, queueName);
+        BytesMessage m = session.createBytesMessage();
+        m.writeBytes(bytes);
+        producer.send(m);
+    }
+
 
 
 
@@ -79,12 +91,13 @@ public class KyloJmsService {
 
     private MessageProducer getOrCreateProducer(Session session, String queueName) throws Exception{
 
+        MessageProducer producer = producers.get(queueName);
         if(producer == null) {
             // Create the destination (Topic or Queue)
             Destination destination = session.createQueue(queueName);
-            MessageProducer producer = session.createProducer(destination);
+            producer = session.createProducer(destination);
             producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
-            this.producer = producer;
+            producers.put(queueName, producer);
         }
         return producer;
     }
@@ -95,13 +108,14 @@ public class KyloJmsService {
     }
 
     public  void closeConnection(){
-        if(this.producer != null) {
+        for(MessageProducer producer : producers.values()) {
             try {
-            this.producer.close();
+            producer.close();
             }catch (Exception e){
 
             }
         }
+        producers.clear();
         if(this.session != null) {
             try {
                 this.session.close();
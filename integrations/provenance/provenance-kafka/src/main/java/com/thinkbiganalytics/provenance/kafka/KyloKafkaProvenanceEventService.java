@@ -21,6 +21,7 @@ package com.thinkbiganalytics.provenance.kafka;
 
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.codec.ProvenanceWireFormat;
 import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
 import com.thinkbiganalytics.nifi.provenance.model.util.GroupedStatsUtil;
 import com.thinkbiganalytics.provenance.api.ProvenanceEventService;
@@ -49,6 +50,8 @@ import java.util.concurrent.TimeoutException;
 /**
  * A service allowing you to write Provenance data to Kafka.
  * The items will be sent to 2 Kafka topics serialized as byte[].
+ * By default the items are java serialized.  Set the {@link #BINARY_WIRE_FORMAT_CONFIG} parameter to true to encode them using the compact {@link ProvenanceWireFormat}
+ * once every receiving Kylo can read the binary format
  * A subsequent Consumer, or provided System Flow in NiFi will pull the data from these topics and send the events to JMS for Operations Manager to process
  */
 public class KyloKafkaProvenanceEventService implements ProvenanceEventService {
@@ -61,6 +64,8 @@ public class KyloKafkaProvenanceEventService implements ProvenanceEventService {
 
     public static final String ACKNOWLEDGE_WAIT_TIME_CONFIG = "ackWaitTime";
 
+    public static final String BINARY_WIRE_FORMAT_CONFIG = "binaryWireFormat";
+
 
     private Producer kafkaProducer = null;
 
@@ -69,6 +74,11 @@ public class KyloKafkaProvenanceEventService implements ProvenanceEventService {
      */
     private long ackWaitTime = 30000;
 
+    /**
+     * Encode the items using the {@link ProvenanceWireFormat} instead of java serialization
+     */
+    private boolean binaryWireFormat = false;
+
     private Map<String, String> params = new HashMap<>();
 
     private Map<String, String> getParameters() {
@@ -81,6 +91,9 @@ public class KyloKafkaProvenanceEventService implements ProvenanceEventService {
         if (params.containsKey(ACKNOWLEDGE_WAIT_TIME_CONFIG)) {
             ackWaitTime = Long.valueOf(params.get(ACKNOWLEDGE_WAIT_TIME_CONFIG));
         }
+        if (params.containsKey(BINARY_WIRE_FORMAT_CONFIG)) {
+            binaryWireFormat = Boolean.valueOf(params.get(BINARY_WIRE_FORMAT_CONFIG));
+        }
         this.params.putAll(params);
         kafkaProducer = createProducer();
     }
@@ -98,13 +111,13 @@ public class KyloKafkaProvenanceEventService implements ProvenanceEventService {
                 }
             }
             eventRecordDTOHolder.setEvents(batchEvents);
-            byte[] data = SerializationUtils.serialize(eventRecordDTOHolder);
+            byte[] data = binaryWireFormat ? ProvenanceWireFormat.encode(eventRecordDTOHolder) : SerializationUtils.serialize(eventRecordDTOHolder);
             ProducerRecord<byte[], byte[]> eventsMessage = new ProducerRecord<>(KYLO_BATCH_EVENT_TOPIC, data);
             log.info("Sending {} events to Kafka ", eventRecordDTOHolder);
             resultFutures.add(kafkaProducer.send(eventsMessage));
 
             AggregatedFeedProcessorStatisticsHolder stats = GroupedStatsUtil.gatherStats(events);
-            data = SerializationUtils.serialize(stats);
+            data = binaryWireFormat ? ProvenanceWireFormat.encode(stats) : SerializationUtils.serialize(stats);
             ProducerRecord<byte[], byte[]> statsMessage = new ProducerRecord<>(KYLO_EVENT_STATS_TOPIC, data);
             resultFutures.add(kafkaProducer.send(statsMessage));
             processAcks(resultFutures);
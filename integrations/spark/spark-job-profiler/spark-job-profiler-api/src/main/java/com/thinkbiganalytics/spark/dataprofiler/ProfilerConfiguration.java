@@ -39,6 +39,7 @@ public class ProfilerConfiguration implements Serializable {
     private String outputTablePartitionColumnName = "processing_dttm";
     private String sqlDialect = "hiveql";  // Hive supported HQL
     private Integer bins = 5;
+    private boolean approximate = false;
 
     /**
      * Number of decimals to print out in console<br>
@@ -142,4 +143,16 @@ public class ProfilerConfiguration implements Serializable {
     public void setBins(Integer bins) {
         this.bins = bins;
     }
+
+    /**
+     * Estimate unique counts, top-N values and histograms from mergeable sketches instead of counting every distinct value<br>
+     * Avoids a shuffle of the data set, at the cost of approximate results for those metrics
+     */
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
+    }
 }
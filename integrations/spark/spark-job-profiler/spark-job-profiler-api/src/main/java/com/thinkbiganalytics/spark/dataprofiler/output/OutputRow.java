@@ -36,6 +36,7 @@ public class OutputRow implements Serializable {
     private String columnName;
     private String metricType;
     private String metricValue;
+    private boolean approximate;
 
     /**
      * No-argument constructor
@@ -59,6 +60,19 @@ public class OutputRow implements Serializable {
         this.metricValue = metricValue;
     }
 
+    /**
+     * Four-argument constructor to create a new row
+     *
+     * @param columnName  name of column
+     * @param metricType  metric type
+     * @param metricValue metric value
+     * @param approximate true if the metric value is an estimate
+     */
+    public OutputRow(String columnName, String metricType, String metricValue, boolean approximate) {
+        this(columnName, metricType, metricValue);
+        this.approximate = approximate;
+    }
+
     /**
      * Get the column name
      *
@@ -113,6 +127,24 @@ public class OutputRow implements Serializable {
         this.metricValue = metricValue;
     }
 
+    /**
+     * Indicates if the metric value is an estimate
+     *
+     * @return true if approximate, false if exact
+     */
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    /**
+     * Set if the metric value is an estimate
+     *
+     * @param approximate true if approximate, false if exact
+     */
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
+    }
+
     /**
      * Set values for the row
      *
@@ -132,6 +164,6 @@ public class OutputRow implements Serializable {
     @Override
     public String toString() {
         return "OutputRow [columnName=" + columnName + ", metricType=" + metricType + ", metricValue=" + metricValue
-               + "]";
+               + ", approximate=" + approximate + "]";
     }
 }
@@ -127,6 +127,7 @@ public class Profiler {
     private ProfilerArguments parseCommandLineArgs(final String[] args) {
         ProfilerArguments profilerArgs = new ProfilerArguments(args, this.loader);
         profilerConfiguration.setInputAndOutputTablePartitionKey(profilerArgs.getInputAndOutputTablePartitionKey());
+        profilerConfiguration.setApproximate(profilerArgs.isApproximate());
 
         if (!setOutputTableDBAndName(profilerArgs.getProfileOutputTable(), profilerConfiguration)) {
             log.error("Illegal command line argument for output table ({})", profilerArgs.getProfileOutputTable());
@@ -222,7 +223,8 @@ public class Profiler {
                  + "5. full path to policy file "
                  + "\n"
                  + "Info: Optional command line argument:\n"
-                 + "6. partition_key: valid value is {<string>}\n\n"
+                 + "6. partition_key: valid value is {<string>}\n"
+                 + "7. profile mode: valid values are {exact, approximate}\n\n"
                  + "(Note: Only alphanumeric and underscore characters for table names and partition key)"
                  + "\n***");
     }
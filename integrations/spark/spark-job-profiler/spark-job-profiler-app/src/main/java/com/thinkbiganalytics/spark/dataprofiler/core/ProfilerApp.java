@@ -25,6 +25,11 @@ import com.thinkbiganalytics.spark.dataprofiler.StatisticsModel;
 import com.thinkbiganalytics.spark.dataprofiler.columns.*;
 import com.thinkbiganalytics.spark.dataprofiler.output.OutputRow;
 import com.thinkbiganalytics.spark.dataprofiler.output.OutputWriter;
+import com.thinkbiganalytics.spark.dataprofiler.sketch.ColumnSketches;
+import com.thinkbiganalytics.spark.dataprofiler.sketch.CountMinSketch;
+import com.thinkbiganalytics.spark.dataprofiler.sketch.HyperLogLog;
+import com.thinkbiganalytics.spark.dataprofiler.sketch.TDigest;
+import com.thinkbiganalytics.spark.dataprofiler.sketch.TopNSketch;
 import com.thinkbiganalytics.spark.dataprofiler.topn.TopNDataItem;
 import com.thinkbiganalytics.spark.dataprofiler.topn.TopNDataList;
 import org.apache.spark.SparkConf;
@@ -93,6 +98,11 @@ public class ProfilerApp {
         serializeClassesList.add(StatisticsModel.class);
         serializeClassesList.add(TopNDataItem.class);
         serializeClassesList.add(TopNDataList.class);
+        serializeClassesList.add(ColumnSketches.class);
+        serializeClassesList.add(CountMinSketch.class);
+        serializeClassesList.add(HyperLogLog.class);
+        serializeClassesList.add(TDigest.class);
+        serializeClassesList.add(TopNSketch.class);
         serializeClassesList.add(OutputRow.class);
         serializeClassesList.add(OutputWriter.class);
 
@@ -49,6 +49,7 @@ public class ProfilerArguments {
     private final String profileOutputTable;
     private final String fieldPolicyJsonPath;
     private final String inputAndOutputTablePartitionKey;
+    private final boolean approximate;
     private final List<String> profiledColumns = new ArrayList<>();
     
     /**
@@ -73,6 +74,22 @@ public class ProfilerArguments {
         } else {
             this.inputAndOutputTablePartitionKey = "ALL";
         }
+
+        if (args.length >= 7) {
+            switch (args[6].toLowerCase()) {
+                case "approximate":
+                    this.approximate = true;
+                    break;
+                case "exact":
+                    this.approximate = false;
+                    break;
+                default:
+                    log.error("Illegal command line argument for profile mode ({})", args[6]);
+                    throw new IllegalArgumentException("Illegal command line argument for profile mode (" + args[6] + ")");
+            }
+        } else {
+            this.approximate = false;
+        }
         
         final String profileObjectType = args[0];
         final String descr = args[1];
@@ -136,6 +153,10 @@ public class ProfilerArguments {
         return inputAndOutputTablePartitionKey;
     }
 
+    public boolean isApproximate() {
+        return approximate;
+    }
+
     public List<String> getProfiledColumns() {
         return profiledColumns;
     }
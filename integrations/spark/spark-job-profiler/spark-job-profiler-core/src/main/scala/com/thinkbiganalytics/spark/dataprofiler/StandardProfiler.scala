@@ -1,6 +1,7 @@
 package com.thinkbiganalytics.spark.dataprofiler
 
-import com.thinkbiganalytics.spark.dataprofiler.function.PartitionLevelModels
+import com.thinkbiganalytics.spark.dataprofiler.function.{PartitionLevelModels, PartitionLevelSketches}
+import com.thinkbiganalytics.spark.dataprofiler.model.StandardStatisticsModel
 import com.thinkbiganalytics.spark.{DataSet, SparkContextService}
 import org.apache.spark.sql.SQLContext
 import org.apache.spark.sql.types.StructField
@@ -35,20 +36,30 @@ class StandardProfiler(val sqlContext: SQLContext, val sparkContextService: Spar
       * @return the statistics model
       */
     private def profileStatistics(dataset: DataSet, schemaMap: Map[Int, StructField], profilerConfiguration: ProfilerConfiguration): Option[StatisticsModel] = {
-        // Get ((column index, column value), count)
-        val columnValueCounts = dataset.rdd
-            .flatMap((row) => row.toSeq.zipWithIndex.map((tuple) => ((tuple._2, tuple._1), 1)))
-            .reduceByKey((a, b) => a + b)
-
         // Generate the profile model
-        val partitionLevelModels = columnValueCounts.mapPartitions(new PartitionLevelModels(schemaMap, profilerConfiguration))
-        val result = if (!partitionLevelModels.isEmpty) {
-            Option(partitionLevelModels.reduce((a, b) => {
-                a.combine(b)
-                a
-            }))
+        val partitionLevelModels = if (profilerConfiguration.isApproximate) {
+            // Sketch the values of each partition as they are, without a shuffle
+            dataset.rdd.mapPartitions(new PartitionLevelSketches(schemaMap, profilerConfiguration))
         } else {
+            // Get ((column index, column value), count)
+            val columnValueCounts = dataset.rdd
+                .flatMap((row) => row.toSeq.zipWithIndex.map((tuple) => ((tuple._2, tuple._1), 1)))
+                .reduceByKey((a, b) => a + b)
+
+            columnValueCounts.mapPartitions(new PartitionLevelModels(schemaMap, profilerConfiguration))
+        }
+
+        val combine = (a: StandardStatisticsModel, b: StandardStatisticsModel) => {
+            a.combine(b)
+            a
+        }
+        val result = if (partitionLevelModels.isEmpty) {
             Option.empty
+        } else if (profilerConfiguration.isApproximate) {
+            // There is one model per input partition, so combine them on the executors before sending them to the driver
+            Option(partitionLevelModels.treeReduce(combine))
+        } else {
+            Option(partitionLevelModels.reduce(combine))
         }
 
         if (result.isDefined) {
@@ -0,0 +1,28 @@
+package com.thinkbiganalytics.spark.dataprofiler.function
+
+import com.thinkbiganalytics.spark.dataprofiler.ProfilerConfiguration
+import com.thinkbiganalytics.spark.dataprofiler.model.StandardStatisticsModel
+import org.apache.spark.sql.Row
+import org.apache.spark.sql.types.StructField
+
+/** Creates an approximate statistics model from the rows of a partition.
+  *
+  * Every value is added to the model as it is read, so the unique counts and top-N values are estimated by the column sketches.
+  *
+  * @param schemaMap the schema map
+  */
+class PartitionLevelSketches(val schemaMap: Map[Int, StructField], val profilerConfiguration: ProfilerConfiguration) extends (Iterator[Row] => Iterator[StandardStatisticsModel])
+    with Serializable {
+
+    override def apply(iter: Iterator[Row]): Iterator[StandardStatisticsModel] = {
+        val statisticsModel = new StandardStatisticsModel(profilerConfiguration)
+
+        for (row <- iter) {
+            for (columnIndex <- 0 until row.length) {
+                statisticsModel.add(columnIndex, row.get(columnIndex), 1L, schemaMap(columnIndex))
+            }
+        }
+
+        Iterator.apply(statisticsModel)
+    }
+}
@@ -22,8 +22,10 @@ package com.thinkbiganalytics.spark.dataprofiler.columns;
 
 import com.thinkbiganalytics.spark.dataprofiler.ColumnStatistics;
 import com.thinkbiganalytics.spark.dataprofiler.ProfilerConfiguration;
+import com.thinkbiganalytics.spark.dataprofiler.histo.HistogramStatistics;
 import com.thinkbiganalytics.spark.dataprofiler.model.MetricType;
 import com.thinkbiganalytics.spark.dataprofiler.output.OutputRow;
+import com.thinkbiganalytics.spark.dataprofiler.sketch.ColumnSketches;
 import com.thinkbiganalytics.spark.dataprofiler.topn.TopNDataItem;
 import com.thinkbiganalytics.spark.dataprofiler.topn.TopNDataList;
 
@@ -35,6 +37,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Class to hold common profile statistics for columns of all data types
@@ -47,7 +50,10 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
     final StructField columnField;
     /* Other variables */
     final DecimalFormat df;
-    private final TopNDataList topNValues;
+    private TopNDataList topNValues;
+    /* Sketches replacing the unique count and top-N values when profiling approximately */
+    @Nullable
+    private final ColumnSketches sketches;
     /* Common metrics for all data types */
     long nullCount;
     long totalCount;
@@ -74,6 +80,9 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
         percDuplicateValues = 0.0d;
         this.profilerConfiguration = profilerConfiguration;
         topNValues = new TopNDataList(profilerConfiguration.getNumberOfTopNValues());
+        sketches = profilerConfiguration.isApproximate()
+                   ? new ColumnSketches(profilerConfiguration.getNumberOfTopNValues(), HistogramStatistics.isNumeric(columnField))
+                   : null;
         df = new DecimalFormat(getDecimalFormatPattern());
     }
 
@@ -87,12 +96,19 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
     void accomodateCommon(Object columnValue, Long columnCount) {
 
         totalCount += columnCount;
-        uniqueCount += 1;
 
         if (columnValue == null) {
             nullCount += columnCount;
         }
 
+        if (sketches != null) {
+            // values are not grouped when profiling approximately; estimates are calculated when the statistics are read
+            sketches.add(columnValue, columnCount);
+            return;
+        }
+
+        uniqueCount += 1;
+
         doPercentageCalculationsCommon();
 
         topNValues.add(columnValue, columnCount);
@@ -107,9 +123,15 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
     void combineCommon(StandardColumnStatistics v_columnStatistics) {
 
         totalCount += v_columnStatistics.totalCount;
-        uniqueCount += v_columnStatistics.uniqueCount;
         nullCount += v_columnStatistics.nullCount;
 
+        if (sketches != null && v_columnStatistics.sketches != null) {
+            sketches.merge(v_columnStatistics.sketches);
+            return;
+        }
+
+        uniqueCount += v_columnStatistics.uniqueCount;
+
         doPercentageCalculationsCommon();
 
         for (TopNDataItem dataItem :
@@ -149,7 +171,7 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
      * Write top n rows in column for output result table
      */
     private void writeTopNInformation(@Nonnull final List<OutputRow> rows) {
-        rows.add(new OutputRow(columnField.name(), String.valueOf(MetricType.TOP_N_VALUES), topNValues.printTopNItems()));
+        rows.add(new OutputRow(columnField.name(), String.valueOf(MetricType.TOP_N_VALUES), topNValues.printTopNItems(), isApproximate()));
     }
 
 
@@ -171,14 +193,15 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
      */
     void writeStatisticsCommon(@Nonnull final List<OutputRow> rows) {
 
+        updateApproximateStatistics();
         writeColumnSchemaInformation(rows);
 
         rows.add(new OutputRow(columnField.name(), String.valueOf(MetricType.NULL_COUNT), String.valueOf(nullCount)));
         rows.add(new OutputRow(columnField.name(), String.valueOf(MetricType.TOTAL_COUNT), String.valueOf(totalCount)));
-        rows.add(new OutputRow(columnField.name(), String.valueOf(MetricType.UNIQUE_COUNT), String.valueOf(uniqueCount)));
+        rows.add(new OutputRow(columnField.name(), String.valueOf(MetricType.UNIQUE_COUNT), String.valueOf(uniqueCount), isApproximate()));
         rows.add(new OutputRow(columnField.name(), String.valueOf(MetricType.PERC_NULL_VALUES), df.format(percNullValues)));
-        rows.add(new OutputRow(columnField.name(), String.valueOf(MetricType.PERC_UNIQUE_VALUES), df.format(percUniqueValues)));
-        rows.add(new OutputRow(columnField.name(), String.valueOf(MetricType.PERC_DUPLICATE_VALUES), df.format(percDuplicateValues)));
+        rows.add(new OutputRow(columnField.name(), String.valueOf(MetricType.PERC_UNIQUE_VALUES), df.format(percUniqueValues), isApproximate()));
+        rows.add(new OutputRow(columnField.name(), String.valueOf(MetricType.PERC_DUPLICATE_VALUES), df.format(percDuplicateValues), isApproximate()));
 
         writeTopNInformation(rows);
     }
@@ -191,6 +214,7 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
      */
     String getVerboseStatisticsCommon() {
 
+        updateApproximateStatistics();
         return getVerboseColumnSchemaInformation()
                + "\n"
                + "CommonStatistics ["
@@ -217,6 +241,18 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
     }
 
 
+    /*
+     * Replace the unique count and top-N values with the estimates from the sketches
+     */
+    private void updateApproximateStatistics() {
+        if (sketches != null) {
+            uniqueCount = Math.min(sketches.getUniqueCount(), totalCount);
+            topNValues = sketches.getTopNValues();
+            doPercentageCalculationsCommon();
+        }
+    }
+
+
     /*
      * Build format to display decimals up to configured number of digits
      */
@@ -259,6 +295,7 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
      * @return unique count
      */
     public long getUniqueCount() {
+        updateApproximateStatistics();
         return uniqueCount;
     }
 
@@ -269,6 +306,7 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
      * @return percentage of null values
      */
     public double getPercNullValues() {
+        updateApproximateStatistics();
         return percNullValues;
     }
 
@@ -279,6 +317,7 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
      * @return percentage of unique values
      */
     public double getPercUniqueValues() {
+        updateApproximateStatistics();
         return percUniqueValues;
     }
 
@@ -289,6 +328,7 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
      * @return percentage of duplicate values
      */
     public double getPercDuplicateValues() {
+        updateApproximateStatistics();
         return percDuplicateValues;
     }
 
@@ -299,9 +339,30 @@ public abstract class StandardColumnStatistics implements ColumnStatistics, Seri
      * @return top n values
      */
     public TopNDataList getTopNValues() {
+        updateApproximateStatistics();
         return topNValues;
     }
 
+    /**
+     * Indicates if the unique count and top-N values are estimated from sketches
+     *
+     * @return true if approximate, false if exact
+     */
+    public boolean isApproximate() {
+        return sketches != null;
+    }
+
+
+    /**
+     * Get the sketches of the column values
+     *
+     * @return the sketches, or null if the statistics are exact
+     */
+    @Nullable
+    public ColumnSketches getSketches() {
+        return sketches;
+    }
+
     /*
      * Methods to be implemented by data type specific column statistics classes that:
      * 1) extend this class
@@ -23,6 +23,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.thinkbiganalytics.spark.dataprofiler.ColumnStatistics;
 import com.thinkbiganalytics.spark.dataprofiler.ProfilerConfiguration;
 import com.thinkbiganalytics.spark.dataprofiler.output.OutputRow;
+import com.thinkbiganalytics.spark.dataprofiler.sketch.TDigest;
 
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.function.DoubleFunction;
@@ -82,6 +83,55 @@ public class HistogramStatistics implements ColumnStatistics, Serializable {
         }
     }
 
+    /**
+     * Generates an approximate histogram from the distribution of the column values, without another pass over the data
+     *
+     * @param columnField       the column
+     * @param valueDistribution digest of the non-null values in the column
+     */
+    public void accomodate(StructField columnField, TDigest valueDistribution) {
+        try {
+            if (valueDistribution.size() > 0) {
+                Tuple2<double[], long[]> histogram = toHistogram(valueDistribution);
+
+                ObjectMapper mapper = new ObjectMapper();
+                String jsonHisto = mapper.writeValueAsString(histogram);
+
+                OutputRow row = new OutputRow(columnField.name(), "HISTO", jsonHisto, true);
+                this.outputRows.add(row);
+            }
+        } catch (Exception e) {
+            log.warn("Histogram generation failed for column {}", columnField.name(), e);
+        }
+    }
+
+    /*
+     * Evenly spaced buckets between the min and max values, like JavaDoubleRDD.histogram(bins), with counts estimated from the digest
+     */
+    private Tuple2<double[], long[]> toHistogram(TDigest valueDistribution) {
+        double min = valueDistribution.getMin();
+        double max = valueDistribution.getMax();
+
+        if (min == max) {
+            return new Tuple2<>(new double[]{min, max}, new long[]{valueDistribution.size()});
+        }
+
+        double[] buckets = new double[bins + 1];
+        long[] counts = new long[bins];
+        long countSoFar = 0L;
+
+        buckets[0] = min;
+        for (int i = 1; i <= bins; i++) {
+            buckets[i] = (i == bins) ? max : min + (max - min) * i / bins;
+
+            long cumulativeCount = Math.round(valueDistribution.cdf(buckets[i]) * valueDistribution.size());
+            counts[i - 1] = cumulativeCount - countSoFar;
+            countSoFar = cumulativeCount;
+        }
+
+        return new Tuple2<>(buckets, counts);
+    }
+
     public static boolean isNumeric(StructField columnField) {
         DataType columnDataType = columnField.dataType();
 
@@ -245,8 +245,14 @@ public class StandardStatisticsModel implements Serializable, StatisticsModel {
         // Generate histogram statistics (numeric columns) and add statistics to model
         if (HistogramStatistics.isNumeric(columnField)) {
             HistogramStatistics histogramStatistics = new HistogramStatistics(profilerConfiguration);
-            histogramStatistics.accomodate(columnIndex, ds.javaRDD(), columnField);
-            columnStatisticsMap.get(columnIndex).getStatistics().addAll(histogramStatistics.getStatistics());
+            StandardColumnStatistics columnStatistics = columnStatisticsMap.get(columnIndex);
+
+            if (columnStatistics.getSketches() != null && columnStatistics.getSketches().getValueDistribution() != null) {
+                histogramStatistics.accomodate(columnField, columnStatistics.getSketches().getValueDistribution());
+            } else {
+                histogramStatistics.accomodate(columnIndex, ds.javaRDD(), columnField);
+            }
+            columnStatistics.getStatistics().addAll(histogramStatistics.getStatistics());
         }
     }
 
@@ -0,0 +1,116 @@
+package com.thinkbiganalytics.spark.dataprofiler.sketch;
+
+/*-
+ * #%L
+ * thinkbig-spark-job-profiler-app
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.spark.dataprofiler.topn.TopNDataList;
+
+import java.io.Serializable;
+
+import javax.annotation.Nullable;
+
+/**
+ * Mergeable sketches of the values in a column, used by the approximate profiling mode in place of exact value counts
+ */
+public class ColumnSketches implements Serializable {
+
+    private static final long serialVersionUID = 3395472052364729470L;
+
+    private final HyperLogLog distinctValues = new HyperLogLog();
+    private final TopNSketch topNValues;
+
+    /* Distribution of the values, only for numeric columns */
+    @Nullable
+    private final TDigest valueDistribution;
+
+
+    /**
+     * Create the sketches for a column
+     *
+     * @param numberOfTopNValues N for top-N values
+     * @param numeric            true to also sketch the distribution of the values
+     */
+    public ColumnSketches(int numberOfTopNValues, boolean numeric) {
+        topNValues = new TopNSketch(numberOfTopNValues);
+        valueDistribution = numeric ? new TDigest() : null;
+    }
+
+
+    /**
+     * Include occurrences of a value
+     *
+     * @param columnValue value in column
+     * @param columnCount number of times value is found in column
+     */
+    public void add(Object columnValue, long columnCount) {
+        distinctValues.add(SketchHash.hash(columnValue));
+        topNValues.add(columnValue, columnCount);
+
+        if (valueDistribution != null && columnValue != null) {
+            valueDistribution.add(Double.parseDouble(String.valueOf(columnValue)), columnCount);
+        }
+    }
+
+
+    /**
+     * Combine with the sketches of the same column from another partition
+     *
+     * @param other sketches to combine with
+     */
+    public void merge(ColumnSketches other) {
+        distinctValues.merge(other.distinctValues);
+        topNValues.merge(other.topNValues);
+
+        if (valueDistribution != null && other.valueDistribution != null) {
+            valueDistribution.merge(other.valueDistribution);
+        }
+    }
+
+
+    /**
+     * Get the estimated number of unique values (null is considered a unique value)
+     *
+     * @return unique count estimate
+     */
+    public long getUniqueCount() {
+        return distinctValues.estimate();
+    }
+
+
+    /**
+     * Get the estimated top-N values
+     *
+     * @return top-N list
+     */
+    public TopNDataList getTopNValues() {
+        return topNValues.getTopNValues();
+    }
+
+
+    /**
+     * Get the distribution of the non-null values
+     *
+     * @return the digest, or null if the column is not numeric
+     */
+    @Nullable
+    public TDigest getValueDistribution() {
+        return valueDistribution;
+    }
+}
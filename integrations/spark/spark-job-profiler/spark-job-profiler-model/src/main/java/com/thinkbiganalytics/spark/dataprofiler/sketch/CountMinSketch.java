@@ -0,0 +1,134 @@
+package com.thinkbiganalytics.spark.dataprofiler.sketch;
+
+/*-
+ * #%L
+ * thinkbig-spark-job-profiler-app
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * Count-min sketch to estimate the frequency of values in a column<br>
+ * Estimates never undercount. Sketches built on different partitions are combined with {@link #merge(CountMinSketch)}.
+ */
+public class CountMinSketch implements Serializable {
+
+    private static final long serialVersionUID = -2937413645109628215L;
+
+    /**
+     * Default number of hash functions
+     */
+    public static final int DEFAULT_DEPTH = 4;
+
+    /**
+     * Default number of counters per hash function
+     */
+    public static final int DEFAULT_WIDTH = 1024;
+
+    private final int depth;
+    private final int width;
+    private final long[] counts;
+
+
+    /**
+     * Create a sketch with the default depth and width
+     */
+    public CountMinSketch() {
+        this(DEFAULT_DEPTH, DEFAULT_WIDTH);
+    }
+
+
+    /**
+     * Create a sketch
+     *
+     * @param depth number of hash functions
+     * @param width number of counters per hash function
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth <= 0 || width <= 0) {
+            throw new IllegalArgumentException("Count-min sketch depth and width must be positive: " + depth + "x" + width);
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counts = new long[depth * width];
+    }
+
+
+    /**
+     * Add occurrences of a value
+     *
+     * @param hash  hash of the value (see {@link SketchHash})
+     * @param count number of occurrences
+     * @return the estimated frequency of the value after adding
+     */
+    public long add(long hash, long count) {
+        long estimate = Long.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            int cell = cell(hash, row);
+            counts[cell] += count;
+            estimate = Math.min(estimate, counts[cell]);
+        }
+
+        return estimate;
+    }
+
+
+    /**
+     * Get the estimated frequency of a value
+     *
+     * @param hash hash of the value (see {@link SketchHash})
+     * @return frequency estimate
+     */
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[cell(hash, row)]);
+        }
+
+        return estimate;
+    }
+
+
+    /**
+     * Combine with another sketch of the same dimensions
+     *
+     * @param other sketch to combine with
+     */
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Cannot merge count-min sketches of " + depth + "x" + width + " and " + other.depth + "x" + other.width);
+        }
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+
+    /*
+     * Index of the counter for the value in a row, derived from the two halves of the hash
+     */
+    private int cell(long hash, int row) {
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        int combined = hash1 + row * hash2;
+        return row * width + ((combined & Integer.MAX_VALUE) % width);
+    }
+}
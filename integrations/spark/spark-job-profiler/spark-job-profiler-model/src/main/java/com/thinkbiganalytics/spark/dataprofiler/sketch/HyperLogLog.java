@@ -0,0 +1,141 @@
+package com.thinkbiganalytics.spark.dataprofiler.sketch;
+
+/*-
+ * #%L
+ * thinkbig-spark-job-profiler-app
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * HyperLogLog sketch to estimate the number of distinct values in a column<br>
+ * Sketches built on different partitions are combined with {@link #merge(HyperLogLog)}.
+ */
+public class HyperLogLog implements Serializable {
+
+    private static final long serialVersionUID = 5436019470542846911L;
+
+    /**
+     * Default precision: 2^14 registers, a standard error of about 0.8%
+     */
+    public static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+
+    /**
+     * Create a sketch with the default precision
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+
+    /**
+     * Create a sketch
+     *
+     * @param precision number of bits of the hash used to select a register (4 to 18)
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+
+    /**
+     * Include a value in the sketch
+     *
+     * @param hash hash of the value (see {@link SketchHash})
+     */
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+
+        if (registers[index] < rank) {
+            registers[index] = rank;
+        }
+    }
+
+
+    /**
+     * Combine with another sketch of the same precision
+     *
+     * @param other sketch to combine with
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog sketches of precision " + precision + " and " + other.precision);
+        }
+
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+
+    /**
+     * Get the estimated number of distinct values
+     *
+     * @return distinct value estimate
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0.0d;
+        int zeros = 0;
+
+        for (byte register : registers) {
+            sum += 1.0d / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        double estimate = alpha(m) * m * m / sum;
+
+        /* Small range correction: linear counting is more accurate while there are empty registers */
+        if (estimate <= 2.5d * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+
+        return Math.round(estimate);
+    }
+
+
+    /*
+     * Bias correction constant for the number of registers
+     */
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673d;
+            case 32:
+                return 0.697d;
+            case 64:
+                return 0.709d;
+            default:
+                return 0.7213d / (1.0d + 1.079d / m);
+        }
+    }
+}
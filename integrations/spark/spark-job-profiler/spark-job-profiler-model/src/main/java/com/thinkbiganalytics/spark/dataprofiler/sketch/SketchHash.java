@@ -0,0 +1,71 @@
+package com.thinkbiganalytics.spark.dataprofiler.sketch;
+
+/*-
+ * #%L
+ * thinkbig-spark-job-profiler-app
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * 64-bit hash of column values for use by the sketches<br>
+ * Values are hashed by their string form so the same value hashes the same on every executor.
+ */
+public final class SketchHash {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /* Hash used for the null value */
+    private static final long NULL_HASH = 0x9e3779b97f4a7c15L;
+
+    private SketchHash() {
+    }
+
+    /**
+     * Hash a column value
+     *
+     * @param value value in column (may be null)
+     * @return 64-bit hash
+     */
+    public static long hash(Object value) {
+        if (value == null) {
+            return NULL_HASH;
+        }
+
+        String string = String.valueOf(value);
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < string.length(); i++) {
+            hash ^= string.charAt(i);
+            hash *= FNV_PRIME;
+        }
+
+        return mix(hash);
+    }
+
+    /*
+     * Spread the bits of the hash (MurmurHash3 finalizer) so the leading bits are usable by HyperLogLog
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
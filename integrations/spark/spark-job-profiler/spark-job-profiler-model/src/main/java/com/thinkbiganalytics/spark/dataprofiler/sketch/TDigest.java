@@ -0,0 +1,236 @@
+package com.thinkbiganalytics.spark.dataprofiler.sketch;
+
+/*-
+ * #%L
+ * thinkbig-spark-job-profiler-app
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Merging t-digest to estimate the distribution of numeric column values<br>
+ * Values are buffered and periodically merged into a bounded number of weighted centroids.
+ * Sketches built on different partitions are combined with {@link #merge(TDigest)}.
+ */
+public class TDigest implements Serializable {
+
+    private static final long serialVersionUID = 8170934468710261342L;
+
+    /**
+     * Default compression: roughly the number of centroids kept
+     */
+    public static final double DEFAULT_COMPRESSION = 100.0d;
+
+    private final double compression;
+
+    /* Merged centroids, ordered by mean */
+    private double[] means = new double[0];
+    private long[] weights = new long[0];
+
+    /* Values not yet merged into the centroids */
+    private final double[] bufferMeans;
+    private final long[] bufferWeights;
+    private int bufferSize = 0;
+
+    private long totalWeight = 0L;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+
+    /**
+     * Create a digest with the default compression
+     */
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+
+    /**
+     * Create a digest
+     *
+     * @param compression roughly the number of centroids kept
+     */
+    public TDigest(double compression) {
+        this.compression = compression;
+        int bufferCapacity = (int) (compression * 5);
+        this.bufferMeans = new double[bufferCapacity];
+        this.bufferWeights = new long[bufferCapacity];
+    }
+
+
+    /**
+     * Add occurrences of a value
+     *
+     * @param value  value
+     * @param weight number of occurrences
+     */
+    public void add(double value, long weight) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (bufferSize == bufferMeans.length) {
+            compress();
+        }
+
+        bufferMeans[bufferSize] = value;
+        bufferWeights[bufferSize] = weight;
+        bufferSize++;
+
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+
+    /**
+     * Combine with another digest
+     *
+     * @param other digest to combine with
+     */
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.means.length; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+
+    /**
+     * Get the number of values in the digest
+     */
+    public long size() {
+        return totalWeight;
+    }
+
+
+    /**
+     * Get the smallest value (exact)
+     */
+    public double getMin() {
+        return min;
+    }
+
+
+    /**
+     * Get the largest value (exact)
+     */
+    public double getMax() {
+        return max;
+    }
+
+
+    /**
+     * Estimate the fraction of values less than or equal to a value
+     *
+     * @param value value
+     * @return fraction between 0 and 1
+     */
+    public double cdf(double value) {
+        compress();
+
+        if (totalWeight == 0 || value < min) {
+            return 0.0d;
+        }
+        if (value >= max) {
+            return 1.0d;
+        }
+
+        /* Spread the weight of each centroid evenly between the midpoints to its neighbours */
+        double weightSoFar = 0.0d;
+        for (int i = 0; i < means.length; i++) {
+            double left = (i == 0) ? min : (means[i - 1] + means[i]) / 2;
+            double right = (i == means.length - 1) ? max : (means[i] + means[i + 1]) / 2;
+
+            if (value >= right) {
+                weightSoFar += weights[i];
+            } else {
+                if (value > left) {
+                    weightSoFar += weights[i] * (value - left) / (right - left);
+                }
+                break;
+            }
+        }
+
+        return weightSoFar / totalWeight;
+    }
+
+
+    /*
+     * Merge the buffered values into the centroids
+     */
+    private void compress() {
+        if (bufferSize == 0) {
+            return;
+        }
+
+        int count = means.length + bufferSize;
+        double[] allMeans = Arrays.copyOf(means, count);
+        long[] allWeights = Arrays.copyOf(weights, count);
+        System.arraycopy(bufferMeans, 0, allMeans, means.length, bufferSize);
+        System.arraycopy(bufferWeights, 0, allWeights, means.length, bufferSize);
+        bufferSize = 0;
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        final double[] sortMeans = allMeans;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer index1, Integer index2) {
+                return Double.compare(sortMeans[index1], sortMeans[index2]);
+            }
+        });
+
+        double[] mergedMeans = new double[count];
+        long[] mergedWeights = new long[count];
+        int merged = 0;
+        long weightSoFar = 0L;
+
+        mergedMeans[0] = allMeans[order[0]];
+        mergedWeights[0] = allWeights[order[0]];
+
+        for (int i = 1; i < count; i++) {
+            double nextMean = allMeans[order[i]];
+            long nextWeight = allWeights[order[i]];
+            long proposedWeight = mergedWeights[merged] + nextWeight;
+
+            /* Centroids near the tails are kept small so the extremes of the distribution stay accurate */
+            double q0 = (double) weightSoFar / totalWeight;
+            double q2 = (double) (weightSoFar + proposedWeight) / totalWeight;
+            double limit = 4 * totalWeight * Math.min(q0 * (1 - q0), q2 * (1 - q2)) / compression;
+
+            if (proposedWeight <= limit) {
+                mergedMeans[merged] += (nextMean - mergedMeans[merged]) * nextWeight / proposedWeight;
+                mergedWeights[merged] = proposedWeight;
+            } else {
+                weightSoFar += mergedWeights[merged];
+                merged++;
+                mergedMeans[merged] = nextMean;
+                mergedWeights[merged] = nextWeight;
+            }
+        }
+
+        means = Arrays.copyOf(mergedMeans, merged + 1);
+        weights = Arrays.copyOf(mergedWeights, merged + 1);
+    }
+}
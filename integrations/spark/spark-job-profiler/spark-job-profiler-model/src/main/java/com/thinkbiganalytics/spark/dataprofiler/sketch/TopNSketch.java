@@ -0,0 +1,154 @@
+package com.thinkbiganalytics.spark.dataprofiler.sketch;
+
+/*-
+ * #%L
+ * thinkbig-spark-job-profiler-app
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.spark.dataprofiler.topn.TopNDataList;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Approximate top-N values of a column<br>
+ * Frequencies are estimated by a count-min sketch, and a bounded set of candidate values with the highest estimates is kept
+ * (more candidates than N so values that become frequent late are not lost).
+ */
+public class TopNSketch implements Serializable {
+
+    private static final long serialVersionUID = -4580392470416524409L;
+
+    /* Number of candidates kept per requested top-N value */
+    private static final int CANDIDATES_PER_VALUE = 10;
+
+    /* Minimum number of candidates kept */
+    private static final int MIN_CANDIDATES = 64;
+
+    private final int maxSize;
+    private final int capacity;
+    private final CountMinSketch frequencies = new CountMinSketch();
+    private final Map<Object, Long> candidates = new HashMap<>();
+
+    /* Lower bound of the smallest candidate count, refreshed when a candidate is evicted */
+    private long lowestCountSoFar = 0L;
+
+
+    /**
+     * Constructor to set the number of items in the top N list
+     *
+     * @param maxSize N in Top N
+     */
+    public TopNSketch(int maxSize) {
+        this.maxSize = maxSize;
+        this.capacity = Math.max(MIN_CANDIDATES, maxSize * CANDIDATES_PER_VALUE);
+    }
+
+
+    /**
+     * Add occurrences of a value
+     *
+     * @param value value (may be null)
+     * @param count number of occurrences
+     */
+    public void add(Object value, long count) {
+        long estimate = frequencies.add(SketchHash.hash(value), count);
+        offer(value, estimate);
+    }
+
+
+    /**
+     * Combine with another sketch
+     *
+     * @param other sketch to combine with
+     */
+    public void merge(TopNSketch other) {
+        frequencies.merge(other.frequencies);
+
+        Set<Object> values = new HashSet<>(candidates.keySet());
+        values.addAll(other.candidates.keySet());
+        candidates.clear();
+        lowestCountSoFar = 0L;
+
+        for (Object value : values) {
+            offer(value, frequencies.estimate(SketchHash.hash(value)));
+        }
+    }
+
+
+    /**
+     * Get the top-N values with their estimated counts
+     *
+     * @return top-N list
+     */
+    public TopNDataList getTopNValues() {
+        List<Map.Entry<Object, Long>> entries = new ArrayList<>(candidates.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<Object, Long>>() {
+            @Override
+            public int compare(Map.Entry<Object, Long> entry1, Map.Entry<Object, Long> entry2) {
+                return Long.compare(entry2.getValue(), entry1.getValue());
+            }
+        });
+
+        TopNDataList topNValues = new TopNDataList(maxSize);
+        for (Map.Entry<Object, Long> entry : entries) {
+            topNValues.add(entry.getKey(), entry.getValue());
+        }
+        return topNValues;
+    }
+
+
+    /*
+     * Keep the value as a candidate if its estimate is among the highest seen
+     */
+    private void offer(Object value, long estimate) {
+        if (candidates.containsKey(value) || candidates.size() < capacity) {
+            candidates.put(value, estimate);
+        } else if (estimate > lowestCountSoFar) {
+            Map.Entry<Object, Long> lowest = findLowest();
+            if (estimate > lowest.getValue()) {
+                candidates.remove(lowest.getKey());
+                candidates.put(value, estimate);
+                lowestCountSoFar = findLowest().getValue();
+            } else {
+                lowestCountSoFar = lowest.getValue();
+            }
+        }
+    }
+
+
+    /*
+     * Find the candidate with the smallest count
+     */
+    private Map.Entry<Object, Long> findLowest() {
+        Map.Entry<Object, Long> lowest = null;
+        for (Map.Entry<Object, Long> entry : candidates.entrySet()) {
+            if (lowest == null || entry.getValue() < lowest.getValue()) {
+                lowest = entry;
+            }
+        }
+        return lowest;
+    }
+}
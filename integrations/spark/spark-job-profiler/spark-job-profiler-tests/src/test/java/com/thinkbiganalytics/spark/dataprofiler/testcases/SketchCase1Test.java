@@ -0,0 +1,119 @@
+package com.thinkbiganalytics.spark.dataprofiler.testcases;
+
+/*-
+ * #%L
+ * thinkbig-spark-job-profiler-app
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.spark.dataprofiler.sketch.HyperLogLog;
+import com.thinkbiganalytics.spark.dataprofiler.sketch.SketchHash;
+import com.thinkbiganalytics.spark.dataprofiler.sketch.TDigest;
+import com.thinkbiganalytics.spark.dataprofiler.sketch.TopNSketch;
+import com.thinkbiganalytics.spark.dataprofiler.topn.TopNDataItem;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+/**
+ * Sketch Test Case 1 (approximate profiling)
+ */
+public class SketchCase1Test {
+
+    @Test
+    public void testUniqueCountAcrossPartitions() {
+        HyperLogLog partition1 = new HyperLogLog();
+        HyperLogLog partition2 = new HyperLogLog();
+
+        for (int i = 0; i < 60000; i++) {
+            partition1.add(SketchHash.hash(i));
+        }
+        // overlaps the first partition by 20000 values
+        for (int i = 40000; i < 100000; i++) {
+            partition2.add(SketchHash.hash(i));
+        }
+        partition1.merge(partition2);
+
+        Assert.assertEquals(100000.0d, partition1.estimate(), 100000 * 0.03d);
+    }
+
+    @Test
+    public void testUniqueCountSmall() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (String value : new String[]{"Cat", "alligator", "Alpaca", "Cat", "Zebra", null, null}) {
+            sketch.add(SketchHash.hash(value));
+        }
+
+        Assert.assertEquals(5, sketch.estimate());
+    }
+
+    @Test
+    public void testTopNValuesAcrossPartitions() {
+        TopNSketch partition1 = new TopNSketch(3);
+        TopNSketch partition2 = new TopNSketch(3);
+
+        for (int i = 0; i < 10000; i++) {
+            partition1.add("value" + i, 1L);
+            partition2.add("other" + i, 1L);
+        }
+        for (int i = 0; i < 500; i++) {
+            partition1.add("A", 1L);
+            partition2.add("A", 1L);
+            partition1.add("B", 1L);
+            partition2.add("C", 1L);
+        }
+        partition2.add("C", 1L);
+        partition1.merge(partition2);
+
+        Iterator<TopNDataItem> iterator = partition1.getTopNValues().getTopNDataItemsForColumn().descendingIterator();
+        TopNDataItem item = iterator.next();
+        Assert.assertEquals("A", item.getValue());
+        Assert.assertTrue(item.getCount() >= 1000L);
+
+        item = iterator.next();
+        Assert.assertEquals("C", item.getValue());
+        Assert.assertTrue(item.getCount() >= 501L);
+
+        item = iterator.next();
+        Assert.assertEquals("B", item.getValue());
+        Assert.assertTrue(item.getCount() >= 500L);
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testValueDistributionAcrossPartitions() {
+        TDigest partition1 = new TDigest();
+        TDigest partition2 = new TDigest();
+
+        for (int i = 1; i <= 50000; i++) {
+            partition1.add(i, 1L);
+            partition2.add(50000 + i, 1L);
+        }
+        partition1.merge(partition2);
+
+        Assert.assertEquals(100000L, partition1.size());
+        Assert.assertEquals(1.0d, partition1.getMin(), 0.0d);
+        Assert.assertEquals(100000.0d, partition1.getMax(), 0.0d);
+        Assert.assertEquals(0.0d, partition1.cdf(0.0d), 0.0d);
+        Assert.assertEquals(0.25d, partition1.cdf(25000.0d), 0.01d);
+        Assert.assertEquals(0.5d, partition1.cdf(50000.0d), 0.01d);
+        Assert.assertEquals(0.9d, partition1.cdf(90000.0d), 0.01d);
+        Assert.assertEquals(1.0d, partition1.cdf(100000.0d), 0.0d);
+    }
+}
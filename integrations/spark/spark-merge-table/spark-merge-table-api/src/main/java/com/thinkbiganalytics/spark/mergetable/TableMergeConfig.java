@@ -30,7 +30,7 @@ import java.util.List;
  */
 public interface TableMergeConfig {
     
-    enum MergeStrategy {MERGE, DEDUPE_AND_MERGE, PK_MERGE, SYNC, ROLLING_SYNC}
+    enum MergeStrategy {MERGE, DEDUPE_AND_MERGE, PK_MERGE, INCREMENTAL_PK_MERGE, SYNC, ROLLING_SYNC}
     
     String getTargetTable();
     
@@ -34,5 +34,11 @@ public interface TableMerger {
     
     void mergeOnPrimaryKey(HiveContext context, TableMergeConfig mergeConfig, String feedPartitionValue);
     
+    /**
+     * Merges the records on their primary keys. If {@code incremental} is {@code true} then only the target partitions containing the incoming keys, or
+     * receiving new records, are rewritten.
+     */
+    void mergeOnPrimaryKey(HiveContext context, TableMergeConfig mergeConfig, String feedPartitionValue, boolean incremental);
+    
     void synchronize(HiveContext context, TableMergeConfig mergeConfig, String feedPartitionValue, boolean partitionsOnly);
 }
@@ -75,7 +75,8 @@ public class TableMergeApp {
                         merger.synchronize(hiveContext, mergeArgs, mergeArgs.getPartitionValue(), mergeArgs.getStrategy() == MergeStrategy.ROLLING_SYNC);
                         break;
                     case PK_MERGE:
-                        merger.mergeOnPrimaryKey(hiveContext, mergeArgs, mergeArgs.getPartitionValue());
+                    case INCREMENTAL_PK_MERGE:
+                        merger.mergeOnPrimaryKey(hiveContext, mergeArgs, mergeArgs.getPartitionValue(), mergeArgs.getStrategy() == MergeStrategy.INCREMENTAL_PK_MERGE);
                         break;
                 }
             }
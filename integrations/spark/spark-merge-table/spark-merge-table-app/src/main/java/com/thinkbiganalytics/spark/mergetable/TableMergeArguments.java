@@ -54,7 +54,7 @@ public class TableMergeArguments implements TableMergeConfig, Serializable {
     private Table sourceTable;
     
     @Parameter(names = {"-m", "--merge-strategy"}, required=true,
-               description = "The merge strategy to use - valid values: MERGE, DEDUPE_AND_MERGE, PK_MERGE, SYNC, ROLLING_SYNC",
+               description = "The merge strategy to use - valid values: MERGE, DEDUPE_AND_MERGE, PK_MERGE, INCREMENTAL_PK_MERGE, SYNC, ROLLING_SYNC",
                converter = StrategyConverter.class)
     private MergeStrategy strategy;
     
@@ -93,6 +93,15 @@ public class TableMergeArgumentsTest {
             .contains(tuple("column1", "comment", "type1", true, true, false));
     }
     
+    @Test
+    public void testIncrementalPkMergeStrategy() {
+        String[] args = Arrays.copyOf(SHORT_ARGS, SHORT_ARGS.length);
+        args[args.length - 1] = "incremental_pk_merge";
+        TableMergeArguments config = new TableMergeArguments(args);
+        
+        assertThat(config.getStrategy()).isEqualTo(MergeStrategy.INCREMENTAL_PK_MERGE);
+    }
+    
     @Test
     public void testKeysSeparators() {
         String[] args = Arrays.copyOf(SHORT_ARGS, SHORT_ARGS.length);
@@ -35,9 +35,14 @@ import org.apache.spark.sql.Row;
 import org.apache.spark.sql.hive.HiveContext;
 import org.apache.spark.sql.types.StructField;
 import org.apache.spark.sql.types.StructType;
+import org.apache.spark.storage.StorageLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 
@@ -46,6 +51,8 @@ import javax.annotation.Nonnull;
  */
 public class DefaultTableMerger implements TableMerger {
 
+    private static final Logger log = LoggerFactory.getLogger(DefaultTableMerger.class);
+
     private final SparkContextService scs;
 
     public DefaultTableMerger(SparkContextService scs) {
@@ -82,20 +89,40 @@ public class DefaultTableMerger implements TableMerger {
     }
 
     /* (non-Javadoc)
-     * @see com.thinkbiganalytics.spark.mergetable.TableMerger#mergeOnPrimaryKey(org.apache.spark.sql.hive.HiveContext, com.thinkbiganalytics.spark.mergetable.TableMergeConfig, java.lang.String, com.thinkbiganalytics.spark.mergetable.ColumnSpec[])
+     * @see com.thinkbiganalytics.spark.mergetable.TableMerger#mergeOnPrimaryKey(org.apache.spark.sql.hive.HiveContext, com.thinkbiganalytics.spark.mergetable.TableMergeConfig, java.lang.String)
      */
     @Override
     public void mergeOnPrimaryKey(HiveContext context, TableMergeConfig mergeConfig, String feedPartitionValue) {
+        mergeOnPrimaryKey(context, mergeConfig, feedPartitionValue, false);
+    }
+
+    /* (non-Javadoc)
+     * @see com.thinkbiganalytics.spark.mergetable.TableMerger#mergeOnPrimaryKey(org.apache.spark.sql.hive.HiveContext, com.thinkbiganalytics.spark.mergetable.TableMergeConfig, java.lang.String, boolean)
+     */
+    @Override
+    public void mergeOnPrimaryKey(HiveContext context, TableMergeConfig mergeConfig, String feedPartitionValue, boolean incremental) {
         Validate.notNull(context);
         Validate.notNull(mergeConfig);
         Validate.notEmpty(feedPartitionValue);
         Validate.notEmpty(mergeConfig.getColumnSpecs());
 
         final List<String> selectFields = getSelectFields(context, mergeConfig);
-        final String sql = mergeConfig.getPartionSpec().isNonPartitioned()
-                        ? generatePkMergeNonPartionQuery(context, selectFields, mergeConfig, feedPartitionValue, mergeConfig.getColumnSpecs())
-                        : generatePkMergePartionQuery(context, selectFields, mergeConfig, feedPartitionValue, mergeConfig.getColumnSpecs());
-        executeSQL(context, sql);
+        
+        if (mergeConfig.getPartionSpec().isNonPartitioned()) {
+            executeSQL(context, generatePkMergeNonPartionQuery(context, selectFields, mergeConfig, feedPartitionValue, mergeConfig.getColumnSpecs()));
+        } else if (incremental) {
+            final String keyTable = "kylo_pk_merge_keys_" + System.currentTimeMillis();
+            final DataSet keys = createPrimaryKeyIndex(context, mergeConfig, feedPartitionValue, keyTable);
+            
+            try {
+                executeSQL(context, generateIncrementalPkMergePartitionQuery(context, selectFields, mergeConfig, feedPartitionValue, keyTable));
+            } finally {
+                context.dropTempTable(keyTable);
+                keys.unpersist(false);
+            }
+        } else {
+            executeSQL(context, generatePkMergePartionQuery(context, selectFields, mergeConfig, feedPartitionValue, mergeConfig.getColumnSpecs()));
+        }
     }
 
     /* (non-Javadoc)
@@ -201,6 +228,64 @@ public class DefaultTableMerger implements TableMerger {
         return sql.toString();
     }
 
+    /**
+     * Generates a query to merge the records of the incoming batch with only the target partitions they affect.
+     *
+     * <p>The target is joined with the primary keys of the batch rather than with the full source records. The affected partitions are those containing
+     * a matching key plus those receiving new records, so existing records in a partition that only receives new records are kept. If no key matches then
+     * the records are appended without rewriting any partition.</p>
+     */
+    private String generateIncrementalPkMergePartitionQuery(HiveContext context, List<String> selectFields, TableMergeConfig mergeConfig, String feedPartitionValue, String keyTable) {
+        final List<ColumnSpec> columnSpecs = mergeConfig.getColumnSpecs();
+        final String joinOnClause = DefaultColumnSpec.toPrimaryKeyJoinSQL(columnSpecs, "a", "b");
+        final List<PartitionBatch> keyBatches = createIncrementalPkPartitionBatches(context, mergeConfig, keyTable, joinOnClause);
+        
+        if (keyBatches.isEmpty()) {
+            log.info("No existing records match the primary keys of partition {} - appending", feedPartitionValue);
+            return generateMergeWithPartitionQuery(selectFields, mergeConfig, feedPartitionValue);
+        }
+        
+        // Combine the partitions containing matching keys with the partitions receiving new records
+        final Map<List<String>, PartitionBatch> affected = new LinkedHashMap<>();
+        for (PartitionBatch batch : keyBatches) {
+            affected.put(toPartitionValues(batch), batch);
+        }
+        for (PartitionBatch batch : createPartitionBatches(context, mergeConfig, feedPartitionValue)) {
+            if (!affected.containsKey(toPartitionValues(batch))) {
+                affected.put(toPartitionValues(batch), batch);
+            }
+        }
+        log.info("Merging partition {} into {} target partitions", feedPartitionValue, affected.size());
+        
+        final StringBuilder sql = new StringBuilder();
+        final String targetTable = HiveUtils.quoteIdentifier(mergeConfig.getTargetSchema(), mergeConfig.getTargetTable());
+        final String srcTable = HiveUtils.quoteIdentifier(mergeConfig.getSourceSchema(), mergeConfig.getSourceTable());
+        final String selectCols = StringUtils.join(selectFields, ",");
+        final String selectAliasCols = StringUtils.join(selectFieldsForAlias(selectFields, "a"), ",");
+        final PartitionSpec partitionSpec = mergeConfig.getPartionSpec();
+        final PartitionSpec partitionSpecWithAlias = partitionSpec.withAlias("a");
+        final String anyPK = DefaultColumnSpec.toPrimaryKeys(columnSpecs).get(0);
+        final String targetPartitionWhereClause = targetPartitionsWhereClause(PartitionBatch.toPartitionBatchesForAlias(new ArrayList<>(affected.values()), "a"), false);
+        
+        sql.append("insert overwrite table ").append(targetTable).append(" ")
+            .append(partitionSpec.toDynamicPartitionSpec()).append(" ")
+            .append("select ").append(selectCols).append(",").append(partitionSpec.toPartitionSelectSQL()).append(" from (")
+            .append("  select ").append(selectAliasCols).append(",").append(partitionSpecWithAlias.toDynamicSelectSQLSpec())
+            .append("  from ").append(srcTable).append(" a")
+            .append("  where ")
+            .append("  a.processing_dttm = ").append(HiveUtils.quoteString(feedPartitionValue))
+            .append(" union all ")
+            .append("  select ").append(selectAliasCols).append(",").append(partitionSpecWithAlias.toDynamicSelectSQLSpec())
+            .append("  from ").append(targetTable).append(" a left outer join ").append(HiveUtils.quoteIdentifier(keyTable)).append(" b ")
+            .append("  on (").append(joinOnClause).append(")")
+            .append("  where ")
+            .append("  (b.").append(anyPK).append(" is null)")
+            .append("  and (").append(targetPartitionWhereClause).append(")")
+            .append(") t");
+        
+        return sql.toString();
+    }
+
     private String generateMergeNonPartitionQueryWithDedupe(List<String> selectFields, TableMergeConfig mergeConfig, String feedPartitionValue) {
         final StringBuilder sql = new StringBuilder();
         final String selectCols = StringUtils.join(selectFields, ",");
@@ -399,6 +484,45 @@ public class DefaultTableMerger implements TableMerger {
         return ds.javaRDD().map(toBatch).collect();
     }
     
+    /**
+     * Registers a cached temporary table with the distinct primary keys of the incoming batch. Caching the keys provides the size statistics that allow
+     * Spark to broadcast them when joining with the target.
+     */
+    private DataSet createPrimaryKeyIndex(HiveContext context, TableMergeConfig config, String feedPartitionValue, String keyTable) {
+        final String srcTable = HiveUtils.quoteIdentifier(config.getSourceSchema(), config.getSourceTable());
+        final String keyCols = StringUtils.join(DefaultColumnSpec.toPrimaryKeys(config.getColumnSpecs()), ",");
+        final String sql = "select distinct " + keyCols + " from " + srcTable + " where processing_dttm = " + HiveUtils.quoteString(feedPartitionValue);
+        
+        final DataSet keys = this.scs.sql(context, sql).persist(StorageLevel.MEMORY_AND_DISK());
+        keys.registerTempTable(keyTable);
+        log.info("Indexed {} primary keys of partition {}", keys.count(), feedPartitionValue);
+        return keys;
+    }
+
+    private List<PartitionBatch> createIncrementalPkPartitionBatches(HiveContext context, TableMergeConfig config, String keyTable, String joinOnClause) {
+        final StringBuilder sql = new StringBuilder();
+        final String targetTable = HiveUtils.quoteIdentifier(config.getTargetSchema(), config.getTargetTable());
+        final PartitionSpec aliasSpecA = config.getPartionSpec().withAlias("a");
+        
+        sql.append("select ").append(aliasSpecA.toPartitionSelectSQL()).append(", count(0) ")
+            .append("from ").append(targetTable).append(" a left semi join ").append(HiveUtils.quoteIdentifier(keyTable)).append(" b ")
+            .append("on (").append(joinOnClause).append(") ")
+            .append("group by ").append(aliasSpecA.toPartitionSelectSQL());
+        
+        final DataSet ds = this.scs.sql(context, sql.toString());
+        final ToBatch toBatch = new ToBatch(config);
+        
+        return ds.javaRDD().map(toBatch).collect();
+    }
+
+    /**
+     * Returns the partition values of the batch without the record count.
+     */
+    private List<String> toPartitionValues(PartitionBatch batch) {
+        final List<String> values = batch.getPartitionValues();
+        return values.subList(0, batch.getPartitionSpec().getKeys().size());
+    }
+    
     public static class ToBatch implements Function<Row, PartitionBatch> {
         private static final long serialVersionUID = 1L;
         
@@ -0,0 +1,204 @@
+package com.thinkbiganalytics.spark.mergetable;
+
+/*-
+ * #%L
+ * kylo-spark-merge-table-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.spark.DataSet;
+import com.thinkbiganalytics.spark.SparkContextService;
+
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.function.Function;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.hive.HiveContext;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.Metadata;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.apache.spark.storage.StorageLevel;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the queries generated to merge on primary keys, using mocks in place of Spark.
+ */
+public class DefaultTableMergerTest {
+
+    private static final String FEED_PARTITION = "1500000000000";
+
+    private HiveContext context;
+
+    private SparkContextService scs;
+
+    private DataSet keys;
+
+    private TableMergeConfig config;
+
+    /**
+     * The partitions of the target containing the incoming primary keys, found by joining with the source or the key table
+     */
+    private List<Row> matchedPartitions;
+
+    /**
+     * The partitions of the incoming records
+     */
+    private List<Row> sourcePartitions;
+
+    /**
+     * The statements executed by the merger
+     */
+    private final List<String> statements = new ArrayList<>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        context = Mockito.mock(HiveContext.class);
+        scs = Mockito.mock(SparkContextService.class);
+
+        StructType schema = new StructType(new StructField[]{
+            new StructField("id", DataTypes.IntegerType, true, Metadata.empty()),
+            new StructField("name", DataTypes.StringType, true, Metadata.empty()),
+            new StructField("year", DataTypes.StringType, true, Metadata.empty()),
+            new StructField("processing_dttm", DataTypes.StringType, true, Metadata.empty())
+        });
+        DataSet table = Mockito.mock(DataSet.class);
+        Mockito.when(table.schema()).thenReturn(schema);
+        Mockito.when(scs.toDataSet(eq(context), anyString())).thenReturn(table);
+
+        keys = Mockito.mock(DataSet.class);
+        Mockito.when(keys.persist(any(StorageLevel.class))).thenReturn(keys);
+
+        config = Mockito.mock(TableMergeConfig.class);
+        Mockito.when(config.getTargetSchema()).thenReturn("emp");
+        Mockito.when(config.getTargetTable()).thenReturn("employee");
+        Mockito.when(config.getSourceSchema()).thenReturn("emp");
+        Mockito.when(config.getSourceTable()).thenReturn("employee_valid");
+        Mockito.when(config.getColumnSpecs()).thenReturn(Arrays.<ColumnSpec>asList(new DefaultColumnSpec("id", "int", "", true, false, false),
+                                                                                   new DefaultColumnSpec("name", "string", "")));
+        Mockito.when(config.getPartionSpec()).thenReturn(new DefaultPartitionSpec("year|string|year"));
+
+        Mockito.when(scs.sql(eq(context), anyString())).thenAnswer(invocation -> {
+            String sql = (String) invocation.getArguments()[1];
+            statements.add(sql);
+            if (sql.startsWith("select distinct")) {
+                return keys;
+            } else if (sql.contains("count(0) as `tb_cnt`")) {
+                return partitions(sourcePartitions);
+            } else if (sql.contains("count(0)")) {
+                return partitions(matchedPartitions);
+            } else {
+                return Mockito.mock(DataSet.class);
+            }
+        });
+    }
+
+    @Test
+    public void testMatchedKeysRewriteTheirPartitions() {
+        matchedPartitions = Collections.singletonList(RowFactory.create("2016", 2L));
+        sourcePartitions = Collections.singletonList(RowFactory.create("2016", 5L));
+
+        String sql = incrementalMerge();
+        assertTrue(sql.startsWith("insert overwrite table `emp`.`employee` partition (`year`)"));
+        assertTrue(sql.contains(" left outer join `kylo_pk_merge_keys_"));
+        assertTrue(sql.contains("(b.`id` is null)"));
+        assertTrue(sql.endsWith("and ((a.`year`='2016'))) t"));
+    }
+
+    @Test
+    public void testNewPartitionsAreRewrittenWithMatchedPartitions() {
+        matchedPartitions = Collections.singletonList(RowFactory.create("2015", 1L));
+        sourcePartitions = Arrays.asList(RowFactory.create("2015", 1L), RowFactory.create("2017", 4L));
+
+        // the existing records of a partition only receiving new records must be kept
+        String sql = incrementalMerge();
+        assertTrue(sql.startsWith("insert overwrite table"));
+        assertTrue(sql.endsWith("and ((a.`year`='2015') or (a.`year`='2017'))) t"));
+    }
+
+    @Test
+    public void testNoMatchingKeysAppends() {
+        matchedPartitions = Collections.emptyList();
+        sourcePartitions = Collections.singletonList(RowFactory.create("2017", 4L));
+
+        String sql = incrementalMerge();
+        assertTrue(sql.startsWith("insert into `emp`.`employee` partition (`year`)"));
+        assertFalse(sql.contains("kylo_pk_merge_keys_"));
+        assertTrue(sql.endsWith("where processing_dttm = \"" + FEED_PARTITION + "\""));
+    }
+
+    @Test
+    public void testMergeOnPrimaryKeyIsNotIncrementalByDefault() {
+        sourcePartitions = Collections.singletonList(RowFactory.create("2016", 5L));
+        matchedPartitions = Collections.emptyList();
+
+        new DefaultTableMerger(scs).mergeOnPrimaryKey(context, config, FEED_PARTITION);
+        assertFalse(statements.stream().anyMatch(sql -> sql.startsWith("select distinct")));
+        assertTrue(statements.get(statements.size() - 1).startsWith("insert overwrite table"));
+    }
+
+    /**
+     * Runs an incremental merge and verifies the key table is released
+     *
+     * @return the merge statement
+     */
+    private String incrementalMerge() {
+        new DefaultTableMerger(scs).mergeOnPrimaryKey(context, config, FEED_PARTITION, true);
+
+        verify(keys).registerTempTable(startsWith("kylo_pk_merge_keys_"));
+        verify(context).dropTempTable(startsWith("kylo_pk_merge_keys_"));
+        verify(keys).unpersist(false);
+        return statements.get(statements.size() - 1);
+    }
+
+    /**
+     * Returns a data set of partition rows that are converted to batches as Spark would
+     */
+    @SuppressWarnings("unchecked")
+    private DataSet partitions(List<Row> rows) throws Exception {
+        JavaRDD<Row> rdd = Mockito.mock(JavaRDD.class);
+        Mockito.when(rdd.map(any(Function.class))).thenAnswer(invocation -> {
+            Function<Row, PartitionBatch> toBatch = (Function<Row, PartitionBatch>) invocation.getArguments()[0];
+            List<PartitionBatch> batches = new ArrayList<>();
+            for (Row row : rows) {
+                batches.add(toBatch.call(row));
+            }
+            JavaRDD<PartitionBatch> batchRdd = Mockito.mock(JavaRDD.class);
+            Mockito.when(batchRdd.collect()).thenReturn(batches);
+            return batchRdd;
+        });
+        DataSet dataSet = Mockito.mock(DataSet.class);
+        Mockito.when(dataSet.javaRDD()).thenReturn(rdd);
+        return dataSet;
+    }
+}
@@ -76,6 +76,23 @@ public interface DataValidator {
      */
     void saveProfileToTable(@Nonnull String databaseName, @Nonnull String tableName, @Nonnull String partition, @Nonnull DataValidatorResult result, @Nonnull HiveContext hiveContext);
 
+    /**
+     * Saves the specified profile statistics to the specified Hive table.
+     *
+     * @param databaseName target database name
+     * @param tableName    target table name
+     * @param partition    target processing_dttm partition value
+     * @param stats        profile statistics
+     * @param hiveContext  Hive context
+     */
+    void saveProfileToTable(@Nonnull String databaseName, @Nonnull String tableName, @Nonnull String partition, @Nonnull List<OutputRow> stats, @Nonnull HiveContext hiveContext);
+
+    /**
+     * Gets the valid rows with the schema used for the specified Hive table, including the processing_dttm column.
+     */
+    @Nonnull
+    DataSet getValidRows(@Nonnull String databaseName, @Nonnull String sourceTableName, @Nonnull String targetTableName, @Nonnull DataValidatorResult result, @Nonnull HiveContext hiveContext);
+
     /**
      * Saves the valid rows to the specified Hive table.
      */
@@ -22,21 +22,30 @@ import com.thinkbiganalytics.hive.util.HiveUtils;
  * #L%
  */
 
+import com.thinkbiganalytics.hive.util.HiveUtils;
 import com.thinkbiganalytics.policy.FieldPolicy;
 import com.thinkbiganalytics.spark.DataSet;
 import com.thinkbiganalytics.spark.SparkContextService;
+import com.thinkbiganalytics.spark.dataprofiler.ColumnStatistics;
+import com.thinkbiganalytics.spark.dataprofiler.Profiler;
+import com.thinkbiganalytics.spark.dataprofiler.ProfilerConfiguration;
+import com.thinkbiganalytics.spark.dataprofiler.StatisticsModel;
+import com.thinkbiganalytics.spark.dataprofiler.output.OutputRow;
 import com.thinkbiganalytics.spark.policy.FieldPolicyLoader;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.spark.SparkContext;
+import org.apache.spark.sql.Column;
 import org.apache.spark.sql.hive.HiveContext;
 import org.apache.spark.storage.StorageLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
@@ -65,6 +74,7 @@ public class Validator {
                          "You can optionally add: --hiveConf hive.setting=value --hiveConf hive.other.setting=value\n" +
                          "You can optionally add: --storageLevel rdd_persistence_level_value\n" +
                          "You can optionally add: --numPartitions number_of_rdd_partitions\n" +
+                         "You can optionally add: --profile --profileMode {exact, approximate}\n" +
                          "You provided " + args.length + " args which are (comma separated): " + StringUtils.join(args, ",");
             out.println(msg);
             throw new IllegalArgumentException(msg);
@@ -74,17 +84,21 @@ public class Validator {
         try {
             final ValidatorConfiguration params = new ValidatorConfiguration(args);
 
-            // Initialize Spring context
-            try (final ConfigurableApplicationContext ctx = new AnnotationConfigApplicationContext("com.thinkbiganalytics.spark")) {
-                final DataValidator app = ctx.getBean(DataValidator.class);
+            // Prepare Hive context
+            final HiveContext hiveContext = new HiveContext(sparkContext);
+
+            for (final Param param : params.getHiveParams()) {
+                log.info("Adding Hive parameter {}={}", param.getName(), param.getValue());
+                hiveContext.setConf(param.getName(), param.getValue());
+            }
 
-                // Prepare Hive context
-                final HiveContext hiveContext = new HiveContext(sparkContext);
+            // Initialize Spring context, sharing the Hive context with the profiler
+            try (final AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext()) {
+                ctx.getBeanFactory().registerSingleton("sqlContext", hiveContext);
+                ctx.scan("com.thinkbiganalytics.spark");
+                ctx.refresh();
 
-                for (final Param param : params.getHiveParams()) {
-                    log.info("Adding Hive parameter {}={}", param.getName(), param.getValue());
-                    hiveContext.setConf(param.getName(), param.getValue());
-                }
+                final DataValidator app = ctx.getBean(DataValidator.class);
 
                 log.info("Deployment Mode - {}", hiveContext.sparkContext().getConf().get("spark.submit.deployMode"));
                 Map<String, FieldPolicy> policyMap = ctx.getBean(FieldPolicyLoader.class).loadFieldPolicy(params.getFieldPolicyJsonPath());
@@ -98,7 +112,8 @@ public class Validator {
 
                 app.saveInvalidToTable(params.getTargetDatabase(), params.getFeedTableName(), params.getInvalidTableName(), results, hiveContext);
                 app.saveValidToTable(params.getTargetDatabase(), params.getFeedTableName(), params.getValidTableName(), results, hiveContext);
-                app.saveProfileToTable(params.getTargetDatabase(), params.getProfileTableName(), params.getPartition(), results, hiveContext);
+
+                saveProfile(app, ctx, params, policyMap, results, hiveContext);
                 results.unpersist();
             }
 
@@ -108,4 +123,60 @@ public class Validator {
             throw e;
         }
     }
+
+    /**
+     * Writes the validation statistics to the profile table, along with the profile statistics of the valid rows if profiling is enabled.
+     */
+    void saveProfile(@Nonnull final DataValidator app, @Nonnull final BeanFactory beanFactory, @Nonnull final ValidatorConfiguration params, @Nonnull final Map<String, FieldPolicy> policyMap,
+                     @Nonnull final DataValidatorResult results, @Nonnull final HiveContext hiveContext) {
+        if (params.isProfile()) {
+            // Profile the valid rows while they are still persisted, and write with the validation statistics
+            final List<OutputRow> stats = new ArrayList<>(app.getProfileStats(results));
+            stats.addAll(profileValidRows(app, beanFactory.getBean(Profiler.class), params, policyMap, results, hiveContext));
+            app.saveProfileToTable(params.getTargetDatabase(), params.getProfileTableName(), params.getPartition(), stats, hiveContext);
+        } else {
+            app.saveProfileToTable(params.getTargetDatabase(), params.getProfileTableName(), params.getPartition(), results, hiveContext);
+        }
+    }
+
+    /**
+     * Generates the profile statistics of the valid rows for the columns with profiling enabled.
+     */
+    @Nonnull
+    private List<OutputRow> profileValidRows(@Nonnull final DataValidator app, @Nonnull final Profiler profiler, @Nonnull final ValidatorConfiguration params,
+                                             @Nonnull final Map<String, FieldPolicy> policyMap, @Nonnull final DataValidatorResult results, @Nonnull final HiveContext hiveContext) {
+        final DataSet validRows = app.getValidRows(params.getTargetDatabase(), params.getFeedTableName(), params.getValidTableName(), results, hiveContext);
+
+        // Select the profiled columns using their names in the valid table
+        final List<Column> columns = new ArrayList<>();
+        for (final FieldPolicy policy : policyMap.values()) {
+            if (policy.isProfile() && policy.getField() != null) {
+                for (final String name : validRows.schema().fieldNames()) {
+                    if (name.equalsIgnoreCase(policy.getField()) || name.equalsIgnoreCase(policy.getFeedField())) {
+                        columns.add(new Column(HiveUtils.quoteIdentifier(name)).as(policy.getField().toLowerCase()));
+                        break;
+                    }
+                }
+            }
+        }
+
+        final List<OutputRow> stats = new ArrayList<>();
+        if (columns.isEmpty()) {
+            log.info("No columns to profile");
+            return stats;
+        }
+
+        final ProfilerConfiguration profilerConfiguration = new ProfilerConfiguration();
+        profilerConfiguration.setApproximate(params.isApproximateProfile());
+
+        final StatisticsModel model = profiler.profile(validRows.select(columns.toArray(new Column[0])), profilerConfiguration);
+        if (model != null) {
+            for (final ColumnStatistics column : model.getColumnStatisticsMap().values()) {
+                stats.addAll(column.getStatistics());
+            }
+        } else {
+            log.info("No valid rows to profile");
+        }
+        return stats;
+    }
 }
@@ -35,6 +35,7 @@ import javax.annotation.Nonnull;
 public class ValidatorConfiguration {
 
     private static final Integer DEFAULT_NUM_PARTITIONS = -1;
+    private static final String DEFAULT_PROFILE_MODE = "exact";
     private static final String DEFAULT_STORAGE_LEVEL = "MEMORY_AND_DISK";
 
     @Parameter(names = {"-h", "--hiveConf"}, description = "Hive configuration parameters", converter = ParameterConverter.class)
@@ -46,6 +47,12 @@ public class ValidatorConfiguration {
     @Parameter(names = "--storageLevel", description = "Storage for RDD persistance")
     private String storageLevel = DEFAULT_STORAGE_LEVEL;
 
+    @Parameter(names = "--profile", description = "Profile the valid rows and write the statistics to the profile table")
+    private boolean profile = false;
+
+    @Parameter(names = "--profileMode", description = "Profile mode: exact or approximate")
+    private String profileMode = DEFAULT_PROFILE_MODE;
+
     private final String entity;
     private String fieldPolicyJsonPath;
     private String partition;
@@ -58,6 +65,9 @@ public class ValidatorConfiguration {
         fieldPolicyJsonPath = args[3];
 
         new JCommander(this).parse(Arrays.copyOfRange(args, 4, args.length));
+
+        // Fail before validating if the profile mode is unknown
+        isApproximateProfile();
     }
 
     public String getFeedTableName() {
@@ -92,6 +102,29 @@ public class ValidatorConfiguration {
         return storageLevel;
     }
 
+    /**
+     * Indicates the valid rows should be profiled in the same job.
+     */
+    public boolean isProfile() {
+        return profile;
+    }
+
+    /**
+     * Indicates the valid rows should be profiled with approximate statistics.
+     *
+     * @throws IllegalArgumentException if the profile mode is not {@code exact} or {@code approximate}
+     */
+    public boolean isApproximateProfile() {
+        switch (profileMode.toLowerCase()) {
+            case "approximate":
+                return true;
+            case "exact":
+                return false;
+            default:
+                throw new IllegalArgumentException("Illegal command line argument for profile mode (" + profileMode + ")");
+        }
+    }
+
     public String getTargetDatabase() {
         return targetDatabase;
     }
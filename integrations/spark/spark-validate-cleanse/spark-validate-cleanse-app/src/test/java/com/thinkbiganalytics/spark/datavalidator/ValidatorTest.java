@@ -0,0 +1,181 @@
+package com.thinkbiganalytics.spark.datavalidator;
+
+/*-
+ * #%L
+ * kylo-spark-validate-cleanse-app
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.policy.BaseFieldPolicy;
+import com.thinkbiganalytics.policy.FieldPolicy;
+import com.thinkbiganalytics.policy.FieldPolicyBuilder;
+import com.thinkbiganalytics.spark.DataSet;
+import com.thinkbiganalytics.spark.dataprofiler.ColumnStatistics;
+import com.thinkbiganalytics.spark.dataprofiler.Profiler;
+import com.thinkbiganalytics.spark.dataprofiler.ProfilerConfiguration;
+import com.thinkbiganalytics.spark.dataprofiler.StatisticsModel;
+import com.thinkbiganalytics.spark.dataprofiler.output.OutputRow;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.hive.HiveContext;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.Metadata;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.BeanFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class ValidatorTest {
+
+    private static final String[] REQUIRED_ARGS = {"targetDatabase", "entity", "partition", "path-to-policy-file"};
+
+    private final OutputRow validationStat = new OutputRow("(ALL)", "TOTAL_COUNT", "3");
+
+    private final OutputRow profileStat = new OutputRow("name", "NULL_COUNT", "0");
+
+    private DataValidator app;
+
+    private BeanFactory beanFactory;
+
+    private Profiler profiler;
+
+    private DataSet validRows;
+
+    private DataSet selectedRows;
+
+    private Map<String, FieldPolicy> policyMap;
+
+    private DataValidatorResult results;
+
+    private HiveContext hiveContext;
+
+    @Before
+    public void setUp() {
+        results = Mockito.mock(DataValidatorResult.class);
+        hiveContext = Mockito.mock(HiveContext.class);
+
+        validRows = Mockito.mock(DataSet.class);
+        selectedRows = Mockito.mock(DataSet.class);
+        Mockito.when(validRows.schema()).thenReturn(new StructType(new StructField[]{
+            new StructField("Name", DataTypes.StringType, true, Metadata.empty()),
+            new StructField("age", DataTypes.IntegerType, true, Metadata.empty()),
+            new StructField("processing_dttm", DataTypes.StringType, true, Metadata.empty())
+        }));
+        Mockito.when(validRows.select(Mockito.<Column>anyVararg())).thenReturn(selectedRows);
+
+        app = Mockito.mock(DataValidator.class);
+        Mockito.when(app.getProfileStats(results)).thenReturn(Collections.singletonList(validationStat));
+        Mockito.when(app.getValidRows("targetDatabase", "entity_feed", "entity_valid", results, hiveContext)).thenReturn(validRows);
+
+        ColumnStatistics columnStatistics = Mockito.mock(ColumnStatistics.class);
+        Mockito.when(columnStatistics.getStatistics()).thenReturn(Collections.singletonList(profileStat));
+        StatisticsModel model = Mockito.mock(StatisticsModel.class);
+        Mockito.when(model.getColumnStatisticsMap()).thenReturn(Collections.singletonMap(0, columnStatistics));
+
+        profiler = Mockito.mock(Profiler.class);
+        Mockito.when(profiler.profile(Mockito.eq(selectedRows), Mockito.any(ProfilerConfiguration.class))).thenReturn(model);
+        beanFactory = Mockito.mock(BeanFactory.class);
+        Mockito.when(beanFactory.getBean(Profiler.class)).thenReturn(profiler);
+
+        policyMap = new LinkedHashMap<>();
+        policyMap.put("name", policy("name", true));
+        policyMap.put("age", policy("age", false));
+    }
+
+    @Test
+    public void testSaveProfileWithoutProfiling() {
+        new Validator().saveProfile(app, beanFactory, new ValidatorConfiguration(REQUIRED_ARGS), policyMap, results, hiveContext);
+
+        // Only the validation statistics are written, as before the profile option was added
+        verify(app).saveProfileToTable("targetDatabase", "entity_profile", "partition", results, hiveContext);
+        verify(app, never()).saveProfileToTable(anyString(), anyString(), anyString(), anyListOf(OutputRow.class), any(HiveContext.class));
+        verify(app, never()).getValidRows(anyString(), anyString(), anyString(), any(DataValidatorResult.class), any(HiveContext.class));
+        verifyZeroInteractions(beanFactory, profiler);
+    }
+
+    @Test
+    public void testSaveProfileExact() {
+        ProfilerConfiguration configuration = saveProfile("--profile");
+        assertFalse(configuration.isApproximate());
+    }
+
+    @Test
+    public void testSaveProfileApproximate() {
+        ProfilerConfiguration configuration = saveProfile("--profile", "--profileMode", "approximate");
+        assertTrue(configuration.isApproximate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProfileMode() {
+        saveProfile("--profile", "--profileMode", "sampled");
+    }
+
+    /**
+     * Saves the profile with the specified options and verifies that the valid rows of the profiled columns are profiled and written with the validation statistics.
+     *
+     * @return the configuration passed to the profiler
+     */
+    @SuppressWarnings("unchecked")
+    private ProfilerConfiguration saveProfile(String... options) {
+        List<String> args = new ArrayList<>();
+        Collections.addAll(args, REQUIRED_ARGS);
+        Collections.addAll(args, options);
+        new Validator().saveProfile(app, beanFactory, new ValidatorConfiguration(args.toArray(new String[0])), policyMap, results, hiveContext);
+
+        // Only the column with profiling enabled is selected from the valid rows, using its name in the valid table
+        ArgumentCaptor<Column> columns = ArgumentCaptor.forClass(Column.class);
+        verify(validRows).select(columns.capture());
+        assertEquals(1, columns.getAllValues().size());
+        assertTrue(columns.getValue().toString().contains("Name"));
+
+        ArgumentCaptor<ProfilerConfiguration> configuration = ArgumentCaptor.forClass(ProfilerConfiguration.class);
+        verify(profiler).profile(eq(selectedRows), configuration.capture());
+
+        ArgumentCaptor<List> stats = ArgumentCaptor.forClass(List.class);
+        verify(app).saveProfileToTable(eq("targetDatabase"), eq("entity_profile"), eq("partition"), stats.capture(), eq(hiveContext));
+        assertEquals(2, stats.getValue().size());
+        assertTrue(stats.getValue().contains(validationStat));
+        assertTrue(stats.getValue().contains(profileStat));
+        verify(app, never()).saveProfileToTable(anyString(), anyString(), anyString(), any(DataValidatorResult.class), any(HiveContext.class));
+
+        return configuration.getValue();
+    }
+
+    private FieldPolicy policy(String fieldName, boolean profile) {
+        return FieldPolicyBuilder.newBuilder().addPolicies(new ArrayList<BaseFieldPolicy>()).tableName("entity").fieldName(fieldName).feedFieldName(fieldName).setProfile(profile).build();
+    }
+}
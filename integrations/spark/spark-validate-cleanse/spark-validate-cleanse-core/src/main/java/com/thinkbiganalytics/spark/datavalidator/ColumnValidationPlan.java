@@ -0,0 +1,460 @@
+package com.thinkbiganalytics.spark.datavalidator;
+
+/*-
+ * #%L
+ * kylo-spark-validate-cleanse-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.policy.BaseFieldPolicy;
+import com.thinkbiganalytics.policy.FieldPolicy;
+import com.thinkbiganalytics.policy.standardization.DefaultValueStandardizer;
+import com.thinkbiganalytics.policy.standardization.LowercaseStandardizer;
+import com.thinkbiganalytics.policy.standardization.StandardizationPolicy;
+import com.thinkbiganalytics.policy.standardization.TrimStandardizer;
+import com.thinkbiganalytics.policy.standardization.UppercaseStandardizer;
+import com.thinkbiganalytics.policy.validation.LengthValidator;
+import com.thinkbiganalytics.policy.validation.LookupValidator;
+import com.thinkbiganalytics.policy.validation.NotNullValidator;
+import com.thinkbiganalytics.policy.validation.RangeValidator;
+import com.thinkbiganalytics.policy.validation.RegexValidator;
+import com.thinkbiganalytics.policy.validation.ValidationPolicy;
+import com.thinkbiganalytics.policy.validation.ValidationResult;
+import com.thinkbiganalytics.spark.DataSet;
+import com.thinkbiganalytics.spark.validation.HCatDataType;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.NumericType;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static com.thinkbiganalytics.spark.datavalidator.functions.CleanseAndValidateRow.PROCESSING_DTTM_COL;
+import static org.apache.spark.sql.functions.coalesce;
+import static org.apache.spark.sql.functions.concat;
+import static org.apache.spark.sql.functions.concat_ws;
+import static org.apache.spark.sql.functions.length;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.lower;
+import static org.apache.spark.sql.functions.not;
+import static org.apache.spark.sql.functions.regexp_replace;
+import static org.apache.spark.sql.functions.sum;
+import static org.apache.spark.sql.functions.upper;
+import static org.apache.spark.sql.functions.when;
+
+/**
+ * Cleanses and validates a dataset with Spark SQL column expressions instead of the {@code CleanseAndValidateRow} function, so the work is done by Catalyst and generated code.
+ *
+ * <p>Only the built-in default value, lowercase, trim, and uppercase standardizers and the length, lookup, not null, range, and regex validators can be translated. The values and
+ * reject reasons match those of {@code CleanseAndValidateRow} for string columns and for columns that already have the target type. A plan is not created if any other policy
+ * is used or a type conversion is required.</p>
+ *
+ * <p>The validated rows contain the cleansed values and the reject reason, in the order of the cleansed row schema, followed by a validity column for each field and one for
+ * the row.</p>
+ */
+class ColumnValidationPlan {
+
+    /**
+     * Prefix for the name of the validity column of each field
+     */
+    static final String COLUMN_VALID_PREFIX = "dlp_column_valid_";
+
+    /**
+     * Name of the row validity column
+     */
+    static final String ROW_VALID_COL = "dlp_row_valid";
+
+    private static final Logger log = LoggerFactory.getLogger(ColumnValidationPlan.class);
+
+    /**
+     * Matches leading and trailing whitespace as removed by {@link String#trim()}
+     */
+    private static final String TRIM_PATTERN = "\\A[\\x00-\\x20]+|[\\x00-\\x20]+\\z";
+
+    /**
+     * Columns of the validated rows
+     */
+    @Nonnull
+    private final Column[] columns;
+
+    private ColumnValidationPlan(@Nonnull final Column[] columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Creates a plan for validating a dataset.
+     *
+     * @param policies     the field policies
+     * @param fields       the target schema
+     * @param sourceSchema the schema of the dataset
+     * @param outputSchema the schema of the cleansed rows
+     * @return the plan, or {@code null} if the policies cannot be translated into column expressions
+     */
+    @Nullable
+    static ColumnValidationPlan create(@Nonnull final FieldPolicy[] policies, @Nonnull final StructField[] fields, @Nonnull final StructType sourceSchema,
+                                       @Nonnull final StructType outputSchema) {
+        final int fieldCount = fields.length;
+        if (policies.length < fieldCount || sourceSchema.length() < fieldCount || outputSchema.length() != fieldCount + 1) {
+            return null;
+        }
+
+        // Translate the policies of each field
+        final FieldExpressions[] fieldExpressions = new FieldExpressions[fieldCount];
+        boolean hasProcessingDttm = false;
+
+        for (int idx = 0; idx < fieldCount; idx++) {
+            final HCatDataType dataType = HCatDataType.createFromDataType(fields[idx].name(), fields[idx].dataType().simpleString());
+            fieldExpressions[idx] = FieldExpressions.create(policies[idx], dataType, fields[idx].dataType(), sourceSchema.fields()[idx]);
+            if (fieldExpressions[idx] == null) {
+                log.info("Field {} cannot be validated with column expressions", fields[idx].name());
+                return null;
+            }
+            hasProcessingDttm |= fields[idx].name().equals(PROCESSING_DTTM_COL);
+        }
+
+        // A row is empty if all values are null
+        Column nulls = lit(hasProcessingDttm ? 1 : 0);
+        for (final FieldExpressions field : fieldExpressions) {
+            nulls = nulls.plus(when(field.original.isNull(), 1).otherwise(0));
+        }
+        final Column emptyRow = nulls.geq(fieldCount);
+
+        // Collect reject reasons in the order of the fields
+        Column rowValid = not(emptyRow);
+        final List<Column> reasons = new ArrayList<>();
+        for (final FieldExpressions field : fieldExpressions) {
+            rowValid = field.valid.and(rowValid);
+            reasons.addAll(field.reasons);
+        }
+        reasons.add(when(emptyRow, lit(ValidationResult.failRow("empty", "Row is empty").toJSON())));
+
+        final Column rejectReason = when(rowValid, lit(""))
+            .otherwise(concat(lit("["), concat_ws(",", reasons.toArray(new Column[0])), lit("]")));
+
+        // Cleansed values, keeping the original value of invalid rows if the cleansed value is missing
+        final Column[] values = new Column[fieldCount];
+        for (int idx = 0; idx < fieldCount; idx++) {
+            final FieldExpressions field = fieldExpressions[idx];
+            values[idx] = when(rowValid, field.cleansed).otherwise(when(field.original.isNotNull(), coalesce(field.cleansed, field.original)));
+        }
+
+        // Arrange as cleansed row with the reject reason before the processing partition column
+        final StructField[] outputFields = outputSchema.fields();
+        final List<Column> columns = new ArrayList<>(2 * fieldCount + 2);
+        final int rejectReasonIdx = hasProcessingDttm ? fieldCount - 1 : fieldCount;
+
+        for (int idx = 0; idx < fieldCount; idx++) {
+            if (idx == rejectReasonIdx) {
+                columns.add(rejectReason.as(outputFields[columns.size()].name()));
+            }
+            columns.add(values[idx].as(outputFields[columns.size()].name()));
+        }
+        if (rejectReasonIdx == fieldCount) {
+            columns.add(rejectReason.as(outputFields[columns.size()].name()));
+        }
+
+        for (int idx = 0; idx < fieldCount; idx++) {
+            columns.add(fieldExpressions[idx].valid.as(COLUMN_VALID_PREFIX + idx));
+        }
+        columns.add(rowValid.as(ROW_VALID_COL));
+
+        return new ColumnValidationPlan(columns.toArray(new Column[0]));
+    }
+
+    /**
+     * Cleanses and validates the specified dataset.
+     */
+    @Nonnull
+    DataSet apply(@Nonnull final DataSet dataset) {
+        return dataset.select(columns);
+    }
+
+    /**
+     * Counts the invalid values of each field, and the valid and invalid rows, in the same layout as {@code PartitionLevelCounts}.
+     *
+     * @param validatedRows the validated rows
+     * @param fieldCount    number of fields in the target schema
+     */
+    @Nonnull
+    static long[] countValidation(@Nonnull final DataSet validatedRows, final int fieldCount) {
+        final Column[] counts = new Column[fieldCount + 2];
+        for (int idx = 0; idx < fieldCount; idx++) {
+            counts[idx] = sum(when(column(COLUMN_VALID_PREFIX + idx), 0).otherwise(1));
+        }
+        counts[fieldCount] = sum(when(column(ROW_VALID_COL), 1).otherwise(0));
+        counts[fieldCount + 1] = sum(when(column(ROW_VALID_COL), 0).otherwise(1));
+
+        final Row row = validatedRows.select(counts).collectAsList().get(0);
+        final long[] validationCounts = new long[counts.length];
+        for (int idx = 0; idx < counts.length; idx++) {
+            validationCounts[idx] = row.isNullAt(idx) ? 0L : row.getLong(idx);
+        }
+        return validationCounts;
+    }
+
+    /**
+     * Selects the valid or invalid rows with the specified schema.
+     *
+     * @param validatedRows the validated rows
+     * @param valid         {@code true} for the valid rows, or {@code false} for the invalid rows
+     * @param schema        schema of the cleansed rows in the target table
+     */
+    @Nonnull
+    static DataSet selectRows(@Nonnull final DataSet validatedRows, final boolean valid, @Nonnull final StructType schema) {
+        final StructField[] fields = schema.fields();
+        final StructField[] validatedFields = validatedRows.schema().fields();
+        final Column[] columns = new Column[fields.length];
+        for (int idx = 0; idx < fields.length; idx++) {
+            columns[idx] = column(validatedFields[idx].name()).cast(fields[idx].dataType()).as(fields[idx].name());
+        }
+        return validatedRows.filter((valid ? "" : "NOT ") + quote(ROW_VALID_COL)).select(columns);
+    }
+
+    /**
+     * Creates a column reference for the specified name.
+     */
+    @Nonnull
+    private static Column column(@Nonnull final String name) {
+        return new Column(quote(name));
+    }
+
+    @Nonnull
+    private static String quote(@Nonnull final String name) {
+        return "`" + name.replace("`", "``") + "`";
+    }
+
+    /**
+     * Column expressions for cleansing and validating a single field.
+     */
+    private static class FieldExpressions {
+
+        /**
+         * Value before cleansing
+         */
+        @Nonnull
+        final Column original;
+
+        /**
+         * Value after cleansing, or the original value if the field is invalid
+         */
+        @Nonnull
+        final Column cleansed;
+
+        /**
+         * Indicates the field is valid
+         */
+        @Nonnull
+        final Column valid;
+
+        /**
+         * JSON reject reasons, or {@code null} values if the check passed
+         */
+        @Nonnull
+        final List<Column> reasons;
+
+        FieldExpressions(@Nonnull final Column original, @Nonnull final Column cleansed, @Nonnull final Column valid, @Nonnull final List<Column> reasons) {
+            this.original = original;
+            this.cleansed = cleansed;
+            this.valid = valid;
+            this.reasons = reasons;
+        }
+
+        /**
+         * Translates the policies of a field into column expressions.
+         *
+         * @return the expressions, or {@code null} if a policy cannot be translated or the values require a type conversion
+         */
+        @Nullable
+        static FieldExpressions create(@Nullable final FieldPolicy fieldPolicy, @Nonnull final HCatDataType dataType, @Nonnull final DataType targetType,
+                                       @Nonnull final StructField sourceField) {
+            final Column original = column(sourceField.name());
+            final List<Column> reasons = new ArrayList<>(2);
+
+            // Complex types are passed through
+            if (dataType.isUnchecked()) {
+                return new FieldExpressions(original, original, lit(true), reasons);
+            }
+
+            // Only strings or values that already have the target type
+            final boolean stringValues;
+            if (sourceField.dataType().equals(DataTypes.StringType) && dataType.isString()) {
+                stringValues = true;
+            } else if (!sourceField.dataType().equals(DataTypes.StringType) && sourceField.dataType().equals(targetType)) {
+                stringValues = false;
+            } else {
+                return null;
+            }
+            final boolean numericValues = sourceField.dataType() instanceof NumericType;
+
+            // Apply the policies in order until the first validator fails
+            Column value = original;
+            Column validateNullValues = null;
+            Column failure = null;
+            Column valueOnFailure = null;
+
+            final List<BaseFieldPolicy> policies = (fieldPolicy != null) ? fieldPolicy.getAllPolicies() : null;
+            if (policies != null) {
+                for (final BaseFieldPolicy policy : policies) {
+                    if (policy instanceof StandardizationPolicy && policy instanceof ValidationPolicy) {
+                        return null;
+                    } else if (policy instanceof StandardizationPolicy) {
+                        value = standardize((StandardizationPolicy) policy, value, stringValues);
+                        if (value == null) {
+                            return null;
+                        }
+                    } else if (policy instanceof ValidationPolicy) {
+                        final ValidationPolicy validator = (ValidationPolicy) policy;
+                        final boolean notNullValidator = validator.getClass() == NotNullValidator.class;
+                        final Column isEmpty = stringValues ? value.isNull().or(value.equalTo("")) : value.isNull();
+
+                        if (!isSupported(validator, stringValues, numericValues)) {
+                            return null;
+                        }
+
+                        final Column invalid = validate(validator, value, stringValues);
+                        if (invalid != null) {
+                            // Validators only check empty values following a not null validator
+                            Column runs = notNullValidator ? lit(true) : not(isEmpty);
+                            if (validateNullValues != null && !notNullValidator) {
+                                runs = runs.or(validateNullValues);
+                            }
+
+                            final Column failed = runs.and(invalid);
+                            final Column reason = lit(ValidationResult.failFieldRule("rule", dataType.getName(), validator.getClass().getSimpleName(), "Rule violation").toJSON());
+                            failure = (failure == null) ? when(failed, reason) : failure.when(failed, reason);
+                            valueOnFailure = (valueOnFailure == null) ? when(failed, value) : valueOnFailure.when(failed, value);
+                        }
+
+                        if (notNullValidator) {
+                            validateNullValues = (validateNullValues == null) ? isEmpty : validateNullValues.or(isEmpty);
+                        } else {
+                            validateNullValues = null;
+                        }
+                    }
+                }
+            }
+
+            // Check that the value is compatible with the target type
+            final Column checkedValue = (valueOnFailure != null) ? valueOnFailure.otherwise(value) : value;
+            Column incompatible = null;
+            if (stringValues && dataType.getMaxLength() < Long.MAX_VALUE && (fieldPolicy == null || !fieldPolicy.shouldSkipSchemaValidation())) {
+                incompatible = coalesce(length(checkedValue).gt(dataType.getMaxLength()), lit(false));
+            }
+
+            // Determine validity and reject reasons
+            Column valid = lit(true);
+            if (failure != null) {
+                valid = failure.isNull();
+                reasons.add(failure);
+            }
+            if (incompatible != null) {
+                valid = valid.and(not(incompatible));
+                reasons.add(when(incompatible, lit(ValidationResult.failField("incompatible", dataType.getName(), "Not convertible to " + dataType.getNativeType()).toJSON())));
+            }
+
+            final Column cleansed = (value == original) ? original : when(valid, value).otherwise(original);
+            return new FieldExpressions(original, cleansed, valid, reasons);
+        }
+
+        /**
+         * Indicates the validator can be translated for the type of values.
+         */
+        private static boolean isSupported(@Nonnull final ValidationPolicy validator, final boolean stringValues, final boolean numericValues) {
+            final Class<?> type = validator.getClass();
+            if (type == NotNullValidator.class) {
+                return true;
+            } else if (type == LengthValidator.class || type == LookupValidator.class || type == RegexValidator.class) {
+                return stringValues;
+            } else {
+                return type == RangeValidator.class && numericValues;
+            }
+        }
+
+        /**
+         * Translates a standardizer.
+         *
+         * @return the standardized value, or {@code null} if the standardizer cannot be translated
+         */
+        @Nullable
+        private static Column standardize(@Nonnull final StandardizationPolicy standardizer, @Nonnull final Column value, final boolean stringValues) {
+            final Class<?> type = standardizer.getClass();
+            if (type == UppercaseStandardizer.class) {
+                return stringValues ? upper(value) : value;
+            } else if (type == LowercaseStandardizer.class) {
+                return stringValues ? lower(value) : value;
+            } else if (type == TrimStandardizer.class) {
+                return stringValues ? regexp_replace(value, TRIM_PATTERN, "") : value;
+            } else if (type == DefaultValueStandardizer.class && stringValues) {
+                final String defaultValue = String.valueOf(((DefaultValueStandardizer) standardizer).getDefaultStr());
+                return when(value.isNull().or(value.equalTo("")), lit(defaultValue)).otherwise(value);
+            } else {
+                return null;
+            }
+        }
+
+        /**
+         * Translates a supported validator.
+         *
+         * @return an expression that is {@code true} for invalid values, or {@code null} if all values are valid
+         */
+        @Nullable
+        private static Column validate(@Nonnull final ValidationPolicy validator, @Nonnull final Column value, final boolean stringValues) {
+            if (validator instanceof NotNullValidator) {
+                final NotNullValidator notNull = (NotNullValidator) validator;
+                if (stringValues && !notNull.isAllowEmptyString()) {
+                    final Column string = notNull.isTrimString() ? regexp_replace(value, TRIM_PATTERN, "") : value;
+                    return value.isNull().or(string.equalTo(""));
+                } else {
+                    return value.isNull();
+                }
+            } else if (validator instanceof LengthValidator) {
+                final LengthValidator lengthValidator = (LengthValidator) validator;
+                return length(value).lt(lengthValidator.getMinLength()).or(length(value).gt(lengthValidator.getMaxLength()));
+            } else if (validator instanceof LookupValidator) {
+                final Object[] values = ((LookupValidator) validator).getLookupValues().toArray();
+                return (values.length > 0) ? not(value.isin(values)) : lit(true);
+            } else if (validator instanceof RangeValidator) {
+                final RangeValidator range = (RangeValidator) validator;
+                final Column number = value.cast(DataTypes.DoubleType);
+                Column invalid = null;
+                if (range.getMin() != null) {
+                    invalid = number.lt(range.getMin().doubleValue());
+                }
+                if (range.getMax() != null) {
+                    final Column aboveMax = number.gt(range.getMax().doubleValue());
+                    invalid = (invalid == null) ? aboveMax : invalid.or(aboveMax);
+                }
+                return invalid;
+            } else if (validator instanceof RegexValidator) {
+                final RegexValidator regex = (RegexValidator) validator;
+                return (regex.getPattern() != null) ? not(value.rlike("\\A(?:" + regex.getPattern().pattern() + ")\\z")) : null;
+            } else {
+                return null;
+            }
+        }
+    }
+}
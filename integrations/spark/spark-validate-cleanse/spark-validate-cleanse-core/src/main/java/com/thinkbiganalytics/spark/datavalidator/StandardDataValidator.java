@@ -30,6 +30,7 @@ import com.thinkbiganalytics.spark.SparkContextService;
 import com.thinkbiganalytics.spark.dataprofiler.output.OutputRow;
 import com.thinkbiganalytics.spark.datavalidator.functions.CleanseAndValidateRow;
 import com.thinkbiganalytics.spark.datavalidator.functions.SumPartitionLevelCounts;
+import com.thinkbiganalytics.spark.datavalidator.functions.ToCleansedRowResult;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.spark.api.java.JavaRDD;
@@ -102,7 +103,9 @@ public class StandardDataValidator implements DataValidator, Serializable {
     @Override
     public List<OutputRow> getProfileStats(@Nonnull final DataValidatorResult result) {
         final List<OutputRow> stats = new ArrayList<>();
-        final long[] validationCounts = cleansedRowResultsValidationCounts(result.getCleansedRowResultRDD(), result.getSchema().length() - 1);
+        final long[] validationCounts = (result.getValidatedRows() != null)
+                                        ? ColumnValidationPlan.countValidation(result.getValidatedRows(), result.getSchema().length() - 1)
+                                        : cleansedRowResultsValidationCounts(result.getCleansedRowResultRDD(), result.getSchema().length() - 1);
 
         // Calculate global stats
         final long validCount = validationCounts[result.getSchema().length() - 1];
@@ -157,6 +160,17 @@ public class StandardDataValidator implements DataValidator, Serializable {
     @Override
     public void saveInvalidToTable(@Nonnull final String databaseName, @Nonnull final String feedTableName, @Nonnull final String invalidTableName,
                                    @Nonnull final DataValidatorResult result, @Nonnull final HiveContext hiveContext) {
+        final StructType invalidSchema = new StructType(resolveSchema(databaseName, invalidTableName, hiveContext));
+        final StructType feedSchema = new StructType(resolveSchema(databaseName, feedTableName, hiveContext));
+        final StructType mergedSchema = cloneSchemaWithNewTypes( invalidSchema,  feedSchema);
+
+        // Select the invalid rows directly if validated with column expressions
+        if (result.getValidatedRows() != null) {
+            writeToTargetTable(ColumnValidationPlan.selectRows(result.getValidatedRows(), false, mergedSchema), databaseName, invalidTableName, hiveContext);
+            log.info("wrote values to the invalid Table  {}", invalidTableName);
+            return;
+        }
+
         // Return a new rdd based for Invalid Results
         //noinspection serial
         JavaRDD<CleansedRowResult> invalidResultRDD = result.getCleansedRowResultRDD().filter(new Function<CleansedRowResult, Boolean>() {
@@ -166,10 +180,6 @@ public class StandardDataValidator implements DataValidator, Serializable {
             }
         });
 
-        final StructType invalidSchema = new StructType(resolveSchema(databaseName, invalidTableName, hiveContext));
-        final StructType feedSchema = new StructType(resolveSchema(databaseName, feedTableName, hiveContext));
-        final StructType mergedSchema = cloneSchemaWithNewTypes( invalidSchema,  feedSchema);
-
         DataSet invalidDataFrame = getRows(invalidResultRDD, mergedSchema, hiveContext);
         writeToTargetTable(invalidDataFrame, databaseName, invalidTableName, hiveContext);
 
@@ -205,12 +215,18 @@ public class StandardDataValidator implements DataValidator, Serializable {
     @Override
     public void saveProfileToTable(@Nonnull final String databaseName, @Nonnull final String tableName, @Nonnull final String partition, @Nonnull final DataValidatorResult result,
                                    @Nonnull final HiveContext hiveContext) {
+        saveProfileToTable(databaseName, tableName, partition, getProfileStats(result), hiveContext);
+    }
+
+    @Override
+    public void saveProfileToTable(@Nonnull final String databaseName, @Nonnull final String tableName, @Nonnull final String partition, @Nonnull final List<OutputRow> stats,
+                                   @Nonnull final HiveContext hiveContext) {
         try {
             // Create a temporary table that can be used to copy data from. Writing directly to the partition from a spark dataframe doesn't work.
             final String tempTable = tableName + "_" + System.currentTimeMillis();
 
             // Refactor this into something common with profile table
-            @SuppressWarnings("squid:S2095") final JavaRDD<OutputRow> statsRDD = JavaSparkContext.fromSparkContext(hiveContext.sparkContext()).parallelize(getProfileStats(result));
+            @SuppressWarnings("squid:S2095") final JavaRDD<OutputRow> statsRDD = JavaSparkContext.fromSparkContext(hiveContext.sparkContext()).parallelize(stats);
             final DataSet df = scs.toDataSet(hiveContext, statsRDD, OutputRow.class);
             df.registerTempTable(tempTable);
 
@@ -229,36 +245,60 @@ public class StandardDataValidator implements DataValidator, Serializable {
     @Override
     public void saveValidToTable(@Nonnull final String databaseName, @Nonnull final String sourceTableName, @Nonnull final String targetTableName, @Nonnull final DataValidatorResult result,
                                  @Nonnull final HiveContext hiveContext) {
-        // Return a new rdd based for Valid Results
-        //noinspection serial
-        JavaRDD<CleansedRowResult> validResultRDD = result.getCleansedRowResultRDD().filter(new Function<CleansedRowResult, Boolean>() {
-            @Override
-            public Boolean call(CleansedRowResult cleansedRowResult) throws Exception {
-                return cleansedRowResult.isRowValid();
-            }
-        });
+        final DataSet validDataFrame = getValidRows(databaseName, sourceTableName, targetTableName, result, hiveContext);
+        writeToTargetTable(validDataFrame, databaseName, targetTableName, hiveContext);
+
+        log.info("wrote values to the valid Table  {}", targetTableName);
+    }
 
-        // Write out the valid records (dropping the two columns)
+    @Nonnull
+    @Override
+    public DataSet getValidRows(@Nonnull final String databaseName, @Nonnull final String sourceTableName, @Nonnull final String targetTableName, @Nonnull final DataValidatorResult result,
+                                @Nonnull final HiveContext hiveContext) {
         final StructType feedTableSchema = scs.toDataSet(hiveContext, HiveUtils.quoteIdentifier(databaseName, sourceTableName)).schema();
         StructType validTableSchema = scs.toDataSet(hiveContext, HiveUtils.quoteIdentifier(databaseName, targetTableName)).schema();
-        DataSet validDataFrame = getRows(validResultRDD, ModifiedSchema.getValidTableSchema(feedTableSchema.fields(), validTableSchema.fields(), result.getPolicies()), hiveContext);
-        validDataFrame = validDataFrame.drop(REJECT_REASON_COL).toDF();
-        //Remove the columns from _valid that don't exist in the validTableName
-
-        writeToTargetTable(validDataFrame, databaseName, targetTableName, hiveContext);
+        final StructType validRowSchema = ModifiedSchema.getValidTableSchema(feedTableSchema.fields(), validTableSchema.fields(), result.getPolicies());
+
+        DataSet validDataFrame;
+        if (result.getValidatedRows() != null) {
+            // Select the valid rows directly if validated with column expressions
+            validDataFrame = ColumnValidationPlan.selectRows(result.getValidatedRows(), true, validRowSchema);
+        } else {
+            // Return a new rdd based for Valid Results
+            //noinspection serial
+            JavaRDD<CleansedRowResult> validResultRDD = result.getCleansedRowResultRDD().filter(new Function<CleansedRowResult, Boolean>() {
+                @Override
+                public Boolean call(CleansedRowResult cleansedRowResult) throws Exception {
+                    return cleansedRowResult.isRowValid();
+                }
+            });
+            validDataFrame = getRows(validResultRDD, validRowSchema, hiveContext);
+        }
 
-        log.info("wrote values to the valid Table  {}", targetTableName);
+        // Drop the reject reason column from the valid records
+        return validDataFrame.drop(REJECT_REASON_COL).toDF();
     }
 
     /**
      * Validates the specified dataset and returns the results.
      *
+     * <p>The policies are translated into column expressions when possible, otherwise each row is validated by {@link CleanseAndValidateRow}.</p>
+     *
      * @param policies the field policies
      * @param fields   the target schema
      */
     @Nonnull
     private DataValidatorResult validate(@Nonnull final DataSet dataset, @Nonnull final FieldPolicy[] policies, @Nonnull final StructField[] fields) {
         final CleanseAndValidateRow function = new CleanseAndValidateRow(policies, fields);
+
+        final ColumnValidationPlan plan = ColumnValidationPlan.create(policies, fields, dataset.schema(), function.getSchema());
+        if (plan != null) {
+            log.info("Validating with column expressions");
+            final DataSet validatedRows = plan.apply(dataset);
+            final JavaRDD<CleansedRowResult> cleansedRowResultRDD = validatedRows.javaRDD().map(new ToCleansedRowResult(fields.length));
+            return new DataValidatorResult(cleansedRowResultRDD, validatedRows, policies, function.getSchema());
+        }
+
         final JavaRDD<CleansedRowResult> cleansedRowResultRDD = dataset.javaRDD().map(function);
         return new DataValidatorResult(cleansedRowResultRDD, policies, function.getSchema());
     }
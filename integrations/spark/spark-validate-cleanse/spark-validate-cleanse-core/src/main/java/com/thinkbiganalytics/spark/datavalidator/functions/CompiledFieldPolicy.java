@@ -0,0 +1,291 @@
+package com.thinkbiganalytics.spark.datavalidator.functions;
+
+/*-
+ * #%L
+ * kylo-spark-validate-cleanse-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.policy.BaseFieldPolicy;
+import com.thinkbiganalytics.policy.FieldPolicy;
+import com.thinkbiganalytics.policy.standardization.AcceptsEmptyValues;
+import com.thinkbiganalytics.policy.standardization.StandardizationPolicy;
+import com.thinkbiganalytics.policy.validation.NotNullValidator;
+import com.thinkbiganalytics.policy.validation.ValidationPolicy;
+import com.thinkbiganalytics.policy.validation.ValidationResult;
+import com.thinkbiganalytics.spark.datavalidator.StandardizationAndValidationResult;
+import com.thinkbiganalytics.spark.util.InvalidFormatException;
+import com.thinkbiganalytics.spark.validation.HCatDataType;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.ParameterizedType;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static com.thinkbiganalytics.spark.datavalidator.StandardDataValidator.VALID_RESULT;
+
+/**
+ * The standardizers and validators of a field, resolved once so that values can be cleansed and validated without reflection or type checks per row.
+ *
+ * <p>Instances keep a reusable result and are not thread-safe.</p>
+ */
+class CompiledFieldPolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(CompiledFieldPolicy.class);
+
+    /**
+     * Target data type
+     */
+    @Nonnull
+    private final HCatDataType dataType;
+
+    /**
+     * Indicates the values are passed through without being checked
+     */
+    private final boolean unchecked;
+
+    /**
+     * Indicates the target is a binary column
+     */
+    private final boolean binary;
+
+    private final boolean skipSchemaValidation;
+
+    /**
+     * Standardizers and validators in the order they were defined
+     */
+    @Nonnull
+    private final PolicyStep[] steps;
+
+    /**
+     * Result of the last call to {@link #standardizeAndValidate(Object)}
+     */
+    @Nonnull
+    private final StandardizationAndValidationResult result = new StandardizationAndValidationResult(null);
+
+    CompiledFieldPolicy(@Nullable final FieldPolicy fieldPolicy, @Nonnull final HCatDataType dataType) {
+        this.dataType = dataType;
+        this.unchecked = dataType.isUnchecked();
+        this.binary = dataType.getConvertibleType().equals(byte[].class);
+        this.skipSchemaValidation = fieldPolicy != null && fieldPolicy.shouldSkipSchemaValidation();
+        this.steps = compileSteps(fieldPolicy != null ? fieldPolicy.getAllPolicies() : null);
+    }
+
+    @Nonnull
+    HCatDataType getDataType() {
+        return dataType;
+    }
+
+    boolean isUnchecked() {
+        return unchecked;
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+
+    boolean isNumeric() {
+        return dataType.isNumeric();
+    }
+
+    /**
+     * Runs the standardizers and validators on the specified value.
+     *
+     * <p>The returned result is reused by the next call.</p>
+     */
+    @Nonnull
+    StandardizationAndValidationResult standardizeAndValidate(@Nullable final Object value) {
+        result.reset(value);
+
+        boolean validateNullValues = false;
+        for (PolicyStep step : steps) {
+            boolean isEmpty = isEmpty(result.getFieldValue());
+
+            if (step.standardizer != null) {
+                standardize(step, isEmpty);
+            }
+
+            if (step.validator != null) {
+                //run through the validator if the value is not null, or if we are allowed to validate nulls based upon a previous
+                //not null validator
+                if (!isEmpty || validateNullValues || step.notNullValidator) {
+                    ValidationResult validationResult = validateValue(step, result.getFieldValue());
+                    if (isEmpty && step.notNullValidator) {
+                        validateNullValues = true;
+                    }
+                    //only need to add those that are invalid
+                    if (validationResult != VALID_RESULT) {
+                        result.addValidationResult(validationResult);
+                        break; //exit out of processing if invalid records found.
+                    }
+                }
+                //reset the failOnEmpty flag back to false
+                if (!step.notNullValidator) {
+                    validateNullValues = false;
+                }
+            }
+        }
+
+        ValidationResult finalValidationCheck = finalValidationCheck(result.getFieldValue());
+        if (finalValidationCheck != VALID_RESULT) {
+            result.addValidationResult(finalValidationCheck);
+        }
+
+        return result;
+    }
+
+    private void standardize(@Nonnull final PolicyStep step, final boolean isEmpty) {
+        if ((isEmpty && !step.acceptsEmptyValues) || !step.standardizer.accepts(result.getFieldValue())) {
+            return;
+        }
+
+        Object newValue = result.getFieldValue();
+        try {
+            newValue = step.standardizer.convertRawValue(result.getFieldValue());
+        } catch (Exception e) {
+            log.error("Standardizer '{}' threw exception while attempting to standardize value, original value will be kept. Exception: {}", step.standardizer.getClass(), e);
+        }
+
+        //If this is the last standardizer for this field and the standardized value is returned as a String, and target column is not String, then validate and convert it to correct type
+        if (newValue != null && step.lastStandardizer && dataType.getConvertibleType() != newValue.getClass()) {
+            try {
+                //Date and timestamp fields can be valid as strings
+                boolean isValueOk = dataType.isStringValueValidForHiveType(newValue.toString());
+                if (!isValueOk) {
+                    //if the current string is not in a correct format attempt to convert it
+                    try {
+                        newValue = dataType.toNativeValue(newValue.toString());
+                    } catch (RuntimeException e) {
+                        result.addValidationResult(ValidationResult.failField("incompatible", dataType.getName(), "Not convertible to " + dataType.getNativeType()));
+                    }
+                }
+            } catch (InvalidFormatException e) {
+                log.warn("Could not convert value {} to correct type {}", newValue.toString(), dataType.getConvertibleType().getName());
+            }
+        }
+        result.setFieldValue(newValue);
+    }
+
+    /**
+     * Perform validation using both dataTypes validation the validation policies
+     */
+    private ValidationResult finalValidationCheck(@Nullable final Object fieldValue) {
+        boolean isEmpty = ((fieldValue instanceof String && StringUtils.isEmpty((String) fieldValue)) || fieldValue == null);
+        if (!isEmpty && !skipSchemaValidation && !dataType.isValueConvertibleToType(fieldValue)) {
+            return ValidationResult.failField("incompatible", dataType.getName(), "Not convertible to " + dataType.getNativeType());
+        }
+
+        return VALID_RESULT;
+    }
+
+    private ValidationResult validateValue(@Nonnull final PolicyStep step, @Nullable final Object fieldValue) {
+        try {
+            Object nativeValue = fieldValue;
+            if (step.validatorParamType != String.class && fieldValue instanceof String) {
+                nativeValue = dataType.toNativeValue(fieldValue.toString());
+            }
+            if (!step.validator.validate(nativeValue)) {
+                return ValidationResult.failFieldRule("rule", dataType.getName(), step.validator.getClass().getSimpleName(), "Rule violation");
+            }
+            return VALID_RESULT;
+        } catch (InvalidFormatException | ClassCastException e) {
+            return ValidationResult.failField("incompatible", dataType.getName(), "Not convertible to " + dataType.getNativeType());
+        }
+    }
+
+    private static boolean isEmpty(@Nullable final Object value) {
+        return (value == null) || (value instanceof String ? ((String) value).isEmpty() : StringUtils.isEmpty(value.toString()));
+    }
+
+    /**
+     * Resolves the standardizers and validators of the field policies.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private static PolicyStep[] compileSteps(@Nullable final List<BaseFieldPolicy> fieldPolicies) {
+        if (fieldPolicies == null) {
+            return new PolicyStep[0];
+        }
+
+        int lastStandardizer = -1;
+        for (int i = 0; i < fieldPolicies.size(); i++) {
+            if (fieldPolicies.get(i) instanceof StandardizationPolicy) {
+                lastStandardizer = i;
+            }
+        }
+
+        PolicyStep[] steps = new PolicyStep[fieldPolicies.size()];
+        for (int i = 0; i < steps.length; i++) {
+            BaseFieldPolicy policy = fieldPolicies.get(i);
+            StandardizationPolicy standardizer = (policy instanceof StandardizationPolicy) ? (StandardizationPolicy) policy : null;
+            ValidationPolicy validator = (policy instanceof ValidationPolicy) ? (ValidationPolicy) policy : null;
+            steps[i] = new PolicyStep(standardizer, i == lastStandardizer, validator);
+        }
+        return steps;
+    }
+
+    /**
+     * Resolves the type of parameter required by the validator. Validators accept different parameters (numeric, string, etc).
+     */
+    @Nonnull
+    private static Class<?> resolveValidatorParamType(@Nonnull final ValidationPolicy validator) {
+        Object type = validator.getClass().getGenericInterfaces()[0];
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getActualTypeArguments()[0];
+        } else {
+            return String.class;
+        }
+    }
+
+    /**
+     * A field policy with its standardizer and validator resolved.
+     */
+    private static class PolicyStep {
+
+        @Nullable
+        final StandardizationPolicy standardizer;
+
+        final boolean acceptsEmptyValues;
+
+        /**
+         * Indicates the standardized value should be converted to the target type
+         */
+        final boolean lastStandardizer;
+
+        @Nullable
+        final ValidationPolicy validator;
+
+        @Nullable
+        final Class<?> validatorParamType;
+
+        final boolean notNullValidator;
+
+        PolicyStep(@Nullable final StandardizationPolicy standardizer, final boolean lastStandardizer, @Nullable final ValidationPolicy validator) {
+            this.standardizer = standardizer;
+            this.acceptsEmptyValues = standardizer instanceof AcceptsEmptyValues;
+            this.lastStandardizer = lastStandardizer;
+            this.validator = validator;
+            this.validatorParamType = (validator != null) ? resolveValidatorParamType(validator) : null;
+            this.notNullValidator = validator instanceof NotNullValidator;
+        }
+    }
+}
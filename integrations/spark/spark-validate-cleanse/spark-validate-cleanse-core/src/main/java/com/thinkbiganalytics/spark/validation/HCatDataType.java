@@ -371,4 +371,12 @@ public class HCatDataType implements Cloneable, Serializable {
     public boolean isNumeric() {
         return isnumeric;
     }
+
+    public boolean isString() {
+        return isstring;
+    }
+
+    public long getMaxLength() {
+        return maxlength;
+    }
 }
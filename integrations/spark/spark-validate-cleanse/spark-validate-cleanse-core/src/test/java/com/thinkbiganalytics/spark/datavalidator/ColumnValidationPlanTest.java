@@ -0,0 +1,102 @@
+package com.thinkbiganalytics.spark.datavalidator;
+
+/*-
+ * #%L
+ * kylo-spark-validate-cleanse-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.policy.BaseFieldPolicy;
+import com.thinkbiganalytics.policy.FieldPolicy;
+import com.thinkbiganalytics.policy.FieldPolicyBuilder;
+import com.thinkbiganalytics.policy.standardization.DefaultValueStandardizer;
+import com.thinkbiganalytics.policy.standardization.TrimStandardizer;
+import com.thinkbiganalytics.policy.standardization.UppercaseStandardizer;
+import com.thinkbiganalytics.policy.validation.CharacterValidator;
+import com.thinkbiganalytics.policy.validation.LookupValidator;
+import com.thinkbiganalytics.policy.validation.NotNullValidator;
+import com.thinkbiganalytics.policy.validation.RangeValidator;
+import com.thinkbiganalytics.spark.datavalidator.functions.CleanseAndValidateRow;
+
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.Metadata;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ColumnValidationPlanTest {
+
+    private static final StructField[] FIELDS = new StructField[]{
+        new StructField("name", DataTypes.StringType, true, Metadata.empty()),
+        new StructField("age", DataTypes.IntegerType, true, Metadata.empty()),
+        new StructField("processing_dttm", DataTypes.StringType, true, Metadata.empty())
+    };
+
+    @Test
+    public void createForBuiltInPolicies() {
+        List<BaseFieldPolicy> namePolicies = new ArrayList<>();
+        namePolicies.add(TrimStandardizer.instance());
+        namePolicies.add(new DefaultValueStandardizer("unknown"));
+        namePolicies.add(UppercaseStandardizer.instance());
+        namePolicies.add(new NotNullValidator(false, true));
+        namePolicies.add(new LookupValidator("ALICE,BOB,UNKNOWN"));
+
+        List<BaseFieldPolicy> agePolicies = new ArrayList<>();
+        agePolicies.add(new RangeValidator(0, 150));
+
+        FieldPolicy[] policies = new FieldPolicy[]{policy("name", namePolicies), policy("age", agePolicies), policy("processing_dttm", new ArrayList<BaseFieldPolicy>())};
+        assertNotNull(createPlan(policies, new StructType(FIELDS)));
+    }
+
+    @Test
+    public void createForCustomPolicy() {
+        List<BaseFieldPolicy> namePolicies = new ArrayList<>();
+        namePolicies.add(new CharacterValidator("ALPHA"));
+
+        FieldPolicy[] policies = new FieldPolicy[]{policy("name", namePolicies), policy("age", new ArrayList<BaseFieldPolicy>()),
+                                                   policy("processing_dttm", new ArrayList<BaseFieldPolicy>())};
+        assertNull(createPlan(policies, new StructType(FIELDS)));
+    }
+
+    @Test
+    public void createForTypeConversion() {
+        StructType sourceSchema = new StructType(new StructField[]{
+            FIELDS[0],
+            new StructField("age", DataTypes.StringType, true, Metadata.empty()),
+            FIELDS[2]
+        });
+
+        FieldPolicy[] policies = new FieldPolicy[]{policy("name", new ArrayList<BaseFieldPolicy>()), policy("age", new ArrayList<BaseFieldPolicy>()),
+                                                   policy("processing_dttm", new ArrayList<BaseFieldPolicy>())};
+        assertNull(createPlan(policies, sourceSchema));
+    }
+
+    private ColumnValidationPlan createPlan(FieldPolicy[] policies, StructType sourceSchema) {
+        StructType outputSchema = new CleanseAndValidateRow(policies, FIELDS).getSchema();
+        return ColumnValidationPlan.create(policies, FIELDS, sourceSchema, outputSchema);
+    }
+
+    private FieldPolicy policy(String fieldName, List<BaseFieldPolicy> policies) {
+        return FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("emp").fieldName(fieldName).feedFieldName(fieldName).build();
+    }
+}
@@ -32,17 +32,19 @@ import com.thinkbiganalytics.policy.validation.LookupValidator;
 import com.thinkbiganalytics.policy.validation.NotNullValidator;
 import com.thinkbiganalytics.policy.validation.RangeValidator;
 import com.thinkbiganalytics.policy.validation.ValidationResult;
+import com.thinkbiganalytics.spark.datavalidator.CleansedRowResult;
 import com.thinkbiganalytics.spark.datavalidator.StandardDataValidator;
 import com.thinkbiganalytics.spark.datavalidator.StandardizationAndValidationResult;
 import com.thinkbiganalytics.spark.util.InvalidFormatException;
 import com.thinkbiganalytics.spark.validation.HCatDataType;
 
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.StructField;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
@@ -119,7 +121,7 @@ public class CleanseAndValidateRowTest {
         policies.add(validatorPolicy);
 
         FieldPolicy fieldPolicy = FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("emp").fieldName("field1").feedFieldName("field1").addPolicies(policies).build();
-        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, value, HCatDataType.createFromDataType("field1", dataType), new HashMap<Class, Class>());
+        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, value, HCatDataType.createFromDataType("field1", dataType));
         return result.getFinalValidationResult();
     }
 
@@ -132,13 +134,13 @@ public class CleanseAndValidateRowTest {
         FieldPolicy fieldPolicy = FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("emp").fieldName(fieldName).feedFieldName(fieldName).build();
 
         HCatDataType fieldDataType = HCatDataType.createFromDataType(fieldName, "string");
-        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, "aafooaa", fieldDataType, new HashMap<Class, Class>());
+        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, "aafooaa", fieldDataType);
         assertEquals(result.getFieldValue(), "aabaraa");
 
-        result = validator.standardizeAndValidateField(fieldPolicy, null, fieldDataType, new HashMap<Class, Class>());
+        result = validator.standardizeAndValidateField(fieldPolicy, null, fieldDataType);
         assertNull(result.getFieldValue());
 
-        result = validator.standardizeAndValidateField(fieldPolicy, "", fieldDataType, new HashMap<Class, Class>());
+        result = validator.standardizeAndValidateField(fieldPolicy, "", fieldDataType);
         assertEquals(result.getFieldValue(), "");
     }
 
@@ -155,7 +157,7 @@ public class CleanseAndValidateRowTest {
         FieldPolicy fieldPolicy = FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("emp").fieldName(fieldName).feedFieldName(fieldName).build();
 
         HCatDataType fieldDataType = HCatDataType.createFromDataType(fieldName, "string");
-        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, "aafooaa", fieldDataType, new HashMap<Class, Class>());
+        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, "aafooaa", fieldDataType);
         assertEquals(result.getFieldValue(), "aatestaa");
         assertEquals(StandardDataValidator.VALID_RESULT, result.getFinalValidationResult());
     }
@@ -172,7 +174,7 @@ public class CleanseAndValidateRowTest {
         FieldPolicy fieldPolicy = FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("emp").fieldName(fieldName).feedFieldName(fieldName).build();
 
         HCatDataType fieldDataType = HCatDataType.createFromDataType(fieldName, "string");
-        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, "aafooaa", fieldDataType, new HashMap<Class, Class>());
+        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, "aafooaa", fieldDataType);
         assertEquals("aabaraa", result.getFieldValue());
         assertNotEquals(StandardDataValidator.VALID_RESULT, result.getFinalValidationResult());
     }
@@ -189,7 +191,7 @@ public class CleanseAndValidateRowTest {
         FieldPolicy fieldPolicy = FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("emp").fieldName(fieldName).feedFieldName(fieldName).build();
 
         HCatDataType fieldDataType = HCatDataType.createFromDataType(fieldName, "string");
-        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, null, fieldDataType, new HashMap<Class, Class>());
+        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, null, fieldDataType);
         assertEquals(StandardDataValidator.VALID_RESULT, result.getFinalValidationResult());
 
     }
@@ -212,13 +214,41 @@ public class CleanseAndValidateRowTest {
         FieldPolicy fieldPolicy = FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("emp").fieldName(fieldName).feedFieldName(fieldName).build();
 
         HCatDataType fieldDataType = HCatDataType.createFromDataType(fieldName, "string");
-        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, fieldValue, fieldDataType, new HashMap<Class, Class>());
+        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, fieldValue, fieldDataType);
         assertEquals(StandardDataValidator.VALID_RESULT, result.getFinalValidationResult());
         assertEquals("test_field", result.getFieldValue());
 
     }
 
 
+    @Test
+    public void callKeepsRowsIndependent() throws Exception {
+        String fieldName = "field1";
+
+        List<BaseFieldPolicy> policies = new ArrayList<>();
+        policies.add(new SimpleRegexReplacer("(?i)foo", "bar"));
+        policies.add(new LookupValidator("aabaraa"));
+        FieldPolicy fieldPolicy = FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("emp").fieldName(fieldName).feedFieldName(fieldName).build();
+
+        CleanseAndValidateRow rowValidator = new CleanseAndValidateRow(new FieldPolicy[]{fieldPolicy},
+                                                                       new StructField[]{DataTypes.createStructField(fieldName, DataTypes.StringType, true)});
+
+        // invalid row keeps the original value and records the reject reason
+        CleansedRowResult invalid = rowValidator.call(RowFactory.create("blah"));
+        assertFalse(invalid.isRowValid());
+        assertFalse(invalid.isColumnValid(0));
+        assertEquals("blah", invalid.getRow().get(0));
+        assertTrue(invalid.getRow().getString(1).startsWith("["));
+
+        // the next row is not affected by the previous failure
+        CleansedRowResult valid = rowValidator.call(RowFactory.create("aafooaa"));
+        assertTrue(valid.isRowValid());
+        assertTrue(valid.isColumnValid(0));
+        assertEquals("aabaraa", valid.getRow().get(0));
+        assertEquals("", valid.getRow().getString(1));
+    }
+
+
     @Test
     public void testValidateNotNull() {
 
@@ -231,7 +261,7 @@ public class CleanseAndValidateRowTest {
         policies.add(validatorPolicy);
         FieldPolicy fieldPolicy = FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("emp").fieldName("field1").feedFieldName("field1").build();
 
-        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, value, HCatDataType.createFromDataType("field1", dataType), new HashMap<Class, Class>());
+        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, value, HCatDataType.createFromDataType("field1", dataType));
         return result.getFinalValidationResult();
     }
 
@@ -246,7 +276,7 @@ public class CleanseAndValidateRowTest {
         FieldPolicy fieldPolicy = FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("temp").fieldName(fieldName).feedFieldName(fieldName).build();
 
         HCatDataType fieldDataType = HCatDataType.createFromDataType(fieldName, "int");
-        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, 0, fieldDataType, new HashMap<Class, Class>());
+        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, 0, fieldDataType);
         assertEquals(2, result.getFieldValue());
         assertEquals(StandardDataValidator.VALID_RESULT, result.getFinalValidationResult());
     }
@@ -261,7 +291,7 @@ public class CleanseAndValidateRowTest {
         FieldPolicy fieldPolicy = FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("emp").fieldName(fieldName).feedFieldName(fieldName).build();
 
         HCatDataType fieldDataType = HCatDataType.createFromDataType(fieldName, "string");
-        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, "aafooaa", fieldDataType, new HashMap<Class, Class>());
+        StandardizationAndValidationResult result = validator.standardizeAndValidateField(fieldPolicy, "aafooaa", fieldDataType);
         assertEquals(result.getFieldValue(), "aafooaa");
     }
 
@@ -21,12 +21,14 @@ package com.thinkbiganalytics.spark.datavalidator;
  */
 
 import com.thinkbiganalytics.policy.FieldPolicy;
+import com.thinkbiganalytics.spark.DataSet;
 
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.sql.types.StructType;
 import org.apache.spark.storage.StorageLevel;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Contains the result of validating a dataset.
@@ -42,8 +44,20 @@ public class DataValidatorResult {
     @Nonnull
     private final StructType schema;
 
+    /**
+     * Cleansed rows with their validity columns, if validated with column expressions
+     */
+    @Nullable
+    private final DataSet validatedRows;
+
     public DataValidatorResult(@Nonnull final JavaRDD<CleansedRowResult> cleansedRowResultRDD, @Nonnull final FieldPolicy[] policies, @Nonnull final StructType schema) {
+        this(cleansedRowResultRDD, null, policies, schema);
+    }
+
+    public DataValidatorResult(@Nonnull final JavaRDD<CleansedRowResult> cleansedRowResultRDD, @Nullable final DataSet validatedRows, @Nonnull final FieldPolicy[] policies,
+                               @Nonnull final StructType schema) {
         this.cleansedRowResultRDD = cleansedRowResultRDD;
+        this.validatedRows = validatedRows;
         this.policies = policies;
         this.schema = schema;
     }
@@ -56,6 +70,14 @@ public class DataValidatorResult {
         return cleansedRowResultRDD;
     }
 
+    /**
+     * Gets the cleansed rows followed by a validity column for each field and for the row, or {@code null} if the rows were validated by a row function.
+     */
+    @Nullable
+    public DataSet getValidatedRows() {
+        return validatedRows;
+    }
+
     /**
      * Gets the field policies applied to the input.
      */
@@ -76,14 +98,22 @@ public class DataValidatorResult {
      * Persists the cleansed rows with the specified storage level.
      */
     public void persist(@Nonnull final StorageLevel newLevel) {
-        cleansedRowResultRDD.persist(newLevel);
+        if (validatedRows != null) {
+            validatedRows.persist(newLevel);
+        } else {
+            cleansedRowResultRDD.persist(newLevel);
+        }
     }
 
     /**
      * Removes all blocks of the cleansed rows from memory and disk.
      */
     public void unpersist() {
-        cleansedRowResultRDD.unpersist();
+        if (validatedRows != null) {
+            validatedRows.unpersist(false);
+        } else {
+            cleansedRowResultRDD.unpersist();
+        }
     }
 }
 
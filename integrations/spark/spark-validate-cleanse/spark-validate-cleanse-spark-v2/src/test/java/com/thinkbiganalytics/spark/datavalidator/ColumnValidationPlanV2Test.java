@@ -0,0 +1,169 @@
+package com.thinkbiganalytics.spark.datavalidator;
+
+/*-
+ * #%L
+ * kylo-spark-validate-cleanse-spark-v2
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.policy.BaseFieldPolicy;
+import com.thinkbiganalytics.policy.FieldPolicy;
+import com.thinkbiganalytics.policy.FieldPolicyBuilder;
+import com.thinkbiganalytics.policy.standardization.DefaultValueStandardizer;
+import com.thinkbiganalytics.policy.standardization.LowercaseStandardizer;
+import com.thinkbiganalytics.policy.standardization.TrimStandardizer;
+import com.thinkbiganalytics.policy.standardization.UppercaseStandardizer;
+import com.thinkbiganalytics.policy.validation.LengthValidator;
+import com.thinkbiganalytics.policy.validation.LookupValidator;
+import com.thinkbiganalytics.policy.validation.NotNullValidator;
+import com.thinkbiganalytics.policy.validation.RangeValidator;
+import com.thinkbiganalytics.policy.validation.RegexValidator;
+import com.thinkbiganalytics.spark.DataSet;
+import com.thinkbiganalytics.spark.SparkContextService;
+import com.thinkbiganalytics.spark.SparkContextService20;
+import com.thinkbiganalytics.spark.datavalidator.functions.CleanseAndValidateRow;
+import com.thinkbiganalytics.spark.datavalidator.functions.ToCleansedRowResult;
+
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.Metadata;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares the results of a {@link ColumnValidationPlan} with those of {@link CleanseAndValidateRow} for the same rows.
+ */
+public class ColumnValidationPlanV2Test {
+
+    private static final StructField[] FIELDS = new StructField[]{
+        new StructField("name", DataTypes.StringType, true, Metadata.empty()),
+        new StructField("age", DataTypes.IntegerType, true, Metadata.empty()),
+        new StructField("processing_dttm", DataTypes.StringType, true, Metadata.empty())
+    };
+
+    private static final List<Row> ROWS = Arrays.asList(
+        RowFactory.create(" alice ", 30, "1"),
+        RowFactory.create(null, 40, "1"),
+        RowFactory.create("", null, "1"),
+        RowFactory.create("   ", 10, "1"),
+        RowFactory.create("carol", 30, "1"),
+        RowFactory.create("bob", 200, "1"),
+        RowFactory.create("dave", -1, "1"),
+        RowFactory.create("x", 20, "1"),
+        RowFactory.create("Bob1", 25, "1"),
+        RowFactory.create(null, null, null)
+    );
+
+    private static SparkSession spark;
+
+    private final SparkContextService scs = new SparkContextService20();
+
+    @BeforeClass
+    public static void startSpark() {
+        spark = SparkSession.builder().master("local[1]").appName("Column Validation Plan Test - Spark 2").getOrCreate();
+    }
+
+    @AfterClass
+    public static void stopSpark() {
+        spark.stop();
+    }
+
+    @Test
+    public void testStandardizersAndLookup() {
+        List<BaseFieldPolicy> namePolicies = new ArrayList<>();
+        namePolicies.add(TrimStandardizer.instance());
+        namePolicies.add(new DefaultValueStandardizer("unknown"));
+        namePolicies.add(UppercaseStandardizer.instance());
+        namePolicies.add(new NotNullValidator(false, true));
+        namePolicies.add(new LookupValidator("ALICE,BOB,UNKNOWN"));
+
+        List<BaseFieldPolicy> agePolicies = new ArrayList<>();
+        agePolicies.add(new RangeValidator(0, 150));
+
+        assertSameResults(new FieldPolicy[]{policy("name", namePolicies), policy("age", agePolicies), policy("processing_dttm", new ArrayList<BaseFieldPolicy>())});
+    }
+
+    @Test
+    public void testNotNullLengthAndRegex() {
+        List<BaseFieldPolicy> namePolicies = new ArrayList<>();
+        namePolicies.add(LowercaseStandardizer.instance());
+        namePolicies.add(new NotNullValidator(false, true));
+        namePolicies.add(new LengthValidator(2, 5));
+        namePolicies.add(new RegexValidator("[a-z]+"));
+
+        List<BaseFieldPolicy> agePolicies = new ArrayList<>();
+        agePolicies.add(new NotNullValidator(false, false));
+        agePolicies.add(new RangeValidator(0, 100));
+
+        assertSameResults(new FieldPolicy[]{policy("name", namePolicies), policy("age", agePolicies), policy("processing_dttm", new ArrayList<BaseFieldPolicy>())});
+    }
+
+    /**
+     * Validates the rows with both a plan and the row function and compares the cleansed values, reject reasons, validity, and counts.
+     */
+    private void assertSameResults(FieldPolicy[] policies) {
+        DataSet dataset = scs.toDataSet(spark.createDataFrame(ROWS, new StructType(FIELDS)));
+        CleanseAndValidateRow function = new CleanseAndValidateRow(policies, FIELDS);
+        ColumnValidationPlan plan = ColumnValidationPlan.create(policies, FIELDS, dataset.schema(), function.getSchema());
+        assertNotNull(plan);
+
+        JavaRDD<CleansedRowResult> expectedRDD = dataset.javaRDD().map(function);
+        DataSet validatedRows = plan.apply(dataset);
+        JavaRDD<CleansedRowResult> actualRDD = validatedRows.javaRDD().map(new ToCleansedRowResult(FIELDS.length));
+
+        List<CleansedRowResult> expected = expectedRDD.collect();
+        List<CleansedRowResult> actual = actualRDD.collect();
+        assertEquals(expected.size(), actual.size());
+
+        for (int idx = 0; idx < expected.size(); idx++) {
+            String message = "Row " + ROWS.get(idx);
+            Row expectedRow = expected.get(idx).getRow();
+            Row actualRow = actual.get(idx).getRow();
+
+            assertEquals(message, expected.get(idx).isRowValid(), actual.get(idx).isRowValid());
+            assertEquals(message, expectedRow.length(), actualRow.length());
+            for (int col = 0; col < expectedRow.length(); col++) {
+                assertEquals(message + " column " + col, expectedRow.get(col), actualRow.get(col));
+            }
+            for (int col = 0; col < FIELDS.length; col++) {
+                assertEquals(message + " column " + col, expected.get(idx).isColumnValid(col), actual.get(idx).isColumnValid(col));
+            }
+        }
+
+        StandardDataValidator validator = new StandardDataValidator(new ValidatorStrategyV2(), Mockito.mock(SparkContextService.class));
+        assertArrayEquals(validator.cleansedRowResultsValidationCounts(expectedRDD, FIELDS.length), ColumnValidationPlan.countValidation(validatedRows, FIELDS.length));
+    }
+
+    private FieldPolicy policy(String fieldName, List<BaseFieldPolicy> policies) {
+        return FieldPolicyBuilder.newBuilder().addPolicies(policies).tableName("emp").fieldName(fieldName).feedFieldName(fieldName).build();
+    }
+}
@@ -27,6 +27,9 @@ import com.thinkbiganalytics.security.ServiceAdminPrincipal;
 import com.thinkbiganalytics.security.UsernamePrincipal;
 
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Simple facade over whatever database/transaction mechanism is deployed in the environment where
@@ -112,4 +115,29 @@ public interface MetadataAccess {
      * @param principals one or more principals, or none to use the current security context
      */
     void read(MetadataAction cmd, Principal... principals);
+
+    /**
+     * Executes the {@link MetadataBatchCommand} against each of the items and commits the changes in chunks of {@code batchSize} items, using credentials derived by the
+     * provided principals. If no principals are provided then the commands will execute using credentials derived from the current security context.  A failure rolls
+     * back the chunk being executed; chunks committed before the failure remain committed.
+     *
+     * <p>The default implementation commits each item separately.</p>
+     *
+     * @param items      the items to execute the command against
+     * @param batchSize  the maximum number of items to commit together
+     * @param cmd        the command to execute for each item
+     * @param listener   the listener notified after each chunk is committed, or {@code null}
+     * @param principals one or more principals, or none to use the current security context
+     * @return the results returned from the command, in the order of the items
+     */
+    default <T, R> List<R> commitBatch(Collection<? extends T> items, int batchSize, MetadataBatchCommand<T, R> cmd, MetadataBatchListener listener, Principal... principals) {
+        List<R> results = new ArrayList<>(items.size());
+        for (T item : items) {
+            results.add(commit(() -> cmd.execute(item), principals));
+            if (listener != null) {
+                listener.committed(results.size(), items.size());
+            }
+        }
+        return results;
+    }
 }
@@ -0,0 +1,38 @@
+/**
+ *
+ */
+package com.thinkbiganalytics.metadata.api;
+
+/*-
+ * #%L
+ * thinkbig-metadata-api
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Receives the progress of a batch of commands as each chunk of the batch is committed.
+ */
+public interface MetadataBatchListener {
+
+    /**
+     * Called after a chunk of the batch has been committed.
+     *
+     * @param completed the number of items committed so far
+     * @param total     the total number of items in the batch
+     */
+    void committed(int completed, int total);
+}
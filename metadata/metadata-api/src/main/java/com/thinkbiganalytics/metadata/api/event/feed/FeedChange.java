@@ -40,6 +40,8 @@ import javax.annotation.Nullable;
  */
 public class FeedChange extends MetadataChange {
 
+    public static final String CLUSTER_EVENT_TYPE = "FeedChange";
+
     private static final long serialVersionUID = 1L;
 
     private final Feed.ID feedId;
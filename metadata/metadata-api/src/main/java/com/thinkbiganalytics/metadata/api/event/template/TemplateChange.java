@@ -35,6 +35,8 @@ import java.util.Objects;
  */
 public class TemplateChange extends MetadataChange {
 
+    public static final String CLUSTER_EVENT_TYPE = "TemplateChange";
+
     private static final long serialVersionUID = 1L;
 
     private final FeedManagerTemplate.ID templateId;
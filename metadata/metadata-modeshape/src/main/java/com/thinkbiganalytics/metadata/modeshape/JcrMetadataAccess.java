@@ -23,9 +23,12 @@ package com.thinkbiganalytics.metadata.modeshape;
  * #L%
  */
 
+import com.google.common.util.concurrent.Striped;
 import com.thinkbiganalytics.metadata.api.MetadataAccess;
 import com.thinkbiganalytics.metadata.api.MetadataAccessException;
 import com.thinkbiganalytics.metadata.api.MetadataAction;
+import com.thinkbiganalytics.metadata.api.MetadataBatchCommand;
+import com.thinkbiganalytics.metadata.api.MetadataBatchListener;
 import com.thinkbiganalytics.metadata.api.MetadataCommand;
 import com.thinkbiganalytics.metadata.api.MetadataExecutionException;
 import com.thinkbiganalytics.metadata.api.MetadataRollbackAction;
@@ -35,6 +38,7 @@ import com.thinkbiganalytics.metadata.modeshape.security.ModeShapeReadOnlyPrinci
 import com.thinkbiganalytics.metadata.modeshape.security.ModeShapeReadWritePrincipal;
 import com.thinkbiganalytics.metadata.modeshape.security.OverrideCredentials;
 import com.thinkbiganalytics.metadata.modeshape.security.SpringAuthenticationCredentials;
+import com.thinkbiganalytics.metadata.modeshape.support.JcrLockingUtil;
 import com.thinkbiganalytics.metadata.modeshape.support.JcrVersionUtil;
 import com.thinkbiganalytics.metadata.modeshape.support.MetadataLockException;
 import com.thinkbiganalytics.security.UsernamePrincipal;
@@ -46,14 +50,21 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -109,6 +120,9 @@ public class JcrMetadataAccess implements MetadataAccess {
 
     private static final MetadataRollbackCommand nullRollbackCommand = (e) -> { }; 
 
+    /** In-process locks of the lockable node paths used by batches, so batches in this JVM block on each other instead of polling the JCR lock */
+    private static final Striped<Lock> batchLocks = Striped.lazyWeakLock(64);
+
 
     @Inject
     @Named("metadataJcrRepository")
@@ -361,6 +375,172 @@ public class JcrMetadataAccess implements MetadataAccess {
         }
     }
 
+    /* (non-Javadoc)
+     * @see com.thinkbiganalytics.metadata.api.MetadataAccess#commitBatch(java.util.Collection, int, com.thinkbiganalytics.metadata.api.MetadataBatchCommand, com.thinkbiganalytics.metadata.api.MetadataBatchListener, java.security.Principal[])
+     */
+    @Override
+    public <T, R> List<R> commitBatch(Collection<? extends T> items, int batchSize, MetadataBatchCommand<T, R> cmd, MetadataBatchListener listener, Principal... principals) {
+        return commitBatch(createCredentials(false, principals), items, batchSize, null, cmd, listener);
+    }
+
+    /**
+     * Executes the command against each of the items and commits the changes in chunks of {@code batchSize} items.  Before a chunk is executed the lockable nodes
+     * at the paths returned by {@code lockPath} are locked in a stable order, so that concurrent batches touching the same nodes wait for each other instead of
+     * failing part way through and re-executing their work.  A node locked by a session outside of a batch fails the chunk before any of its work is executed.
+     *
+     * @param items      the items to execute the command against
+     * @param batchSize  the maximum number of items to commit together
+     * @param lockPath   returns the path of the node to lock before an item is executed, or {@code null} if no node needs to be locked
+     * @param cmd        the command to execute for each item
+     * @param listener   the listener notified after each chunk is committed, or {@code null}
+     * @param principals one or more principals, or none to use the current security context
+     * @return the results returned from the command, in the order of the items
+     */
+    public <T, R> List<R> commitBatch(Collection<? extends T> items, int batchSize, Function<? super T, String> lockPath, MetadataBatchCommand<T, R> cmd, MetadataBatchListener listener,
+                                      Principal... principals) {
+        return commitBatch(createCredentials(false, principals), items, batchSize, lockPath, cmd, listener);
+    }
+
+    public <T, R> List<R> commitBatch(Credentials creds, Collection<? extends T> items, int batchSize, Function<? super T, String> lockPath, MetadataBatchCommand<T, R> cmd,
+                                      MetadataBatchListener listener) {
+        List<T> batch = new ArrayList<>(items);
+        List<R> results = new ArrayList<>(batch.size());
+
+        if (activeSession.get() != null) {
+            // Already within a transaction so the items are committed along with it.
+            try {
+                for (T item : batch) {
+                    results.add(cmd.execute(item));
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new MetadataExecutionException(e);
+            }
+            if (listener != null) {
+                listener.committed(results.size(), batch.size());
+            }
+            return results;
+        }
+
+        int chunkSize = Math.max(1, batchSize);
+
+        try {
+            // The same session is used for every chunk rather than logging in for each item.
+            activeSession.set(new ActiveSession(this.repository.login(creds)));
+
+            try {
+                for (int start = 0; start < batch.size(); start += chunkSize) {
+                    List<T> chunk = batch.subList(start, Math.min(start + chunkSize, batch.size()));
+                    results.addAll(doCommitChunk(creds, chunk, lockPath, cmd));
+                    log.debug("Committed {} of {} batch items", results.size(), batch.size());
+
+                    if (listener != null) {
+                        listener.committed(results.size(), batch.size());
+                    }
+                }
+                return results;
+            } finally {
+                activeSession.get().session.logout();
+                activeSession.remove();
+                postTransactionActions.remove();
+                checkedOutNodes.remove();
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (RepositoryException e) {
+            throw new MetadataAccessException("Failure accessing the metadata store", e);
+        } catch (Exception e) {
+            throw new MetadataExecutionException(e);
+        }
+    }
+
+    private <T, R> List<R> doCommitChunk(Credentials creds, List<T> chunk, Function<? super T, String> lockPath, MetadataBatchCommand<T, R> cmd) throws Exception {
+        TransactionManager txnMgr = this.txnLookup.getTransactionManager();
+        Session session = activeSession.get().session;
+        Set<String> lockedPaths = new TreeSet<>();
+        List<Lock> heldLocks = new ArrayList<>();
+
+        try {
+            txnMgr.begin();
+
+            if (lockPath != null) {
+                lockNodes(session, chunk.stream().map(lockPath).filter(path -> path != null).collect(Collectors.toSet()), lockedPaths, heldLocks);
+            }
+
+            List<R> results = new ArrayList<>(chunk.size());
+            for (T item : chunk) {
+                results.add(execute(creds, () -> cmd.execute(item)));
+            }
+
+            session.save();
+            checkinNodes();
+            txnMgr.commit();
+            performPostTransactionActions(true);
+            return results;
+        } catch (Exception e) {
+            log.warn("Exception while executing a batch of transactional operations - rolling back", e);
+
+            try {
+                txnMgr.rollback();
+            } catch (SystemException se) {
+                log.error("Failed to rollback transaction as a result of transactional errors", se);
+            }
+
+            try {
+                session.refresh(false);
+            } catch (RuntimeException | RepositoryException re) {
+                e.addSuppressed(re);
+            }
+            performPostTransactionActions(false);
+
+            throw e;
+        } finally {
+            for (String path : lockedPaths) {
+                try {
+                    JcrLockingUtil.unlock(session.getNode(path));
+                } catch (RuntimeException | RepositoryException e) {
+                    log.warn("Failed to release lock on {}", path, e);
+                }
+            }
+            heldLocks.forEach(Lock::unlock);
+            postTransactionActions.get().clear();
+            checkedOutNodes.get().clear();
+        }
+    }
+
+    /**
+     * Locks the lockable nodes of the given paths.  Paths that do not exist yet, or are not within a lockable hierarchy, are skipped.  The in-process locks of the
+     * paths are acquired first, in stripe order, blocking until other batches in this JVM release them.  The JCR locks are then acquired in path order and fail
+     * immediately if another session holds them.
+     */
+    private void lockNodes(Session session, Set<String> paths, Set<String> lockedPaths, List<Lock> heldLocks) throws RepositoryException, InterruptedException {
+        Set<String> lockablePaths = new TreeSet<>();
+        for (String path : paths) {
+            if (session.nodeExists(path)) {
+                Optional<Node> lockable = JcrLockingUtil.findLockable(session.getNode(path));
+                if (lockable.isPresent()) {
+                    lockablePaths.add(lockable.get().getPath());
+                }
+            }
+        }
+
+        for (Lock lock : batchLocks.bulkGet(lockablePaths)) {
+            try {
+                lock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw e;
+            }
+            heldLocks.add(lock);
+        }
+
+        for (String path : lockablePaths) {
+            JcrLockingUtil.lock(session.getNode(path), false);
+            lockedPaths.add(path);
+        }
+    }
+
     /* (non-Javadoc)
      * @see com.thinkbiganalytics.metadata.api.MetadataAccess#read(com.thinkbiganalytics.metadata.api.MetadataCommand, java.security.Principal[])
      */
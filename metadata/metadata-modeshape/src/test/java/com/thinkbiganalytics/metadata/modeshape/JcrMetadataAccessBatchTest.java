@@ -0,0 +1,146 @@
+package com.thinkbiganalytics.metadata.modeshape;
+
+/*-
+ * #%L
+ * thinkbig-metadata-modeshape
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.project.Project;
+import com.thinkbiganalytics.metadata.api.template.FeedManagerTemplate;
+import com.thinkbiganalytics.metadata.api.template.FeedManagerTemplateProvider;
+import com.thinkbiganalytics.metadata.modeshape.common.JcrObject;
+import com.thinkbiganalytics.metadata.modeshape.project.providers.ProjectProvider;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests the chunked commits of {@link JcrMetadataAccess#commitBatch}
+ */
+@SpringBootTest(classes = {ModeShapeEngineConfig.class, JcrTestConfig.class})
+public class JcrMetadataAccessBatchTest extends AbstractTestNGSpringContextTests {
+
+    @Inject
+    private JcrMetadataAccess metadata;
+
+    @Inject
+    private FeedManagerTemplateProvider templateProvider;
+
+    @Resource
+    private ProjectProvider projProvider;
+
+    @Test
+    public void testCommitBatchInChunks() {
+        List<String> names = Arrays.asList("ChunkProject1", "ChunkProject2", "ChunkProject3", "ChunkProject4", "ChunkProject5");
+        List<Integer> progress = new ArrayList<>();
+
+        List<String> results = metadata.commitBatch(names, 2, name -> this.projProvider.ensureProject(name).getSystemName(), (completed, total) -> progress.add(completed),
+                                                    MetadataAccess.SERVICE);
+
+        assertThat(results).hasSize(5);
+        assertThat(progress).containsExactly(2, 4, 5);
+        metadata.read(() -> {
+            for (String name : names) {
+                assertThat(projProvider.findProjectByName(name).isPresent()).isTrue();
+            }
+        }, MetadataAccess.SERVICE);
+    }
+
+    @Test
+    public void testFailedChunkRolledBack() {
+        List<String> names = Arrays.asList("RollbackProject1", "RollbackProject2", "RollbackProject3", "RollbackProject4", "RollbackProject5");
+        List<Integer> progress = new ArrayList<>();
+
+        assertThatThrownBy(() -> metadata.commitBatch(names, 2, name -> {
+            Project project = this.projProvider.ensureProject(name);
+            if ("RollbackProject4".equals(name)) {
+                throw new IllegalStateException("Failed to create " + name);
+            }
+            return project;
+        }, (completed, total) -> progress.add(completed), MetadataAccess.SERVICE)).isInstanceOf(IllegalStateException.class);
+
+        // the first chunk stays committed while the failed chunk, and the chunks after it, are not
+        assertThat(progress).containsExactly(2);
+        metadata.read(() -> {
+            assertThat(projProvider.findProjectByName("RollbackProject1").isPresent()).isTrue();
+            assertThat(projProvider.findProjectByName("RollbackProject2").isPresent()).isTrue();
+            assertThat(projProvider.findProjectByName("RollbackProject3").isPresent()).isFalse();
+            assertThat(projProvider.findProjectByName("RollbackProject4").isPresent()).isFalse();
+            assertThat(projProvider.findProjectByName("RollbackProject5").isPresent()).isFalse();
+        }, MetadataAccess.SERVICE);
+    }
+
+    @Test
+    public void testBatchesLockingSameNodeRunOneAtATime() throws Exception {
+        String templatePath = metadata.commit(() -> {
+            FeedManagerTemplate template = templateProvider.ensureTemplate("BatchLockTemplate");
+            return ((JcrObject) template).getNode().getPath();
+        }, MetadataAccess.SERVICE);
+
+        List<Integer> items = Arrays.asList(1, 2, 3);
+        AtomicInteger running = new AtomicInteger();
+        List<Integer> concurrency = new CopyOnWriteArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            List<Future<List<Integer>>> batches = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                batches.add(executor.submit(() -> {
+                    start.await();
+                    return metadata.commitBatch(items, items.size(), item -> templatePath, item -> {
+                        concurrency.add(running.incrementAndGet());
+                        assertThat(templateProvider.findByName("BatchLockTemplate")).isNotNull();
+                        Thread.sleep(20);
+                        running.decrementAndGet();
+                        return item;
+                    }, null, MetadataAccess.SERVICE);
+                }));
+            }
+            start.countDown();
+
+            for (Future<List<Integer>> batch : batches) {
+                assertThat(batch.get(30, TimeUnit.SECONDS)).containsExactly(1, 2, 3);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the second batch waits for the lock of the first rather than failing or running alongside it
+        assertThat(concurrency).hasSize(6).containsOnly(1);
+    }
+}
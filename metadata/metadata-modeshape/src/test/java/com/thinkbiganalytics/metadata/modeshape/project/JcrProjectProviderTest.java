@@ -37,7 +37,10 @@ import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import javax.annotation.Resource;
@@ -113,6 +116,24 @@ public class JcrProjectProviderTest extends AbstractTestNGSpringContextTests {
     }
 
 
+    @Test
+    public void testCreateProjectsInBatches() {
+        List<String> names = Arrays.asList("BatchProject1", "BatchProject2", "BatchProject3", "BatchProject4", "BatchProject5");
+        List<Integer> progress = new ArrayList<>();
+
+        List<Project> projects = metadata.commitBatch(names, 2, name -> this.projProvider.ensureProject(name), (completed, total) -> progress.add(completed), MetadataAccess.SERVICE);
+
+        assertThat(projects).hasSize(5);
+        assertThat(progress).containsExactly(2, 4, 5);
+
+        metadata.read(() -> {
+            for (String name : names) {
+                assertThat(projProvider.findProjectByName(name).isPresent()).isTrue();
+            }
+        }, MetadataAccess.SERVICE);
+    }
+
+
     @AfterClass
     public void afterClass() {
         metadata.commit(() -> {
@@ -20,7 +20,6 @@ package com.thinkbiganalytics.feedmgr.nifi.cache;
  * #L%
  */
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Uninterruptibles;
 import com.thinkbiganalytics.app.ServicesApplicationStartup;
@@ -69,6 +68,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -121,16 +121,22 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
     @Deprecated
     private Map<String, Map<String, List<NifiFlowProcessor>>> feedProcessorIdProcessorMap = new ConcurrentHashMap<>();
 
-    Map<String, List<String>> feedToInputProcessorIds = new ConcurrentHashMap<>();
-
     @Deprecated
     private Map<String, NifiFlowProcessor> processorIdMap = new ConcurrentHashMap<>();
 
-    private Set<String> reuseableTemplateProcessorIds = new HashSet<>();
-
     private String reusableTemplateProcessGroupId = null;
 
-    private NifiFlowCacheSnapshot latest;
+    /**
+     * The current version of the cache.  Readers use it as is without copying.  Writers publish a new version while holding the updateLock
+     */
+    private volatile NifiFlowCacheState state = NifiFlowCacheState.EMPTY;
+
+    private final Object updateLock = new Object();
+
+    /**
+     * The update collected by the thread holding the updateLock so nested changes are published as one version
+     */
+    private NifiFlowCacheState.Update currentUpdate;
 
     private List<NiFiFlowCacheListener> listeners = new ArrayList<>();
 
@@ -154,23 +160,6 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
     private AtomicBoolean rebuildWithRetryInProgress = new AtomicBoolean(false);
 
 
-    private Map<String, String> processorIdToFeedProcessGroupId = new ConcurrentHashMap<>();
-
-    private Map<String, String> processorIdToFeedNameMap = new ConcurrentHashMap<>();
-    private Map<String, String> processorIdToProcessorName = new ConcurrentHashMap<>();
-    private Map<String, NiFiFlowCacheConnectionData> connectionIdToConnectionMap = new ConcurrentHashMap<>();
-    private Map<String, String> connectionIdCacheNameMap = new ConcurrentHashMap<>();
-
-    /**
-     * Map of the input processor id to all of its downstream processors
-     */
-    Map<String, List<NifiFlowCacheBaseProcessorDTO>> inputProcessorRelations = new ConcurrentHashMap<>();
-
-    /**
-     * map of the source to destinations entities
-     */
-    Map<String, List<String>> connectionSourceToDestination = new ConcurrentHashMap<>();
-
     /**
      * When mapping processor connections templates can connect various things between each processor (i.e. processorA - port - processgroup - port -processorB,  processor - funnel - processor)
      * When doing this if the dest is of something other than a processor, map the source processor to that thing (i.e. port, funnel) and mark it as an alias for that processor so eventually it
@@ -215,8 +204,6 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
      */
     private Map<String, DateTime> lastSyncTimeMap = new ConcurrentHashMap<>();
 
-    private DateTime lastUpdated = null;
-
     private ScheduledExecutorService expireCacheTimerService;
 
     @PostConstruct
@@ -224,7 +211,6 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
         nifiConnectionService.subscribeConnectionListener(this);
         startup.subscribe(this);
         initExpireTimerThread();
-        initializeLatestSnapshot();
     }
 
     @PreDestroy
@@ -371,26 +357,26 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
     /**
      * recursively add and connect processors
      */
-    private List<NifiFlowCacheBaseProcessorDTO> getProcessorDestinations(String processorId, Map<String, List<String>> connectionSourceToDestination,
+    private List<NifiFlowCacheBaseProcessorDTO> getProcessorDestinations(NifiFlowCacheState.Update update, String processorId,
                                                                          Map<String, NifiFlowCacheBaseProcessorDTO> processedDestinations) {
         if (processedDestinations == null) {
             processedDestinations = new HashMap<>();
         }
         List<NifiFlowCacheBaseProcessorDTO> destinations = new ArrayList<>();
-        List<String> destIds = connectionSourceToDestination.get(processorId);
+        List<String> destIds = update.getConnectionSourceToDestination().get(processorId);
         if (destIds != null) {
             for (String id : destIds) {
                 if (processedDestinations.containsKey(id)) {
                     destinations.add(processedDestinations.get(id));
                 } else if (id != processorId) {
-                    String processorName = processorIdToProcessorName.get(id);
+                    String processorName = update.getProcessorIdToProcessorName().get(id);
                     if (StringUtils.isNotBlank(processorName)) {
                         NifiFlowCacheBaseProcessorDTO dto = new NifiFlowCacheBaseProcessorDTO();
                         dto.setId(id);
                         dto.setName(processorName);
                         destinations.add(dto);
                         processedDestinations.put(id, dto);
-                        List<NifiFlowCacheBaseProcessorDTO> destProcessors = getProcessorDestinations(id, connectionSourceToDestination, processedDestinations);
+                        List<NifiFlowCacheBaseProcessorDTO> destProcessors = getProcessorDestinations(update, id, processedDestinations);
                         destinations.addAll(destProcessors);
                     }
                 } else {
@@ -401,11 +387,11 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
         return destinations;
     }
 
-    private void addInputProcessorRelations(List<String> inputProcessors) {
+    private void addInputProcessorRelations(NifiFlowCacheState.Update update, List<String> inputProcessors) {
         try {
             inputProcessors.stream().forEach(processorId -> {
-                List destinationList = getProcessorDestinations(processorId, connectionSourceToDestination, null);
-                inputProcessorRelations.put(processorId, destinationList);
+                List<NifiFlowCacheBaseProcessorDTO> destinationList = getProcessorDestinations(update, processorId, null);
+                update.putInputProcessorRelations(processorId, destinationList);
             });
         } catch (Exception e) {
             log.error("Error building input processor to downstream processor relationships ", e);
@@ -417,13 +403,13 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
      * populate the maps needed to connect non processor entities back to their respective processors
      * This is used to determine the graph of connected processors for a feed
      */
-    private void buildNonProcessorSourceDestinationRelationships(Map<String, NiFiFlowCacheConnectionData> connectionMap) {
+    private void buildNonProcessorSourceDestinationRelationships(NifiFlowCacheState.Update update, Map<String, NiFiFlowCacheConnectionData> connectionMap) {
         connectionMap.entrySet().stream().forEach(e -> {
             String source = e.getValue().getSourceIdentifier();
             String dest = e.getValue().getDestinationIdentifier();
             if (StringUtils.isNotBlank(dest)) {
-                boolean isSourceProcessor = processorIdToProcessorName.containsKey(source);
-                boolean isDestProcessor = processorIdToProcessorName.containsKey(dest);
+                boolean isSourceProcessor = update.getProcessorIdToProcessorName().containsKey(source);
+                boolean isDestProcessor = update.getProcessorIdToProcessorName().containsKey(dest);
                 if (!isSourceProcessor && !isDestProcessor) {
                     //relate these two together
                     log.info("Found 2 non processors connected {} to {} ", source, dest);
@@ -440,16 +426,16 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
     }
 
 
-    private void addConnectionSourceToDestination(Map<String, NiFiFlowCacheConnectionData> connectionMap) {
+    private void addConnectionSourceToDestination(NifiFlowCacheState.Update update, Map<String, NiFiFlowCacheConnectionData> connectionMap) {
         try {
             //map any connections that are not directly related to a processor to the other hashmaps to help determine the true processor -> processor references
-            buildNonProcessorSourceDestinationRelationships(connectionMap);
+            buildNonProcessorSourceDestinationRelationships(update, connectionMap);
             connectionMap.entrySet().stream().forEach(e -> {
                 String source = e.getValue().getSourceIdentifier();
                 String dest = e.getValue().getDestinationIdentifier();
                 if (StringUtils.isNotBlank(dest)) {
-                    boolean isSourceProcessor = processorIdToProcessorName.containsKey(source);
-                    boolean isDestProcessor = processorIdToProcessorName.containsKey(dest);
+                    boolean isSourceProcessor = update.getProcessorIdToProcessorName().containsKey(source);
+                    boolean isDestProcessor = update.getProcessorIdToProcessorName().containsKey(dest);
                     if (!isSourceProcessor) {
                         //find the source
                         String sourceProcessor = null;
@@ -493,7 +479,7 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
                     }
 
                     if (isSourceProcessor && isDestProcessor && !source.equalsIgnoreCase(dest)) {
-                        connectionSourceToDestination.computeIfAbsent(source, src -> new ArrayList<String>()).add(dest);
+                        update.addConnectionSourceToDestination(source, dest);
                     }
 
 
@@ -519,26 +505,33 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
             .waitUntilComplete(true)
             .buildAndInspect();
 
-        connectionIdCacheNameMap.putAll(completionCallback.getConnectionIdCacheNameMap());
-        connectionIdToConnectionMap.putAll(completionCallback.getConnectionIdToConnectionMap());
-        processorIdToFeedProcessGroupId.putAll(completionCallback.getProcessorIdToFeedProcessGroupId());
-        processorIdToFeedNameMap.putAll(completionCallback.getProcessorIdToFeedNameMap());
-        processorIdToProcessorName.putAll(completionCallback.getProcessorIdToProcessorName());
-        reuseableTemplateProcessorIds.addAll(completionCallback.getReusableTemplateProcessorIds());
-        reusableTemplateProcessGroupId = completionCallback.getReusableTemplateProcessGroupId();
-        feedToInputProcessorIds.putAll(completionCallback.getFeedToInputProcessorIds());
-
-        if (this.cacheFeedInputGraph) {
-            addConnectionSourceToDestination(connectionIdToConnectionMap);
-            feedToInputProcessorIds.entrySet().stream().forEach(e -> {
-                List<String> inputProcessors = e.getValue();
-                addInputProcessorRelations(inputProcessors);
-            });
-        }
+        //publish the whole flow as a single version
+        update(update -> {
+            update.putConnectionNames(completionCallback.getConnectionIdCacheNameMap());
+            update.putConnections(completionCallback.getConnectionIdToConnectionMap());
+            update.putProcessorIdToFeedProcessGroupId(completionCallback.getProcessorIdToFeedProcessGroupId());
+            update.putProcessorIdToFeedName(completionCallback.getProcessorIdToFeedNameMap());
+            update.putProcessorIdToProcessorName(completionCallback.getProcessorIdToProcessorName());
+            update.addReusableTemplateProcessorIds(completionCallback.getReusableTemplateProcessorIds());
+            reusableTemplateProcessGroupId = completionCallback.getReusableTemplateProcessGroupId();
+            update.putFeedToInputProcessorIds(completionCallback.getFeedToInputProcessorIds());
+
+            if (this.cacheFeedInputGraph) {
+                addConnectionSourceToDestination(update, completionCallback.getConnectionIdToConnectionMap());
+                completionCallback.getFeedToInputProcessorIds().entrySet().stream().forEach(e -> {
+                    List<String> inputProcessors = e.getValue();
+                    addInputProcessorRelations(update, inputProcessors);
+                });
+            }
+            if (!flowInspectorManager.hasErrors()) {
+                update.touch();
+            }
+        });
 
         if (!flowInspectorManager.hasErrors()) {
+            NifiFlowCacheState current = state;
             log.info("NiFi Flow Inspection took {} ms with {} threads for {} feeds, {} processors and {} connections ", flowInspectorManager.getTotalTime(), flowInspectorManager.getThreadCount(),
-                     completionCallback.getFeedNames().size(), processorIdToProcessorName.size(), connectionIdCacheNameMap.size());
+                     completionCallback.getFeedNames().size(), current.getProcessorIdToProcessorName().size(), current.getConnectionIdCacheNameMap().size());
             if (completionCallback.getRootConnections() != null) {
                 log.info("Adding {} Root Connections to the niFiObjectCache ", completionCallback.getRootConnections().size());
                 niFiObjectCache.addProcessGroupConnections(completionCallback.getRootConnections());
@@ -546,7 +539,6 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
             if (completionCallback.getReusableTemplateProcessGroupId() != null) {
                 niFiObjectCache.setReusableTemplateProcessGroupId(completionCallback.getReusableTemplateProcessGroupId());
             }
-            lastUpdated = DateTime.now();
             loaded = true;
             reloadCount.incrementAndGet();
             log.info("Successfully built NiFi Flow Cache");
@@ -656,75 +648,91 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
     /**
      * if Kylo is clustered it needs to sync any updates from the other Kylo instances before proceeding
      */
-    public synchronized void applyClusterUpdates() {
-        List<NifiFlowCacheClusterUpdateMessage> updates = nifiFlowCacheClusterManager.findUpdates();
-        Set<String> templateUpdates = new HashSet<>();
-        boolean needsUpdates = !updates.isEmpty();
-        if (needsUpdates) {
-            log.info("Kylo Cluster Update: Detected changes.  About to apply {} updates ", updates.size());
-        }
-        updates.stream().forEach(update -> {
-            switch (update.getType()) {
-                case FEED:
-                    NifiFlowCacheFeedUpdate feedUpdate = nifiFlowCacheClusterManager.getFeedUpdate(update.getMessage());
-                    log.info("Kylo Cluster Update:  Applying Feed Change update for {}", feedUpdate.getFeedName());
-                    updateFlow(feedUpdate);
-                    break;
-                case FEED2:
-                    NifiFlowCacheFeedUpdate2 feedUpdate2 = nifiFlowCacheClusterManager.getFeedUpdate2(update.getMessage());
-                    log.info("Kylo Cluster Update:  Applying Feed Change update for {}", feedUpdate2.getFeedName());
-                    updateFlow(feedUpdate2);
-                    break;
-                case CONNECTION:
-                    Collection<ConnectionDTO> connectionDTOS = nifiFlowCacheClusterManager.getConnectionsUpdate(update.getMessage());
-                    log.info("Kylo Cluster Update:  Applying Connection list update");
-                    updateConnectionMap(connectionDTOS, false);
-                    if (connectionDTOS != null) {
-                        connectionDTOS.stream().forEach(c -> {
-                            niFiObjectCache.addConnection(c.getParentGroupId(), c);
-                        });
-                    }
-                    break;
-                case PROCESSOR:
-                    Collection<ProcessorDTO> processorDTOS = nifiFlowCacheClusterManager.getProcessorsUpdate(update.getMessage());
-                    log.info("Kylo Cluster Update:  Applying Processor list update");
-                    updateProcessorIdNames(processorDTOS, false);
-                    break;
-                case TEMPLATE:
-                    if (!templateUpdates.contains(update.getMessage())) {
-                        RegisteredTemplate template = nifiFlowCacheClusterManager.getTemplate(update.getMessage());
-                        log.info("Kylo Cluster Update:  Applying Template update for {} ", template.getTemplateName());
-                        updateRegisteredTemplate(template, false);
-                        templateUpdates.add(update.getMessage());
-                    }
-                    break;
-                default:
-                    break;
+    public void applyClusterUpdates() {
+        //apply all the updates as a single version
+        update(cacheUpdate -> {
+            List<NifiFlowCacheClusterUpdateMessage> updates = nifiFlowCacheClusterManager.findUpdates();
+            Set<String> templateUpdates = new HashSet<>();
+            boolean needsUpdates = !updates.isEmpty();
+            if (needsUpdates) {
+                log.info("Kylo Cluster Update: Detected changes.  About to apply {} updates ", updates.size());
             }
-        });
+            updates.stream().forEach(update -> {
+                switch (update.getType()) {
+                    case FEED:
+                        NifiFlowCacheFeedUpdate feedUpdate = nifiFlowCacheClusterManager.getFeedUpdate(update.getMessage());
+                        log.info("Kylo Cluster Update:  Applying Feed Change update for {}", feedUpdate.getFeedName());
+                        updateFlow(feedUpdate);
+                        break;
+                    case FEED2:
+                        NifiFlowCacheFeedUpdate2 feedUpdate2 = nifiFlowCacheClusterManager.getFeedUpdate2(update.getMessage());
+                        log.info("Kylo Cluster Update:  Applying Feed Change update for {}", feedUpdate2.getFeedName());
+                        updateFlow(feedUpdate2);
+                        break;
+                    case CONNECTION:
+                        Collection<ConnectionDTO> connectionDTOS = nifiFlowCacheClusterManager.getConnectionsUpdate(update.getMessage());
+                        log.info("Kylo Cluster Update:  Applying Connection list update");
+                        updateConnectionMap(connectionDTOS, false);
+                        if (connectionDTOS != null) {
+                            connectionDTOS.stream().forEach(c -> {
+                                niFiObjectCache.addConnection(c.getParentGroupId(), c);
+                            });
+                        }
+                        break;
+                    case PROCESSOR:
+                        Collection<ProcessorDTO> processorDTOS = nifiFlowCacheClusterManager.getProcessorsUpdate(update.getMessage());
+                        log.info("Kylo Cluster Update:  Applying Processor list update");
+                        updateProcessorIdNames(processorDTOS, false);
+                        break;
+                    case TEMPLATE:
+                        if (!templateUpdates.contains(update.getMessage())) {
+                            RegisteredTemplate template = nifiFlowCacheClusterManager.getTemplate(update.getMessage());
+                            log.info("Kylo Cluster Update:  Applying Template update for {} ", template.getTemplateName());
+                            updateRegisteredTemplate(template, false);
+                            templateUpdates.add(update.getMessage());
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            });
 
-        if (needsUpdates) {
-            nifiFlowCacheClusterManager.appliedUpdates(updates);
-            lastUpdated = DateTime.now();
-            log.info("Kylo Cluster Update: NiFi Flow File Cache is in sync. All {} updates have been applied to the cache. ", updates.size());
-        }
+            if (needsUpdates) {
+                nifiFlowCacheClusterManager.appliedUpdates(updates);
+                cacheUpdate.touch();
+                log.info("Kylo Cluster Update: NiFi Flow File Cache is in sync. All {} updates have been applied to the cache. ", updates.size());
+            }
 
+        });
     }
 
+    /**
+     * @return the current version of the cache.  The snapshot is shared and must not be modified
+     */
     public NifiFlowCacheSnapshot getLatest() {
-        return latest;
+        return state.getSnapshot();
     }
 
-    private void initializeLatestSnapshot() {
-        latest =
-            new NifiFlowCacheSnapshot(processorIdToFeedNameMap, processorIdToFeedProcessGroupId, processorIdToProcessorName, null, null);
-        latest.setConnectionIdToConnection(connectionIdToConnectionMap);
-        latest.setConnectionIdToConnectionName(connectionIdCacheNameMap);
-        latest.setReusableTemplateProcessorIds(reuseableTemplateProcessorIds);
-        latest.setFeedToInputProcessorIds(feedToInputProcessorIds);
-        latest.setConnectionSourceToDestination(connectionSourceToDestination);
-        latest.setInputProcessorRelations(inputProcessorRelations);
-
+    /**
+     * Apply a change to the cache, publishing it as a new version.
+     * Changes made while another change is being applied by the same thread are published with it.
+     */
+    private void update(Consumer<NifiFlowCacheState.Update> change) {
+        synchronized (updateLock) {
+            if (currentUpdate != null) {
+                change.accept(currentUpdate);
+                return;
+            }
+            currentUpdate = state.update();
+            try {
+                change.accept(currentUpdate);
+                if (currentUpdate.isChanged()) {
+                    state = currentUpdate.build();
+                }
+            } finally {
+                currentUpdate = null;
+            }
+        }
     }
 
 
@@ -736,38 +744,40 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
             applyClusterUpdates();
         }
 
-        if (sync.needsUpdate(lastUpdated)) {
-            Map<String, String> processorIdToFeedNameMapCopy = ImmutableMap.copyOf(processorIdToFeedNameMap);
-            Map<String, String> processorIdToFeedProcessGroupIdCopy = ImmutableMap.copyOf(processorIdToFeedProcessGroupId);
-            Map<String, String> processorIdToProcessorNameCopy = ImmutableMap.copyOf(processorIdToProcessorName);
-            Map<String, NiFiFlowCacheConnectionData> connectionDataMapCopy = ImmutableMap.copyOf(connectionIdToConnectionMap);
-            Map<String, List<String>> connectionSourceToDestinationCopy = ImmutableMap.copyOf(connectionSourceToDestination);
-            Map<String, List<NifiFlowCacheBaseProcessorDTO>> inputProcessorRelationsCopy = ImmutableMap.copyOf(inputProcessorRelations);
-
-            //get feeds updated since last sync
-            NifiFlowCacheSnapshot latest = new NifiFlowCacheSnapshot.Builder()
-                .withProcessorIdToFeedNameMap(processorIdToFeedNameMapCopy)
-                .withProcessorIdToFeedProcessGroupId(processorIdToFeedProcessGroupIdCopy)
-                .withProcessorIdToProcessorName(processorIdToProcessorNameCopy)
-                .withConnections(connectionDataMapCopy)
-                .withInputProcessorRelations(inputProcessorRelationsCopy)
-                .withConnectionSourceToDestination(connectionSourceToDestinationCopy)
-                .withSnapshotDate(lastUpdated).build();
-            return syncAndReturnUpdates(sync, latest, preview);
+        NifiFlowCacheState current = state;
+        if (sync.needsUpdate(current.getLastUpdated())) {
+            return syncAndReturnUpdates(sync, current, preview);
         } else {
             return NiFiFlowCacheSync.EMPTY(sync.getSyncId());
         }
     }
 
 
-    private NiFiFlowCacheSync syncAndReturnUpdates(NiFiFlowCacheSync sync, NifiFlowCacheSnapshot latest, boolean preview) {
+    private NiFiFlowCacheSync syncAndReturnUpdates(NiFiFlowCacheSync sync, NifiFlowCacheState current, boolean preview) {
+        NifiFlowCacheSnapshot latest = current.getSnapshot();
         if (latest != null && sync.needsUpdate(latest.getSnapshotDate())) {
 
-            NifiFlowCacheSnapshot updated = new NifiFlowCacheSnapshot.Builder()
-                .withProcessorIdToFeedNameMap(sync.getProcessorIdToFeedNameMapUpdatedSinceLastSync(latest.getProcessorIdToFeedNameMap()))
-                .withProcessorIdToFeedProcessGroupId(sync.getProcessorIdToProcessGroupIdUpdatedSinceLastSync(latest.getProcessorIdToFeedProcessGroupId()))
-                .withProcessorIdToProcessorName(sync.getProcessorIdToProcessorNameUpdatedSinceLastSync(latest.getProcessorIdToProcessorName()))
-                .withConnections(sync.getConnectionIdToConnectionUpdatedSinceLastSync(latest.getConnectionIdToConnectionName(), latest.getConnectionIdToConnection()))
+            NifiFlowCacheSnapshot.Builder builder = new NifiFlowCacheSnapshot.Builder();
+            NifiFlowCacheSnapshot previous = sync.getSnapshot();
+            NifiFlowCacheState.Changes changes = previous != null ? current.changesSince(previous.getVersion()) : null;
+            if (changes != null) {
+                //only look at the ids changed since the version this sync last saw
+                builder.withProcessorIdToFeedNameMap(changedEntries(latest.getProcessorIdToFeedNameMap(), changes.getProcessorIds()))
+                    .withProcessorIdToFeedProcessGroupId(changedEntries(latest.getProcessorIdToFeedProcessGroupId(), changes.getProcessorIds()))
+                    .withProcessorIdToProcessorName(changedEntries(latest.getProcessorIdToProcessorName(), changes.getProcessorIds()))
+                    .withConnections(changedEntries(latest.getConnectionIdToConnection(), changes.getConnectionIds()));
+            } else if (previous != null) {
+                builder.withProcessorIdToFeedNameMap(sync.getProcessorIdToFeedNameMapUpdatedSinceLastSync(latest.getProcessorIdToFeedNameMap()))
+                    .withProcessorIdToFeedProcessGroupId(sync.getProcessorIdToProcessGroupIdUpdatedSinceLastSync(latest.getProcessorIdToFeedProcessGroupId()))
+                    .withProcessorIdToProcessorName(sync.getProcessorIdToProcessorNameUpdatedSinceLastSync(latest.getProcessorIdToProcessorName()))
+                    .withConnections(sync.getConnectionIdToConnectionUpdatedSinceLastSync(latest.getConnectionIdToConnectionName(), latest.getConnectionIdToConnection()));
+            } else {
+                builder.withProcessorIdToFeedNameMap(latest.getProcessorIdToFeedNameMap())
+                    .withProcessorIdToFeedProcessGroupId(latest.getProcessorIdToFeedProcessGroupId())
+                    .withProcessorIdToProcessorName(latest.getProcessorIdToProcessorName())
+                    .withConnections(latest.getConnectionIdToConnection());
+            }
+            NifiFlowCacheSnapshot updated = builder
                 .withReusableTemplateProcessorIds(latest.getReusableTemplateProcessorIds())
                 .withConnectionSourceToDestination(latest.getConnectionSourceToDestination())
                 .withInputProcessorRelations(latest.getInputProcessorRelations())
@@ -790,19 +800,23 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
         return NiFiFlowCacheSync.EMPTY(sync.getSyncId());
     }
 
+    private <V> Map<String, V> changedEntries(Map<String, V> map, Set<String> ids) {
+        Map<String, V> changed = new HashMap<>();
+        ids.stream().forEach(id -> {
+            V value = map.get(id);
+            if (value != null) {
+                changed.put(id, value);
+            }
+        });
+        return changed;
+    }
+
 
     /**
      * clears the current cache
      ***/
     private void clearAll() {
-        processorIdToFeedProcessGroupId.clear();
-        processorIdToFeedProcessGroupId.clear();
-        processorIdToProcessorName.clear();
-        connectionIdToConnectionMap.clear();
-        connectionIdCacheNameMap.clear();
-        reuseableTemplateProcessorIds.clear();
-        inputProcessorRelations.clear();
-        connectionSourceToDestination.clear();
+        update(NifiFlowCacheState.Update::clear);
     }
 
 
@@ -810,14 +824,14 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
      * Called after someone updates/Registers a template in the UI using the template stepper
      * This is used to update the feed marker for streaming/batch feeds
      */
-    public synchronized void updateRegisteredTemplate(RegisteredTemplate template, boolean notifyClusterMembers) {
+    public void updateRegisteredTemplate(RegisteredTemplate template, boolean notifyClusterMembers) {
 
         if (notifyClusterMembers) {
             //mark the persistent table that this was updated
             if (nifiFlowCacheClusterManager.isClustered()) {
                 nifiFlowCacheClusterManager.updateTemplate(template.getTemplateName());
             }
-            lastUpdated = DateTime.now();
+            update(NifiFlowCacheState.Update::touch);
         }
 
     }
@@ -830,11 +844,14 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
      */
     public void updateCacheForReusableTemplate(String templateName, ProcessGroupDTO processGroupDTO) {
         Collection<ProcessorDTO> processors = NifiProcessUtil.getProcessors(processGroupDTO);
-        updateProcessorIdNames(templateName, processors);
         Set<ConnectionDTO> connections = NifiConnectionUtil.getAllConnections(processGroupDTO);
-        updateConnectionMap(templateName, connections);
-        processGroupDTO.getContents().getProcessors().stream().forEach(processorDTO -> reuseableTemplateProcessorIds.add(processorDTO.getId()));
-        lastUpdated = DateTime.now();
+        Set<String> reusableTemplateProcessorIds = processGroupDTO.getContents().getProcessors().stream().map(ProcessorDTO::getId).collect(Collectors.toSet());
+        update(update -> {
+            updateProcessorIdNames(templateName, processors);
+            updateConnectionMap(templateName, connections);
+            update.addReusableTemplateProcessorIds(reusableTemplateProcessorIds);
+            update.touch();
+        });
     }
 
 
@@ -855,13 +872,17 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
             processorIdToProcessorName.put(flowProcessor.getId(), flowProcessor.getName());
         });
 
-        this.processorIdToProcessorName.putAll(processorIdToProcessorName);
+        update(update -> {
+            update.putProcessorIdToProcessorName(processorIdToProcessorName);
+            if (notifyClusterMembers) {
+                update.touch();
+            }
+        });
 
         if (notifyClusterMembers) {
             if (nifiFlowCacheClusterManager.isClustered()) {
                 nifiFlowCacheClusterManager.updateProcessors(processors);
             }
-            lastUpdated = DateTime.now();
         }
     }
 
@@ -887,18 +908,22 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
             });
         }
         Map<String, NiFiFlowCacheConnectionData> connectionDataMap = toConnectionIdMap(connectionIdToConnectionMap.values());
-        this.connectionIdToConnectionMap.putAll(connectionDataMap);
+        Map<String, String> connectionIdToNameMap = connections != null ? connections.stream().collect(Collectors.toMap(conn -> conn.getId(), conn -> conn.getName())) : null;
 
-        if (connections != null) {
-            Map<String, String> connectionIdToNameMap = connections.stream().collect(Collectors.toMap(conn -> conn.getId(), conn -> conn.getName()));
-            connectionIdCacheNameMap.putAll(connectionIdToNameMap);
-        }
+        update(update -> {
+            update.putConnections(connectionDataMap);
+            if (connectionIdToNameMap != null) {
+                update.putConnectionNames(connectionIdToNameMap);
+            }
+            if (notifyClusterMembers) {
+                update.touch();
+            }
+        });
 
         if (notifyClusterMembers) {
             if (nifiFlowCacheClusterManager.isClustered()) {
                 nifiFlowCacheClusterManager.updateConnections(connections);
             }
-            lastUpdated = DateTime.now();
         }
         return connectionDataMap;
     }
@@ -955,27 +980,34 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
         Map<String, String> processorIdToProcessorName = processors.stream().collect(Collectors.toMap(p -> p.getId(), p -> p.getName()));
         Map<String, String> processorIdToFeedProcessGroupId = processors.stream().collect(Collectors.toMap(p -> p.getId(), p -> feedProcessGroupId));
         Map<String, String> processorIdToFeedName = processors.stream().collect(Collectors.toMap(p -> p.getId(), p -> feedName));
-        this.processorIdToFeedProcessGroupId.putAll(processorIdToFeedProcessGroupId);
-        this.processorIdToProcessorName.putAll(processorIdToProcessorName);
-        processorIdToFeedNameMap.putAll(processorIdToFeedName);
+        List<String> inputProcessorIds = NifiConnectionUtil.getInputProcessorIds(connections);
+        boolean notify = loaded && notifyClusterMembers;
 
-        Map<String, NiFiFlowCacheConnectionData> connectionDataMap = updateConnectionMap(connections, false);
+        //publish the feeds processors and connections as a single version
+        update(update -> {
+            update.putProcessorIdToFeedProcessGroupId(processorIdToFeedProcessGroupId);
+            update.putProcessorIdToProcessorName(processorIdToProcessorName);
+            update.putProcessorIdToFeedName(processorIdToFeedName);
 
-        List<String> inputProcessorIds = NifiConnectionUtil.getInputProcessorIds(connections);
-        feedToInputProcessorIds.put(feedName, inputProcessorIds);
+            Map<String, NiFiFlowCacheConnectionData> connectionDataMap = updateConnectionMap(connections, false);
 
-        //update the maps
-        if (this.cacheFeedInputGraph) {
-            addInputProcessorRelations(inputProcessorIds);
-            addConnectionSourceToDestination(connectionDataMap);
-        }
+            update.putFeedToInputProcessorIds(Collections.singletonMap(feedName, inputProcessorIds));
+
+            //update the maps
+            if (this.cacheFeedInputGraph) {
+                addInputProcessorRelations(update, inputProcessorIds);
+                addConnectionSourceToDestination(update, connectionDataMap);
+            }
+            if (notify) {
+                update.touch();
+            }
+        });
 
         //notify others of the cache update only if we are not doing a full refresh
-        if (loaded && notifyClusterMembers) {
+        if (notify) {
             if (nifiFlowCacheClusterManager.isClustered()) {
                 nifiFlowCacheClusterManager.updateFeed2(feedName, isStream, feedProcessGroupId, processors, connections);
             }
-            lastUpdated = DateTime.now();
         }
 
 
@@ -987,62 +1019,70 @@ public class NifiFlowCacheImpl implements ServicesApplicationStartupListener, Ni
     @Deprecated
     private void updateFlow(String feedName, boolean isStream, String feedProcessGroupId, Collection<NifiFlowProcessor> processors, Collection<NifiFlowConnection> connections,
                             boolean notifyClusterMembers) {
+        boolean notify = loaded && notifyClusterMembers;
 
-        feedProcessorIdProcessorMap.put(feedName, toProcessorIdProcessorMap(processors));
+        update(update -> {
+            feedProcessorIdProcessorMap.put(feedName, toProcessorIdProcessorMap(processors));
 
-        updateProcessorIdMaps(feedProcessGroupId, processors);
+            updateProcessorIdMaps(update, feedProcessGroupId, processors);
 
-        Map<String, NiFiFlowCacheConnectionData> connectionDataMap = toConnectionIdMap(connections);
-        connectionIdToConnectionMap.putAll(connectionDataMap);
-        List<String> inputProcessorIds = null;
+            Map<String, NiFiFlowCacheConnectionData> connectionDataMap = toConnectionIdMap(connections);
+            update.putConnections(connectionDataMap);
 
-        if (connections != null) {
-            Map<String, String> connectionIdToNameMap = connections.stream().collect(Collectors.toMap(conn -> conn.getConnectionIdentifier(), conn -> conn.getName()));
-            connectionIdCacheNameMap.putAll(connectionIdToNameMap);
+            if (connections != null) {
+                Map<String, String> connectionIdToNameMap = connections.stream().collect(Collectors.toMap(conn -> conn.getConnectionIdentifier(), conn -> conn.getName()));
+                update.putConnectionNames(connectionIdToNameMap);
 
-            Set<ConnectionDTO> connectionDTOS = connections.stream().map(conn -> NiFiFlowConnectionConverter.toConnection(conn)).collect(Collectors.toSet());
-            inputProcessorIds = NifiConnectionUtil.getInputProcessorIds(connectionDTOS);
-            feedToInputProcessorIds.put(feedName, inputProcessorIds);
-            //update the maps
-            if (this.cacheFeedInputGraph) {
-                addInputProcessorRelations(inputProcessorIds);
-                addConnectionSourceToDestination(connectionDataMap);
-            }
+                Set<ConnectionDTO> connectionDTOS = connections.stream().map(conn -> NiFiFlowConnectionConverter.toConnection(conn)).collect(Collectors.toSet());
+                List<String> inputProcessorIds = NifiConnectionUtil.getInputProcessorIds(connectionDTOS);
+                update.putFeedToInputProcessorIds(Collections.singletonMap(feedName, inputProcessorIds));
+                //update the maps
+                if (this.cacheFeedInputGraph) {
+                    addInputProcessorRelations(update, inputProcessorIds);
+                    addConnectionSourceToDestination(update, connectionDataMap);
+                }
 
 
-        }
+            }
 
-        processorIdMap.putAll(toProcessorIdMap(processors));
-        processorIdToFeedNameMap.putAll(toProcessorIdFeedNameMap(processors, feedName));
+            processorIdMap.putAll(toProcessorIdMap(processors));
+            update.putProcessorIdToFeedName(toProcessorIdFeedNameMap(processors, feedName));
+            if (notify) {
+                update.touch();
+            }
+        });
 
         //notify others of the cache update only if we are not doing a full refresh
-        if (loaded && notifyClusterMembers) {
+        if (notify) {
             if (nifiFlowCacheClusterManager.isClustered()) {
                 nifiFlowCacheClusterManager.updateFeed(feedName, isStream, feedProcessGroupId, processors, connections);
             }
-            lastUpdated = DateTime.now();
         }
 
 
     }
 
-    private void updateProcessorIdMaps(String processGroupId, Collection<NifiFlowProcessor> processors) {
+    private void updateProcessorIdMaps(NifiFlowCacheState.Update update, String processGroupId, Collection<NifiFlowProcessor> processors) {
         Map<String, String> processorIdToProcessGroupId = new HashMap<>();
         Map<String, String> processorIdToProcessorName = new HashMap<>();
+        Set<String> reusableTemplateProcessorIds = new HashSet<>();
         processors.stream().forEach(flowProcessor -> {
             processorIdToProcessGroupId.put(flowProcessor.getId(), processGroupId);
             processorIdToProcessorName.put(flowProcessor.getId(), flowProcessor.getName());
 
             if (flowProcessor.getProcessGroup() != null && flowProcessor.getProcessGroup().getParentGroupName() != null && TemplateCreationHelper.REUSABLE_TEMPLATES_PROCESS_GROUP_NAME
                 .equalsIgnoreCase(flowProcessor.getProcessGroup().getParentGroupName())) {
-                reuseableTemplateProcessorIds.add(flowProcessor.getId());
+                reusableTemplateProcessorIds.add(flowProcessor.getId());
                 if (reusableTemplateProcessGroupId == null) {
                     reusableTemplateProcessGroupId = flowProcessor.getProcessGroup().getId();
                 }
             }
         });
-        this.processorIdToFeedProcessGroupId.putAll(processorIdToProcessGroupId);
-        this.processorIdToProcessorName.putAll(processorIdToProcessorName);
+        update.putProcessorIdToFeedProcessGroupId(processorIdToProcessGroupId);
+        update.putProcessorIdToProcessorName(processorIdToProcessorName);
+        if (!reusableTemplateProcessorIds.isEmpty()) {
+            update.addReusableTemplateProcessorIds(reusableTemplateProcessorIds);
+        }
 
     }
 
@@ -0,0 +1,420 @@
+package com.thinkbiganalytics.feedmgr.nifi.cache;
+
+/*-
+ * #%L
+ * thinkbig-feed-manager-controller
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.thinkbiganalytics.metadata.rest.model.nifi.NiFiFlowCacheConnectionData;
+import com.thinkbiganalytics.metadata.rest.model.nifi.NifiFlowCacheBaseProcessorDTO;
+import com.thinkbiganalytics.metadata.rest.model.nifi.NifiFlowCacheSnapshot;
+
+import org.joda.time.DateTime;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable version of the {@link NifiFlowCacheImpl} maps.
+ * Each change to the cache publishes a new version that only copies the maps it changed, and records the processor and connection ids that changed
+ * so a sync can be sent just the entries changed since the version it last saw.
+ */
+public class NifiFlowCacheState {
+
+    /**
+     * Number of versions to keep the changed ids for
+     */
+    static final int MAX_HISTORY = 100;
+
+    /**
+     * When a version changes more ids than this its changes are not tracked and syncs older than it compare the full maps instead
+     */
+    static final int MAX_TRACKED_CHANGES = 10000;
+
+    public static final NifiFlowCacheState EMPTY = new NifiFlowCacheState();
+
+    private final long version;
+
+    private final DateTime lastUpdated;
+
+    private final ImmutableMap<String, String> processorIdToFeedProcessGroupId;
+
+    private final ImmutableMap<String, String> processorIdToFeedNameMap;
+
+    private final ImmutableMap<String, String> processorIdToProcessorName;
+
+    private final ImmutableMap<String, NiFiFlowCacheConnectionData> connectionIdToConnectionMap;
+
+    private final ImmutableMap<String, String> connectionIdCacheNameMap;
+
+    private final ImmutableMap<String, List<String>> feedToInputProcessorIds;
+
+    private final ImmutableMap<String, List<NifiFlowCacheBaseProcessorDTO>> inputProcessorRelations;
+
+    private final ImmutableMap<String, List<String>> connectionSourceToDestination;
+
+    private final ImmutableSet<String> reusableTemplateProcessorIds;
+
+    /**
+     * The changes made by the most recent versions, oldest first
+     */
+    private final ImmutableList<Changes> history;
+
+    private final NifiFlowCacheSnapshot snapshot;
+
+    private NifiFlowCacheState() {
+        this.version = 0L;
+        this.lastUpdated = null;
+        this.processorIdToFeedProcessGroupId = ImmutableMap.of();
+        this.processorIdToFeedNameMap = ImmutableMap.of();
+        this.processorIdToProcessorName = ImmutableMap.of();
+        this.connectionIdToConnectionMap = ImmutableMap.of();
+        this.connectionIdCacheNameMap = ImmutableMap.of();
+        this.feedToInputProcessorIds = ImmutableMap.of();
+        this.inputProcessorRelations = ImmutableMap.of();
+        this.connectionSourceToDestination = ImmutableMap.of();
+        this.reusableTemplateProcessorIds = ImmutableSet.of();
+        this.history = ImmutableList.of();
+        this.snapshot = toSnapshot();
+    }
+
+    private NifiFlowCacheState(Update update) {
+        NifiFlowCacheState base = update.base;
+        this.version = base.version + 1;
+        this.lastUpdated = update.lastUpdated;
+        this.processorIdToFeedProcessGroupId = update.processorIdToFeedProcessGroupId != null ? ImmutableMap.copyOf(update.processorIdToFeedProcessGroupId) : base.processorIdToFeedProcessGroupId;
+        this.processorIdToFeedNameMap = update.processorIdToFeedNameMap != null ? ImmutableMap.copyOf(update.processorIdToFeedNameMap) : base.processorIdToFeedNameMap;
+        this.processorIdToProcessorName = update.processorIdToProcessorName != null ? ImmutableMap.copyOf(update.processorIdToProcessorName) : base.processorIdToProcessorName;
+        this.connectionIdToConnectionMap = update.connectionIdToConnectionMap != null ? ImmutableMap.copyOf(update.connectionIdToConnectionMap) : base.connectionIdToConnectionMap;
+        this.connectionIdCacheNameMap = update.connectionIdCacheNameMap != null ? ImmutableMap.copyOf(update.connectionIdCacheNameMap) : base.connectionIdCacheNameMap;
+        this.feedToInputProcessorIds = update.feedToInputProcessorIds != null ? ImmutableMap.copyOf(update.feedToInputProcessorIds) : base.feedToInputProcessorIds;
+        this.inputProcessorRelations = update.inputProcessorRelations != null ? ImmutableMap.copyOf(update.inputProcessorRelations) : base.inputProcessorRelations;
+        this.connectionSourceToDestination = update.connectionSourceToDestination != null ? ImmutableMap.copyOf(update.connectionSourceToDestination) : base.connectionSourceToDestination;
+        this.reusableTemplateProcessorIds = update.reusableTemplateProcessorIds != null ? ImmutableSet.copyOf(update.reusableTemplateProcessorIds) : base.reusableTemplateProcessorIds;
+
+        Changes changes = update.allChanged || update.changedProcessorIds.size() + update.changedConnectionIds.size() > MAX_TRACKED_CHANGES
+                          ? new Changes(version, null, null)
+                          : new Changes(version, ImmutableSet.copyOf(update.changedProcessorIds), ImmutableSet.copyOf(update.changedConnectionIds));
+        int skip = Math.max(0, base.history.size() + 1 - MAX_HISTORY);
+        this.history = ImmutableList.<Changes>builder().addAll(base.history.subList(skip, base.history.size())).add(changes).build();
+        this.snapshot = toSnapshot();
+    }
+
+    private NifiFlowCacheSnapshot toSnapshot() {
+        NifiFlowCacheSnapshot snapshot = new NifiFlowCacheSnapshot(processorIdToFeedNameMap, processorIdToFeedProcessGroupId, processorIdToProcessorName, null, null);
+        snapshot.setConnectionIdToConnection(connectionIdToConnectionMap);
+        snapshot.setConnectionIdToConnectionName(connectionIdCacheNameMap);
+        snapshot.setReusableTemplateProcessorIds(reusableTemplateProcessorIds);
+        snapshot.setFeedToInputProcessorIds(feedToInputProcessorIds);
+        snapshot.setConnectionSourceToDestination(connectionSourceToDestination);
+        snapshot.setInputProcessorRelations(inputProcessorRelations);
+        snapshot.setSnapshotDate(lastUpdated);
+        snapshot.setVersion(version);
+        return snapshot;
+    }
+
+    /**
+     * @return a new update based on this version
+     */
+    public Update update() {
+        return new Update(this);
+    }
+
+    /**
+     * Find the ids changed after the given version up to and including this version
+     *
+     * @param sinceVersion the version the caller has
+     * @return the changes, or null if the changes since that version are no longer known
+     */
+    public Changes changesSince(long sinceVersion) {
+        if (sinceVersion <= 0 || sinceVersion > version) {
+            return null;
+        }
+        Set<String> processorIds = new HashSet<>();
+        Set<String> connectionIds = new HashSet<>();
+        long nextVersion = sinceVersion + 1;
+        for (Changes changes : history) {
+            if (changes.getVersion() < nextVersion) {
+                continue;
+            }
+            if (changes.getVersion() > nextVersion || !changes.isTracked()) {
+                return null;
+            }
+            processorIds.addAll(changes.getProcessorIds());
+            connectionIds.addAll(changes.getConnectionIds());
+            nextVersion++;
+        }
+        return nextVersion == version + 1 ? new Changes(version, processorIds, connectionIds) : null;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public DateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public Map<String, String> getProcessorIdToFeedProcessGroupId() {
+        return processorIdToFeedProcessGroupId;
+    }
+
+    public Map<String, String> getProcessorIdToFeedNameMap() {
+        return processorIdToFeedNameMap;
+    }
+
+    public Map<String, String> getProcessorIdToProcessorName() {
+        return processorIdToProcessorName;
+    }
+
+    public Map<String, NiFiFlowCacheConnectionData> getConnectionIdToConnectionMap() {
+        return connectionIdToConnectionMap;
+    }
+
+    public Map<String, String> getConnectionIdCacheNameMap() {
+        return connectionIdCacheNameMap;
+    }
+
+    public Map<String, List<String>> getFeedToInputProcessorIds() {
+        return feedToInputProcessorIds;
+    }
+
+    public Set<String> getReusableTemplateProcessorIds() {
+        return reusableTemplateProcessorIds;
+    }
+
+    /**
+     * @return the snapshot of this version.  It is shared by all readers and must not be modified
+     */
+    public NifiFlowCacheSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * The processor and connection ids changed by a version
+     */
+    public static class Changes {
+
+        private final long version;
+
+        private final Set<String> processorIds;
+
+        private final Set<String> connectionIds;
+
+        Changes(long version, Set<String> processorIds, Set<String> connectionIds) {
+            this.version = version;
+            this.processorIds = processorIds;
+            this.connectionIds = connectionIds;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return false if the version changed too many ids to track them
+         */
+        public boolean isTracked() {
+            return processorIds != null && connectionIds != null;
+        }
+
+        public Set<String> getProcessorIds() {
+            return processorIds;
+        }
+
+        public Set<String> getConnectionIds() {
+            return connectionIds;
+        }
+    }
+
+    /**
+     * Collects the changes for the next version.  Each map is copied the first time it is changed.
+     * An update is not thread safe and should only be used by the thread publishing the next version.
+     */
+    public static class Update {
+
+        private final NifiFlowCacheState base;
+
+        private DateTime lastUpdated;
+
+        private Map<String, String> processorIdToFeedProcessGroupId;
+
+        private Map<String, String> processorIdToFeedNameMap;
+
+        private Map<String, String> processorIdToProcessorName;
+
+        private Map<String, NiFiFlowCacheConnectionData> connectionIdToConnectionMap;
+
+        private Map<String, String> connectionIdCacheNameMap;
+
+        private Map<String, List<String>> feedToInputProcessorIds;
+
+        private Map<String, List<NifiFlowCacheBaseProcessorDTO>> inputProcessorRelations;
+
+        private Map<String, List<String>> connectionSourceToDestination;
+
+        private Set<String> reusableTemplateProcessorIds;
+
+        private final Set<String> changedProcessorIds = new HashSet<>();
+
+        private final Set<String> changedConnectionIds = new HashSet<>();
+
+        private boolean allChanged;
+
+        private boolean changed;
+
+        private Update(NifiFlowCacheState base) {
+            this.base = base;
+            this.lastUpdated = base.lastUpdated;
+        }
+
+        /**
+         * Mark the cache as updated so syncs pick up the changes
+         */
+        public void touch() {
+            changed = true;
+            this.lastUpdated = DateTime.now();
+        }
+
+        /**
+         * Remove everything from the cache
+         */
+        public void clear() {
+            changed = true;
+            processorIdToFeedProcessGroupId = new HashMap<>();
+            processorIdToFeedNameMap = new HashMap<>();
+            processorIdToProcessorName = new HashMap<>();
+            connectionIdToConnectionMap = new HashMap<>();
+            connectionIdCacheNameMap = new HashMap<>();
+            feedToInputProcessorIds = new HashMap<>();
+            inputProcessorRelations = new HashMap<>();
+            connectionSourceToDestination = new HashMap<>();
+            reusableTemplateProcessorIds = new HashSet<>();
+            allChanged = true;
+        }
+
+        public void putProcessorIdToFeedProcessGroupId(Map<String, String> values) {
+            changed = true;
+            if (processorIdToFeedProcessGroupId == null) {
+                processorIdToFeedProcessGroupId = new HashMap<>(base.processorIdToFeedProcessGroupId);
+            }
+            processorIdToFeedProcessGroupId.putAll(values);
+            changedProcessorIds.addAll(values.keySet());
+        }
+
+        public void putProcessorIdToFeedName(Map<String, String> values) {
+            changed = true;
+            if (processorIdToFeedNameMap == null) {
+                processorIdToFeedNameMap = new HashMap<>(base.processorIdToFeedNameMap);
+            }
+            processorIdToFeedNameMap.putAll(values);
+            changedProcessorIds.addAll(values.keySet());
+        }
+
+        public void putProcessorIdToProcessorName(Map<String, String> values) {
+            changed = true;
+            if (processorIdToProcessorName == null) {
+                processorIdToProcessorName = new HashMap<>(base.processorIdToProcessorName);
+            }
+            processorIdToProcessorName.putAll(values);
+            changedProcessorIds.addAll(values.keySet());
+        }
+
+        public void putConnections(Map<String, NiFiFlowCacheConnectionData> values) {
+            changed = true;
+            if (connectionIdToConnectionMap == null) {
+                connectionIdToConnectionMap = new HashMap<>(base.connectionIdToConnectionMap);
+            }
+            connectionIdToConnectionMap.putAll(values);
+            changedConnectionIds.addAll(values.keySet());
+        }
+
+        public void putConnectionNames(Map<String, String> values) {
+            changed = true;
+            if (connectionIdCacheNameMap == null) {
+                connectionIdCacheNameMap = new HashMap<>(base.connectionIdCacheNameMap);
+            }
+            connectionIdCacheNameMap.putAll(values);
+            changedConnectionIds.addAll(values.keySet());
+        }
+
+        public void putFeedToInputProcessorIds(Map<String, List<String>> values) {
+            changed = true;
+            if (feedToInputProcessorIds == null) {
+                feedToInputProcessorIds = new HashMap<>(base.feedToInputProcessorIds);
+            }
+            feedToInputProcessorIds.putAll(values);
+        }
+
+        public void putInputProcessorRelations(String processorId, List<NifiFlowCacheBaseProcessorDTO> destinations) {
+            changed = true;
+            if (inputProcessorRelations == null) {
+                inputProcessorRelations = new HashMap<>(base.inputProcessorRelations);
+            }
+            inputProcessorRelations.put(processorId, destinations);
+        }
+
+        /**
+         * Add a destination to the source.  The list is copied rather than changed as it may be shared with an earlier version
+         */
+        public void addConnectionSourceToDestination(String source, String dest) {
+            changed = true;
+            if (connectionSourceToDestination == null) {
+                connectionSourceToDestination = new HashMap<>(base.connectionSourceToDestination);
+            }
+            connectionSourceToDestination.compute(source, (key, destinations) -> ImmutableList.<String>builder()
+                .addAll(destinations != null ? destinations : ImmutableList.of()).add(dest).build());
+        }
+
+        public void addReusableTemplateProcessorIds(Set<String> processorIds) {
+            changed = true;
+            if (reusableTemplateProcessorIds == null) {
+                reusableTemplateProcessorIds = new HashSet<>(base.reusableTemplateProcessorIds);
+            }
+            reusableTemplateProcessorIds.addAll(processorIds);
+        }
+
+        /**
+         * @return true if anything was changed
+         */
+        public boolean isChanged() {
+            return changed;
+        }
+
+        public Map<String, String> getProcessorIdToProcessorName() {
+            return processorIdToProcessorName != null ? processorIdToProcessorName : base.processorIdToProcessorName;
+        }
+
+        public Map<String, List<String>> getConnectionSourceToDestination() {
+            return connectionSourceToDestination != null ? connectionSourceToDestination : base.connectionSourceToDestination;
+        }
+
+        /**
+         * @return the next version
+         */
+        public NifiFlowCacheState build() {
+            return new NifiFlowCacheState(this);
+        }
+    }
+}
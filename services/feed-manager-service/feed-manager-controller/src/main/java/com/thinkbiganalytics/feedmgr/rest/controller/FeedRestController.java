@@ -40,6 +40,7 @@ import com.thinkbiganalytics.feedmgr.service.FeedCleanupFailedException;
 import com.thinkbiganalytics.feedmgr.service.FeedCleanupTimeoutException;
 import com.thinkbiganalytics.feedmgr.service.MetadataService;
 import com.thinkbiganalytics.feedmgr.service.datasource.DatasourceService;
+import com.thinkbiganalytics.feedmgr.service.cache.EntitySummaryCache;
 import com.thinkbiganalytics.feedmgr.service.feed.DeployFeedException;
 import com.thinkbiganalytics.feedmgr.service.feed.DuplicateFeedNameException;
 import com.thinkbiganalytics.feedmgr.service.feed.FeedManagerPreconditionService;
@@ -56,6 +57,7 @@ import com.thinkbiganalytics.metadata.FeedPropertyType;
 import com.thinkbiganalytics.metadata.api.feed.FeedNotFoundException;
 import com.thinkbiganalytics.metadata.api.security.MetadataAccessControl;
 import com.thinkbiganalytics.metadata.api.versioning.VersionNotFoundException;
+import com.thinkbiganalytics.metadata.jpa.feed.security.FeedAclCache;
 import com.thinkbiganalytics.metadata.rest.model.data.DatasourceDefinition;
 import com.thinkbiganalytics.metadata.rest.model.data.DatasourceDefinitions;
 import com.thinkbiganalytics.metadata.rest.model.feed.FeedLineageStyle;
@@ -108,9 +110,11 @@ import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -192,6 +196,12 @@ public class FeedRestController {
     @Inject
     private AccessController accessController;
 
+    @Inject
+    private EntitySummaryCache entitySummaryCache;
+
+    @Inject
+    private FeedAclCache feedAclCache;
+
     @Inject
     PropertyExpressionResolver propertyExpressionResolver;
 
@@ -413,6 +423,21 @@ public class FeedRestController {
         @ApiResponse(code = 200, message = "Returns a list of feed ids mapped to feed display names", response = Pair.class, responseContainer = "List")
     )
     public Response convertFeedIdToDisplayName(@Nonnull final List<String> feedSystemNames) {
+        if (feedAclCache.isUserCacheAvailable()) {
+            // Look up the names without opening a metadata session for each feed
+            accessController.checkPermission(AccessController.SERVICES, FeedServicesAccessControl.ACCESS_FEEDS);
+            Predicate<String> accessibleFeeds = feedAclCache.accessibleFeeds(feedAclCache.userContext());
+            List<Pair> names = feedSystemNames.stream()
+                .map(systemName -> entitySummaryCache.getFeedBySystemName(systemName)
+                    .filter(feed -> feed.getCategoryId() != null && accessibleFeeds.test(feed.getId()))
+                    .flatMap(feed -> entitySummaryCache.getCategoryById(feed.getCategoryId())
+                        .map(category -> new Pair(systemName, category.getTitle() + "." + feed.getTitle()))))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+            return Response.ok(names).build();
+        }
+
         Pair nullPair = new Pair(UUID.randomUUID().toString(), UUID.randomUUID().toString());
         List<Pair> names = feedSystemNames.stream().map(systemName -> {
             int dotIdx = systemName.indexOf(".");
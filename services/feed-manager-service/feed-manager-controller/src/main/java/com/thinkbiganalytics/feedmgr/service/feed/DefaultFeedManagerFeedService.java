@@ -152,6 +152,11 @@ public class DefaultFeedManagerFeedService implements FeedManagerFeedService {
 
     private static final Pageable PAGE_ALL = new PageRequest(0, Integer.MAX_VALUE);
 
+    /**
+     * The number of feeds committed together when updating the datasources of all feeds
+     */
+    private static final int DATASOURCE_UPDATE_BATCH_SIZE = 50;
+
     /**
      * Event listener for precondition events
      */
@@ -1546,21 +1551,27 @@ public class DefaultFeedManagerFeedService implements FeedManagerFeedService {
 
     /**
      * Iterate all of the feeds, clear all sources/destinations and reassign
-     * Note this will be an expensive call
+     * Note this will be an expensive call.  The feeds are committed in batches rather than all in one transaction
      */
     public void updateAllFeedsDatasources() {
-        metadataAccess.commit(() -> {
-            feedProvider.findAll().stream().forEach(domainFeed -> {
+        List<Feed.ID> feedIds = metadataAccess.read(() -> feedProvider.findAll().stream().map(Feed::getId).collect(Collectors.toList()));
+
+        metadataAccess.commitBatch(feedIds, DATASOURCE_UPDATE_BATCH_SIZE, feedId -> {
+            Feed domainFeed = feedProvider.findById(feedId);
+            if (domainFeed != null) {
                 domainFeed.clearSourcesAndDestinations();
-            });
-        });
+            }
+            return feedId;
+        }, (completed, total) -> log.debug("Cleared the datasources of {} of {} feeds", completed, total));
 
-        metadataAccess.commit(() -> {
-            feedProvider.findAll().stream().forEach(domainFeed -> {
+        metadataAccess.commitBatch(feedIds, DATASOURCE_UPDATE_BATCH_SIZE, feedId -> {
+            Feed domainFeed = feedProvider.findById(feedId);
+            if (domainFeed != null) {
                 FeedMetadata feed = feedModelTransform.domainToFeedMetadata(domainFeed);
                 assignFeedDatasources(feed, domainFeed);
-            });
-        });
+            }
+            return feedId;
+        }, (completed, total) -> log.info("Updated the datasources of {} of {} feeds", completed, total));
     }
 
     private boolean isTreatSourceDataSetsAsSample(FeedMetadata feedMetadata, RegisteredTemplate template){
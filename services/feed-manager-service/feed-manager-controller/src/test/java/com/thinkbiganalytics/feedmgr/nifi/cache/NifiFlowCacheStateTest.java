@@ -0,0 +1,94 @@
+package com.thinkbiganalytics.feedmgr.nifi.cache;
+
+/*-
+ * #%L
+ * thinkbig-feed-manager-controller
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.thinkbiganalytics.metadata.rest.model.nifi.NiFiFlowCacheConnectionData;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class NifiFlowCacheStateTest {
+
+    private NifiFlowCacheState addProcessor(NifiFlowCacheState state, String processorId, String feedName) {
+        NifiFlowCacheState.Update update = state.update();
+        update.putProcessorIdToProcessorName(ImmutableMap.of(processorId, "processor " + processorId));
+        update.putProcessorIdToFeedName(ImmutableMap.of(processorId, feedName));
+        update.touch();
+        return update.build();
+    }
+
+    @Test
+    public void testUpdateDoesNotChangePreviousVersion() {
+        NifiFlowCacheState v1 = addProcessor(NifiFlowCacheState.EMPTY, "p1", "category.feed1");
+        NifiFlowCacheState v2 = addProcessor(v1, "p2", "category.feed2");
+
+        Assert.assertEquals(1L, v1.getVersion());
+        Assert.assertEquals(2L, v2.getVersion());
+        Assert.assertEquals(1, v1.getProcessorIdToProcessorName().size());
+        Assert.assertEquals(2, v2.getProcessorIdToProcessorName().size());
+        Assert.assertEquals(1, v1.getSnapshot().getProcessorIdToFeedNameMap().size());
+        Assert.assertEquals(2L, v2.getSnapshot().getVersion());
+        Assert.assertEquals(v2.getLastUpdated(), v2.getSnapshot().getSnapshotDate());
+        //maps that were not changed are shared
+        Assert.assertSame(v1.getConnectionIdToConnectionMap(), v2.getConnectionIdToConnectionMap());
+    }
+
+    @Test
+    public void testChangesSince() {
+        NifiFlowCacheState v1 = addProcessor(NifiFlowCacheState.EMPTY, "p1", "category.feed1");
+        NifiFlowCacheState v2 = addProcessor(v1, "p2", "category.feed2");
+        NifiFlowCacheState.Update update = v2.update();
+        update.putConnections(ImmutableMap.of("c1", new NiFiFlowCacheConnectionData("c1", "success", "p1", "p2")));
+        NifiFlowCacheState v3 = update.build();
+
+        NifiFlowCacheState.Changes changes = v3.changesSince(1L);
+        Assert.assertEquals(ImmutableSet.of("p2"), changes.getProcessorIds());
+        Assert.assertEquals(ImmutableSet.of("c1"), changes.getConnectionIds());
+        Assert.assertTrue(v3.changesSince(3L).getProcessorIds().isEmpty());
+        Assert.assertNull(v3.changesSince(0L));
+        Assert.assertNull(v3.changesSince(4L));
+    }
+
+    @Test
+    public void testChangesSinceExpiredVersion() {
+        NifiFlowCacheState state = NifiFlowCacheState.EMPTY;
+        for (int i = 0; i < NifiFlowCacheState.MAX_HISTORY + 5; i++) {
+            state = addProcessor(state, "p" + i, "category.feed");
+        }
+        Assert.assertNull(state.changesSince(2L));
+        Assert.assertNotNull(state.changesSince(state.getVersion() - NifiFlowCacheState.MAX_HISTORY));
+
+        Map<String, String> names = new HashMap<>();
+        for (int i = 0; i <= NifiFlowCacheState.MAX_TRACKED_CHANGES; i++) {
+            names.put("bulk" + i, "processor");
+        }
+        NifiFlowCacheState.Update update = state.update();
+        update.putProcessorIdToProcessorName(names);
+        NifiFlowCacheState bulk = update.build();
+        Assert.assertNull(bulk.changesSince(state.getVersion()));
+        Assert.assertTrue(bulk.changesSince(bulk.getVersion()).getProcessorIds().isEmpty());
+    }
+}
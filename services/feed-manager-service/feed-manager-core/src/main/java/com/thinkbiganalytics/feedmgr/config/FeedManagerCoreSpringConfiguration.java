@@ -20,6 +20,7 @@ package com.thinkbiganalytics.feedmgr.config;
  * #L%
  */
 
+import com.thinkbiganalytics.feedmgr.service.cache.EntitySummaryCache;
 import com.thinkbiganalytics.feedmgr.service.category.SimpleCategoryCache;
 import com.thinkbiganalytics.feedmgr.service.category.SimpleCategoryModelTransform;
 
@@ -42,5 +43,10 @@ public class FeedManagerCoreSpringConfiguration {
         return new SimpleCategoryCache();
     }
 
+    @Bean
+    public EntitySummaryCache entitySummaryCache() {
+        return new EntitySummaryCache();
+    }
+
 
 }
@@ -0,0 +1,128 @@
+package com.thinkbiganalytics.feedmgr.service.cache;
+/*-
+ * #%L
+ * thinkbig-feed-manager-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable summary of a feed, category or template held by the {@link EntitySummaryCache}.
+ */
+public class EntitySummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final String systemName;
+    private final String qualifiedName;
+    private final String title;
+    private final String state;
+    private final String categoryId;
+    private final String templateId;
+    private final long version;
+
+    public EntitySummary(@Nonnull String id, @Nonnull String systemName, @Nonnull String qualifiedName, @Nullable String title, @Nullable String state, @Nullable String categoryId,
+                         @Nullable String templateId, long version) {
+        this.id = id;
+        this.systemName = systemName;
+        this.qualifiedName = qualifiedName;
+        this.title = title;
+        this.state = state;
+        this.categoryId = categoryId;
+        this.templateId = templateId;
+        this.version = version;
+    }
+
+    @Nonnull
+    public String getId() {
+        return id;
+    }
+
+    @Nonnull
+    public String getSystemName() {
+        return systemName;
+    }
+
+    /**
+     * Gets the name this entity is looked up by. For feeds this is {@code category.feed}, otherwise it is the system name.
+     */
+    @Nonnull
+    public String getQualifiedName() {
+        return qualifiedName;
+    }
+
+    @Nullable
+    public String getTitle() {
+        return title;
+    }
+
+    @Nullable
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * Gets the id of the category of a feed
+     */
+    @Nullable
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    /**
+     * Gets the id of the template of a feed
+     */
+    @Nullable
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    /**
+     * Gets the version of the cache when this summary was loaded
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        EntitySummary that = (EntitySummary) o;
+        return Objects.equals(id, that.id) && version == that.version;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, version);
+    }
+
+    @Override
+    public String toString() {
+        return "EntitySummary{id='" + id + "', qualifiedName='" + qualifiedName + "', version=" + version + "}";
+    }
+}
@@ -0,0 +1,430 @@
+package com.thinkbiganalytics.feedmgr.service.cache;
+/*-
+ * #%L
+ * thinkbig-feed-manager-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.cluster.ClusterMessage;
+import com.thinkbiganalytics.cluster.ClusterService;
+import com.thinkbiganalytics.cluster.ClusterServiceMessageReceiver;
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.category.Category;
+import com.thinkbiganalytics.metadata.api.category.CategoryProvider;
+import com.thinkbiganalytics.metadata.api.event.MetadataChange;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventListener;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventService;
+import com.thinkbiganalytics.metadata.api.event.category.CategoryChange;
+import com.thinkbiganalytics.metadata.api.event.category.CategoryChangeEvent;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedChange;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedChangeEvent;
+import com.thinkbiganalytics.metadata.api.event.template.TemplateChange;
+import com.thinkbiganalytics.metadata.api.event.template.TemplateChangeEvent;
+import com.thinkbiganalytics.metadata.api.feed.Feed;
+import com.thinkbiganalytics.metadata.api.feed.FeedProvider;
+import com.thinkbiganalytics.metadata.api.template.FeedManagerTemplate;
+import com.thinkbiganalytics.metadata.api.template.FeedManagerTemplateProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+/**
+ * A read-through cache of feed, category and template summaries, by id and by system name, so that lookups do not need to open a metadata session.
+ *
+ * <p>Entries are replaced when a change event is received for the entity, either locally or from another node in the cluster.  Each load records the version of the cache
+ * when it started and is discarded if the cache was invalidated while it was loading, so a slow load cannot overwrite a newer change.</p>
+ *
+ * <p>Summaries are loaded as the service user; callers are responsible for any access control checks.</p>
+ */
+public class EntitySummaryCache implements ClusterServiceMessageReceiver {
+
+    private static final Logger log = LoggerFactory.getLogger(EntitySummaryCache.class);
+
+    /**
+     * Number of times to try populating the cache before falling back to reading from the providers
+     */
+    private static final int POPULATE_ATTEMPTS = 3;
+
+    @Inject
+    private MetadataAccess metadataAccess;
+
+    @Inject
+    private FeedProvider feedProvider;
+
+    @Inject
+    private CategoryProvider categoryProvider;
+
+    @Inject
+    private FeedManagerTemplateProvider templateProvider;
+
+    @Inject
+    private MetadataEventService metadataEventService;
+
+    @Inject
+    private ClusterService clusterService;
+
+    private final Summaries feeds = new Summaries();
+
+    private final Summaries categories = new Summaries();
+
+    private final Summaries templates = new Summaries();
+
+    /**
+     * Incremented each time an entry is invalidated
+     */
+    private final AtomicLong version = new AtomicLong(0);
+
+    private final AtomicBoolean populated = new AtomicBoolean(false);
+
+    /**
+     * Held while populating so that only one thread loads every entity
+     */
+    private final Object populateLock = new Object();
+
+    private final FeedChangeListener feedChangeListener = new FeedChangeListener();
+
+    private final CategoryChangeListener categoryChangeListener = new CategoryChangeListener();
+
+    private final TemplateChangeListener templateChangeListener = new TemplateChangeListener();
+
+    /**
+     * Adds listeners for change events.
+     */
+    @PostConstruct
+    public void addEventListeners() {
+        metadataEventService.addListener(feedChangeListener);
+        metadataEventService.addListener(categoryChangeListener);
+        metadataEventService.addListener(templateChangeListener);
+        clusterService.subscribe(this, FeedChange.CLUSTER_EVENT_TYPE, CategoryChange.CLUSTER_EVENT_TYPE, TemplateChange.CLUSTER_EVENT_TYPE);
+    }
+
+    /**
+     * Removes listeners and stops receiving events.
+     */
+    @PreDestroy
+    public void removeEventListeners() {
+        metadataEventService.removeListener(feedChangeListener);
+        metadataEventService.removeListener(categoryChangeListener);
+        metadataEventService.removeListener(templateChangeListener);
+    }
+
+    public Optional<EntitySummary> getFeedById(String id) {
+        populate();
+        EntitySummary summary = feeds.byId.get(id);
+        return summary != null ? Optional.of(summary) : loadFeed(id);
+    }
+
+    /**
+     * Gets the feed with the specified {@code category.feed} system name.
+     */
+    public Optional<EntitySummary> getFeedBySystemName(String categoryAndFeedName) {
+        populate();
+        Optional<EntitySummary> summary = feeds.getByName(categoryAndFeedName);
+        if (summary.isPresent()) {
+            return summary;
+        }
+        return load(feeds, loadVersion -> toSummary(feedProvider.findBySystemName(categoryAndFeedName)).load(loadVersion));
+    }
+
+    public List<EntitySummary> getFeedsByCategoryId(String categoryId) {
+        return findFeeds(feed -> categoryId.equals(feed.getCategoryId()));
+    }
+
+    public List<EntitySummary> getFeedsByTemplateId(String templateId) {
+        return findFeeds(feed -> templateId.equals(feed.getTemplateId()));
+    }
+
+    public Optional<EntitySummary> getCategoryById(String id) {
+        populate();
+        EntitySummary summary = categories.byId.get(id);
+        return summary != null ? Optional.of(summary) : loadCategory(id);
+    }
+
+    public Optional<EntitySummary> getCategoryBySystemName(String systemName) {
+        populate();
+        Optional<EntitySummary> summary = categories.getByName(systemName);
+        if (summary.isPresent()) {
+            return summary;
+        }
+        return load(categories, loadVersion -> toSummary(categoryProvider.findBySystemName(systemName)).load(loadVersion));
+    }
+
+    public Optional<EntitySummary> getTemplateById(String id) {
+        populate();
+        EntitySummary summary = templates.byId.get(id);
+        return summary != null ? Optional.of(summary) : loadTemplate(id);
+    }
+
+    public Optional<EntitySummary> getTemplateByName(String name) {
+        populate();
+        Optional<EntitySummary> summary = templates.getByName(name);
+        if (summary.isPresent()) {
+            return summary;
+        }
+        return load(templates, loadVersion -> toSummary(templateProvider.findByName(name)).load(loadVersion));
+    }
+
+    /**
+     * Removes all entries, causing them to be loaded again on next access.
+     */
+    public synchronized void invalidateAll() {
+        version.incrementAndGet();
+        feeds.clear();
+        categories.clear();
+        templates.clear();
+        populated.set(false);
+    }
+
+    /**
+     * Finds the feeds matching the filter, from the cache if it is complete, otherwise from the feed provider.
+     */
+    private List<EntitySummary> findFeeds(Predicate<EntitySummary> filter) {
+        if (populate()) {
+            return feeds.byId.values().stream().filter(filter).collect(Collectors.toList());
+        }
+        return metadataAccess.read(() -> {
+            long loadVersion = version.get();
+            return feedProvider.findAll().stream().map(feed -> toSummary(feed, loadVersion)).filter(filter).collect(Collectors.toList());
+        }, MetadataAccess.SERVICE);
+    }
+
+    /**
+     * Loads every feed, category and template in a single metadata session.  The results are discarded if an entry was invalidated while they were loading, in which
+     * case the load is retried up to {@link #POPULATE_ATTEMPTS} times.
+     *
+     * @return {@code true} if the cache is complete, or {@code false} if it could not be populated
+     */
+    private boolean populate() {
+        if (populated.get()) {
+            return true;
+        }
+        synchronized (populateLock) {
+            for (int attempt = 1; attempt <= POPULATE_ATTEMPTS && !populated.get(); ++attempt) {
+                long start = System.currentTimeMillis();
+                long loadVersion = version.get();
+                List<EntitySummary> loadedCategories = new ArrayList<>();
+                List<EntitySummary> loadedFeeds = new ArrayList<>();
+                List<EntitySummary> loadedTemplates = new ArrayList<>();
+                metadataAccess.read(() -> {
+                    categoryProvider.findAll().forEach(category -> loadedCategories.add(toSummary(category, loadVersion)));
+                    feedProvider.findAll().forEach(feed -> loadedFeeds.add(toSummary(feed, loadVersion)));
+                    templateProvider.findAll().forEach(template -> loadedTemplates.add(toSummary(template, loadVersion)));
+                }, MetadataAccess.SERVICE);
+
+                synchronized (this) {
+                    if (version.get() == loadVersion) {
+                        loadedCategories.forEach(categories::put);
+                        loadedFeeds.forEach(feeds::put);
+                        loadedTemplates.forEach(templates::put);
+                        populated.set(true);
+                        log.info("Populated entity summary cache with {} categories, {} feeds and {} templates in {} ms", loadedCategories.size(), loadedFeeds.size(),
+                                 loadedTemplates.size(), System.currentTimeMillis() - start);
+                    } else {
+                        log.debug("Entity summary cache was invalidated while populating it, attempt {} of {}", attempt, POPULATE_ATTEMPTS);
+                    }
+                }
+            }
+            return populated.get();
+        }
+    }
+
+    private Optional<EntitySummary> loadFeed(String id) {
+        return load(feeds, loadVersion -> toSummary(feedProvider.findById(feedProvider.resolveId(id))).load(loadVersion));
+    }
+
+    private Optional<EntitySummary> loadCategory(String id) {
+        return load(categories, loadVersion -> toSummary(categoryProvider.findById(categoryProvider.resolveId(id))).load(loadVersion));
+    }
+
+    private Optional<EntitySummary> loadTemplate(String id) {
+        return load(templates, loadVersion -> toSummary(templateProvider.findById(templateProvider.resolveId(id))).load(loadVersion));
+    }
+
+    /**
+     * Loads a summary and caches it, unless an entry was invalidated while it was loading.
+     */
+    private Optional<EntitySummary> load(Summaries summaries, SummaryLoader loader) {
+        long loadVersion = version.get();
+        EntitySummary summary = metadataAccess.read(() -> loader.load(loadVersion), MetadataAccess.SERVICE);
+        if (summary != null) {
+            synchronized (this) {
+                if (version.get() == loadVersion) {
+                    summaries.put(summary);
+                }
+            }
+        }
+        return Optional.ofNullable(summary);
+    }
+
+    private synchronized void invalidate(Summaries summaries, String id) {
+        version.incrementAndGet();
+        summaries.remove(id);
+    }
+
+    private SummaryLoader toSummary(Feed feed) {
+        return loadVersion -> feed != null ? toSummary(feed, loadVersion) : null;
+    }
+
+    private SummaryLoader toSummary(Category category) {
+        return loadVersion -> category != null ? toSummary(category, loadVersion) : null;
+    }
+
+    private SummaryLoader toSummary(FeedManagerTemplate template) {
+        return loadVersion -> template != null ? toSummary(template, loadVersion) : null;
+    }
+
+    private static EntitySummary toSummary(@Nonnull Feed feed, long loadVersion) {
+        String categoryId = feed.getCategory() != null ? feed.getCategory().getId().toString() : null;
+        String templateId = feed.getTemplate() != null ? feed.getTemplate().getId().toString() : null;
+        String state = feed.getState() != null ? feed.getState().name() : null;
+        return new EntitySummary(feed.getId().toString(), feed.getName(), feed.getQualifiedName(), feed.getDisplayName(), state, categoryId, templateId, loadVersion);
+    }
+
+    private static EntitySummary toSummary(@Nonnull Category category, long loadVersion) {
+        return new EntitySummary(category.getId().toString(), category.getSystemName(), category.getSystemName(), category.getDisplayName(), null, null, null, loadVersion);
+    }
+
+    private static EntitySummary toSummary(@Nonnull FeedManagerTemplate template, long loadVersion) {
+        String state = template.getState() != null ? template.getState().name() : null;
+        return new EntitySummary(template.getId().toString(), template.getName(), template.getName(), template.getName(), state, null, null, loadVersion);
+    }
+
+    private void onChange(MetadataChange change, Summaries summaries, String id, Runnable reload) {
+        invalidate(summaries, id);
+        if (change.getChange() != MetadataChange.ChangeType.DELETE && populated.get()) {
+            // Keep the cache complete so that the by-category and by-template lookups include the entity
+            reload.run();
+        }
+    }
+
+    private void onFeedChange(FeedChange change) {
+        if (change != null && change.getFeedId() != null) {
+            String id = change.getFeedId().toString();
+            onChange(change, feeds, id, () -> loadFeed(id));
+        }
+    }
+
+    private void onCategoryChange(CategoryChange change) {
+        if (change != null && change.getCategoryId() != null) {
+            String id = change.getCategoryId().toString();
+            onChange(change, categories, id, () -> loadCategory(id));
+        }
+    }
+
+    private void onTemplateChange(TemplateChange change) {
+        if (change != null && change.getTemplateId() != null) {
+            String id = change.getTemplateId().toString();
+            onChange(change, templates, id, () -> loadTemplate(id));
+        }
+    }
+
+    @Override
+    public void onMessageReceived(String from, ClusterMessage message) {
+        if (FeedChange.CLUSTER_EVENT_TYPE.equals(message.getType())) {
+            onFeedChange((FeedChange) message.getMessage());
+        } else if (CategoryChange.CLUSTER_EVENT_TYPE.equals(message.getType())) {
+            onCategoryChange((CategoryChange) message.getMessage());
+        } else if (TemplateChange.CLUSTER_EVENT_TYPE.equals(message.getType())) {
+            onTemplateChange((TemplateChange) message.getMessage());
+        }
+    }
+
+    /**
+     * Produces a summary for the given cache version, or {@code null} if the entity does not exist.
+     */
+    private interface SummaryLoader {
+
+        EntitySummary load(long loadVersion);
+    }
+
+    /**
+     * Summaries of one type of entity by id, and their ids by qualified name
+     */
+    private static class Summaries {
+
+        private final Map<String, EntitySummary> byId = new ConcurrentHashMap<>();
+        private final Map<String, String> idsByName = new ConcurrentHashMap<>();
+
+        void put(EntitySummary summary) {
+            EntitySummary previous = byId.put(summary.getId(), summary);
+            if (previous != null && !previous.getQualifiedName().equals(summary.getQualifiedName())) {
+                idsByName.remove(previous.getQualifiedName(), previous.getId());
+            }
+            idsByName.put(summary.getQualifiedName(), summary.getId());
+        }
+
+        void remove(String id) {
+            EntitySummary previous = byId.remove(id);
+            if (previous != null) {
+                idsByName.remove(previous.getQualifiedName(), id);
+            }
+        }
+
+        Optional<EntitySummary> getByName(String name) {
+            String id = idsByName.get(name);
+            return Optional.ofNullable(id != null ? byId.get(id) : null);
+        }
+
+        void clear() {
+            byId.clear();
+            idsByName.clear();
+        }
+    }
+
+    private class FeedChangeListener implements MetadataEventListener<FeedChangeEvent> {
+
+        public void notify(@Nonnull final FeedChangeEvent metadataEvent) {
+            FeedChange change = metadataEvent.getData();
+            onFeedChange(change);
+            // Feed changes are only published locally, so pass them on to the other nodes
+            clusterService.sendMessageToOthers(FeedChange.CLUSTER_EVENT_TYPE, change);
+        }
+    }
+
+    private class CategoryChangeListener implements MetadataEventListener<CategoryChangeEvent> {
+
+        public void notify(@Nonnull final CategoryChangeEvent metadataEvent) {
+            // Category changes are sent to the other nodes by the category service
+            onCategoryChange(metadataEvent.getData());
+        }
+    }
+
+    private class TemplateChangeListener implements MetadataEventListener<TemplateChangeEvent> {
+
+        public void notify(@Nonnull final TemplateChangeEvent metadataEvent) {
+            TemplateChange change = metadataEvent.getData();
+            onTemplateChange(change);
+            // Template changes are only published locally, so pass them on to the other nodes
+            clusterService.sendMessageToOthers(TemplateChange.CLUSTER_EVENT_TYPE, change);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.thinkbiganalytics.feedmgr.service.cache;
+/*-
+ * #%L
+ * thinkbig-feed-manager-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.cluster.ClusterMessage;
+import com.thinkbiganalytics.cluster.ClusterService;
+import com.thinkbiganalytics.metadata.MockMetadataAccess;
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.MetadataAction;
+import com.thinkbiganalytics.metadata.api.category.Category;
+import com.thinkbiganalytics.metadata.api.category.CategoryProvider;
+import com.thinkbiganalytics.metadata.api.event.MetadataChange;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventListener;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventService;
+import com.thinkbiganalytics.metadata.api.event.category.CategoryChange;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedChange;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedChangeEvent;
+import com.thinkbiganalytics.metadata.api.feed.Feed;
+import com.thinkbiganalytics.metadata.api.feed.FeedProvider;
+import com.thinkbiganalytics.metadata.api.template.FeedManagerTemplate;
+import com.thinkbiganalytics.metadata.api.template.FeedManagerTemplateProvider;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.io.Serializable;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+public class EntitySummaryCacheTest {
+
+    @Spy
+    private MetadataAccess metadataAccess = new MockMetadataAccess();
+
+    @Mock
+    private FeedProvider feedProvider;
+
+    @Mock
+    private CategoryProvider categoryProvider;
+
+    @Mock
+    private FeedManagerTemplateProvider templateProvider;
+
+    @Mock
+    private MetadataEventService metadataEventService;
+
+    @Mock
+    private ClusterService clusterService;
+
+    @InjectMocks
+    private EntitySummaryCache cache;
+
+    private final List<Feed> feeds = new ArrayList<>();
+
+    private Category category;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        category = category("c1", "category");
+        feeds.add(feed("f1", "feed1", category));
+        feeds.add(feed("f2", "feed2", category));
+        Mockito.when(feedProvider.findAll()).thenAnswer(invocation -> new ArrayList<>(feeds));
+        Mockito.when(categoryProvider.findAll()).thenReturn(Collections.singletonList(category));
+        Mockito.when(templateProvider.findAll()).thenReturn(Collections.emptyList());
+        Mockito.when(feedProvider.resolveId(Mockito.any(Serializable.class))).thenAnswer(invocation -> new Id(invocation.getArguments()[0].toString()));
+        cache.addEventListeners();
+    }
+
+    @Test
+    public void testPopulatesOnce() {
+        Assert.assertEquals("feed1", cache.getFeedById("f1").map(EntitySummary::getSystemName).orElse(null));
+        Assert.assertEquals("f2", cache.getFeedBySystemName("category.feed2").map(EntitySummary::getId).orElse(null));
+        Assert.assertEquals(2, cache.getFeedsByCategoryId("c1").size());
+        Assert.assertEquals("category", cache.getCategoryBySystemName("category").map(EntitySummary::getTitle).orElse(null));
+
+        Mockito.verify(feedProvider, Mockito.times(1)).findAll();
+        Mockito.verify(metadataAccess, Mockito.times(1)).read(Mockito.any(MetadataAction.class), Mockito.<Principal>anyVararg());
+    }
+
+    @Test
+    public void testChangeEventReloadsFeed() {
+        Assert.assertEquals("Feed 1", cache.getFeedById("f1").map(EntitySummary::getTitle).orElse(null));
+
+        Feed renamed = feed("f1", "feed1", category);
+        Mockito.when(renamed.getDisplayName()).thenReturn("Renamed");
+        Mockito.when(feedProvider.findById(Mockito.any(Feed.ID.class))).thenReturn(renamed);
+        FeedChange change = new FeedChange(MetadataChange.ChangeType.UPDATE, new Id("f1"), Feed.State.ENABLED);
+        feedChangeListener().notify(new FeedChangeEvent(change));
+
+        Assert.assertEquals("Renamed", cache.getFeedById("f1").map(EntitySummary::getTitle).orElse(null));
+        Mockito.verify(clusterService).sendMessageToOthers(FeedChange.CLUSTER_EVENT_TYPE, change);
+    }
+
+    @Test
+    public void testDeleteEventRemovesFeed() {
+        Assert.assertTrue(cache.getFeedBySystemName("category.feed2").isPresent());
+
+        cache.onMessageReceived("other", message(FeedChange.CLUSTER_EVENT_TYPE, new FeedChange(MetadataChange.ChangeType.DELETE, new Id("f2"), Feed.State.DELETED)));
+
+        Assert.assertEquals(1, cache.getFeedsByCategoryId("c1").size());
+        Assert.assertFalse(cache.getFeedBySystemName("category.feed2").isPresent());
+    }
+
+    @Test
+    public void testClusterMessageReloadsCategory() {
+        Assert.assertEquals("category", cache.getCategoryById("c1").map(EntitySummary::getTitle).orElse(null));
+
+        Category renamed = category("c1", "category");
+        Mockito.when(renamed.getDisplayName()).thenReturn("Renamed");
+        Mockito.when(categoryProvider.resolveId(Mockito.any(Serializable.class))).thenReturn(new Id("c1"));
+        Mockito.when(categoryProvider.findById(Mockito.any(Category.ID.class))).thenReturn(renamed);
+        cache.onMessageReceived("other", message(CategoryChange.CLUSTER_EVENT_TYPE, new CategoryChange(MetadataChange.ChangeType.UPDATE, new Id("c1"))));
+
+        Assert.assertEquals("Renamed", cache.getCategoryById("c1").map(EntitySummary::getTitle).orElse(null));
+        Mockito.verify(clusterService, Mockito.never()).sendMessageToOthers(Mockito.anyString(), Mockito.any(Serializable.class));
+    }
+
+    @Test
+    public void testLoadDiscardedWhenInvalidatedWhileLoading() {
+        cache.getFeedById("f1");
+
+        // A feed created after the cache was populated, and changed again while it is being loaded
+        Feed created = feed("f3", "feed3", category);
+        Mockito.when(feedProvider.findById(Mockito.any(Feed.ID.class))).thenAnswer(invocation -> {
+            cache.onMessageReceived("other", message(FeedChange.CLUSTER_EVENT_TYPE, new FeedChange(MetadataChange.ChangeType.DELETE, new Id("f3"), Feed.State.DELETED)));
+            return created;
+        });
+
+        Optional<EntitySummary> loaded = cache.getFeedById("f3");
+        Assert.assertTrue(loaded.isPresent());
+        Assert.assertFalse("stale load should not be cached", cache.getFeedBySystemName("category.feed3").isPresent());
+    }
+
+    @Test
+    public void testPopulateDiscardedWhenInvalidatedWhileLoading() {
+        Feed stale = feed("f1", "feed1", category);
+        Mockito.when(stale.getDisplayName()).thenReturn("Stale");
+        Feed current = feed("f1", "feed1", category);
+        Mockito.when(current.getDisplayName()).thenReturn("Current");
+        Mockito.when(feedProvider.findAll())
+            .thenAnswer(invocation -> {
+                // The feed is changed while the first population is reading it
+                cache.onMessageReceived("other", message(FeedChange.CLUSTER_EVENT_TYPE, new FeedChange(MetadataChange.ChangeType.DELETE, new Id("f3"), Feed.State.DELETED)));
+                return Collections.singletonList(stale);
+            })
+            .thenReturn(Collections.singletonList(current));
+
+        Assert.assertEquals("Current", cache.getFeedBySystemName("category.feed1").map(EntitySummary::getTitle).orElse(null));
+        Mockito.verify(feedProvider, Mockito.times(2)).findAll();
+    }
+
+    @Test
+    public void testListFallsBackToProviderWhenPopulateFails() {
+        Mockito.when(feedProvider.findAll()).thenAnswer(invocation -> {
+            cache.invalidateAll();
+            return new ArrayList<>(feeds);
+        });
+
+        Assert.assertEquals(2, cache.getFeedsByCategoryId("c1").size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private MetadataEventListener<FeedChangeEvent> feedChangeListener() {
+        ArgumentCaptor<MetadataEventListener> captor = ArgumentCaptor.forClass(MetadataEventListener.class);
+        Mockito.verify(metadataEventService, Mockito.times(3)).addListener(captor.capture());
+        return captor.getAllValues().get(0);
+    }
+
+    private static ClusterMessage message(String type, Serializable payload) {
+        ClusterMessage message = Mockito.mock(ClusterMessage.class);
+        Mockito.when(message.getType()).thenReturn(type);
+        Mockito.when(message.getMessage()).thenReturn(payload);
+        return message;
+    }
+
+    private static Category category(String id, String systemName) {
+        Category category = Mockito.mock(Category.class);
+        Mockito.when(category.getId()).thenReturn(new Id(id));
+        Mockito.when(category.getSystemName()).thenReturn(systemName);
+        Mockito.when(category.getDisplayName()).thenReturn(systemName);
+        return category;
+    }
+
+    private static Feed feed(String id, String name, Category category) {
+        String categoryName = category.getSystemName();
+        Feed feed = Mockito.mock(Feed.class);
+        Mockito.when(feed.getId()).thenReturn(new Id(id));
+        Mockito.when(feed.getName()).thenReturn(name);
+        Mockito.when(feed.getQualifiedName()).thenReturn(categoryName + "." + name);
+        Mockito.when(feed.getDisplayName()).thenReturn("Feed " + id.substring(1));
+        Mockito.when(feed.getState()).thenReturn(Feed.State.ENABLED);
+        Mockito.when(feed.getCategory()).thenReturn(category);
+        return feed;
+    }
+
+    private static class Id implements Feed.ID, Category.ID, FeedManagerTemplate.ID {
+
+        private final String value;
+
+        Id(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+}
@@ -39,4 +39,11 @@ public class SendJmsMessage {
         jmsMessagingTemplate.convertAndSend(queueName, obj);
     }
 
+    /**
+     * Send the bytes as a JMS BytesMessage
+     */
+    public void sendBytesToQueue(String queueName, final byte[] bytes) throws JmsException {
+        jmsMessagingTemplate.convertAndSend(queueName, bytes);
+    }
+
 }
@@ -20,6 +20,7 @@ package com.thinkbiganalytics.metadata.rest.model.nifi;
  * #L%
  */
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
@@ -45,6 +46,11 @@ public class NifiFlowCacheSnapshot {
         .withFeeds(ImmutableSet.<String>of())
         .build();
     private DateTime snapshotDate;
+
+    /**
+     * The version of the Kylo flow cache this snapshot was taken from.  0 if it was not taken from the cache
+     */
+    private long version;
     //items to add
     private Map<String, String> processorIdToFeedNameMap = new ConcurrentHashMap<>();
     private Map<String, String> processorIdToFeedProcessGroupId = new ConcurrentHashMap<>();
@@ -158,6 +164,16 @@ public class NifiFlowCacheSnapshot {
         this.snapshotDate = snapshotDate;
     }
 
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public Set<String> getAllFeeds() {
         return allFeeds;
     }
@@ -46,6 +46,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
@@ -140,7 +141,8 @@ public class DataConfidenceJobsCache implements TimeBasedCache<CheckDataJob> {
     }
 
     public List<CheckDataJob> getUserDataConfidenceJobs(Long time, RoleSetExposingSecurityExpressionRoot userContext) {
-        return getDataConfidenceSummary(time).stream().filter(checkDataJob -> feedAclCache.hasAccess(userContext, checkDataJob.getFeedId())).collect(Collectors.toList());
+        Predicate<String> accessibleFeeds = feedAclCache.accessibleFeeds(userContext);
+        return getDataConfidenceSummary(time).stream().filter(checkDataJob -> accessibleFeeds.test(checkDataJob.getFeedId())).collect(Collectors.toList());
     }
 
 
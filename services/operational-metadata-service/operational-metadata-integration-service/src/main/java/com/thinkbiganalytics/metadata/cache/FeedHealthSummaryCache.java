@@ -20,20 +20,25 @@ package com.thinkbiganalytics.metadata.cache;
  */
 
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.AtomicLongMap;
 import com.thinkbiganalytics.DateTimeUtil;
 import com.thinkbiganalytics.jobrepo.query.model.FeedHealth;
 import com.thinkbiganalytics.jobrepo.query.model.FeedStatus;
 import com.thinkbiganalytics.jobrepo.query.model.transform.FeedModelTransform;
 import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.cache.CacheBackedProviderListener;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventListener;
 import com.thinkbiganalytics.metadata.api.event.MetadataEventService;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedOperationStatusEvent;
+import com.thinkbiganalytics.metadata.api.event.feed.OperationStatus;
 import com.thinkbiganalytics.metadata.api.feed.FeedSummary;
 import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeed;
 import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeedProvider;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.api.op.FeedOperation;
 import com.thinkbiganalytics.metadata.cache.util.TimeUtil;
 import com.thinkbiganalytics.metadata.config.RoleSetExposingSecurityExpressionRoot;
 import com.thinkbiganalytics.metadata.jpa.feed.JpaFeedSummary;
@@ -44,22 +49,34 @@ import com.thinkbiganalytics.rest.model.search.SearchResultImpl;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.util.comparator.NullSafeComparator;
 
+import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 
 /**
  * Created by sr186054 on 9/27/17.
+ *
+ * Holds a snapshot of the latest {@link FeedSummary} for each feed.
+ * Rather than reloading every feed on a timer only the feeds changed by a job execution notification, a feed update or the stats receiver are reloaded.
  */
 public class FeedHealthSummaryCache implements TimeBasedCache<FeedSummary> {
 
@@ -179,16 +196,77 @@ public class FeedHealthSummaryCache implements TimeBasedCache<FeedSummary> {
     }
 
 
-    LoadingCache<Long, List<? extends FeedSummary>> feedSummaryCache = CacheBuilder.newBuilder().expireAfterWrite(15, TimeUnit.SECONDS).build(new CacheLoader<Long, List<? extends FeedSummary>>() {
-        @Override
-        public List<? extends FeedSummary> load(Long millis) throws Exception {
-            return fetchFeedSummary();
-        }
-    });
+    /**
+     * Reload every feed at least this often to pick up changes made without a notification, such as jobs run on another Kylo node
+     */
+    @Value("${kylo.ops.mgr.dashboard.feed-summary.full-refresh-seconds:60}")
+    private int fullRefreshSeconds = 60;
 
+    /**
+     * Changed feeds are applied to the snapshot at most this often
+     */
+    private static final long CHANGE_REFRESH_MILLIS = 5000L;
+
+    /**
+     * Change notifications can be published before the transaction making the change commits, so a feed marked as changed less than this long before it is reloaded
+     * stays marked and is reloaded again on the next refresh
+     */
+    private static final long CHANGE_SETTLE_MILLIS = 5000L;
+
+    /**
+     * When more feeds than this have changed it is cheaper to reload them all
+     */
+    private static final int MAX_CHANGED_FEEDS = 200;
+
+    /**
+     * Max number of feed names to query for at once
+     */
+    private static final int FEED_NAME_BATCH_SIZE = 500;
+
+    private volatile FeedSummarySnapshot snapshot;
+
+    /**
+     * Names of the feeds whose summary needs to be reloaded, with the latest time each was marked
+     */
+    private final Map<String, ChangeMark> changedFeeds = new ConcurrentHashMap<>();
+
+    /**
+     * Source of the current time, replaced by tests
+     */
+    Clock clock = Clock.systemUTC();
+
+    private final AtomicBoolean needsFullRefresh = new AtomicBoolean(true);
+
+    private final Object refreshLock = new Object();
+
+    /**
+     * The feeds each user has access to, derived from a snapshot and the acl entries at a given version
+     */
+    private final Cache<String, UserFeedSummaries> userFeedSummaries = CacheBuilder.newBuilder().maximumSize(1000).expireAfterAccess(10, TimeUnit.MINUTES).build();
+
+    private final FeedOperationStatusListener feedOperationStatusListener = new FeedOperationStatusListener();
+
+    @PostConstruct
+    private void init() {
+        metadataEventService.addListener(feedOperationStatusListener);
+        opsManagerFeedProvider.subscribeListener(new FeedChangeListener());
+    }
+
+    /**
+     * Mark the feeds as changed so their summary is reloaded on the next request
+     *
+     * @param feedNames the feeds that changed
+     */
+    public void feedsChanged(Collection<String> feedNames) {
+        feedNames.stream().filter(StringUtils::isNotBlank).forEach(this::markChanged);
+    }
+
+    private void markChanged(String feedName) {
+        changedFeeds.put(feedName, new ChangeMark(clock.millis()));
+    }
 
     public List<? extends FeedSummary> getFeedSummaryList(Long time) {
-        return feedSummaryCache.getUnchecked(time);
+        return currentSnapshot().getFeedSummaries();
     }
 
 
@@ -213,15 +291,7 @@ public class FeedHealthSummaryCache implements TimeBasedCache<FeedSummary> {
     }
 
     public Map<String, Long> getUserFeedHealthCounts(Long time,  RoleSetExposingSecurityExpressionRoot userContext ) {
-        AtomicLongMap<String> healthCounts = AtomicLongMap.create();
-        List<? extends FeedSummary> list = getFeedSummaryList(time);
-        list.stream()
-            .filter(filter(new FeedSummaryFilter(), userContext))
-            .forEach(f -> {
-                String key = f.getFailedCount() == null || f.getFailedCount() == 0 ? "HEALTHY" : "UNHEALTHY";
-                healthCounts.incrementAndGet(key);
-            });
-        return healthCounts.asMap();
+        return getUserFeedSummaries(userContext).getHealthCounts();
     }
 
     /**
@@ -247,8 +317,8 @@ public class FeedHealthSummaryCache implements TimeBasedCache<FeedSummary> {
     public SearchResult getUserFeedHealth(Long time, FeedSummaryFilter feedSummaryFilter,  RoleSetExposingSecurityExpressionRoot userContext) {
         SearchResult<com.thinkbiganalytics.jobrepo.query.model.FeedSummary> searchResult = new SearchResultImpl();
         List<FeedHealth> feedSummaryHealth = null;
-        //get the entire list back and filter it for user access
-        List<? extends FeedSummary> list = getFeedSummaryList(time).stream().filter(filter(feedSummaryFilter, userContext)).collect(Collectors.toList());
+        //filter the feeds the user has access to
+        List<FeedSummary> list = getUserFeedSummaries(userContext).getFeedSummaries().stream().filter(filter(feedSummaryFilter)).collect(Collectors.toList());
         feedSummaryHealth = list.stream()
             .sorted(feedSummaryFilter.getSort() != null ? getComparator(feedSummaryFilter.getSort()) : byName)
             .skip(feedSummaryFilter.getStart())
@@ -274,50 +344,169 @@ public class FeedHealthSummaryCache implements TimeBasedCache<FeedSummary> {
 
     @Override
     public List<FeedSummary> getCache(Long time) {
-        return (List<FeedSummary>) getFeedSummaryList(time);
+        return currentSnapshot().getFeedSummaries();
     }
 
     @Override
     public List<FeedSummary> getUserCache(Long time) {
-        return (List<FeedSummary>) getUserFeeds(time);
+        return getUserFeedSummaries(feedAclCache.userContext()).getFeedSummaries();
+    }
+
+    /**
+     * Return the current snapshot, first reloading all the feeds or just the changed feeds if needed
+     */
+    private FeedSummarySnapshot currentSnapshot() {
+        FeedSummarySnapshot current = snapshot;
+        if (needsFullRefresh(current) || needsChangeRefresh(current)) {
+            synchronized (refreshLock) {
+                current = snapshot;
+                try {
+                    if (needsFullRefresh(current)) {
+                        needsFullRefresh.set(false);
+                        long readTime = clock.millis();
+                        Map<String, ChangeMark> marks = new HashMap<>(changedFeeds);
+                        current = new FeedSummarySnapshot(current != null ? current.getVersion() + 1 : 1L, readTime, fetchFeedSummary());
+                        snapshot = current;
+                        clearSettledMarks(marks, readTime);
+                    } else if (needsChangeRefresh(current)) {
+                        long readTime = clock.millis();
+                        Map<String, ChangeMark> marks = new HashMap<>(changedFeeds);
+                        current = current.update(marks.keySet(), readTime, fetchFeedSummary(marks.keySet()));
+                        snapshot = current;
+                        clearSettledMarks(marks, readTime);
+                    }
+                } catch (RuntimeException e) {
+                    needsFullRefresh.set(true);
+                    throw e;
+                }
+            }
+        }
+        return current;
     }
 
-    private List<? extends FeedSummary> fetchFeedSummary() {
+    /**
+     * Clear the marks that were read after the change had settled, unless the feed was marked again while it was being read
+     *
+     * @param marks    the marks when the read started
+     * @param readTime the time the read started
+     */
+    private void clearSettledMarks(Map<String, ChangeMark> marks, long readTime) {
+        marks.forEach((feedName, mark) -> {
+            if (mark.getTime() <= readTime - CHANGE_SETTLE_MILLIS) {
+                changedFeeds.remove(feedName, mark);
+            }
+        });
+    }
+
+    private boolean needsFullRefresh(FeedSummarySnapshot current) {
+        return current == null || needsFullRefresh.get() || changedFeeds.size() > MAX_CHANGED_FEEDS
+               || current.getFullRefreshTime() < clock.millis() - fullRefreshSeconds * 1000L;
+    }
+
+    private boolean needsChangeRefresh(FeedSummarySnapshot current) {
+        return !changedFeeds.isEmpty() && current.getRefreshTime() < clock.millis() - CHANGE_REFRESH_MILLIS;
+    }
+
+    /**
+     * Get the feeds the user has access to.
+     * These are derived once for each snapshot and acl version rather than on each request
+     */
+    private UserFeedSummaries getUserFeedSummaries(RoleSetExposingSecurityExpressionRoot userContext) {
+        FeedSummarySnapshot current = currentSnapshot();
+        long aclVersion = feedAclCache.getVersion();
+        String userKey = userContext.getName() + "|" + userContext.getGroups().stream().sorted().collect(Collectors.joining(","));
+        UserFeedSummaries summaries = userFeedSummaries.getIfPresent(userKey);
+        if (summaries == null || summaries.getSnapshotVersion() != current.getVersion() || summaries.getAclVersion() != aclVersion) {
+            List<FeedSummary> accessible = current.getFeedSummaries().stream()
+                .filter(hasAccess(userContext))
+                .collect(Collectors.toList());
+            AtomicLongMap<String> healthCounts = AtomicLongMap.create();
+            accessible.stream()
+                .filter(filter(new FeedSummaryFilter()))
+                .forEach(f -> {
+                    String key = f.getFailedCount() == null || f.getFailedCount() == 0 ? "HEALTHY" : "UNHEALTHY";
+                    healthCounts.incrementAndGet(key);
+                });
+            summaries = new UserFeedSummaries(current.getVersion(), aclVersion, accessible, healthCounts.asMap());
+            userFeedSummaries.put(userKey, summaries);
+        }
+        return summaries;
+    }
+
+    /**
+     * Keep the running or latest summary for each feed
+     *
+     * @param summaries the summary rows
+     * @param latestFeeds map of feed id to summary to add to
+     */
+    private void addLatestFeedSummary(List<? extends FeedSummary> summaries, Map<String, FeedSummary> latestFeeds) {
+        //NOTE it could also populate the last job execution time since the above query gets a union of the running jobs along with the latest finished jobs by feed
+        summaries.stream().filter(f -> ((FeedSummary) f).getFeedType().equals(OpsManagerFeed.FeedType.FEED))
+            .sorted(byRunningStatus.thenComparing(byStartTime)).forEach(f -> {
+            String feedId = f.getFeedId().toString();
+            if (!latestFeeds.containsKey(feedId)) {
+                latestFeeds.put(feedId, f);
+            }
+        });
+    }
+
+    /**
+     * Create the summary for a feed that has not run
+     */
+    private FeedSummary initialFeedSummary(OpsManagerFeed f) {
+        JpaFeedSummary s = new JpaFeedSummary();
+        s.setStream(f.isStream());
+        s.setFeedId(UUID.fromString(f.getId().toString()));
+        s.setFeedName(f.getName());
+        s.setFeedType(f.getFeedType());
+        s.setRunningCount(0L);
+        s.setAbandonedCount(0L);
+        s.setFailedCount(0L);
+        s.setAllCount(0L);
+        s.setCompletedCount(0L);
+        s.setRunStatus(FeedSummary.RunStatus.INITIAL);
+        s.setStatus(BatchJobExecution.JobStatus.UNKNOWN);
+        return s;
+    }
+
+    private Map<String, FeedSummary> fetchFeedSummary() {
         return metadataAccess.read(() -> {
             Stopwatch stopwatch = Stopwatch.createStarted();
             List<? extends FeedSummary> list = opsManagerFeedProvider.findFeedSummary();
 
             Map<String, FeedSummary> latestFeeds = new HashMap<>();
-            //NOTE it could also populate the last job execution time since the above query gets a union of the running jobs along with the latest finished jobs by feed
-            list.stream().filter(f -> ((FeedSummary) f).getFeedType().equals(OpsManagerFeed.FeedType.FEED))
-                .sorted(byRunningStatus.thenComparing(byStartTime)).forEach(f -> {
-                String feedId = f.getFeedId().toString();
-                if (!latestFeeds.containsKey(feedId)) {
-                    latestFeeds.put(feedId, f);
-                }
-            });
+            addLatestFeedSummary(list, latestFeeds);
             //add in initial feeds
             List<? extends OpsManagerFeed> allFeeds = opsManagerFeedProvider.findAllWithoutAcl();
-            allFeeds.stream().filter(f -> !latestFeeds.containsKey(f.getId().toString()) && ((OpsManagerFeed) f).getFeedType().equals(OpsManagerFeed.FeedType.FEED)).forEach(f -> {
-                                                                                        JpaFeedSummary s = new JpaFeedSummary();
-                                                                                        s.setStream(f.isStream());
-                                                                                        s.setFeedId(UUID.fromString(f.getId().toString()));
-                                                                                        s.setFeedName(f.getName());
-                                                                                        s.setFeedType(f.getFeedType());
-                                                                                        s.setRunningCount(0L);
-                                                                                        s.setAbandonedCount(0L);
-                                                                                        s.setFailedCount(0L);
-                                                                                        s.setAllCount(0L);
-                                                                                        s.setCompletedCount(0L);
-                                                                                        s.setRunStatus(FeedSummary.RunStatus.INITIAL);
-                                                                                        s.setStatus(BatchJobExecution.JobStatus.UNKNOWN);
-                                                                                       latestFeeds.put(s.getFeedId().toString(),s);
-                                                                                    }
-            );
+            allFeeds.stream().filter(f -> !latestFeeds.containsKey(f.getId().toString()) && ((OpsManagerFeed) f).getFeedType().equals(OpsManagerFeed.FeedType.FEED))
+                .forEach(f -> latestFeeds.put(f.getId().toString(), initialFeedSummary(f)));
 
             stopwatch.stop();
             log.debug("Time to fetchAndDedupe FeedSummary: {} ", stopwatch.elapsed(TimeUnit.MILLISECONDS));
-            return new ArrayList<>(latestFeeds.values());
+            return latestFeeds;
+        }, MetadataAccess.SERVICE);
+    }
+
+    /**
+     * Fetch the summary of just the given feeds
+     *
+     * @return map of feed id to summary.  Feeds that no longer exist are not included
+     */
+    private Map<String, FeedSummary> fetchFeedSummary(Set<String> feedNames) {
+        return metadataAccess.read(() -> {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            Map<String, FeedSummary> latestFeeds = new HashMap<>();
+            Lists.partition(new ArrayList<>(feedNames), FEED_NAME_BATCH_SIZE).forEach(names -> addLatestFeedSummary(opsManagerFeedProvider.findFeedSummary(names), latestFeeds));
+            Set<String> foundNames = latestFeeds.values().stream().map(FeedSummary::getFeedName).collect(Collectors.toSet());
+            feedNames.stream().filter(name -> !foundNames.contains(name)).forEach(name -> {
+                OpsManagerFeed feed = opsManagerFeedProvider.findByNameWithoutAcl(name);
+                if (feed != null && feed.getFeedType().equals(OpsManagerFeed.FeedType.FEED)) {
+                    latestFeeds.put(feed.getId().toString(), initialFeedSummary(feed));
+                }
+            });
+            stopwatch.stop();
+            log.debug("Time to fetch the FeedSummary for {} changed feeds: {} ", feedNames.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+            return latestFeeds;
         }, MetadataAccess.SERVICE);
     }
 
@@ -326,10 +515,21 @@ public class FeedHealthSummaryCache implements TimeBasedCache<FeedSummary> {
         return feedAclCache.isUserCacheAvailable();
     }
 
-    private Predicate<FeedSummary> filter(FeedSummaryFilter filter, RoleSetExposingSecurityExpressionRoot userContext) {
+    private Predicate<FeedSummary> hasAccess(RoleSetExposingSecurityExpressionRoot userContext) {
+        Predicate<String> accessibleFeeds = feedAclCache.accessibleFeeds(userContext);
         return s -> {
             try {
-                return feedAclCache.hasAccess(userContext, s.getFeedId().toString()) && fixedFilter(s, filter) && (filter.containsFeed(s.getFeedName()) && filter
+                return accessibleFeeds.test(s.getFeedId().toString());
+            } catch (Exception e) {
+                return false;
+            }
+        };
+    }
+
+    private Predicate<FeedSummary> filter(FeedSummaryFilter filter) {
+        return s -> {
+            try {
+                return fixedFilter(s, filter) && (filter.containsFeed(s.getFeedName()) && filter
                     .containsState(s.getRunStatus().name().toLowerCase()));
             } catch (Exception e) {
                 return false;
@@ -362,6 +562,155 @@ public class FeedHealthSummaryCache implements TimeBasedCache<FeedSummary> {
     }
 
 
+    /**
+     * Immutable snapshot of the latest summary of each feed
+     */
+    private static class FeedSummarySnapshot {
+
+        private final long version;
+
+        private final long fullRefreshTime;
+
+        private final long refreshTime;
+
+        private final Map<String, FeedSummary> feedSummariesById;
+
+        private final List<FeedSummary> feedSummaries;
+
+        FeedSummarySnapshot(long version, long refreshTime, Map<String, FeedSummary> feedSummariesById) {
+            this(version, refreshTime, refreshTime, feedSummariesById);
+        }
+
+        private FeedSummarySnapshot(long version, long fullRefreshTime, long refreshTime, Map<String, FeedSummary> feedSummariesById) {
+            this.version = version;
+            this.fullRefreshTime = fullRefreshTime;
+            this.refreshTime = refreshTime;
+            this.feedSummariesById = feedSummariesById;
+            this.feedSummaries = Collections.unmodifiableList(new ArrayList<>(feedSummariesById.values()));
+        }
+
+        /**
+         * @param feedNames   the feeds that were reloaded
+         * @param refreshTime the time the feeds were read
+         * @param reloaded    the summary of the reloaded feeds by feed id
+         * @return a new snapshot with the reloaded feeds replacing the old ones
+         */
+        FeedSummarySnapshot update(Set<String> feedNames, long refreshTime, Map<String, FeedSummary> reloaded) {
+            Map<String, FeedSummary> updated = new HashMap<>(feedSummariesById);
+            updated.values().removeIf(s -> feedNames.contains(s.getFeedName()));
+            updated.putAll(reloaded);
+            return new FeedSummarySnapshot(version + 1, fullRefreshTime, refreshTime, updated);
+        }
+
+        long getVersion() {
+            return version;
+        }
+
+        long getFullRefreshTime() {
+            return fullRefreshTime;
+        }
+
+        long getRefreshTime() {
+            return refreshTime;
+        }
+
+        List<FeedSummary> getFeedSummaries() {
+            return feedSummaries;
+        }
+    }
+
+    /**
+     * A feed being marked as changed.  Each mark is a distinct object so a mark made while the feed is being read is not cleared by that read.
+     */
+    private static class ChangeMark {
+
+        private final long time;
+
+        ChangeMark(long time) {
+            this.time = time;
+        }
+
+        long getTime() {
+            return time;
+        }
+    }
+
+    /**
+     * The feeds a user has access to in a given snapshot
+     */
+    private static class UserFeedSummaries {
+
+        private final long snapshotVersion;
+
+        private final long aclVersion;
+
+        private final List<FeedSummary> feedSummaries;
+
+        private final Map<String, Long> healthCounts;
+
+        UserFeedSummaries(long snapshotVersion, long aclVersion, List<FeedSummary> feedSummaries, Map<String, Long> healthCounts) {
+            this.snapshotVersion = snapshotVersion;
+            this.aclVersion = aclVersion;
+            this.feedSummaries = Collections.unmodifiableList(feedSummaries);
+            this.healthCounts = healthCounts;
+        }
+
+        long getSnapshotVersion() {
+            return snapshotVersion;
+        }
+
+        long getAclVersion() {
+            return aclVersion;
+        }
+
+        List<FeedSummary> getFeedSummaries() {
+            return feedSummaries;
+        }
+
+        Map<String, Long> getHealthCounts() {
+            return healthCounts;
+        }
+    }
+
+    /**
+     * Mark the feed as changed when one of its jobs starts, finishes, fails or is abandoned
+     */
+    private class FeedOperationStatusListener implements MetadataEventListener<FeedOperationStatusEvent> {
+
+        public void notify(@Nonnull final FeedOperationStatusEvent metadataEvent) {
+            OperationStatus change = metadataEvent.getData();
+            if (FeedOperation.FeedType.FEED == change.getFeedType() && StringUtils.isNotBlank(change.getFeedName())) {
+                markChanged(change.getFeedName());
+            }
+        }
+    }
+
+    /**
+     * Mark the feed as changed when it is added, updated or removed
+     */
+    private class FeedChangeListener implements CacheBackedProviderListener<OpsManagerFeed.ID, OpsManagerFeed> {
+
+        @Override
+        public void onAddedItem(OpsManagerFeed.ID key, OpsManagerFeed value) {
+            markChanged(value.getName());
+        }
+
+        @Override
+        public void onRemovedItem(OpsManagerFeed value) {
+            markChanged(value.getName());
+        }
+
+        @Override
+        public void onRemoveAll() {
+            needsFullRefresh.set(true);
+        }
+
+        @Override
+        public void onPopulated() {
+            needsFullRefresh.set(true);
+        }
+    }
+
     public static class FeedSummaryFilter {
 
         public enum FIXED_FILTER {
@@ -37,6 +37,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -84,7 +85,8 @@ public class RunningJobsCache implements TimeBasedCache<JobStatusCount> {
 
     public List<JobStatusCount> getUserRunningJobs(Long time) {
         RoleSetExposingSecurityExpressionRoot userContext = feedAclCache.userContext();
-        return getRunningJobs(time).stream().filter(f -> feedAclCache.hasAccess(userContext, f.getFeedId())).collect(Collectors.toList());
+        Predicate<String> accessibleFeeds = feedAclCache.accessibleFeeds(userContext);
+        return getRunningJobs(time).stream().filter(f -> accessibleFeeds.test(f.getFeedId())).collect(Collectors.toList());
     }
 
     public List<JobStatusCount> getUserRunningJobs() {
@@ -37,7 +37,7 @@ import java.util.Map;
 import javax.inject.Inject;
 
 /**
- * Quartz Scheduled Job Bean that will call the procedure to compact the statistcs table
+ * Quartz Scheduled Job Bean that will call the procedure to compact the statistcs table and delete the expired rollups
  */
 public class NiFiStatsCompactionQuartzJobBean extends QuartzJobBean{
     private static final Logger log = LoggerFactory.getLogger(NiFiStatsCompactionQuartzJobBean.class);
@@ -55,5 +55,10 @@ public class NiFiStatsCompactionQuartzJobBean extends QuartzJobBean{
         String results = metadataAccess.commit(() -> {
             return feedProcessorStatisticsProvider.compactFeedProcessorStatistics();
         }, MetadataAccess.SERVICE);
+
+        Integer deletedRollups = metadataAccess.commit(() -> {
+            return feedProcessorStatisticsProvider.deleteExpiredRollups();
+        }, MetadataAccess.SERVICE);
+        log.info("Deleted {} expired NiFi processor stats rollups", deletedRollups);
     }
 }
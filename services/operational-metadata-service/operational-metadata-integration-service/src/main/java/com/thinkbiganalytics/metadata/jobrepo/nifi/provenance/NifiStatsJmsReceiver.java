@@ -24,6 +24,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.EvictingQueue;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.thinkbiganalytics.cluster.ClusterMessage;
 import com.thinkbiganalytics.cluster.ClusterService;
 import com.thinkbiganalytics.cluster.ClusterServiceMessageReceiver;
@@ -37,10 +38,12 @@ import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiFeedProcessorStatisti
 import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiFeedProcessorStats;
 import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiFeedStatisticsProvider;
 import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiFeedStats;
+import com.thinkbiganalytics.metadata.cache.FeedHealthSummaryCache;
 import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.JpaNifiFeedProcessorStats;
 import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.JpaNifiFeedStats;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.codec.ProvenanceWireFormat;
 import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatistics;
 import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
 import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolderV2;
@@ -56,7 +59,6 @@ import com.thinkbiganalytics.scheduler.TriggerIdentifier;
 import com.thinkbiganalytics.scheduler.model.DefaultJobIdentifier;
 import com.thinkbiganalytics.scheduler.model.DefaultTriggerIdentifier;
 
-import org.apache.commons.lang.SerializationUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.nifi.web.api.dto.BulletinDTO;
 import org.joda.time.DateTime;
@@ -77,9 +79,13 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 /**
@@ -123,6 +129,9 @@ public class NifiStatsJmsReceiver implements ClusterServiceMessageReceiver {
     @Inject
     private ProvenanceEventReceiver provenanceEventReceiver;
 
+    @Inject
+    private FeedHealthSummaryCache feedHealthSummaryCache;
+
     @Value("${kylo.ops.mgr.stats.nifi.bulletins.mem.size:30}")
     private Integer errorsToStorePerFeed = 30;
 
@@ -146,10 +155,34 @@ public class NifiStatsJmsReceiver implements ClusterServiceMessageReceiver {
     private static final String JMS_LISTENER_ID = "nifiStatesJmsListener";
 
     private static final String JMS_LISTENER_ID2 = "nifiStatesJmsListener2";
+
+    private static final int ROLLUP_ATTEMPTS = 3;
+
+    /**
+     * How often to rebuild the rollups of the stats that could not be added to them
+     */
+    @Value("${kylo.ops.mgr.stats.rollup.reconcile.interval-seconds:60}")
+    private Integer rollupReconcileIntervalSeconds = 60;
+
+    /**
+     * The time window of the stats, by feed, that could not be added to the rollups
+     */
+    private Map<String, RollupWindow> failedRollups = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService rollupReconcileService;
+
     @PostConstruct
     private void init() {
         retryProvenanceEventWithDelay.setStatsJmsReceiver(this);
         scheduleStatsCompaction();
+        scheduleRollupReconcile();
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (rollupReconcileService != null) {
+            rollupReconcileService.shutdownNow();
+        }
     }
 
     /**
@@ -179,6 +212,38 @@ public class NifiStatsJmsReceiver implements ClusterServiceMessageReceiver {
         }
     }
 
+    /**
+     * Periodically rebuild the rollups of the stats that could not be added to them, well before the stats are compacted
+     */
+    private void scheduleRollupReconcile() {
+        if (rollupReconcileIntervalSeconds != null && rollupReconcileIntervalSeconds > 0) {
+            rollupReconcileService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("NifiStatsRollupReconcile-%d").setDaemon(true).build());
+            rollupReconcileService.scheduleWithFixedDelay(this::reconcileFailedRollups, rollupReconcileIntervalSeconds, rollupReconcileIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Rebuild the rollups of the failed windows from the saved stats.
+     * Windows are left until their last minute has closed, and are kept for the next run if the rebuild fails.
+     */
+    void reconcileFailedRollups() {
+        DateTime closed = DateTime.now().minusMinutes(2);
+        for (Map.Entry<String, RollupWindow> entry : failedRollups.entrySet()) {
+            String feedName = entry.getKey();
+            RollupWindow window = entry.getValue();
+            if (window.end.isAfter(closed) || !failedRollups.remove(feedName, window)) {
+                continue;
+            }
+            try {
+                metadataAccess.commit(() -> nifiEventStatisticsProvider.rebuildRollups(feedName, window.start, window.end), MetadataAccess.SERVICE);
+                log.info("Rebuilt the rollups for feed {} between {} and {} ", feedName, window.start, window.end);
+            } catch (Exception e) {
+                log.error("Unable to rebuild the rollups for feed {} between {} and {}. Retrying on the next run. {} ", feedName, window.start, window.end, e.getMessage(), e);
+                failedRollups.merge(feedName, window, RollupWindow::merge);
+            }
+        }
+    }
+
     /**
      * get Errors in memory for a feed
      *
@@ -249,11 +314,17 @@ public class NifiStatsJmsReceiver implements ClusterServiceMessageReceiver {
         return !(stats instanceof RetryAggregatedFeedProcessorStatisticsHolder) || (stats instanceof RetryAggregatedFeedProcessorStatisticsHolder
                                                                                     && ((RetryAggregatedFeedProcessorStatisticsHolder) stats).shouldRetry());
     }
+
+    /**
+     * Receive the stats sent as bytes, encoded with the {@link ProvenanceWireFormat} or java serialized
+     *
+     * @param stats the stats obtained from JMS
+     */
     @JmsListener(id = JMS_LISTENER_ID2, destination = Queues.PROVENANCE_EVENT_STATS_QUEUE2, containerFactory = JmsConstants.QUEUE_LISTENER_CONTAINER_FACTORY)
     public void receiveTopic(byte[] stats) {
         Object o = null;
         try {
-            o = SerializationUtils.deserialize(stats);
+            o = ProvenanceWireFormat.deserialize(stats);
         } catch (Exception e) {
             log.error("Unable to deserialize object ", e);
         }
@@ -268,7 +339,7 @@ public class NifiStatsJmsReceiver implements ClusterServiceMessageReceiver {
 
             if (ensureValidRetryAttempt(stats)) {
                 final List<AggregatedFeedProcessorStatistics> unregisteredEvents = new ArrayList<>();
-                metadataAccess.commit(() -> {
+                List<NifiFeedProcessorStats> savedSummaryStats = metadataAccess.commit(() -> {
                     List<NifiFeedProcessorStats> summaryStats = createSummaryStats(stats, unregisteredEvents);
 
                     List<JpaNifiFeedProcessorStats> failedStatsWithFlowFiles = new ArrayList<>();
@@ -288,6 +359,7 @@ public class NifiStatsJmsReceiver implements ClusterServiceMessageReceiver {
                     }
                     return summaryStats;
                 }, MetadataAccess.SERVICE);
+                rollupStats(savedSummaryStats);
 
                 if (clusterService.isClustered() && !unregisteredEvents.isEmpty()) {
                     //reprocess with delay
@@ -308,6 +380,34 @@ public class NifiStatsJmsReceiver implements ClusterServiceMessageReceiver {
     }
 
 
+    /**
+     * Add the saved stats to the time series rollups.
+     * This is done in its own transaction so a failure does not lose the stats.  Two nodes creating the same rollup bucket at once will fail one of the inserts, so retry a few times.
+     * If it still fails the time window of the stats is recorded and the rollups are rebuilt from the saved stats later.
+     *
+     * @param summaryStats the stats that were saved
+     */
+    private void rollupStats(List<NifiFeedProcessorStats> summaryStats) {
+        if (summaryStats == null || summaryStats.isEmpty()) {
+            return;
+        }
+        for (int attempt = 1; attempt <= ROLLUP_ATTEMPTS; attempt++) {
+            try {
+                metadataAccess.commit(() -> nifiEventStatisticsProvider.rollup(summaryStats), MetadataAccess.SERVICE);
+                return;
+            } catch (Exception e) {
+                if (attempt == ROLLUP_ATTEMPTS) {
+                    log.error("Unable to add {} stats to the rollups after {} attempts. The rollups will be rebuilt from the stats. {} ", summaryStats.size(), attempt, e.getMessage(), e);
+                    summaryStats.stream()
+                        .filter(stats -> stats.getFeedName() != null && stats.getMinEventTime() != null)
+                        .forEach(stats -> failedRollups.merge(stats.getFeedName(), new RollupWindow(stats.getMinEventTime(), stats.getMinEventTime()), RollupWindow::merge));
+                } else {
+                    log.debug("Unable to add the stats to the rollups on attempt {}. Retrying. {} ", attempt, e.getMessage());
+                }
+            }
+        }
+    }
+
     private void assignNiFiBulletinErrors(List<JpaNifiFeedProcessorStats> stats) {
 
         //might need to query with the 'after' parameter
@@ -449,6 +549,8 @@ public class NifiStatsJmsReceiver implements ClusterServiceMessageReceiver {
                     batchJobExecutionProvider.markStreamingFeedAsStarted(stats.getFeedName());
                 }
             });
+            //the streaming jobs are started and stopped without a job execution notification
+            feedHealthSummaryCache.feedsChanged(updatedStats.stream().filter(s -> s.isStream()).map(NifiFeedStats::getFeedName).collect(Collectors.toList()));
             nifiFeedStatisticsProvider.saveLatestFeedStats(updatedStats);
         }
         return feedStatsMap;
@@ -588,4 +690,21 @@ public class NifiStatsJmsReceiver implements ClusterServiceMessageReceiver {
         }
     }
 
+    /**
+     * The time window of stats for a feed whose rollups need rebuilding
+     */
+    static class RollupWindow {
+
+        private final DateTime start;
+        private final DateTime end;
+
+        RollupWindow(DateTime start, DateTime end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        RollupWindow merge(RollupWindow other) {
+            return new RollupWindow(start.isBefore(other.start) ? start : other.start, end.isAfter(other.end) ? end : other.end);
+        }
+    }
 }
@@ -0,0 +1,120 @@
+package com.thinkbiganalytics.metadata.jobrepo.nifi.provenance;
+/*-
+ * #%L
+ * thinkbig-operational-metadata-integration-service
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Dispatches provenance events onto a fixed set of single threaded lanes, hashed by the event's job flow file.
+ * All the events for a job are processed by the same lane in the order they were dispatched, so jobs never need to be locked,
+ * while events for different jobs are processed in parallel across the lanes.
+ */
+public class ProvenanceEventLaneDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ProvenanceEventLaneDispatcher.class);
+
+    private final ExecutorService[] lanes;
+
+    public ProvenanceEventLaneDispatcher(int laneCount) {
+        this.lanes = new ExecutorService[Math.max(1, laneCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kylo-provenance-lane-" + i).build());
+        }
+        log.info("Processing provenance events with {} lanes ", lanes.length);
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * @return the lane that processes the events for the job flow file
+     */
+    public int laneFor(String jobFlowFileId) {
+        return jobFlowFileId == null ? 0 : Math.floorMod(jobFlowFileId.hashCode(), lanes.length);
+    }
+
+    /**
+     * Split the events by lane, keeping their order, and process each lane's events on its thread.
+     * Blocks until all the lanes have processed their events so the caller (i.e. the JMS listener) only acknowledges the batch once it is persisted.
+     * If a lane fails, the first failure is rethrown once every lane has finished so the caller can roll back the batch.
+     *
+     * @param events    the events to process
+     * @param processor processes the ordered events for a single lane
+     * @throws RuntimeException the first failure of a lane
+     */
+    public void dispatch(List<ProvenanceEventRecordDTO> events, Consumer<List<ProvenanceEventRecordDTO>> processor) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<List<ProvenanceEventRecordDTO>> eventsByLane = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            eventsByLane.add(new ArrayList<>());
+        }
+        events.forEach(event -> eventsByLane.get(laneFor(event.getJobFlowFileId())).add(event));
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < lanes.length; i++) {
+            List<ProvenanceEventRecordDTO> laneEvents = eventsByLane.get(i);
+            if (!laneEvents.isEmpty()) {
+                futures.add(lanes[i].submit(() -> processor.accept(laneEvents)));
+            }
+        }
+        //wait for every lane, even if interrupted, so no lane is still working on the batch when it is rolled back
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            try {
+                Uninterruptibles.getUninterruptibly(future);
+            } catch (ExecutionException e) {
+                log.error("Error processing provenance events ", e.getCause());
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IllegalStateException("Error processing provenance events", failure);
+        }
+    }
+
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
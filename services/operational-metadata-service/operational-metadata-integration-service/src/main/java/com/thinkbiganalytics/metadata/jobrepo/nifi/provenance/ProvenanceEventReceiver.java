@@ -38,9 +38,9 @@ import com.thinkbiganalytics.metadata.api.jobrepo.step.FailedStepExecutionListen
 import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.NifiEventProvider;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.codec.ProvenanceWireFormat;
 import com.thinkbiganalytics.nifi.rest.client.LegacyNifiRestClient;
 
-import org.apache.commons.lang.SerializationUtils;
 import org.apache.nifi.web.api.dto.BulletinDTO;
 import org.hibernate.exception.LockAcquisitionException;
 import org.joda.time.DateTime;
@@ -50,14 +50,14 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jms.annotation.JmsListener;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 /**
@@ -84,12 +84,14 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener {
     Cache<String, DateTime> lastFeedFinishedNotificationCache = CacheBuilder.newBuilder().build();
 
     /**
-     * Map of flowfiles attempting to get/create job executions
-     * When an Event comes it Kylo needs to associate it with a given JobExecution in the database.
-     * This process will lock on the events JobExecution Id.
-     * If the lock cant be acquired it will increment a retrycounter into this map and try again
+     * The number of single threaded lanes the events are processed on.
+     * Events are assigned a lane by their job flow file so all the events for a job are processed in order by the same thread.
+     * Each queue has a single consumer so batches are dispatched in the order they were sent, and the lanes supply the parallelism
      */
-    private Map<String, AtomicInteger> findJobExecutionAttempts = new HashMap<>();
+    @Value("${kylo.ops.mgr.provenance.lanes:8}")
+    private int provenanceLanes = 8;
+
+    private ProvenanceEventLaneDispatcher laneDispatcher;
 
 
     /**
@@ -98,6 +100,13 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener {
     @Value("${kylo.ops.mgr.query.nifi.bulletins:false}")
     private boolean queryForNiFiBulletins;
 
+    /**
+     * Persist the events in a JMS batch together, creating the job executions in a single transaction and writing the steps with JDBC batch inserts.
+     * If false each event is persisted on its own
+     */
+    @Value("${kylo.ops.mgr.provenance.batch-persistence.enabled:true}")
+    private boolean batchPersistence = true;
+
     @Value("${kylo.ops.mgr.stream.finished.notification.wait-time-sec:5}")
     private Integer streamJobFinishedNotificationWaitTime = 5;
 
@@ -148,9 +157,17 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener {
     private void init() {
         batchStepExecutionProvider.subscribeToFailedSteps(this);
         retryProvenanceEventWithDelay.setReceiver(this);
+        laneDispatcher = new ProvenanceEventLaneDispatcher(provenanceLanes);
 
     }
 
+    @PreDestroy
+    private void destroy() {
+        if (laneDispatcher != null) {
+            laneDispatcher.shutdown();
+        }
+    }
+
 
     /**
      * Ensure the cache and NiFi are up, or if not ensure the data exists in the NiFi cache to be processed
@@ -189,13 +206,13 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener {
      * if it is a stream just write to the Nifi_event table.
      * When either are marked as the last event Notify the event bus for the trigger feed mechanism to work.
      *
-     * @param events The events obtained from JMS
+     * @param events The events obtained from JMS, encoded with the {@link ProvenanceWireFormat} or java serialized
      */
-    @JmsListener(id = JMS_LISTENER_ID2, destination = Queues.FEED_MANAGER_QUEUE2, containerFactory = JmsConstants.QUEUE_LISTENER_CONTAINER_FACTORY, concurrency = "3-10")
+    @JmsListener(id = JMS_LISTENER_ID2, destination = Queues.FEED_MANAGER_QUEUE2, containerFactory = JmsConstants.QUEUE_LISTENER_CONTAINER_FACTORY, concurrency = "1")
     public void receiveEvents(byte[] events) {
         Object o = null;
         try {
-            o = SerializationUtils.deserialize(events);
+            o = ProvenanceWireFormat.deserialize(events);
         } catch (Exception e) {
             log.error("Unable to deserialize object ", e);
         }
@@ -213,7 +230,7 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener {
      *
      * @param events The events obtained from JMS
      */
-    @JmsListener(id = JMS_LISTENER_ID, destination = Queues.FEED_MANAGER_QUEUE, containerFactory = JmsConstants.QUEUE_LISTENER_CONTAINER_FACTORY, concurrency = "3-10")
+    @JmsListener(id = JMS_LISTENER_ID, destination = Queues.FEED_MANAGER_QUEUE, containerFactory = JmsConstants.QUEUE_LISTENER_CONTAINER_FACTORY, concurrency = "1")
     public void receiveEvents(ProvenanceEventRecordDTOHolder events) {
         log.info("About to {} batch: {},  {} events from the {} queue ", (events instanceof RetryProvenanceEventRecordHolder) ? "RETRY" : "process", events.getBatchId(), events.getEvents().size(),
                  Queues.FEED_MANAGER_QUEUE);
@@ -221,16 +238,25 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener {
 
             if (ensureValidRetryAttempt(events)) {
                 List<ProvenanceEventRecordDTO> unregisteredEvents = new ArrayList<>();
+                List<ProvenanceEventRecordDTO> registeredEvents = new ArrayList<>();
 
                 events.getEvents().stream().map(event -> provenanceEventFeedUtil.enrichEventWithFeedInformation(event)).forEach(event -> {
 
                     if (provenanceEventFeedUtil.isRegisteredWithFeedManager(event)) {
-                        processEvent(event, 0);
+                        registeredEvents.add(event);
                     } else {
                         unregisteredEvents.add(event);
                     }
                 });
 
+                laneDispatcher.dispatch(registeredEvents, laneEvents -> {
+                    if (batchPersistence && laneEvents.size() > 1) {
+                        processEvents(laneEvents);
+                    } else {
+                        laneEvents.forEach(event -> processEvent(event, 0));
+                    }
+                });
+
                 if (clusterService.isClustered() && !unregisteredEvents.isEmpty()) {
                     //reprocess with delay
                     if (retryProvenanceEventWithDelay != null) {
@@ -251,44 +277,15 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener {
     }
 
     /**
-     * Try to get JobExecution for the given event.
-     * This will lock on the events JobFlowFileId when looking for the jobExecution
+     * Get or create the JobExecution for the given event.
+     * This is called on the event's lane so no other thread is working on the same job
      *
      * @param event the event to process
      * @return the JobExeuction related to this Event
      */
-    private BatchJobExecution findOrCreateJobExecution(ProvenanceEventRecordDTO event, OpsManagerFeed feed) throws InterruptedException {
-        BatchJobExecution jobExecution = null;
-        ProvenanceEventJobExecutionLockManager.JobLock lock = ProvenanceEventJobExecutionLockManager.getLock(event.getJobFlowFileId());
-        String key = event.getJobFlowFileId() + "-" + event.getFlowFileUuid() + "-" + event.getEventId();
-        findJobExecutionAttempts.putIfAbsent(key, new AtomicInteger(0));
-        try {
-            if (lock.getLock().tryLock(2L, TimeUnit.SECONDS)) {
-                try {
-                    jobExecution = metadataAccess.commit(() -> batchJobExecutionProvider.getOrCreateJobExecution(event, feed),
-                                                         MetadataAccess.SERVICE);
-                } finally {
-                    findJobExecutionAttempts.remove(key);
-                    ProvenanceEventJobExecutionLockManager.releaseLock(lock);
-                }
-            } else {
-                int retries = findJobExecutionAttempts.get(key).incrementAndGet();
-                log.warn("unable to acquire lock for {} while looking for JobExecution.  Retry attempt: {} ", event.getJobFlowFileId(), retries);
-                //try three times before giving up
-                Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
-                if (retries < 3) {
-                    findOrCreateJobExecution(event, feed);
-                } else {
-                    //give up
-                    findJobExecutionAttempts.remove(key);
-                    log.error("Unable to acquire the Lock to get/create the JobExecution for this event {}. This event will not be processed", event);
-                }
-            }
-        } catch (InterruptedException e) {
-            throw e;
-        }
-        return jobExecution;
-
+    private BatchJobExecution findOrCreateJobExecution(ProvenanceEventRecordDTO event, OpsManagerFeed feed) {
+        return metadataAccess.commit(() -> batchJobExecutionProvider.getOrCreateJobExecution(event, feed),
+                                     MetadataAccess.SERVICE);
     }
 
     /**
@@ -339,6 +336,105 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener {
     }
 
 
+    /**
+     * Process a batch of events from a single lane.
+     * The job executions for every event are resolved or created in a single transaction and the steps for each job are written together.
+     * Events are applied in the order they were received.  If the batch fails the events are processed one at a time.
+     *
+     * @param events the registered events to process
+     */
+    private void processEvents(List<ProvenanceEventRecordDTO> events) {
+        List<JobEvent> jobEvents = persistEvents(events, 0);
+        if (jobEvents != null) {
+            jobEvents.stream()
+                .filter(jobEvent -> jobEvent.getJobExecution() != null && jobEvent.getEvent().isFinalJobEvent())
+                .forEach(jobEvent -> notifyJobFinished(jobEvent.getJobExecution(), jobEvent.getEvent()));
+        } else {
+            log.debug("Processing {} events individually ", events.size());
+            events.forEach(event -> processEvent(event, 0));
+        }
+    }
+
+    /**
+     * Resolve or create the job executions and write the steps for the events in a single transaction.
+     * Pending steps for a job are written before its final event is applied, since finishing the job looks at the status of its steps.
+     *
+     * @param events       the events for a single lane
+     * @param retryAttempt the retry number.  If there is a lock error it will retry until it hits the {@link #lockAcquisitionRetryAmount}
+     * @return the job execution for each event, in order, or null if the batch could not be persisted
+     */
+    private List<JobEvent> persistEvents(List<ProvenanceEventRecordDTO> events, int retryAttempt) {
+        try {
+            return metadataAccess.commit(() -> {
+                List<JobEvent> jobEvents = new ArrayList<>(events.size());
+                Map<Long, List<ProvenanceEventRecordDTO>> pendingSteps = new LinkedHashMap<>();
+                for (ProvenanceEventRecordDTO event : events) {
+                    OpsManagerFeed feed = provenanceEventFeedUtil.getFeed(event);
+                    log.debug("Process {} for flowfile: {} and processorId: {} ", event, event.getJobFlowFileId(), event.getFirstEventProcessorId());
+                    if (event.isFinalJobEvent() && !event.isStream()) {
+                        BatchJobExecution existingJob = batchJobExecutionProvider.findJobExecution(event);
+                        if (existingJob != null) {
+                            writeSteps(existingJob.getJobExecutionId(), pendingSteps.remove(existingJob.getJobExecutionId()));
+                        }
+                    }
+                    BatchJobExecution jobExecution = batchJobExecutionProvider.getOrCreateJobExecution(event, feed);
+                    if (jobExecution != null) {
+                        batchJobExecutionProvider.updateFeedJobStartTime(jobExecution, feed);
+                        if (!event.isStream()) {
+                            pendingSteps.computeIfAbsent(jobExecution.getJobExecutionId(), jobExecutionId -> new ArrayList<>()).add(event);
+                        }
+                    }
+                    jobEvents.add(new JobEvent(event, jobExecution));
+                }
+                pendingSteps.forEach(this::writeSteps);
+                return jobEvents;
+            }, MetadataAccess.SERVICE);
+        } catch (LockAcquisitionException lae) {
+            if (retryAttempt < lockAcquisitionRetryAmount) {
+                retryAttempt++;
+                log.error("LockAcquisitionException found trying to process {} events.  Retry attempt # {} ", events.size(), retryAttempt, lae);
+                Uninterruptibles.sleepUninterruptibly(300, TimeUnit.MILLISECONDS);
+                return persistEvents(events, retryAttempt);
+            }
+            log.error("LockAcquisitionException found.  Unsuccessful after retrying {} times.  Processing the {} events individually. ", retryAttempt, events.size(), lae);
+        } catch (Exception e) {
+            log.error("Error processing a batch of {} events.  Processing the events individually. ", events.size(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Write the steps for the events on a job
+     */
+    private void writeSteps(Long jobExecutionId, List<ProvenanceEventRecordDTO> events) {
+        if (events != null && !events.isEmpty()) {
+            BatchJobExecution jobExecution = batchJobExecutionProvider.findByJobExecutionId(jobExecutionId, true);
+            batchJobExecutionProvider.save(jobExecution, events);
+        }
+    }
+
+    /**
+     * An event and the job execution it was applied to
+     */
+    private static class JobEvent {
+
+        private final ProvenanceEventRecordDTO event;
+        private final BatchJobExecution jobExecution;
+
+        JobEvent(ProvenanceEventRecordDTO event, BatchJobExecution jobExecution) {
+            this.event = event;
+            this.jobExecution = jobExecution;
+        }
+
+        public ProvenanceEventRecordDTO getEvent() {
+            return event;
+        }
+
+        public BatchJobExecution getJobExecution() {
+            return jobExecution;
+        }
+    }
+
     /**
      * Process this record and record the Job and steps
      *
@@ -0,0 +1,202 @@
+package com.thinkbiganalytics.metadata.cache;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-integration-service
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.MetadataCommand;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventService;
+import com.thinkbiganalytics.metadata.api.feed.FeedSummary;
+import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeed;
+import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeedProvider;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.jpa.feed.JpaFeedSummary;
+import com.thinkbiganalytics.metadata.jpa.feed.security.FeedAclCache;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.security.Principal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+public class FeedHealthSummaryCacheTest {
+
+    private static final long START = 1_000_000L;
+
+    @Mock
+    private MetadataEventService metadataEventService;
+
+    @Mock
+    private MetadataAccess metadataAccess;
+
+    @Mock
+    private OpsManagerFeedProvider opsManagerFeedProvider;
+
+    @Mock
+    private FeedAclCache feedAclCache;
+
+    @InjectMocks
+    private FeedHealthSummaryCache cache;
+
+    /**
+     * The committed summary of each feed, by feed name
+     */
+    private final Map<String, FeedSummary> committed = new ConcurrentHashMap<>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(metadataAccess.read(Mockito.any(MetadataCommand.class), Mockito.<Principal>anyVararg()))
+            .thenAnswer(invocation -> ((MetadataCommand) invocation.getArguments()[0]).execute());
+        Mockito.doAnswer(invocation -> new ArrayList<>(committed.values())).when(opsManagerFeedProvider).findFeedSummary();
+        Mockito.doAnswer(invocation -> {
+            Collection<String> names = (Collection<String>) invocation.getArguments()[0];
+            return committed.values().stream().filter(s -> names.contains(s.getFeedName())).collect(Collectors.toList());
+        }).when(opsManagerFeedProvider).findFeedSummary(Mockito.anyCollection());
+        Mockito.doReturn(Collections.emptyList()).when(opsManagerFeedProvider).findAllWithoutAcl();
+
+        commit("category.a", 0L);
+        commit("category.b", 0L);
+        setTime(START);
+        Assert.assertEquals(0L, failedCount("category.a"));
+    }
+
+    /**
+     * Verify only the changed feed is reloaded.
+     */
+    @Test
+    public void reloadChangedFeed() {
+        commit("category.a", 1L);
+        setTime(START + 1000);
+        cache.feedsChanged(Collections.singleton("category.a"));
+
+        // Changes are applied at most every 5 seconds
+        Assert.assertEquals(0L, failedCount("category.a"));
+
+        setTime(START + 6000);
+        Assert.assertEquals(1L, failedCount("category.a"));
+        Assert.assertEquals(2, cache.getFeedSummaryList(null).size());
+        Mockito.verify(opsManagerFeedProvider, Mockito.times(1)).findFeedSummary();
+        Mockito.verify(opsManagerFeedProvider, Mockito.times(1)).findFeedSummary(Collections.singletonList("category.a"));
+
+        // The change was settled when it was read, so it is not read again
+        setTime(START + 20000);
+        cache.getFeedSummaryList(null);
+        Mockito.verify(opsManagerFeedProvider, Mockito.times(1)).findFeedSummary(Mockito.anyCollection());
+    }
+
+    /**
+     * Verify a feed marked before its change is committed is reloaded again once the change is committed.
+     */
+    @Test
+    public void reloadChangeNotYetCommitted() {
+        setTime(START + 2000);
+        cache.feedsChanged(Collections.singleton("category.a"));
+
+        // The reload happens before the change is committed
+        setTime(START + 6000);
+        Assert.assertEquals(0L, failedCount("category.a"));
+        commit("category.a", 1L);
+
+        setTime(START + 11001);
+        Assert.assertEquals(1L, failedCount("category.a"));
+
+        setTime(START + 20000);
+        cache.getFeedSummaryList(null);
+        Mockito.verify(opsManagerFeedProvider, Mockito.times(2)).findFeedSummary(Mockito.anyCollection());
+    }
+
+    /**
+     * Verify a feed marked again while it is being reloaded stays marked.
+     */
+    @Test
+    public void reloadFeedMarkedWhileReading() {
+        setTime(START + 1000);
+        cache.feedsChanged(Collections.singleton("category.a"));
+        setTime(START + 10000);
+
+        Mockito.doAnswer(invocation -> {
+            FeedSummary read = committed.get("category.a");
+            cache.feedsChanged(Collections.singleton("category.a"));
+            commit("category.a", 1L);
+            return Collections.singletonList(read);
+        }).doAnswer(invocation -> Collections.singletonList(committed.get("category.a")))
+            .when(opsManagerFeedProvider).findFeedSummary(Mockito.anyCollection());
+        cache.getFeedSummaryList(null);
+
+        setTime(START + 20000);
+        Assert.assertEquals(1L, failedCount("category.a"));
+        Mockito.verify(opsManagerFeedProvider, Mockito.times(2)).findFeedSummary(Mockito.anyCollection());
+    }
+
+    /**
+     * Verify every feed is reloaded after the full refresh interval, including changes without a notification.
+     */
+    @Test
+    public void fullRefresh() {
+        commit("category.b", 3L);
+
+        setTime(START + 30000);
+        Assert.assertEquals(0L, failedCount("category.b"));
+
+        setTime(START + 61000);
+        Assert.assertEquals(3L, failedCount("category.b"));
+        Mockito.verify(opsManagerFeedProvider, Mockito.times(2)).findFeedSummary();
+        Mockito.verify(opsManagerFeedProvider, Mockito.never()).findFeedSummary(Mockito.anyCollection());
+    }
+
+    private void setTime(long millis) {
+        cache.clock = Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private long failedCount(String feedName) {
+        List<FeedSummary> summaries = cache.getFeedSummaryList(null).stream().filter(s -> feedName.equals(s.getFeedName())).collect(Collectors.toList());
+        Assert.assertEquals(1, summaries.size());
+        return summaries.get(0).getFailedCount();
+    }
+
+    private void commit(String feedName, long failedCount) {
+        FeedSummary previous = committed.get(feedName);
+        JpaFeedSummary summary = new JpaFeedSummary();
+        summary.setFeedId(previous != null ? previous.getFeedId() : UUID.randomUUID());
+        summary.setFeedName(feedName);
+        summary.setFeedType(OpsManagerFeed.FeedType.FEED);
+        summary.setRunStatus(FeedSummary.RunStatus.FINISHED);
+        summary.setStatus(failedCount > 0 ? BatchJobExecution.JobStatus.FAILED : BatchJobExecution.JobStatus.COMPLETED);
+        summary.setFailedCount(failedCount);
+        committed.put(feedName, summary);
+    }
+}
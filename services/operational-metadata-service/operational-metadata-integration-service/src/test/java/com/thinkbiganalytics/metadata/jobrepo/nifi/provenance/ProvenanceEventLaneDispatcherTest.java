@@ -0,0 +1,177 @@
+package com.thinkbiganalytics.metadata.jobrepo.nifi.provenance;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-integration-service
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.annotation.JmsListener;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+public class ProvenanceEventLaneDispatcherTest {
+
+    private ProvenanceEventLaneDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        dispatcher = new ProvenanceEventLaneDispatcher(4);
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testEventsForAJobAreProcessedInOrder() {
+        List<String> jobs = Arrays.asList("job-1", "job-2", "job-3", "job-4", "job-5", "job-6");
+        Map<String, List<Long>> processed = new ConcurrentHashMap<>();
+
+        // consecutive batches, as a single JMS consumer dispatches them
+        long eventId = 0;
+        for (int batch = 0; batch < 20; batch++) {
+            List<ProvenanceEventRecordDTO> events = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                for (String job : jobs) {
+                    events.add(event(job, ++eventId));
+                }
+            }
+            dispatcher.dispatch(events, laneEvents -> laneEvents.forEach(
+                event -> processed.computeIfAbsent(event.getJobFlowFileId(), job -> new CopyOnWriteArrayList<>()).add(event.getEventId())));
+        }
+
+        for (String job : jobs) {
+            List<Long> eventIds = processed.get(job);
+            Assert.assertEquals(100, eventIds.size());
+            Assert.assertEquals(eventIds.stream().sorted().collect(Collectors.toList()), eventIds);
+        }
+    }
+
+    @Test
+    public void testFailureIsRethrownAfterAllLanesFinish() throws Exception {
+        String failingJob = "job-fail";
+        String otherJob = jobOnOtherLane(failingJob);
+        CountDownLatch failed = new CountDownLatch(1);
+        List<Long> otherProcessed = new CopyOnWriteArrayList<>();
+
+        try {
+            dispatcher.dispatch(Arrays.asList(event(failingJob, 1L), event(otherJob, 2L)), laneEvents -> {
+                if (laneEvents.get(0).getJobFlowFileId().equals(failingJob)) {
+                    failed.countDown();
+                    throw new IllegalStateException("Unable to persist events");
+                }
+                // the other lane is still working when the first lane fails
+                try {
+                    failed.await(10, TimeUnit.SECONDS);
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                laneEvents.forEach(event -> otherProcessed.add(event.getEventId()));
+            });
+            Assert.fail("Expected the lane failure to be rethrown");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Unable to persist events", e.getMessage());
+        }
+        Assert.assertEquals(Arrays.asList(2L), otherProcessed);
+    }
+
+    @Test
+    public void testInterruptedDispatchWaitsForLanes() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Long> processed = new CopyOnWriteArrayList<>();
+
+        Thread caller = new Thread(() -> {
+            try {
+                dispatcher.dispatch(Arrays.asList(event("job-1", 1L)), laneEvents -> {
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    laneEvents.forEach(event -> processed.add(event.getEventId()));
+                });
+                if (!Thread.currentThread().isInterrupted()) {
+                    error.set(new AssertionError("Expected the interrupt to be restored"));
+                }
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        caller.start();
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        caller.interrupt();
+
+        // the caller keeps waiting for the lane rather than returning while it is still running
+        caller.join(200);
+        Assert.assertTrue(caller.isAlive());
+        release.countDown();
+        caller.join(TimeUnit.SECONDS.toMillis(10));
+
+        Assert.assertFalse(caller.isAlive());
+        Assert.assertNull(error.get());
+        Assert.assertEquals(Arrays.asList(1L), processed);
+    }
+
+    @Test
+    public void testListenersUseASingleConsumer() throws Exception {
+        Method bytesListener = ProvenanceEventReceiver.class.getMethod("receiveEvents", byte[].class);
+        Method holderListener = ProvenanceEventReceiver.class.getMethod("receiveEvents", ProvenanceEventRecordDTOHolder.class);
+
+        // concurrent consumers could dispatch consecutive batches of a job out of order
+        Assert.assertEquals("1", bytesListener.getAnnotation(JmsListener.class).concurrency());
+        Assert.assertEquals("1", holderListener.getAnnotation(JmsListener.class).concurrency());
+    }
+
+    private String jobOnOtherLane(String jobFlowFileId) {
+        int lane = dispatcher.laneFor(jobFlowFileId);
+        int i = 0;
+        while (dispatcher.laneFor("job-" + i) == lane) {
+            i++;
+        }
+        return "job-" + i;
+    }
+
+    private ProvenanceEventRecordDTO event(String jobFlowFileId, Long eventId) {
+        ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+        event.setJobFlowFileId(jobFlowFileId);
+        event.setEventId(eventId);
+        return event;
+    }
+}
@@ -103,6 +103,9 @@ WHERE FM_FEED_NAME = jobName;
 DELETE FROM NIFI_FEED_PROCESSOR_STATS
 WHERE FM_FEED_NAME = jobName;
 
+DELETE FROM NIFI_FEED_STATS_ROLLUP
+WHERE FEED_NAME = jobName;
+
  --   need to return a value for this procedure calls to work with spring-data-jpa repositories and named queries
 return 1;
 
@@ -92,4 +92,7 @@ DELETE FROM NIFI_EVENT
 WHERE FM_FEED_NAME = @jobName;
 
 DELETE FROM NIFI_FEED_PROCESSOR_STATS
-WHERE FM_FEED_NAME = @jobName;
\ No newline at end of file
+WHERE FM_FEED_NAME = @jobName;
+
+DELETE FROM NIFI_FEED_STATS_ROLLUP
+WHERE FEED_NAME = @jobName;
\ No newline at end of file